@@ -0,0 +1,78 @@
+/*
+    Copyright (C) 2010 LearningWell AB (www.learningwell.com), Kärnkraftsäkerhet och Utbildning AB (www.ksu.se)
+
+    This file is part of GIL (Generic Integration Layer).
+
+    GIL is free software: you can redistribute it and/or modify
+    it under the terms of the GNU Lesser General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    GIL is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public License
+    along with GIL.  If not, see <http://www.gnu.org/licenses/>.
+*/
+package gil.benchmark;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A benchmark of one operation on the data path, run by the {@link BenchmarkRunner}.
+ * <p>
+ * The runner calls setUp once, then runOnce repeatedly while measuring the time, and finally tearDown. runOnce
+ * shall return a value computed by the operation, which the runner consumes to keep the JIT compiler from
+ * eliminating the operation as dead code.
+ *
+ * @author Göran Larsson @ LearningWell AB
+ */
+public abstract class Benchmark {
+    private final String _name;
+    private final Map<String, String> _params = new LinkedHashMap<String, String>();
+
+    /**
+     * @param name The name of the benchmark, shared by all parameter combinations of it.
+     */
+    protected Benchmark(String name) {
+        _name = name;
+    }
+
+    /**
+     * Adds a parameter identifying this combination, together with the name, in the results.
+     * @return This object.
+     */
+    protected Benchmark param(String name, Object value) {
+        _params.put(name, value.toString());
+        return this;
+    }
+
+    public String getName() {
+        return _name;
+    }
+
+    public Map<String, String> getParams() {
+        return Collections.unmodifiableMap(_params);
+    }
+
+    public void setUp() throws Exception {
+    }
+
+    /**
+     * Runs the benchmarked operation once.
+     * @return A value computed by the operation.
+     */
+    public abstract long runOnce() throws Exception;
+
+    public void tearDown() throws Exception {
+    }
+
+    @Override
+    public String toString() {
+        return _name + _params;
+    }
+}
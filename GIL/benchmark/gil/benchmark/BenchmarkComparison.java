@@ -0,0 +1,100 @@
+/*
+    Copyright (C) 2010 LearningWell AB (www.learningwell.com), Kärnkraftsäkerhet och Utbildning AB (www.ksu.se)
+
+    This file is part of GIL (Generic Integration Layer).
+
+    GIL is free software: you can redistribute it and/or modify
+    it under the terms of the GNU Lesser General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    GIL is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public License
+    along with GIL.  If not, see <http://www.gnu.org/licenses/>.
+*/
+package gil.benchmark;
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Compares two result files written by the {@link BenchmarkRunner}, typically from two commits, and reports the
+ * change of each benchmark's score.
+ * <p>
+ * Usage:
+ * <pre>
+ * java gil.benchmark.BenchmarkComparison &lt;baseline result file&gt; &lt;result file&gt; [&lt;threshold %&gt;]
+ * </pre>
+ * Exits with status 1 if any benchmark is slower than the baseline by more than the threshold, 10% by default.
+ *
+ * @author Göran Larsson @ LearningWell AB
+ */
+public class BenchmarkComparison {
+    private static final Pattern _RESULT = Pattern.compile(
+            "\\{\"benchmark\" : \"([^\"]*)\", \"params\" : \\{([^}]*)\\}.*\"score\" : ([0-9.Ee+-]+)");
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 2) {
+            System.err.println("Usage: BenchmarkComparison <baseline result file> <result file> [<threshold %>]");
+            System.exit(2);
+        }
+        double threshold = (args.length > 2) ? Double.parseDouble(args[2]) : 10;
+        Map<String, Double> baseline = readScores(args[0]);
+        Map<String, Double> current = readScores(args[1]);
+
+        int regressionCount = 0;
+        System.out.println(String.format(Locale.US, "%-80s %14s %14s %8s", "Benchmark", "Baseline ns/op",
+                "ns/op", "Change"));
+        for (Map.Entry<String, Double> result : current.entrySet()) {
+            Double baselineScore = baseline.get(result.getKey());
+            if (baselineScore == null) {
+                System.out.println(String.format(Locale.US, "%-80s %14s %14.3f %8s", result.getKey(), "-",
+                        result.getValue(), "new"));
+                continue;
+            }
+            double change = (result.getValue() - baselineScore) * 100 / baselineScore;
+            boolean regression = change > threshold;
+            if (regression) {
+                ++regressionCount;
+            }
+            System.out.println(String.format(Locale.US, "%-80s %14.3f %14.3f %+7.1f%%%s", result.getKey(),
+                    baselineScore, result.getValue(), change, regression ? " REGRESSION" : ""));
+        }
+        if (regressionCount > 0) {
+            System.out.println(regressionCount + " benchmark(s) slower than the baseline by more than "
+                    + threshold + "%.");
+            System.exit(1);
+        }
+    }
+
+    /**
+     * @return The score of each benchmark, keyed by the benchmark name and parameters.
+     */
+    static Map<String, Double> readScores(String fileName) throws IOException {
+        Map<String, Double> scores = new LinkedHashMap<String, Double>();
+        BufferedReader reader = new BufferedReader(new FileReader(fileName));
+        try {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                Matcher m = _RESULT.matcher(line);
+                if (m.find()) {
+                    String params = m.group(2).replace("\"", "").replace(" : ", "=");
+                    scores.put(m.group(1) + "{" + params + "}", Double.valueOf(m.group(3)));
+                }
+            }
+        } finally {
+            reader.close();
+        }
+        return scores;
+    }
+}
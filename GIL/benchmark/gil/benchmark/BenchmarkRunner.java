@@ -0,0 +1,234 @@
+/*
+    Copyright (C) 2010 LearningWell AB (www.learningwell.com), Kärnkraftsäkerhet och Utbildning AB (www.ksu.se)
+
+    This file is part of GIL (Generic Integration Layer).
+
+    GIL is free software: you can redistribute it and/or modify
+    it under the terms of the GNU Lesser General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    GIL is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public License
+    along with GIL.  If not, see <http://www.gnu.org/licenses/>.
+*/
+package gil.benchmark;
+
+import gil.core.SignalMetadata.DataflowDirection;
+import gil.core.SignalMetadata.SignalDataType;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * Runs the benchmarks of the data path and writes the results to a file, to be compared between commits by the
+ * {@link BenchmarkComparison}.
+ * <p>
+ * Each benchmark is run for a number of warmup iterations, letting the JIT compiler settle, followed by a number
+ * of measured iterations of a fixed time each. The score is the mean time per operation over the measured
+ * iterations, and the score error is the standard deviation of the iteration means.
+ * <p>
+ * The results are written in the JSON layout of JMH, one benchmark per line:
+ * <pre>
+ * [
+ * {"benchmark" : "ConvertStage", "params" : {"direction" : "ToES", ...}, "mode" : "avgt", ...,
+ *  "primaryMetric" : {"score" : 1234.5, "scoreError" : 12.3, "scoreUnit" : "ns/op", "rawData" : [[...]]}},
+ * ...
+ * ]
+ * </pre>
+ * Usage:
+ * <pre>
+ * java gil.benchmark.BenchmarkRunner &lt;result file&gt; [&lt;regular expression matching benchmark names&gt;]
+ * </pre>
+ * The system properties benchmark.warmupIterations, benchmark.iterations and benchmark.iterationTime (in
+ * milliseconds) override the defaults of 3 warmup and 5 measured iterations of 1000 milliseconds.
+ *
+ * @author Göran Larsson @ LearningWell AB
+ */
+public class BenchmarkRunner {
+    private static final long _BATCH_TIME_NANOS = 1000000; // Time between checks of the clock.
+
+    private final int _warmupIterations;
+    private final int _iterations;
+    private final long _iterationTimeNanos;
+    private long _sink = 0;
+
+    public BenchmarkRunner(int warmupIterations, int iterations, long iterationTimeMillis) {
+        _warmupIterations = warmupIterations;
+        _iterations = iterations;
+        _iterationTimeNanos = iterationTimeMillis * 1000000;
+    }
+
+    /**
+     * @return All benchmarks of the data path.
+     */
+    public static List<Benchmark> createBenchmarks() {
+        List<Benchmark> benchmarks = new ArrayList<Benchmark>();
+        for (DataflowDirection direction : DataflowDirection.values()) {
+            for (SignalDataType dataType : new SignalDataType[] { SignalDataType.Float32, SignalDataType.Float64 }) {
+                for (int scaledPercent : new int[] { 0, 50, 100 }) {
+                    benchmarks.add(new ConvertStageBenchmark(10000, dataType, direction, scaledPercent));
+                }
+            }
+        }
+        for (int stageCount : new int[] { 1, 4, 16 }) {
+            benchmarks.add(new TransferPipelineBenchmark(10000, stageCount));
+        }
+        for (int signalCount : new int[] { 10000, 100000 }) {
+            benchmarks.add(new SignalExchangeListBenchmark(signalCount));
+        }
+        benchmarks.add(new FrequencySubdividerBenchmark(1000, 50));
+        for (int signalCount : new int[] { 1000, 100000 }) {
+            benchmarks.add(new ProcedureRoundTripBenchmark(signalCount));
+        }
+        return benchmarks;
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 1) {
+            System.err.println("Usage: BenchmarkRunner <result file> [<benchmark name regex>]");
+            System.exit(2);
+        }
+        Pattern filter = Pattern.compile((args.length > 1 && args[1].length() > 0) ? args[1] : ".*");
+        BenchmarkRunner runner = new BenchmarkRunner(Integer.getInteger("benchmark.warmupIterations", 3),
+                Integer.getInteger("benchmark.iterations", 5), Integer.getInteger("benchmark.iterationTime", 1000));
+
+        List<String> results = new ArrayList<String>();
+        for (Benchmark benchmark : createBenchmarks()) {
+            if (filter.matcher(benchmark.getName()).matches()) {
+                results.add(runner.run(benchmark));
+            }
+        }
+        File resultFile = new File(args[0]);
+        if (resultFile.getParentFile() != null) {
+            resultFile.getParentFile().mkdirs();
+        }
+        writeResults(resultFile, results);
+        System.out.println("Results written to " + resultFile);
+    }
+
+    /**
+     * Runs the given benchmark.
+     * @return The result as a JSON object.
+     */
+    public String run(Benchmark benchmark) throws Exception {
+        System.out.println("Running " + benchmark);
+        benchmark.setUp();
+        try {
+            int batchSize = calibrateBatchSize(benchmark);
+            for (int i = 0; i < _warmupIterations; i++) {
+                double score = runIteration(benchmark, batchSize);
+                System.out.println(String.format(Locale.US, "  Warmup %d: %.3f ns/op", i + 1, score));
+            }
+            double[] scores = new double[_iterations];
+            for (int i = 0; i < _iterations; i++) {
+                scores[i] = runIteration(benchmark, batchSize);
+                System.out.println(String.format(Locale.US, "  Iteration %d: %.3f ns/op", i + 1, scores[i]));
+            }
+            return toJSON(benchmark, scores);
+        } finally {
+            benchmark.tearDown();
+        }
+    }
+
+    /**
+     * @return The number of operations run between each check of the clock, making each batch take about
+     * {@link #_BATCH_TIME_NANOS}.
+     */
+    private int calibrateBatchSize(Benchmark benchmark) throws Exception {
+        int batchSize = 1;
+        while (batchSize < (1 << 20)) {
+            long start = System.nanoTime();
+            for (int i = 0; i < batchSize; i++) {
+                _sink += benchmark.runOnce();
+            }
+            if (System.nanoTime() - start >= _BATCH_TIME_NANOS) {
+                break;
+            }
+            batchSize *= 2;
+        }
+        return batchSize;
+    }
+
+    /**
+     * @return The mean time per operation in nanoseconds.
+     */
+    private double runIteration(Benchmark benchmark, int batchSize) throws Exception {
+        long operations = 0;
+        long start = System.nanoTime();
+        long elapsed;
+        do {
+            for (int i = 0; i < batchSize; i++) {
+                _sink += benchmark.runOnce();
+            }
+            operations += batchSize;
+            elapsed = System.nanoTime() - start;
+        } while (elapsed < _iterationTimeNanos);
+        return (double)elapsed / operations;
+    }
+
+    private String toJSON(Benchmark benchmark, double[] scores) {
+        double mean = 0;
+        for (double score : scores) {
+            mean += score / scores.length;
+        }
+        double variance = 0;
+        for (double score : scores) {
+            variance += (score - mean) * (score - mean) / Math.max(1, scores.length - 1);
+        }
+
+        StringBuilder sb = new StringBuilder();
+        sb.append("{\"benchmark\" : \"").append(benchmark.getName()).append("\", \"params\" : {");
+        boolean first = true;
+        for (Map.Entry<String, String> param : benchmark.getParams().entrySet()) {
+            sb.append(first ? "" : ", ");
+            sb.append('"').append(param.getKey()).append("\" : \"").append(param.getValue()).append('"');
+            first = false;
+        }
+        sb.append("}, \"mode\" : \"avgt\", \"warmupIterations\" : ").append(_warmupIterations);
+        sb.append(", \"measurementIterations\" : ").append(_iterations);
+        sb.append(", \"measurementTime\" : \"").append(_iterationTimeNanos / 1000000).append(" ms\"");
+        sb.append(", \"primaryMetric\" : {\"score\" : ").append(format(mean));
+        sb.append(", \"scoreError\" : ").append(format(Math.sqrt(variance)));
+        sb.append(", \"scoreUnit\" : \"ns/op\", \"rawData\" : [[");
+        for (int i = 0; i < scores.length; i++) {
+            sb.append((i > 0) ? ", " : "").append(format(scores[i]));
+        }
+        sb.append("]]}}");
+        return sb.toString();
+    }
+
+    private static String format(double value) {
+        return String.format(Locale.US, "%.3f", value);
+    }
+
+    private static void writeResults(File file, List<String> results) throws IOException {
+        PrintWriter writer = new PrintWriter(new FileWriter(file));
+        try {
+            writer.println("[");
+            for (int i = 0; i < results.size(); i++) {
+                writer.println(results.get(i) + ((i < results.size() - 1) ? "," : ""));
+            }
+            writer.println("]");
+        } finally {
+            writer.close();
+        }
+    }
+
+    /**
+     * @return The sum of the values returned by the benchmarked operations, computed to keep them alive.
+     */
+    public long getSink() {
+        return _sink;
+    }
+}
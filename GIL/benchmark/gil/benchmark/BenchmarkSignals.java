@@ -0,0 +1,75 @@
+/*
+    Copyright (C) 2010 LearningWell AB (www.learningwell.com), Kärnkraftsäkerhet och Utbildning AB (www.ksu.se)
+
+    This file is part of GIL (Generic Integration Layer).
+
+    GIL is free software: you can redistribute it and/or modify
+    it under the terms of the GNU Lesser General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    GIL is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public License
+    along with GIL.  If not, see <http://www.gnu.org/licenses/>.
+*/
+package gil.benchmark;
+
+import gil.core.SignalMetadata;
+import gil.core.SignalMetadata.DataflowDirection;
+import gil.core.SignalMetadata.SignalDataType;
+import gil.core.SignalMetadata.SignalType;
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+
+/**
+ * Creates signals and frames of process data for the benchmarks.
+ *
+ * @author Göran Larsson @ LearningWell AB
+ */
+class BenchmarkSignals {
+
+    private BenchmarkSignals() {
+    }
+
+    /**
+     * Creates signals of a single data type and direction, with their positions in the frame set.
+     * @param scaledPercent The percentage of the signals given the PMMax, PMMin, ESMax and ESMin attributes of
+     * the {@link gil.io.stages.ConvertStage}, spread evenly. The attributes give a gain of 1 and an offset of
+     * 0.5, so repeated conversions neither overflow nor underflow.
+     */
+    static SignalMetadata[] create(int count, SignalDataType dataType, DataflowDirection direction,
+            int scaledPercent) {
+        SignalMetadata[] signals = new SignalMetadata[count];
+        int pos = 0;
+        for (int i = 0; i < count; i++) {
+            HashMap<String, String> attributes = new HashMap<String, String>();
+            if (((i + 1) * scaledPercent / 100) > (i * scaledPercent / 100)) {
+                attributes.put("PMMin", "0");
+                attributes.put("PMMax", "100");
+                attributes.put("ESMin", "0.5");
+                attributes.put("ESMax", "100.5");
+            }
+            String id = "S" + i;
+            signals[i] = new SignalMetadata(SignalType.Analog, dataType, 1, direction, id, id, "", attributes);
+            signals[i].setBufferPos(pos);
+            pos += signals[i].getBufferSize();
+        }
+        return signals;
+    }
+
+    /**
+     * Creates a direct frame holding values for the given signals.
+     */
+    static ByteBuffer createFrame(SignalMetadata[] signals) {
+        ByteBuffer frame = ByteBuffer.allocateDirect(SignalMetadata.calcBufferSize(signals));
+        for (int i = 0; frame.remaining() >= 4; i++) {
+            frame.putFloat(i % 100);
+        }
+        frame.clear();
+        return frame;
+    }
+}
@@ -0,0 +1,73 @@
+/*
+    Copyright (C) 2010 LearningWell AB (www.learningwell.com), Kärnkraftsäkerhet och Utbildning AB (www.ksu.se)
+
+    This file is part of GIL (Generic Integration Layer).
+
+    GIL is free software: you can redistribute it and/or modify
+    it under the terms of the GNU Lesser General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    GIL is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public License
+    along with GIL.  If not, see <http://www.gnu.org/licenses/>.
+*/
+package gil.benchmark;
+
+import gil.common.Parameters;
+import gil.core.SignalMetadata;
+import gil.core.SignalMetadata.DataflowDirection;
+import gil.core.SignalMetadata.SignalDataType;
+import gil.io.stages.ConvertStage;
+import java.nio.ByteBuffer;
+
+/**
+ * Converts one frame in the {@link ConvertStage}.
+ *
+ * @author Göran Larsson @ LearningWell AB
+ */
+public class ConvertStageBenchmark extends Benchmark {
+    private final int _signalCount;
+    private final SignalDataType _dataType;
+    private final DataflowDirection _direction;
+    private final int _scaledPercent;
+    private final ConvertStage _stage = new ConvertStage();
+    private ByteBuffer _frame;
+
+    /**
+     * @param scaledPercent The percentage of the signals converted. The others pass unconverted.
+     */
+    public ConvertStageBenchmark(int signalCount, SignalDataType dataType, DataflowDirection direction,
+            int scaledPercent) {
+        super("ConvertStage");
+        param("signals", signalCount).param("dataType", dataType).param("direction", direction);
+        param("scaledPercent", scaledPercent);
+        _signalCount = signalCount;
+        _dataType = dataType;
+        _direction = direction;
+        _scaledPercent = scaledPercent;
+    }
+
+    @Override
+    public void setUp() throws Exception {
+        SignalMetadata[] signals = BenchmarkSignals.create(_signalCount, _dataType, _direction, _scaledPercent);
+        SignalMetadata[] none = new SignalMetadata[0];
+        if (_direction == DataflowDirection.ToES) {
+            _stage.setup("convert", none, signals, new Parameters());
+        } else {
+            _stage.setup("convert", signals, none, new Parameters());
+        }
+        _frame = BenchmarkSignals.createFrame(signals);
+    }
+
+    @Override
+    public long runOnce() {
+        _frame.rewind();
+        _stage.processSignals(_frame, _direction);
+        return _frame.getInt(0);
+    }
+}
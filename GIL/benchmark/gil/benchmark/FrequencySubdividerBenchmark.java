@@ -0,0 +1,65 @@
+/*
+    Copyright (C) 2010 LearningWell AB (www.learningwell.com), Kärnkraftsäkerhet och Utbildning AB (www.ksu.se)
+
+    This file is part of GIL (Generic Integration Layer).
+
+    GIL is free software: you can redistribute it and/or modify
+    it under the terms of the GNU Lesser General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    GIL is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public License
+    along with GIL.  If not, see <http://www.gnu.org/licenses/>.
+*/
+package gil.benchmark;
+
+import gil.common.FrequencySubdivider;
+import gil.core.SimTime;
+
+/**
+ * Detects the frame changes of the external system from the time of the process model in the
+ * {@link FrequencySubdivider}, once for each frame of the process model.
+ *
+ * @author Göran Larsson @ LearningWell AB
+ */
+public class FrequencySubdividerBenchmark extends Benchmark {
+    private final int _pmFrequency;
+    private final int _esFrequency;
+    private SimTime[] _times;
+    private FrequencySubdivider _subdivider;
+    private int _next = 0;
+
+    public FrequencySubdividerBenchmark(int pmFrequency, int esFrequency) {
+        super("FrequencySubdivider");
+        param("pmFrequency", pmFrequency).param("esFrequency", esFrequency);
+        _pmFrequency = pmFrequency;
+        _esFrequency = esFrequency;
+    }
+
+    @Override
+    public void setUp() {
+        // The times of one minute of process model frames, created up front to benchmark the subdivider only.
+        _times = new SimTime[_pmFrequency * 60];
+        for (int i = 0; i < _times.length; i++) {
+            long micros = i * 1000000L / _pmFrequency;
+            _times[i] = new SimTime(2010, 1, 1, 0, (int)(micros / 60000000), (int)(micros / 1000000 % 60),
+                    (int)(micros / 1000 % 1000), (int)(micros % 1000));
+        }
+        _subdivider = new FrequencySubdivider(_esFrequency);
+        _subdivider.reset(_times[0]);
+    }
+
+    @Override
+    public long runOnce() {
+        if (++_next == _times.length) {
+            _next = 0;
+            _subdivider.reset(_times[0]);
+        }
+        return _subdivider.getSystem2TimeStepChange(_times[_next]);
+    }
+}
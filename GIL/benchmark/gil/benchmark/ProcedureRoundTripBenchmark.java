@@ -0,0 +1,163 @@
+/*
+    Copyright (C) 2010 LearningWell AB (www.learningwell.com), Kärnkraftsäkerhet och Utbildning AB (www.ksu.se)
+
+    This file is part of GIL (Generic Integration Layer).
+
+    GIL is free software: you can redistribute it and/or modify
+    it under the terms of the GNU Lesser General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    GIL is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public License
+    along with GIL.  If not, see <http://www.gnu.org/licenses/>.
+*/
+package gil.benchmark;
+
+import gil.common.ConfigFile;
+import gil.common.CurrentTime;
+import gil.common.GILConfiguration;
+import gil.common.ICurrentTime;
+import gil.common.Parameters;
+import gil.core.ExternalSystemProcedure;
+import gil.core.IntegrationContext;
+import gil.core.ProcessModelProcedure;
+import gil.core.SignalExchangeList;
+import gil.core.SignalMetadata;
+import gil.core.TransferPipeline;
+import gil.core.TransferPipelineProcedure;
+import gil.io.synthetic.SyntheticESAdapter;
+import gil.io.synthetic.SyntheticPMAdapter;
+import gil.io.synthetic.SyntheticSignalExchangeList;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.PrintWriter;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Runs the {@link ProcessModelProcedure}, the {@link TransferPipelineProcedure} and the
+ * {@link ExternalSystemProcedure} once each, on a single thread, with the synthetic adapters attached. Both
+ * adapters run at 1 kHz and the clock is advanced by a millisecond in each operation, so each operation moves one
+ * frame from the process model to the external system and one frame back.
+ *
+ * @author Göran Larsson @ LearningWell AB
+ */
+public class ProcedureRoundTripBenchmark extends Benchmark {
+    private static final int _FREQUENCY = 1000;
+
+    private final int _signalCount;
+    private final FakeTime _time = new FakeTime();
+    private File _selFile;
+    private File _configFile;
+    private SyntheticESAdapter _esAdapter;
+    private ProcessModelProcedure _pmProcedure;
+    private TransferPipelineProcedure _pipelineProcedure;
+    private ExternalSystemProcedure _esProcedure;
+
+    public ProcedureRoundTripBenchmark(int signalCount) {
+        super("ProcedureRoundTrip");
+        param("signals", signalCount);
+        _signalCount = signalCount;
+    }
+
+    @Override
+    public void setUp() throws Exception {
+        CurrentTime.setInstanceForTestPurposes(_time);
+
+        Map<String, String> settings = new HashMap<String, String>();
+        settings.put("signalCount", Integer.toString(_signalCount));
+        settings.put("operatingFrequency", Integer.toString(_FREQUENCY));
+        _selFile = File.createTempFile("benchmark", ".sel");
+        FileWriter selWriter = new FileWriter(_selFile);
+        try {
+            SyntheticSignalExchangeList.write(selWriter, new Parameters(settings));
+        } finally {
+            selWriter.close();
+        }
+        _configFile = File.createTempFile("benchmark", ".config.xml");
+        writeConfig(_configFile, _selFile);
+        GILConfiguration config = new GILConfiguration(ConfigFile.read(_configFile.getPath()));
+
+        SignalMetadata[] signals = SignalExchangeList.parse(_selFile.getPath());
+        SignalMetadata[] signalsToES = SignalMetadata.getSignalsToExternalSystem(signals);
+        SignalMetadata[] signalsToPM = SignalMetadata.getSignalsToProcessModel(signals);
+
+        SyntheticPMAdapter pmAdapter = new SyntheticPMAdapter();
+        pmAdapter.setup(signalsToPM, signalsToES, new Parameters(settings));
+        _esAdapter = new SyntheticESAdapter();
+        _esAdapter.setup(signalsToES, signalsToPM, new Parameters(settings));
+
+        IntegrationContext context = new IntegrationContext(0, 1, 1);
+        _pmProcedure = new ProcessModelProcedure(pmAdapter, _FREQUENCY, context,
+                SignalMetadata.calcBufferSize(signalsToES), config);
+        _pipelineProcedure = new TransferPipelineProcedure(new TransferPipeline(), context);
+        _esProcedure = new ExternalSystemProcedure(_esAdapter, context, SignalMetadata.calcBufferSize(signalsToPM),
+                signalsToES, config);
+    }
+
+    @Override
+    public long runOnce() {
+        long now = _time.advance(1000);
+        _pmProcedure.runOnce(now);
+        _pipelineProcedure.runOnce(now);
+        _esProcedure.runOnce(now);
+        _pipelineProcedure.runOnce(now);
+        return _esAdapter.getWriteFrameCount();
+    }
+
+    @Override
+    public void tearDown() {
+        CurrentTime.setInstanceForTestPurposes(null);
+        _selFile.delete();
+        _configFile.delete();
+    }
+
+    private static void writeConfig(File configFile, File selFile) throws Exception {
+        PrintWriter writer = new PrintWriter(new FileWriter(configFile));
+        try {
+            writer.println("<?xml version=\"1.0\" encoding=\"UTF-8\"?>");
+            writer.println("<configuration>");
+            writer.println("    <appSettings>");
+            writer.println("        <add key=\"processModelAdapter\" value=\"" + SyntheticPMAdapter.class.getName() + "\" />");
+            writer.println("        <add key=\"externalSystemAdapter\" value=\"" + SyntheticESAdapter.class.getName() + "\" />");
+            writer.println("        <add key=\"signalExchangeList\" value=\"" + selFile.getPath() + "\" />");
+            writer.println("        <add key=\"idleProcessDataTransferInterval\" value=\"0\" />");
+            writer.println("        <add key=\"esAdapterReadPollRate\" value=\"1\" />");
+            writer.println("        <add key=\"pmAdapterByteOrder\" value=\"LITTLE_ENDIAN\" />");
+            writer.println("        <add key=\"esAdapterByteOrder\" value=\"LITTLE_ENDIAN\" />");
+            writer.println("    </appSettings>");
+            writer.println("</configuration>");
+        } finally {
+            writer.close();
+        }
+    }
+
+    /**
+     * A clock advanced by the benchmark only, making the procedures independent of the speed of the machine.
+     */
+    private static class FakeTime implements ICurrentTime {
+        private long _micros = 1000000;
+
+        long advance(long micros) {
+            _micros += micros;
+            return _micros;
+        }
+
+        public long inMilliseconds() {
+            return _micros / 1000;
+        }
+
+        public long inMicroseconds() {
+            return _micros;
+        }
+
+        public long inNanoseconds() {
+            return _micros * 1000;
+        }
+    }
+}
@@ -0,0 +1,67 @@
+/*
+    Copyright (C) 2010 LearningWell AB (www.learningwell.com), Kärnkraftsäkerhet och Utbildning AB (www.ksu.se)
+
+    This file is part of GIL (Generic Integration Layer).
+
+    GIL is free software: you can redistribute it and/or modify
+    it under the terms of the GNU Lesser General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    GIL is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public License
+    along with GIL.  If not, see <http://www.gnu.org/licenses/>.
+*/
+package gil.benchmark;
+
+import gil.common.Parameters;
+import gil.core.SignalExchangeList;
+import gil.io.synthetic.SyntheticSignalExchangeList;
+import java.io.File;
+import java.io.FileWriter;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Parses a signal exchange list file generated by the {@link SyntheticSignalExchangeList}.
+ *
+ * @author Göran Larsson @ LearningWell AB
+ */
+public class SignalExchangeListBenchmark extends Benchmark {
+    private final int _signalCount;
+    private File _file;
+
+    public SignalExchangeListBenchmark(int signalCount) {
+        super("SignalExchangeList.parse");
+        param("signals", signalCount);
+        _signalCount = signalCount;
+    }
+
+    @Override
+    public void setUp() throws Exception {
+        Map<String, String> settings = new HashMap<String, String>();
+        settings.put("signalCount", Integer.toString(_signalCount));
+        settings.put("dataTypeMix", "Float32:6,Int32:2,Int16:1,Int8:1");
+        _file = File.createTempFile("benchmark", ".sel");
+        FileWriter writer = new FileWriter(_file);
+        try {
+            SyntheticSignalExchangeList.write(writer, new Parameters(settings));
+        } finally {
+            writer.close();
+        }
+    }
+
+    @Override
+    public long runOnce() throws Exception {
+        return SignalExchangeList.parse(_file.getPath()).length;
+    }
+
+    @Override
+    public void tearDown() {
+        _file.delete();
+    }
+}
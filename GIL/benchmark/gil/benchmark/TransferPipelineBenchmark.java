@@ -0,0 +1,69 @@
+/*
+    Copyright (C) 2010 LearningWell AB (www.learningwell.com), Kärnkraftsäkerhet och Utbildning AB (www.ksu.se)
+
+    This file is part of GIL (Generic Integration Layer).
+
+    GIL is free software: you can redistribute it and/or modify
+    it under the terms of the GNU Lesser General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    GIL is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public License
+    along with GIL.  If not, see <http://www.gnu.org/licenses/>.
+*/
+package gil.benchmark;
+
+import gil.common.Parameters;
+import gil.core.SignalMetadata;
+import gil.core.SignalMetadata.DataflowDirection;
+import gil.core.SignalMetadata.SignalDataType;
+import gil.core.TransferPipeline;
+import gil.io.IPipelineStage;
+import gil.io.stages.ConvertStage;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Feeds one frame through a {@link TransferPipeline} of a number of stages, each converting all signals.
+ *
+ * @author Göran Larsson @ LearningWell AB
+ */
+public class TransferPipelineBenchmark extends Benchmark {
+    private final int _signalCount;
+    private final int _stageCount;
+    private TransferPipeline _pipeline;
+    private ByteBuffer _frame;
+
+    public TransferPipelineBenchmark(int signalCount, int stageCount) {
+        super("TransferPipeline");
+        param("signals", signalCount).param("stages", stageCount);
+        _signalCount = signalCount;
+        _stageCount = stageCount;
+    }
+
+    @Override
+    public void setUp() throws Exception {
+        SignalMetadata[] signals = BenchmarkSignals.create(_signalCount, SignalDataType.Float32,
+                DataflowDirection.ToES, 100);
+        List<IPipelineStage> stages = new ArrayList<IPipelineStage>();
+        for (int i = 0; i < _stageCount; i++) {
+            ConvertStage stage = new ConvertStage();
+            stage.setup("convert" + i, new SignalMetadata[0], signals, new Parameters());
+            stages.add(stage);
+        }
+        _pipeline = new TransferPipeline(stages);
+        _frame = BenchmarkSignals.createFrame(signals);
+    }
+
+    @Override
+    public long runOnce() {
+        _pipeline.processSignals(_frame, DataflowDirection.ToES);
+        return _frame.getInt(0);
+    }
+}
@@ -27,6 +27,9 @@ import java.util.*;
 import javax.xml.xpath.XPathExpressionException;
 import org.apache.log4j.*;
 import org.apache.log4j.xml.DOMConfigurator;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
 import gil.core.*;
 import gil.io.*;
 import gil.common.*;
@@ -40,6 +43,8 @@ import gil.web.WebServer;
 public class GIL implements IGIL {
     private static final String CURRENT_VERSION = "0.1.1";
     private static final String CONFIG_PATH = "gil.config.xml";
+    private static final String ADDITIONAL_ES_SECTION = "additionalExternalSystems";
+    private static final String ADDITIONAL_PM_SECTION = "additionalProcessModels";
 
     public class VersionInfo {
         public VersionInfo(SoftwareInfo[] externalSystemInfo, SoftwareInfo[] processmodelInfo, SoftwareInfo gilInfo) {
@@ -119,27 +124,65 @@ public class GIL implements IGIL {
                     getAdapterSettings(config, className));
 
             // Instantiate the process model adapter object from class name read from the configuration file.
-            className = gconfig.getPMAdapterClassName();
-            _logger.info("Creating process model adapter: " + className);
-            cl = Class.forName(className);
-            IProcessModelAdapter pm = (IProcessModelAdapter)cl.newInstance();
-            pm.setup(SignalMetadata.getSignalsToProcessModel(smd), SignalMetadata.getSignalsToExternalSystem(smd),
-                    getAdapterSettings(config, className));
+            // When several process models are merged, each adapter is set up with its partition of the signals only.
+            List<String> pmIDs = new ArrayList<String>();
+            List<String> pmClassNames = new ArrayList<String>();
+            pmIDs.add(gconfig.getPMAdapterClassName());
+            pmClassNames.add(gconfig.getPMAdapterClassName());
+            if (config.sectionExists(ADDITIONAL_PM_SECTION)) {
+                readAdditionalProcessModels(config, pmIDs, pmClassNames);
+            }
+            SignalMetadata[][] pmSignals = new SignalMetadata[][] { smd };
+            if (pmIDs.size() > 1) {
+                pmSignals = FrameAssembler.partition(smd, pmIDs.toArray(new String[0]));
+            }
+            IProcessModelAdapter[] pmAdapters = new IProcessModelAdapter[pmIDs.size()];
+            for (int i = 0; i < pmAdapters.length; i++) {
+                className = pmClassNames.get(i);
+                _logger.info("Creating process model adapter: " + className);
+                cl = Class.forName(className);
+                pmAdapters[i] = (IProcessModelAdapter)cl.newInstance();
+                SignalMetadata[] pmSmd = (pmAdapters.length > 1) ? FrameAssembler.createSliceSignals(pmSignals[i]) : smd;
+                pmAdapters[i].setup(SignalMetadata.getSignalsToProcessModel(pmSmd),
+                        SignalMetadata.getSignalsToExternalSystem(pmSmd), getAdapterSettings(config, pmIDs.get(i)));
+            }
+            IProcessModelAdapter pm = pmAdapters[0];
 
             // Use the settings in the configuration file to dynamically construct the transfer pipeline.
             _logger.info("Building transfer pipeline");
             TransferPipeline pipe = TransferPipelineBuilder.buildPipeline(smd, config);
 
-            _executive = new IntegrationExecutive(pm, es, pipe, smd, gconfig);
+            List<ExternalSystemAdapter> esAdapters = new ArrayList<ExternalSystemAdapter>();
+            List<ITransferPipeline> esPipelineTails = new ArrayList<ITransferPipeline>();
+            esAdapters.add(es);
+            esPipelineTails.add(null);
+            if (config.sectionExists(ADDITIONAL_ES_SECTION)) {
+                List<String> esIDs = new ArrayList<String>();
+                esIDs.add(gconfig.getESAdapterClassName());
+                createAdditionalExternalSystems(smd, config, esIDs, esAdapters, esPipelineTails);
+            }
+
+            _executive = new IntegrationExecutive(pmAdapters, pmSignals, esAdapters.toArray(new ExternalSystemAdapter[0]),
+                    esPipelineTails.toArray(new ITransferPipeline[0]), pipe, smd, gconfig);
                     
-
-            _versionInfo = new VersionInfo(es.getInfo(), pm.getInfo(), new SoftwareInfo(GIL.class.getSimpleName(),
+            List<SoftwareInfo> esInfo = new ArrayList<SoftwareInfo>();
+            for (ExternalSystemAdapter adapter : esAdapters) {
+                esInfo.addAll(Arrays.asList(adapter.getInfo()));
+            }
+            List<SoftwareInfo> pmInfo = new ArrayList<SoftwareInfo>();
+            for (IProcessModelAdapter adapter : pmAdapters) {
+                pmInfo.addAll(Arrays.asList(adapter.getInfo()));
+            }
+
+            _versionInfo = new VersionInfo(esInfo.toArray(new SoftwareInfo[0]), pmInfo.toArray(new SoftwareInfo[0]),
+                    new SoftwareInfo(GIL.class.getSimpleName(),
                     "GIL (Generic Integration Layer)", CURRENT_VERSION, "LearningWell"));
             
             _logger.info("Starting integration executive...");
             _executive.start();
             _logger.info("Integration executive started OK");
             _logger.info("Starting GIL web server...");
+            WebContext.instance().setCommandTimeout(gconfig.getWebCommandTimeout());
             _webServer = new WebServer();
             _webServer.start(port, "./files", "/api");
             _logger.info("Web server started OK");
@@ -206,6 +249,60 @@ public class GIL implements IGIL {
         return _executive;
     }
 
+    /**
+     * Instantiates the external system adapters listed in the additionalExternalSystems section of the configuration
+     * file, together with the stages of their pipeline tails.
+     */
+    private void createAdditionalExternalSystems(SignalMetadata[] smd, ConfigFile config, List<String> esIDs,
+            List<ExternalSystemAdapter> esAdapters, List<ITransferPipeline> esPipelineTails) throws Exception {
+
+        NodeList nodes = config.getSection(ADDITIONAL_ES_SECTION).getChildNodes();
+        for (int i = 0; i < nodes.getLength(); i++) {
+            if (nodes.item(i).getNodeType() != Node.ELEMENT_NODE)
+                continue;
+            Element elm = (Element)nodes.item(i);
+            String id = elm.getAttribute("id");
+            String className = elm.getAttribute("adapter");
+            if (id.length() == 0 || className.length() == 0 || esIDs.contains(id)) {
+                throw new InvalidFileFormatException("Expected <externalSystem id=\"aUniqueId\" adapter=\"aClassName\"> in "
+                        + "section '" + ADDITIONAL_ES_SECTION + "'. Please review the configuration file.");
+            }
+            esIDs.add(id);
+            _logger.info("Creating external system adapter '" + id + "': " + className);
+            ExternalSystemAdapter es = (ExternalSystemAdapter)Class.forName(className).newInstance();
+            // Only the primary external system transfers data to the process models.
+            es.setup(SignalMetadata.getSignalsToExternalSystem(smd), new SignalMetadata[0],
+                    getAdapterSettings(config, id));
+            esAdapters.add(es);
+
+            TransferPipeline tail = TransferPipelineBuilder.buildPipeline(smd, config, elm);
+            esPipelineTails.add(tail.getStages().isEmpty() ? null : tail);
+        }
+    }
+
+    /**
+     * Reads the IDs and adapter class names of the process models listed in the additionalProcessModels section
+     * of the configuration file.
+     */
+    private void readAdditionalProcessModels(ConfigFile config, List<String> pmIDs, List<String> pmClassNames)
+            throws Exception {
+
+        NodeList nodes = config.getSection(ADDITIONAL_PM_SECTION).getChildNodes();
+        for (int i = 0; i < nodes.getLength(); i++) {
+            if (nodes.item(i).getNodeType() != Node.ELEMENT_NODE)
+                continue;
+            Element elm = (Element)nodes.item(i);
+            String id = elm.getAttribute("id");
+            String className = elm.getAttribute("adapter");
+            if (id.length() == 0 || className.length() == 0 || pmIDs.contains(id)) {
+                throw new InvalidFileFormatException("Expected <processModel id=\"aUniqueId\" adapter=\"aClassName\"/> in "
+                        + "section '" + ADDITIONAL_PM_SECTION + "'. Please review the configuration file.");
+            }
+            pmIDs.add(id);
+            pmClassNames.add(className);
+        }
+    }
+
     /**
      * Returns a parameters object containing the settings for the adapter with the given name. If no settings exists, an empty
      * parameters object is returned.
@@ -25,15 +25,28 @@ import java.util.concurrent.TimeoutException;
 
 /**
  * Used to monitor the progress of a asynchronous operation and provide the results when the operation is done.
+ * <p>
+ * A caller that must not be blocked for long, such as a web server thread, shall use
+ * {@link #get(long, java.util.concurrent.TimeUnit)} and keep the object to poll {@link #isDone()} later if the
+ * operation is not done within the timeout.
  * @author Göran Larsson @ LearningWell AB
  */
 public class AsyncResult<V> implements Future<V> {
 
-    private boolean _done = false;
-    private boolean _cancelled = false;
+    private volatile boolean _done = false;
+    private volatile boolean _cancelled = false;
     private V _resultValue = null;
     private Throwable _resultException = null;
 
+    /**
+     * Creates an AsyncResult for an operation that is already done.
+     */
+    public static <V> AsyncResult<V> done(V resultValue) {
+        AsyncResult<V> result = new AsyncResult<V>();
+        result.setDone(resultValue);
+        return result;
+    }
+
     public boolean isDone() {
         return _done;
     }
@@ -94,12 +107,15 @@ public class AsyncResult<V> implements Future<V> {
     }
 
     public V get(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException {
-        Timeout maxWait = new Timeout(System.currentTimeMillis(), unit.toMillis(timeout));
+        long start = CurrentTime.instance().inNanoseconds();
+        long timeoutNanos = unit.toNanos(timeout);
         synchronized(this) {
             while(!_done) {
-                this.wait(unit.toMillis(timeout));
-                if (maxWait.isTimeout(System.currentTimeMillis()))
+                long remaining = timeoutNanos - (CurrentTime.instance().inNanoseconds() - start);
+                if (remaining <= 0)
                     throw new TimeoutException("Timed out when waiting for AsyncResult. Timeout was " + timeout + " " + unit.name() + ".");
+                // wait(0, 0) would wait forever.
+                this.wait(remaining / 1000000, (int)Math.max(1, remaining % 1000000));
             }
             if (_cancelled)
                 throw new java.util.concurrent.CancellationException();
@@ -0,0 +1,137 @@
+/*
+    Copyright (C) 2010 LearningWell AB (www.learningwell.com), Kärnkraftsäkerhet och Utbildning AB (www.ksu.se)
+
+    This file is part of GIL (Generic Integration Layer).
+
+    GIL is free software: you can redistribute it and/or modify
+    it under the terms of the GNU Lesser General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    GIL is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public License
+    along with GIL.  If not, see <http://www.gnu.org/licenses/>.
+*/
+package gil.common;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A bounded pool of direct byte buffers, all of the same size and byte order. The buffers are allocated when the
+ * pool is created and are then leased and released over and over again, which keeps native memory allocation and
+ * the accompanying garbage collection out of the data transfer loops.
+ *
+ * If the pool is empty when a buffer is leased, a new buffer is allocated and the starvation count is incremented.
+ * Such a buffer does not belong to the pool and is left to the garbage collector when released. Releasing a buffer
+ * that does not belong to the pool does nothing, which lets callers release buffers of unknown origin.
+ *
+ * A leased buffer must be released at most once and must not be accessed after it is released.
+ *
+ * Methods in this object are thread safe.
+ *
+ * @author Göran Larsson @ LearningWell AB
+ */
+public class ByteBufferPool {
+    private final ArrayBlockingQueue<ByteBuffer> _available;
+    private final ByteBuffer[] _buffers;
+    private final int _capacity;
+    private final int _bufferSize;
+    private final ByteOrder _byteOrder;
+    private final AtomicLong _starvationCount = new AtomicLong();
+
+    /**
+     * @param capacity The number of buffers to pre-allocate. This is also the maximum number of buffers held by
+     * the pool.
+     * @param bufferSize The size in bytes of each buffer.
+     * @param byteOrder The byte order every leased buffer is set to.
+     */
+    public ByteBufferPool(int capacity, int bufferSize, ByteOrder byteOrder) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("The capacity of a buffer pool must be greater than zero.");
+        }
+        _capacity = capacity;
+        _bufferSize = bufferSize;
+        _byteOrder = byteOrder;
+        _available = new ArrayBlockingQueue<ByteBuffer>(capacity);
+        _buffers = new ByteBuffer[capacity];
+        for (int i = 0; i < capacity; i++) {
+            _buffers[i] = allocate();
+            _available.offer(_buffers[i]);
+        }
+    }
+
+    /**
+     * Leases a buffer from the pool. The returned buffer is cleared and set to the byte order of this pool. If the
+     * pool is empty a new buffer is allocated.
+     */
+    public ByteBuffer lease() {
+        ByteBuffer buf = _available.poll();
+        if (buf == null) {
+            _starvationCount.incrementAndGet();
+            buf = allocate();
+        }
+        buf.clear();
+        buf.order(_byteOrder);
+        return buf;
+    }
+
+    /**
+     * Returns a leased buffer to the pool. Does nothing if the buffer does not belong to the pool.
+     */
+    public void release(ByteBuffer buf) {
+        if (owns(buf)) {
+            _available.offer(buf);
+        }
+    }
+
+    /**
+     * @return true if the given buffer is one of the buffers pre-allocated by this pool.
+     */
+    public boolean owns(ByteBuffer buf) {
+        for (int i = 0; i < _buffers.length; i++) {
+            if (_buffers[i] == buf) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return The maximum number of buffers held by this pool.
+     */
+    public int getCapacity() {
+        return _capacity;
+    }
+
+    /**
+     * @return The number of buffers currently available for lease without allocation.
+     */
+    public int getAvailableCount() {
+        return _available.size();
+    }
+
+    /**
+     * @return The number of times a lease found the pool empty and a buffer had to be allocated.
+     */
+    public long getStarvationCount() {
+        return _starvationCount.get();
+    }
+
+    public int getBufferSize() {
+        return _bufferSize;
+    }
+
+    private ByteBuffer allocate() {
+        // Must allocate direct since the buffer may be used across boundaries to native code (JNI).
+        ByteBuffer buf = ByteBuffer.allocateDirect(_bufferSize);
+        buf.order(_byteOrder);
+        return buf;
+    }
+}
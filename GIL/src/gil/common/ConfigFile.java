@@ -136,6 +136,13 @@ public class ConfigFile {
         return props.get(name);
     }
 
+    /**
+     * Returns true if a setting with the given name exists in the mandatory "appSettings" section.
+     */
+    public boolean appSettingExists(String name) throws XPathExpressionException, InvalidFileFormatException {
+        return getPropertiesSection("appSettings").containsKey(name);
+    }
+
     public boolean sectionExists(String name) throws XPathExpressionException {
         XPath path = XPathFactory.newInstance().newXPath();
         NodeList nodes = (NodeList)path.evaluate("/configuration/" + name, _xmlDoc, XPathConstants.NODESET);
@@ -19,7 +19,8 @@
 package gil.common;
 
 /**
- * A wrapper around System.currentTimeMillis() to make it possible to stub out calls for test purposes.
+ * A wrapper around System.currentTimeMillis() and System.nanoTime() to make it possible to stub out calls for
+ * test purposes.
  * @author Göran Larsson @ LearningWell AB
  */
 public class CurrentTime implements ICurrentTime {
@@ -31,6 +32,14 @@ public class CurrentTime implements ICurrentTime {
         return System.currentTimeMillis();
     }
 
+    public long inMicroseconds() {
+        return inNanoseconds() / 1000;
+    }
+
+    public long inNanoseconds() {
+        return System.nanoTime();
+    }
+
     static public ICurrentTime instance() {
         if (_instance == null) {
             _instance = new CurrentTime();
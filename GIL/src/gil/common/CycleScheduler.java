@@ -0,0 +1,151 @@
+/*
+    Copyright (C) 2010 LearningWell AB (www.learningwell.com), Kärnkraftsäkerhet och Utbildning AB (www.ksu.se)
+
+    This file is part of GIL (Generic Integration Layer).
+
+    GIL is free software: you can redistribute it and/or modify
+    it under the terms of the GNU Lesser General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    GIL is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public License
+    along with GIL.  If not, see <http://www.gnu.org/licenses/>.
+*/
+package gil.common;
+
+/**
+ * Paces a loop to run at a fixed rate using absolute deadlines.
+ * <p>
+ * Each cycle ends at a deadline that is a whole number of periods from the time the scheduler was started, so
+ * the time spent in each iteration and the wakeup latency do not accumulate as drift. If a cycle overruns its
+ * deadline by more than a whole period, the missed cycles are skipped rather than run back to back, and the
+ * overrun count is incremented by the number of skipped cycles.
+ * <p>
+ * For each completed cycle the lateness, i.e. the time between the deadline and the actual start of the next
+ * cycle, and the jitter, i.e. the deviation of the actual cycle time from the period, are recorded.
+ * <p>
+ * Methods in this object must be called from a single thread, except the get methods which are thread safe.
+ *
+ * @author Göran Larsson @ LearningWell AB
+ */
+public class CycleScheduler {
+    private final long _periodNanos;
+    private long _nextDeadline;
+    private long _lastCycleStart;
+
+    private volatile long _cycleCount = 0;
+    private volatile long _overrunCount = 0;
+    private volatile long _totalLatenessNanos = 0;
+    private volatile long _maxLatenessNanos = 0;
+    private volatile long _maxJitterNanos = 0;
+
+    /**
+     * @param periodNanos The cycle period in nanoseconds.
+     */
+    public CycleScheduler(long periodNanos) {
+        if (periodNanos <= 0) {
+            throw new IllegalArgumentException("The cycle period must be greater than zero.");
+        }
+        _periodNanos = periodNanos;
+        start();
+    }
+
+    /**
+     * Creates a scheduler running a given number of cycles for each period of the given frequency.
+     * @param frequency The frequency in Hertz.
+     * @param cyclesPerPeriod The number of cycles to run within each period of the frequency.
+     */
+    public static CycleScheduler forFrequency(int frequency, int cyclesPerPeriod) {
+        if (frequency <= 0) {
+            throw new IllegalArgumentException("The frequency must be greater than zero.");
+        }
+        return new CycleScheduler(1000000000L / ((long)frequency * cyclesPerPeriod));
+    }
+
+    /**
+     * Sets the deadline of the first cycle to one period from now.
+     */
+    public void start() {
+        _lastCycleStart = System.nanoTime();
+        _nextDeadline = _lastCycleStart + _periodNanos;
+    }
+
+    /**
+     * Waits until the deadline of the current cycle, or until woken up by the given wakeup.
+     * @return true if the deadline is reached and a new cycle is started. false if woken up before the deadline,
+     * in which case the current cycle continues.
+     * @throws InterruptedException If the calling thread is interrupted while waiting.
+     */
+    public boolean awaitNextCycle(Wakeup wakeup) throws InterruptedException {
+        long remaining = _nextDeadline - System.nanoTime();
+        if (remaining > 0 && wakeup.await(remaining)) {
+            return false;
+        }
+        completeCycle(System.nanoTime());
+        return true;
+    }
+
+    private void completeCycle(long now) {
+        long lateness = Math.max(0, now - _nextDeadline);
+        long jitter = Math.abs((now - _lastCycleStart) - _periodNanos);
+        long missedCycles = lateness / _periodNanos;
+
+        _lastCycleStart = now;
+        _nextDeadline += (missedCycles + 1) * _periodNanos;
+
+        _totalLatenessNanos += lateness;
+        if (lateness > _maxLatenessNanos) {
+            _maxLatenessNanos = lateness;
+        }
+        if (jitter > _maxJitterNanos) {
+            _maxJitterNanos = jitter;
+        }
+        _overrunCount += missedCycles;
+        ++_cycleCount;
+    }
+
+    public long getPeriodNanos() {
+        return _periodNanos;
+    }
+
+    /**
+     * @return The number of completed cycles.
+     */
+    public long getCycleCount() {
+        return _cycleCount;
+    }
+
+    /**
+     * @return The number of cycles skipped because an earlier cycle overran its deadline by more than a period.
+     */
+    public long getOverrunCount() {
+        return _overrunCount;
+    }
+
+    /**
+     * @return The mean time in nanoseconds by which cycles were started after their deadline.
+     */
+    public long getMeanLatenessNanos() {
+        long count = _cycleCount;
+        return (count == 0) ? 0 : _totalLatenessNanos / count;
+    }
+
+    /**
+     * @return The maximum time in nanoseconds by which a cycle was started after its deadline.
+     */
+    public long getMaxLatenessNanos() {
+        return _maxLatenessNanos;
+    }
+
+    /**
+     * @return The maximum deviation in nanoseconds of the actual cycle time from the period.
+     */
+    public long getMaxJitterNanos() {
+        return _maxJitterNanos;
+    }
+}
@@ -30,6 +30,7 @@ public class FrequencySubdivider {
 
     long _system2CycleTimeInMicros;
     long _previousSystem2TimeStep;
+    long _maxDeltaChangeBeforeReset;
 
     /**
      * @param operatingFrequencySystem2 the frequency in Hz of the second system. This frequency must be less or
@@ -37,6 +38,7 @@ public class FrequencySubdivider {
      */
     public FrequencySubdivider(int operatingFrequencySystem2) {
         _system2CycleTimeInMicros = _MICROSECONDS_PER_SEC / operatingFrequencySystem2;
+        _maxDeltaChangeBeforeReset = Math.max(_MIN_MAX_DELTA_CHANGE_BEFORE_RESET, operatingFrequencySystem2);
     }
 
     /**
@@ -50,8 +52,9 @@ public class FrequencySubdivider {
 
     /**
      * Subsequent call to this method will return the time step delta change of system 2 since last call. If the
-     * resulting delta step change is greater than 20 some other event is presumed to cause the big difference
-     * and instead of returning the delta change, system 2 time is reset and 0 returned.
+     * resulting delta step change is greater than 20, or greater than the number of time steps in one second for
+     * system 2 operating above 20 Hz, some other event is presumed to cause the big difference and instead of
+     * returning the delta change, system 2 time is reset and 0 returned.
      * @param system1Time the current time of system 1.
      * @return the number of time steps system 2 must be incremented with in order to
      * stay synchronized with system 1.
@@ -68,7 +71,7 @@ public class FrequencySubdivider {
         }
 
         // Handle delta chages unreasonable big
-        if (delta > _MAX_DELTA_CHANGE_BEFORE_RESET) {
+        if (delta > _maxDeltaChangeBeforeReset) {
             reset(system1Time);
             return 0;
         }
@@ -82,10 +85,11 @@ public class FrequencySubdivider {
         return (long)(system1Time.hour() * 3600
                 + system1Time.minute() * 60
                 + system1Time.second()) * _MICROSECONDS_PER_SEC
-                + system1Time.millisecond() * _MICROSECONDS_PER_MILLISEC;
+                + system1Time.millisecond() * _MICROSECONDS_PER_MILLISEC
+                + system1Time.microsecond();
     }
 
     private static final long _MICROSECONDS_PER_SEC = 1000000L;
     private static final long _MICROSECONDS_PER_MILLISEC = 1000L;
-    private static final long _MAX_DELTA_CHANGE_BEFORE_RESET = 20;
+    private static final long _MIN_MAX_DELTA_CHANGE_BEFORE_RESET = 20;
 }
@@ -19,6 +19,7 @@
 package gil.common;
 
 import java.io.File;
+import java.math.BigDecimal;
 import java.nio.ByteOrder;
 import javax.xml.xpath.XPathExpressionException;
 import gil.io.ExternalSystemAdapter;
@@ -37,6 +38,16 @@ public class GILConfiguration {
     private static final String PARAM_ES_ADAPTER_POLL_RATE = "esAdapterReadPollRate";
     private static final String PARAM_ES_ADAPTER_BYTE_ORDER = "esAdapterByteOrder";
     private static final String PARAM_PM_ADAPTER_BYTE_ORDER = "pmAdapterByteOrder";
+    private static final String PARAM_WAKEUP_SPIN_TIME = "wakeupSpinTime";
+    private static final String PARAM_ES_SIM_COMMAND_BUDGET = "esSimCommandBudget";
+    private static final String PARAM_CONTROL_COMMAND_TIME_BUDGET = "controlCommandTimeBudget";
+    private static final String PARAM_CONTROL_COMMAND_COUNT_BUDGET = "controlCommandCountBudget";
+    private static final String PARAM_WEB_COMMAND_TIMEOUT = "webCommandTimeout";
+    private static final String PARAM_FRAME_HISTORY_LENGTH = "frameHistoryLength";
+    private static final String PARAM_RECORDING_DIRECTORY = "recordingDirectory";
+    private static final String PARAM_RECORDING_SEGMENT_SIZE = "recordingSegmentSize";
+
+    private static final int DEFAULT_WAKEUP_SPIN_TIME = 20;
 
     ConfigFile _config;
     String _currentParmeter = "";
@@ -44,10 +55,18 @@ public class GILConfiguration {
     private String _esAdapterClassName;
     private String _pmAdapterClassName;
     private String _signalExchangeListPath;
-    private int _esAdapterReadPollRate;
+    private long _esAdapterReadPollRate;
     private int _idleProcessDataTransferInterval;
     private ByteOrder _esAdapterByteOrder;
     private ByteOrder _pmAdapterByteOrder;
+    private int _wakeupSpinTime;
+    private long _esSimCommandBudget;
+    private long _controlCommandTimeBudget;
+    private int _controlCommandCountBudget;
+    private int _webCommandTimeout;
+    private int _frameHistoryLength;
+    private String _recordingDirectory;
+    private int _recordingSegmentSize;
 
     public GILConfiguration(ConfigFile config) throws InvalidFileFormatException {
         _config = config;
@@ -63,9 +82,24 @@ public class GILConfiguration {
             _signalExchangeListPath = getParameter(PARAM_SEL_PATH);
 
             _idleProcessDataTransferInterval = parseInt(getParameter(PARAM_IDLE_PROCESS_DATA_TRANSFER_INTERVAL));
-            _esAdapterReadPollRate = parseInt(getParameter(PARAM_ES_ADAPTER_POLL_RATE));           
+            _esAdapterReadPollRate = parseMillisecondsAsMicroseconds(getParameter(PARAM_ES_ADAPTER_POLL_RATE));           
             _esAdapterByteOrder = parseByteOrder(getParameter(PARAM_ES_ADAPTER_BYTE_ORDER));
             _pmAdapterByteOrder = parseByteOrder(getParameter(PARAM_PM_ADAPTER_BYTE_ORDER));                      
+            _wakeupSpinTime = parseNonNegativeInt(getOptionalParameter(PARAM_WAKEUP_SPIN_TIME,
+                    Integer.toString(DEFAULT_WAKEUP_SPIN_TIME)));
+            _esSimCommandBudget = parseMillisecondsAsMicroseconds(getOptionalParameter(PARAM_ES_SIM_COMMAND_BUDGET, "0"));
+            _controlCommandTimeBudget = parseMillisecondsAsMicroseconds(getOptionalParameter(
+                    PARAM_CONTROL_COMMAND_TIME_BUDGET, Long.toString(Invoker.DEFAULT_TIME_BUDGET_NANOS / 1000000)));
+            _controlCommandCountBudget = parseNonNegativeInt(getOptionalParameter(PARAM_CONTROL_COMMAND_COUNT_BUDGET,
+                    Integer.toString(Invoker.DEFAULT_COUNT_BUDGET)));
+            _webCommandTimeout = parseNonNegativeInt(getOptionalParameter(PARAM_WEB_COMMAND_TIMEOUT, "200"));
+            _frameHistoryLength = parseNonNegativeInt(getOptionalParameter(PARAM_FRAME_HISTORY_LENGTH, "0"));
+            _recordingDirectory = getOptionalParameter(PARAM_RECORDING_DIRECTORY, "");
+            _recordingSegmentSize = parseNonNegativeInt(getOptionalParameter(PARAM_RECORDING_SEGMENT_SIZE, "256"));
+            if (_recordingSegmentSize < 1 || _recordingSegmentSize > 2047) {
+                throw new InvalidFileFormatException("The given value '" + _recordingSegmentSize
+                        + "' must be within 1 - 2047 megabytes.");
+            }
 
         } catch (InvalidFileFormatException ex) {
            throw new InvalidFileFormatException("When reading config parameter '" + _currentParmeter + "': " + ex.getMessage());           
@@ -80,6 +114,14 @@ public class GILConfiguration {
         return _config.getAppSetting(paramName);
     }
 
+    private String getOptionalParameter(String paramName, String defaultValue) throws XPathExpressionException, InvalidFileFormatException {
+        _currentParmeter = paramName;
+        if (!_config.appSettingExists(paramName)) {
+            return defaultValue;
+        }
+        return _config.getAppSetting(paramName);
+    }
+
     private ByteOrder parseByteOrder(String orderStr) throws InvalidFileFormatException {
 
         if (orderStr.equals("LITTLE_ENDIAN"))
@@ -100,6 +142,30 @@ public class GILConfiguration {
         }
     }
 
+    private long parseMillisecondsAsMicroseconds(String msStr) throws InvalidFileFormatException {
+        try {
+            BigDecimal micros = new BigDecimal(msStr).movePointRight(3);
+            if (micros.signum() < 0) {
+                throw new InvalidFileFormatException("The given value '" + msStr + "' must not be negative.");
+            }
+            return micros.longValueExact();
+        } catch (NumberFormatException ex) {
+            throw new InvalidFileFormatException("The given value '" + msStr
+                    + "' is not a valid number of milliseconds with at most three decimals.");
+        } catch (ArithmeticException ex) {
+            throw new InvalidFileFormatException("The given value '" + msStr
+                    + "' is not a valid number of milliseconds with at most three decimals.");
+        }
+    }
+
+    private int parseNonNegativeInt(String intStr) throws InvalidFileFormatException {
+        int value = parseInt(intStr);
+        if (value < 0) {
+            throw new InvalidFileFormatException("The given value '" + intStr + "' must not be negative.");
+        }
+        return value;
+    }
+
     private String parseAdapterClass(String adapterClassName, Class superInterface) throws InvalidFileFormatException {
         try {
             Class cl = Class.forName(adapterClassName);
@@ -125,7 +191,10 @@ public class GILConfiguration {
         return _signalExchangeListPath;
     }
 
-    public int getESAdapterReadPollRate() {
+    /**
+     * Returns the interval in microseconds between calls to readSignalData on the ES-adapter.
+     */
+    public long getESAdapterReadPollRateInMicroseconds() {
         return _esAdapterReadPollRate;
     }
 
@@ -140,4 +209,64 @@ public class GILConfiguration {
     public int getIdleProcessDataTransferInterval() {
         return _idleProcessDataTransferInterval;
     }
+
+    /**
+     * Returns the time in microseconds a thread waiting for data spins before it is parked.
+     */
+    public int getWakeupSpinTime() {
+        return _wakeupSpinTime;
+    }
+
+    /**
+     * Returns the maximum time in microseconds the external system thread spends executing pending simulator
+     * commands in each iteration. Zero if not configured, in which case half the external system frame period is
+     * used.
+     */
+    public long getESSimCommandBudgetInMicroseconds() {
+        return _esSimCommandBudget;
+    }
+
+    /**
+     * Returns the maximum time in microseconds each thread spends executing control commands in each iteration.
+     */
+    public long getControlCommandTimeBudgetInMicroseconds() {
+        return _controlCommandTimeBudget;
+    }
+
+    /**
+     * Returns the maximum number of control commands each thread executes in each iteration.
+     */
+    public int getControlCommandCountBudget() {
+        return _controlCommandCountBudget;
+    }
+
+    /**
+     * Returns the time in milliseconds a control command invoked through the web API is waited for before the
+     * request is answered with a URI where the result may be fetched later.
+     */
+    public int getWebCommandTimeout() {
+        return _webCommandTimeout;
+    }
+
+    /**
+     * Returns the number of frames kept in the history of each direction. Zero if no history is kept.
+     */
+    public int getFrameHistoryLength() {
+        return _frameHistoryLength;
+    }
+
+    /**
+     * Returns the directory in which the transferred frames and commands are recorded. An empty string if no
+     * recording is made.
+     */
+    public String getRecordingDirectory() {
+        return _recordingDirectory;
+    }
+
+    /**
+     * Returns the size in megabytes of each recording segment file.
+     */
+    public int getRecordingSegmentSize() {
+        return _recordingSegmentSize;
+    }
 }
@@ -22,5 +22,20 @@ package gil.common;
  * @author Göran Larsson @ LearningWell AB
  */
 public interface ICurrentTime {
+    /**
+     * Returns the wall clock time in milliseconds since midnight, January 1, 1970 UTC. The wall clock may be
+     * adjusted at any time and shall not be used to measure elapsed time.
+     */
     long inMilliseconds();
+
+    /**
+     * Returns the current value of a monotonic clock in microseconds. Equal to {@link #inNanoseconds()} / 1000.
+     */
+    long inMicroseconds();
+
+    /**
+     * Returns the current value of a monotonic clock in nanoseconds. The value has an arbitrary origin and can
+     * only be used to measure elapsed time. It is not affected by adjustments of the wall clock.
+     */
+    long inNanoseconds();
 }
@@ -21,33 +21,70 @@ package gil.common;
 import java.lang.ref.WeakReference;
 import java.util.Queue;
 import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Aggreagates a queue of commands to be executed on a separate thread from the thread where they have been
  * scheduled.
+ * <p>
+ * The executing thread typically runs a loop that also transfers process data. Each call to
+ * {@link #executeCommandsInQueue()} drains the queue until it is empty or until the time or count budget is used up,
+ * whichever comes first. At least one command is executed in each call, so a burst of commands is executed within
+ * a few iterations without keeping the loop from transferring data.
+ * <p>
+ * The time each command waits in the queue before it is executed is recorded. The record and the number of
+ * executed commands may be read from any thread.
  * @author Göran Larsson @ LearningWell AB
  */
 public class Invoker {
 
-    private class ScheduledCommand {
-        private IInvokeable _command;
-        private WeakReference<AsyncResult> _result;
+    private class ScheduledCommand<V> {
+        private IInvokeable<V> _command;
+        private WeakReference<AsyncResult<V>> _result;
+        private final long _scheduledAt;
 
-        ScheduledCommand(IInvokeable command) {
+        ScheduledCommand(IInvokeable<V> command, AsyncResult<V> result) {
             _command = command;
-            _result = new WeakReference<AsyncResult>(new AsyncResult());
+            _result = new WeakReference<AsyncResult<V>>(result);
+            _scheduledAt = CurrentTime.instance().inNanoseconds();
         }
 
-        public IInvokeable getCommand() {
+        public IInvokeable<V> getCommand() {
             return _command;
         }
         
-        public AsyncResult getResult() {
+        public AsyncResult<V> getResult() {
             return _result.get();
         }
     }
 
-    private final Queue<ScheduledCommand> _pendingCommands = new ConcurrentLinkedQueue<ScheduledCommand>();
+    public static final long DEFAULT_TIME_BUDGET_NANOS = 1000000;
+    public static final int DEFAULT_COUNT_BUDGET = 16;
+
+    private final Queue<ScheduledCommand<?>> _pendingCommands = new ConcurrentLinkedQueue<ScheduledCommand<?>>();
+    private final AtomicInteger _queueDepth = new AtomicInteger();
+    private final LatencyRecorder _waitTimes = new LatencyRecorder();
+    private final long _timeBudgetNanos;
+    private final int _countBudget;
+
+    /**
+     * Creates an invoker with the default budget of {@link #DEFAULT_TIME_BUDGET_NANOS} and
+     * {@link #DEFAULT_COUNT_BUDGET}.
+     */
+    public Invoker() {
+        this(DEFAULT_TIME_BUDGET_NANOS, DEFAULT_COUNT_BUDGET);
+    }
+
+    /**
+     * @param timeBudgetNanos The maximum time in nanoseconds to spend executing commands in each call to
+     * {@link #executeCommandsInQueue()}. The command started last may run past this time.
+     * @param countBudget The maximum number of commands to execute in each call to
+     * {@link #executeCommandsInQueue()}.
+     */
+    public Invoker(long timeBudgetNanos, int countBudget) {
+        _timeBudgetNanos = timeBudgetNanos;
+        _countBudget = countBudget;
+    }
 
     /**
      * Schedules the given command to be invoked. 
@@ -55,10 +92,12 @@ public class Invoker {
      * @return An object to monitor the progress of the asynchronous operation and to provide the result when
      * the asynchronous operation is completed.
      */
-    public AsyncResult schedule(IInvokeable command) {
-        ScheduledCommand cmd = new ScheduledCommand(command);
+    public <V> AsyncResult<V> schedule(IInvokeable<V> command) {
+        AsyncResult<V> result = new AsyncResult<V>();
+        ScheduledCommand<V> cmd = new ScheduledCommand<V>(command, result);
+        _queueDepth.incrementAndGet();
         _pendingCommands.add(cmd);
-        return cmd.getResult();
+        return result;
     }
 
     /**
@@ -67,18 +106,66 @@ public class Invoker {
      *  TODO: Handle cancellation of async operations
      */
     public void executeNextCommandInQueue() {
-        ScheduledCommand next = _pendingCommands.poll();
+        ScheduledCommand<?> next = _pendingCommands.poll();
         if (next == null) {
             return;
         }
-        AsyncResult result = next.getResult();
+        _queueDepth.decrementAndGet();
+        _waitTimes.record(CurrentTime.instance().inNanoseconds() - next._scheduledAt);
+        execute(next);
+    }
+
+    private <V> void execute(ScheduledCommand<V> next) {
+        // The command is executed even if nobody waits for the result any longer.
+        V value = null;
+        Throwable failure = null;
+        try {
+            value = next.getCommand().invoke();
+        } catch(Throwable ex) {
+            failure = ex;
+        }
+        AsyncResult<V> result = next.getResult();
         if (result != null) {
-            try
-            {
-                result.setDone(next.getCommand().invoke());
-            } catch(Throwable ex) {
-                result.setDone(ex);
+            if (failure != null) {
+                result.setDone(failure);
+            } else {
+                result.setDone(value);
             }
-        } 
+        }
+    }
+
+    /**
+     * Executes commands from the underlying queue until the queue is empty or the time or count budget of this
+     * object is used up. At least one command is executed if the queue is not empty.
+     * @return The number of executed commands.
+     */
+    public int executeCommandsInQueue() {
+        if (_pendingCommands.isEmpty()) {
+            return 0;
+        }
+        long start = CurrentTime.instance().inNanoseconds();
+        int count = 0;
+        do {
+            if (_pendingCommands.isEmpty()) {
+                break;
+            }
+            executeNextCommandInQueue();
+            ++count;
+        } while (count < _countBudget && CurrentTime.instance().inNanoseconds() - start < _timeBudgetNanos);
+        return count;
+    }
+
+    /**
+     * @return The number of commands scheduled and not yet executed. Thread safe.
+     */
+    public int getQueueDepth() {
+        return _queueDepth.get();
+    }
+
+    /**
+     * @return The record of the time each executed command waited in the queue. Thread safe.
+     */
+    public LatencyRecorder getWaitTimes() {
+        return _waitTimes;
     }
 }
@@ -0,0 +1,169 @@
+/*
+    Copyright (C) 2010 LearningWell AB (www.learningwell.com), Kärnkraftsäkerhet och Utbildning AB (www.ksu.se)
+
+    This file is part of GIL (Generic Integration Layer).
+
+    GIL is free software: you can redistribute it and/or modify
+    it under the terms of the GNU Lesser General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    GIL is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public License
+    along with GIL.  If not, see <http://www.gnu.org/licenses/>.
+*/
+package gil.common;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Counts recorded durations in logarithmic buckets, giving percentiles of the durations at a fixed memory cost
+ * and a fixed recording cost whatever the number of recorded durations.
+ * <p>
+ * Durations below 16 ns are counted exactly. Above that, each power of two is divided into 16 buckets, so a
+ * percentile is reported with a precision of 1/16, i.e. about 6 %. The percentiles are reported as the highest
+ * duration of the bucket they fall in, but never above the longest recorded duration.
+ * <p>
+ * All methods are thread safe. Recording does not lock and does not allocate.
+ *
+ * @author Göran Larsson @ LearningWell AB
+ */
+public class LatencyHistogram {
+    private static final int _SUB_BUCKET_BITS = 4;
+    private static final int _SUB_BUCKETS = 1 << _SUB_BUCKET_BITS;
+    private static final int _BUCKET_COUNT = (64 - _SUB_BUCKET_BITS) * _SUB_BUCKETS;
+
+    private final AtomicLongArray _counts = new AtomicLongArray(_BUCKET_COUNT);
+    private final AtomicLong _count = new AtomicLong();
+    private final AtomicLong _totalNanos = new AtomicLong();
+    private final AtomicLong _maxNanos = new AtomicLong();
+
+    /**
+     * @param durationNanos The duration of one operation in nanoseconds. Negative durations are counted as zero.
+     */
+    public void record(long durationNanos) {
+        if (durationNanos < 0) {
+            durationNanos = 0;
+        }
+        _counts.incrementAndGet(bucketOf(durationNanos));
+        _totalNanos.addAndGet(durationNanos);
+        long max = _maxNanos.get();
+        while (durationNanos > max && !_maxNanos.compareAndSet(max, durationNanos)) {
+            max = _maxNanos.get();
+        }
+        _count.incrementAndGet();
+    }
+
+    /**
+     * @return The number of recorded durations.
+     */
+    public long getCount() {
+        return _count.get();
+    }
+
+    /**
+     * @return The mean of the recorded durations in nanoseconds.
+     */
+    public long getMeanNanos() {
+        long count = _count.get();
+        return (count == 0) ? 0 : _totalNanos.get() / count;
+    }
+
+    /**
+     * @return The sum of the recorded durations in nanoseconds.
+     */
+    public long getTotalNanos() {
+        return _totalNanos.get();
+    }
+
+    /**
+     * @return The longest recorded duration in nanoseconds.
+     */
+    public long getMaxNanos() {
+        return _maxNanos.get();
+    }
+
+    /**
+     * @param percentile The percentile, 0 - 100, e.g. 99.9.
+     * @return The duration in nanoseconds that the given percentage of the recorded durations do not exceed. 0 if
+     * no durations are recorded.
+     */
+    public long getPercentileNanos(double percentile) {
+        if (percentile < 0 || percentile > 100) {
+            throw new IllegalArgumentException("The percentile must be within 0 - 100.");
+        }
+        long total = 0;
+        long[] counts = new long[_BUCKET_COUNT];
+        for (int i = 0; i < _BUCKET_COUNT; i++) {
+            counts[i] = _counts.get(i);
+            total += counts[i];
+        }
+        if (total == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long)Math.ceil(total * percentile / 100));
+        long max = _maxNanos.get();
+        long seen = 0;
+        for (int i = 0; i < _BUCKET_COUNT; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return Math.min(highestInBucket(i), max);
+            }
+        }
+        return max;
+    }
+
+    /**
+     * Adds the durations recorded in the given histogram to this histogram.
+     */
+    public void add(LatencyHistogram other) {
+        for (int i = 0; i < _BUCKET_COUNT; i++) {
+            long count = other._counts.get(i);
+            if (count != 0) {
+                _counts.addAndGet(i, count);
+            }
+        }
+        _totalNanos.addAndGet(other._totalNanos.get());
+        long otherMax = other._maxNanos.get();
+        long max = _maxNanos.get();
+        while (otherMax > max && !_maxNanos.compareAndSet(max, otherMax)) {
+            max = _maxNanos.get();
+        }
+        _count.addAndGet(other._count.get());
+    }
+
+    /**
+     * Forgets all recorded durations. Durations recorded while resetting may be partly forgotten.
+     */
+    public void reset() {
+        for (int i = 0; i < _BUCKET_COUNT; i++) {
+            _counts.set(i, 0);
+        }
+        _count.set(0);
+        _totalNanos.set(0);
+        _maxNanos.set(0);
+    }
+
+    private static int bucketOf(long value) {
+        if (value < _SUB_BUCKETS) {
+            return (int)value;
+        }
+        int shift = (63 - Long.numberOfLeadingZeros(value)) - _SUB_BUCKET_BITS;
+        return (shift + 1) * _SUB_BUCKETS + (int)(value >>> shift) - _SUB_BUCKETS;
+    }
+
+    private static long highestInBucket(int bucket) {
+        if (bucket < _SUB_BUCKETS) {
+            return bucket;
+        }
+        int shift = bucket / _SUB_BUCKETS - 1;
+        long mantissa = bucket % _SUB_BUCKETS + _SUB_BUCKETS;
+        // Wraps around to Long.MAX_VALUE for the highest bucket.
+        return ((mantissa + 1) << shift) - 1;
+    }
+}
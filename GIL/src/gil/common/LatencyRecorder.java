@@ -0,0 +1,66 @@
+/*
+    Copyright (C) 2010 LearningWell AB (www.learningwell.com), Kärnkraftsäkerhet och Utbildning AB (www.ksu.se)
+
+    This file is part of GIL (Generic Integration Layer).
+
+    GIL is free software: you can redistribute it and/or modify
+    it under the terms of the GNU Lesser General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    GIL is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public License
+    along with GIL.  If not, see <http://www.gnu.org/licenses/>.
+*/
+package gil.common;
+
+/**
+ * Records the durations of a repeated operation, e.g. the time to execute a batch of commands, and keeps the
+ * count, the mean and the maximum of the recorded durations.
+ * <p>
+ * The record method must be called from a single thread. The get methods are thread safe.
+ *
+ * @author Göran Larsson @ LearningWell AB
+ */
+public class LatencyRecorder {
+    private volatile long _count = 0;
+    private volatile long _totalNanos = 0;
+    private volatile long _maxNanos = 0;
+
+    /**
+     * @param durationNanos The duration of one operation in nanoseconds.
+     */
+    public void record(long durationNanos) {
+        _totalNanos += durationNanos;
+        if (durationNanos > _maxNanos) {
+            _maxNanos = durationNanos;
+        }
+        ++_count;
+    }
+
+    /**
+     * @return The number of recorded durations.
+     */
+    public long getCount() {
+        return _count;
+    }
+
+    /**
+     * @return The mean of the recorded durations in nanoseconds.
+     */
+    public long getMeanNanos() {
+        long count = _count;
+        return (count == 0) ? 0 : _totalNanos / count;
+    }
+
+    /**
+     * @return The longest recorded duration in nanoseconds.
+     */
+    public long getMaxNanos() {
+        return _maxNanos;
+    }
+}
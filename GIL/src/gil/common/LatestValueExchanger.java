@@ -0,0 +1,85 @@
+/*
+    Copyright (C) 2010 LearningWell AB (www.learningwell.com), Kärnkraftsäkerhet och Utbildning AB (www.ksu.se)
+
+    This file is part of GIL (Generic Integration Layer).
+
+    GIL is free software: you can redistribute it and/or modify
+    it under the terms of the GNU Lesser General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    GIL is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public License
+    along with GIL.  If not, see <http://www.gnu.org/licenses/>.
+*/
+package gil.common;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Hands values over from a producing thread to a consuming thread where only the latest value is of interest.
+ * The exchanger holds at most one value. A value offered while another value is still pending replaces the
+ * pending value, which is returned to the producer as dropped.
+ *
+ * Both offer and poll are single atomic operations. Neither the producer nor the consumer ever blocks, and a
+ * value is always owned by exactly one side: either it is taken by the consumer or it is returned to the
+ * producer as dropped.
+ *
+ * Methods in this object are thread safe.
+ *
+ * @author Göran Larsson @ LearningWell AB
+ */
+public class LatestValueExchanger<V> {
+    private final AtomicReference<V> _slot = new AtomicReference<V>();
+    private final AtomicLong _droppedCount = new AtomicLong();
+
+    /**
+     * Makes the given value the pending value.
+     * @return The value that was pending and is now replaced, or null if there was no pending value.
+     */
+    public V offer(V value) {
+        V dropped = _slot.getAndSet(value);
+        if (dropped != null) {
+            _droppedCount.incrementAndGet();
+        }
+        return dropped;
+    }
+
+    /**
+     * Takes the pending value.
+     * @return The pending value or null if there is no pending value.
+     */
+    public V poll() {
+        return _slot.getAndSet(null);
+    }
+
+    /**
+     * @return The pending value without taking it, or null if there is no pending value.
+     */
+    public V peek() {
+        return _slot.get();
+    }
+
+    /**
+     * @return The number of pending values, i.e. zero or one.
+     */
+    public int size() {
+        return (_slot.get() == null) ? 0 : 1;
+    }
+
+    public boolean isEmpty() {
+        return _slot.get() == null;
+    }
+
+    /**
+     * @return The number of pending values replaced by offer since this object was created.
+     */
+    public long getDroppedCount() {
+        return _droppedCount.get();
+    }
+}
@@ -0,0 +1,215 @@
+/*
+    Copyright (C) 2010 LearningWell AB (www.learningwell.com), Kärnkraftsäkerhet och Utbildning AB (www.ksu.se)
+
+    This file is part of GIL (Generic Integration Layer).
+
+    GIL is free software: you can redistribute it and/or modify
+    it under the terms of the GNU Lesser General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    GIL is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public License
+    along with GIL.  If not, see <http://www.gnu.org/licenses/>.
+*/
+package gil.common;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * Holds named metrics and writes their current values in the Prometheus text exposition format. Three kinds of
+ * metrics are held:
+ * <ul>
+ * <li>Counters - {@link ICounter}s, only ever increasing, e.g. {@link StripedCounter}s.</li>
+ * <li>Gauges - {@link IGauge}s, sampled when written.</li>
+ * <li>Timers - {@link LatencyHistogram}s, written as summaries with the quantiles 0.5, 0.99 and 0.999 and the
+ * sum and count of the recorded durations, in seconds.</li>
+ * </ul>
+ * Metrics of the same kind may share a name if they have different labels, e.g. the frames read from each of
+ * several external systems. The metrics are owned by the objects updating them and are only read by this object.
+ * <p>
+ * All methods are thread safe.
+ *
+ * @author Göran Larsson @ LearningWell AB
+ */
+public class MetricsRegistry {
+    /**
+     * The content type of the Prometheus text exposition format.
+     */
+    public static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+    private static final Pattern _METRIC_NAME = Pattern.compile("[a-zA-Z_:][a-zA-Z0-9_:]*");
+    private static final Pattern _LABEL_NAME = Pattern.compile("[a-zA-Z_][a-zA-Z0-9_]*");
+    private static final double[] _QUANTILES = { 0.5, 0.99, 0.999 };
+
+    private final Map<String, Family> _families = new LinkedHashMap<String, Family>();
+
+    /**
+     * @param name The name of the metric, e.g. gil_frames_read_total.
+     * @param help A description of the metric.
+     * @param labels Pairs of label names and values, e.g. "side", "es", "index", "0".
+     * @throws IllegalArgumentException If the name or a label name is invalid, if the name is registered for
+     * another kind of metric or if a metric with the same name and labels is already registered.
+     */
+    public void registerCounter(String name, String help, ICounter counter, String... labels) {
+        register(name, help, "counter", counter, labels);
+    }
+
+    /**
+     * @see #registerCounter(String, String, ICounter, String[])
+     */
+    public void registerGauge(String name, String help, IGauge gauge, String... labels) {
+        register(name, help, "gauge", gauge, labels);
+    }
+
+    /**
+     * @param name The name of the metric, which should end with _seconds.
+     * @see #registerCounter(String, String, ICounter, String[])
+     */
+    public void registerTimer(String name, String help, LatencyHistogram timer, String... labels) {
+        register(name, help, "summary", timer, labels);
+    }
+
+    /**
+     * Creates a counter and registers it.
+     * @see #registerCounter(String, String, ICounter, String[])
+     */
+    public StripedCounter counter(String name, String help, String... labels) {
+        StripedCounter counter = new StripedCounter();
+        registerCounter(name, help, counter, labels);
+        return counter;
+    }
+
+    /**
+     * Writes the current values of all metrics in the Prometheus text exposition format, version 0.0.4.
+     */
+    public void write(Writer writer) throws IOException {
+        List<Family> families;
+        synchronized (_families) {
+            families = new ArrayList<Family>(_families.values());
+        }
+        for (Family family : families) {
+            family.write(writer);
+        }
+        writer.flush();
+    }
+
+    private void register(String name, String help, String type, Object metric, String[] labels) {
+        if (!_METRIC_NAME.matcher(name).matches()) {
+            throw new IllegalArgumentException("Invalid metric name: " + name);
+        }
+        String formattedLabels = formatLabels(labels);
+        synchronized (_families) {
+            Family family = _families.get(name);
+            if (family == null) {
+                family = new Family(name, help, type);
+                _families.put(name, family);
+            } else if (!family.type.equals(type)) {
+                throw new IllegalArgumentException("The metric '" + name + "' is already registered as a "
+                        + family.type + ".");
+            }
+            family.add(formattedLabels, metric);
+        }
+    }
+
+    private static String formatLabels(String[] labels) {
+        if (labels.length % 2 != 0) {
+            throw new IllegalArgumentException("Labels must be given as pairs of names and values.");
+        }
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < labels.length; i += 2) {
+            if (!_LABEL_NAME.matcher(labels[i]).matches()) {
+                throw new IllegalArgumentException("Invalid label name: " + labels[i]);
+            }
+            if (sb.length() > 0) {
+                sb.append(',');
+            }
+            sb.append(labels[i]).append("=\"").append(escape(labels[i + 1])).append('"');
+        }
+        return sb.toString();
+    }
+
+    private static String escape(String value) {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+
+    private static String formatValue(double value) {
+        if (Double.isNaN(value)) {
+            return "NaN";
+        }
+        if (Double.isInfinite(value)) {
+            return (value > 0) ? "+Inf" : "-Inf";
+        }
+        if (value == Math.rint(value) && Math.abs(value) < 1e15) {
+            return Long.toString((long)value);
+        }
+        return Double.toString(value);
+    }
+
+    private static class Family {
+        final String name;
+        final String help;
+        final String type;
+        private final Map<String, Object> _series = new LinkedHashMap<String, Object>();
+
+        Family(String name, String help, String type) {
+            this.name = name;
+            this.help = help;
+            this.type = type;
+        }
+
+        synchronized void add(String labels, Object metric) {
+            if (_series.containsKey(labels)) {
+                throw new IllegalArgumentException("The metric '" + name + "{" + labels
+                        + "}' is already registered.");
+            }
+            _series.put(labels, metric);
+        }
+
+        void write(Writer writer) throws IOException {
+            List<Map.Entry<String, Object>> series;
+            synchronized (this) {
+                series = new ArrayList<Map.Entry<String, Object>>(_series.entrySet());
+            }
+            writer.write("# HELP " + name + " " + help.replace("\\", "\\\\").replace("\n", "\\n") + "\n");
+            writer.write("# TYPE " + name + " " + type + "\n");
+            for (Map.Entry<String, Object> entry : series) {
+                String labels = entry.getKey();
+                Object metric = entry.getValue();
+                if (metric instanceof ICounter) {
+                    writeSample(writer, name, labels, Long.toString(((ICounter)metric).get()));
+                } else if (metric instanceof IGauge) {
+                    writeSample(writer, name, labels, formatValue(((IGauge)metric).getValue()));
+                } else {
+                    LatencyHistogram timer = (LatencyHistogram)metric;
+                    String separator = (labels.length() > 0) ? "," : "";
+                    for (double quantile : _QUANTILES) {
+                        writeSample(writer, name, labels + separator + "quantile=\"" + quantile + "\"",
+                                formatValue(timer.getPercentileNanos(quantile * 100) / 1e9));
+                    }
+                    writeSample(writer, name + "_sum", labels, formatValue(timer.getTotalNanos() / 1e9));
+                    writeSample(writer, name + "_count", labels, Long.toString(timer.getCount()));
+                }
+            }
+        }
+
+        private static void writeSample(Writer writer, String name, String labels, String value)
+                throws IOException {
+            writer.write(name);
+            if (labels.length() > 0) {
+                writer.write("{" + labels + "}");
+            }
+            writer.write(" " + value + "\n");
+        }
+    }
+}
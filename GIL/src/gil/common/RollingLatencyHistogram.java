@@ -0,0 +1,99 @@
+/*
+    Copyright (C) 2010 LearningWell AB (www.learningwell.com), Kärnkraftsäkerhet och Utbildning AB (www.ksu.se)
+
+    This file is part of GIL (Generic Integration Layer).
+
+    GIL is free software: you can redistribute it and/or modify
+    it under the terms of the GNU Lesser General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    GIL is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public License
+    along with GIL.  If not, see <http://www.gnu.org/licenses/>.
+*/
+package gil.common;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Records durations in a {@link LatencyHistogram} covering a sliding window of time only, e.g. the last minute.
+ * <p>
+ * The window is divided into a number of slots, each holding the durations recorded within a period of the
+ * window. A slot is cleared and reused when the window has moved past it, so durations are forgotten one slot at a
+ * time. The histogram returned by {@link #getSnapshot(long)} covers the complete slots within the window and the
+ * current slot.
+ * <p>
+ * The record method must be called from a single thread. getSnapshot is thread safe, but a snapshot taken while a
+ * slot is being cleared may lack a part of the durations of that slot.
+ *
+ * @author Göran Larsson @ LearningWell AB
+ */
+public class RollingLatencyHistogram {
+    private final long _slotNanos;
+    private final LatencyHistogram[] _slots;
+    private final AtomicLongArray _slotPeriods;
+
+    /**
+     * @param windowNanos The length of the window in nanoseconds.
+     * @param slotCount The number of slots the window is divided into.
+     */
+    public RollingLatencyHistogram(long windowNanos, int slotCount) {
+        if (slotCount <= 0 || windowNanos < slotCount) {
+            throw new IllegalArgumentException("The window must be divided into at least one slot.");
+        }
+        _slotNanos = windowNanos / slotCount;
+        _slots = new LatencyHistogram[slotCount];
+        _slotPeriods = new AtomicLongArray(slotCount);
+        for (int i = 0; i < slotCount; i++) {
+            _slots[i] = new LatencyHistogram();
+            _slotPeriods.set(i, Long.MIN_VALUE);
+        }
+    }
+
+    /**
+     * @param durationNanos The duration of one operation in nanoseconds.
+     * @param now The current time in nanoseconds, as given by {@link CurrentTime#inNanoseconds()}.
+     */
+    public void record(long durationNanos, long now) {
+        long period = periodOf(now);
+        int slot = slotOf(period);
+        if (_slotPeriods.get(slot) != period) {
+            _slots[slot].reset();
+            _slotPeriods.set(slot, period);
+        }
+        _slots[slot].record(durationNanos);
+    }
+
+    /**
+     * @param now The current time in nanoseconds, as given by {@link CurrentTime#inNanoseconds()}.
+     * @return A histogram holding the durations recorded within the window ending now. The histogram is a copy
+     * not affected by later recordings.
+     */
+    public LatencyHistogram getSnapshot(long now) {
+        long period = periodOf(now);
+        LatencyHistogram snapshot = new LatencyHistogram();
+        for (int i = 0; i < _slots.length; i++) {
+            long age = period - _slotPeriods.get(i);
+            if (age >= 0 && age < _slots.length) {
+                snapshot.add(_slots[i]);
+            }
+        }
+        return snapshot;
+    }
+
+    private long periodOf(long now) {
+        // Rounds towards negative infinity since nanosecond times may be negative.
+        long period = now / _slotNanos;
+        return (now < 0 && now % _slotNanos != 0) ? period - 1 : period;
+    }
+
+    private int slotOf(long period) {
+        int slot = (int)(period % _slots.length);
+        return (slot < 0) ? slot + _slots.length : slot;
+    }
+}
@@ -0,0 +1,124 @@
+/*
+    Copyright (C) 2010 LearningWell AB (www.learningwell.com), Kärnkraftsäkerhet och Utbildning AB (www.ksu.se)
+
+    This file is part of GIL (Generic Integration Layer).
+
+    GIL is free software: you can redistribute it and/or modify
+    it under the terms of the GNU Lesser General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    GIL is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public License
+    along with GIL.  If not, see <http://www.gnu.org/licenses/>.
+*/
+package gil.common;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Derives the rate of change of a cumulative count, e.g. the number of frames read, over sliding windows of time.
+ * <p>
+ * The count is sampled at a fixed interval into a ring of buckets, each holding the time of the sample and the
+ * count at that time. The rate over a window ending now is the difference between the latest sample and the
+ * latest sample taken at least the length of the window before now, divided by the time from that sample until
+ * now. The count is taken to be unchanged since the latest sample, so the rate falls towards zero when the
+ * sampling stalls rather than being frozen at the rate before the stall. The ring holds the samples of the longest
+ * window given when this object was created, so rates over any shorter window are computed from the same ring.
+ * <p>
+ * The sample methods must be called from a single thread. getRate is thread safe and lock free. A bucket being
+ * overwritten while read is detected by its time being changed and is treated as not yet sampled.
+ *
+ * @author Göran Larsson @ LearningWell AB
+ */
+public class SlidingRate {
+    private static final long _NOT_SAMPLED = Long.MIN_VALUE;
+
+    private final long _intervalNanos;
+    private final AtomicLongArray _times;
+    private final AtomicLongArray _counts;
+    private volatile int _latest = -1;
+    private long _latestTime = 0;
+
+    /**
+     * @param intervalNanos The time between samples in nanoseconds.
+     * @param maxWindowNanos The length of the longest window over which rates are computed, in nanoseconds.
+     */
+    public SlidingRate(long intervalNanos, long maxWindowNanos) {
+        if (intervalNanos <= 0 || maxWindowNanos < intervalNanos) {
+            throw new IllegalArgumentException("The window must be at least one sample interval.");
+        }
+        _intervalNanos = intervalNanos;
+        // One extra bucket for the sample a window is measured from, and one for the sample being written.
+        int bucketCount = (int)(maxWindowNanos / intervalNanos) + 2;
+        _times = new AtomicLongArray(bucketCount);
+        _counts = new AtomicLongArray(bucketCount);
+        for (int i = 0; i < bucketCount; i++) {
+            _times.set(i, _NOT_SAMPLED);
+        }
+    }
+
+    /**
+     * @param now The current time in nanoseconds, as given by {@link CurrentTime#inNanoseconds()}.
+     * @return true if a sample interval has elapsed since the latest sample.
+     */
+    public boolean isSampleDue(long now) {
+        return _latest < 0 || now - _latestTime >= _intervalNanos;
+    }
+
+    /**
+     * @param count The cumulative count at the given time.
+     * @param now The current time in nanoseconds, as given by {@link CurrentTime#inNanoseconds()}.
+     */
+    public void sample(long count, long now) {
+        int bucket = (_latest + 1) % _times.length();
+        _times.set(bucket, _NOT_SAMPLED);
+        _counts.set(bucket, count);
+        _times.set(bucket, now);
+        _latestTime = now;
+        _latest = bucket;
+    }
+
+    /**
+     * @param windowNanos The length of the window in nanoseconds. Windows longer than the one given when this
+     * object was created are limited to the samples held.
+     * @param now The current time in nanoseconds, as given by {@link CurrentTime#inNanoseconds()}.
+     * @return The mean rate of change per second over the window ending now, or zero if no sample is taken before
+     * now.
+     */
+    public double getRate(long windowNanos, long now) {
+        int latest;
+        long endTime;
+        long endCount;
+        do {
+            latest = _latest;
+            if (latest < 0) {
+                return 0;
+            }
+            endTime = _times.get(latest);
+            endCount = _counts.get(latest);
+        } while (endTime == _NOT_SAMPLED || endTime != _times.get(latest));
+
+        long startTime = endTime;
+        long startCount = endCount;
+        int bucketCount = _times.length();
+        for (int age = 1; age < bucketCount && now - startTime < windowNanos; age++) {
+            int bucket = (latest - age + bucketCount) % bucketCount;
+            long time = _times.get(bucket);
+            long count = _counts.get(bucket);
+            if (time == _NOT_SAMPLED || time != _times.get(bucket) || time >= endTime) {
+                break;
+            }
+            startTime = time;
+            startCount = count;
+        }
+        if (now - startTime <= 0) {
+            return 0;
+        }
+        return (endCount - startCount) * 1e9 / (now - startTime);
+    }
+}
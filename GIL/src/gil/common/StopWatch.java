@@ -19,7 +19,8 @@
 package gil.common;
 
 /**
- * Class to be used as a stopwatch for time measurements.
+ * Class to be used as a stopwatch for time measurements. Time is measured using the monotonic clock given by
+ * {@link ICurrentTime#inNanoseconds()} and is not affected by adjustments of the wall clock.
  * @author Göran Larsson @ LearningWell AB
  */
 public class StopWatch {
@@ -29,18 +30,26 @@ public class StopWatch {
     private boolean _running = false;
 
     public void start() {
-        _startTime = CurrentTime.instance().inMilliseconds();
+        _startTime = CurrentTime.instance().inNanoseconds();
         _running = true;
     }
 
     public void stop() {
-        _stopTime = CurrentTime.instance().inMilliseconds();
+        _stopTime = CurrentTime.instance().inNanoseconds();
         _running = false;
     }
 
     public long getElapsedMilliseconds() {
+        return getElapsedNanoseconds() / 1000000;
+    }
+
+    public long getElapsedMicroseconds() {
+        return getElapsedNanoseconds() / 1000;
+    }
+
+    public long getElapsedNanoseconds() {
         if (_running) {
-             return (CurrentTime.instance().inMilliseconds() - _startTime);
+             return (CurrentTime.instance().inNanoseconds() - _startTime);
         }
         else {
             return (_stopTime - _startTime);
@@ -0,0 +1,78 @@
+/*
+    Copyright (C) 2010 LearningWell AB (www.learningwell.com), Kärnkraftsäkerhet och Utbildning AB (www.ksu.se)
+
+    This file is part of GIL (Generic Integration Layer).
+
+    GIL is free software: you can redistribute it and/or modify
+    it under the terms of the GNU Lesser General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    GIL is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public License
+    along with GIL.  If not, see <http://www.gnu.org/licenses/>.
+*/
+package gil.common;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A 64 bit counter that may be incremented from several threads at a high rate without the threads contending
+ * for the same memory.
+ * <p>
+ * The count is spread over a number of cells, each on a cache line of its own. A thread always adds to the cell
+ * picked by its thread id, so threads updating the counter at the same time mostly update different cells.
+ * Reading the counter sums the cells. This gives the same effect as java.util.concurrent.atomic.LongAdder, not
+ * available in the Java version targeted.
+ * <p>
+ * All methods are thread safe. A value read while the counter is updated may lack the concurrent updates.
+ *
+ * @author Göran Larsson @ LearningWell AB
+ */
+public class StripedCounter implements ICounter {
+    // 8 longs, i.e. 64 bytes, separate the cells to keep each on a cache line of its own.
+    private static final int _CELL_SPACING = 8;
+    private static final int _CELL_COUNT = cellCount(Runtime.getRuntime().availableProcessors());
+
+    private final AtomicLongArray _cells = new AtomicLongArray(_CELL_COUNT * _CELL_SPACING);
+
+    public void increment() {
+        add(1);
+    }
+
+    public void add(long value) {
+        _cells.addAndGet(cellOf(Thread.currentThread()) * _CELL_SPACING, value);
+    }
+
+    /**
+     * @return The sum of all values added.
+     */
+    public long get() {
+        long sum = 0;
+        for (int i = 0; i < _CELL_COUNT; i++) {
+            sum += _cells.get(i * _CELL_SPACING);
+        }
+        return sum;
+    }
+
+    /**
+     * @return The power of two at or above twice the given processor count, but at most 64.
+     */
+    private static int cellCount(int processors) {
+        int count = 1;
+        while (count < 2 * processors && count < 64) {
+            count <<= 1;
+        }
+        return count;
+    }
+
+    private static int cellOf(Thread thread) {
+        // Spreads consecutive thread ids over the cells.
+        long hash = thread.getId() * 0x9E3779B97F4A7C15L;
+        return (int)(hash >>> 32) & (_CELL_COUNT - 1);
+    }
+}
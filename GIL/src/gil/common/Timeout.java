@@ -21,6 +21,9 @@ package gil.common;
 /**
  * Encapsulates a start time and a timeout. Handles the logic of determining if a timeout has occurred given
  * the current time.
+ * <p>
+ * The times given shall be taken from a monotonic clock, such as {@link ICurrentTime#inNanoseconds()}, in the
+ * same unit as the timeout interval. A wall clock may be adjusted, making a timeout occur too early or too late.
  * @author Göran Larsson @ LearningWell AB
  */
 public class Timeout {
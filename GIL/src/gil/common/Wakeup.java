@@ -0,0 +1,108 @@
+/*
+    Copyright (C) 2010 LearningWell AB (www.learningwell.com), Kärnkraftsäkerhet och Utbildning AB (www.ksu.se)
+
+    This file is part of GIL (Generic Integration Layer).
+
+    GIL is free software: you can redistribute it and/or modify
+    it under the terms of the GNU Lesser General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    GIL is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public License
+    along with GIL.  If not, see <http://www.gnu.org/licenses/>.
+*/
+package gil.common;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Lets a single thread wait until it is signalled by other threads or until a timeout elapses.
+ * <p>
+ * The waiting thread first spins for a configurable time, checking for a signal, and is then parked. Spinning
+ * gives the lowest wakeup latency when signals arrive close to each other, while parking keeps an idle thread
+ * from consuming CPU. A spin time of zero parks the thread at once.
+ * <p>
+ * A signal given while no thread is waiting is remembered, and the next call to await returns at once.
+ * Several signals given before await is called are collapsed to one.
+ * <p>
+ * Only one thread at a time may call await. Signal is thread safe.
+ *
+ * @author Göran Larsson @ LearningWell AB
+ */
+public class Wakeup {
+    private final long _spinTimeNanos;
+    private final AtomicBoolean _signalled = new AtomicBoolean(false);
+    private volatile Thread _waiter = null;
+
+    /**
+     * @param spinTime The maximum time to spin before the waiting thread is parked.
+     * @param unit The unit of spinTime.
+     */
+    public Wakeup(long spinTime, TimeUnit unit) {
+        _spinTimeNanos = unit.toNanos(spinTime);
+    }
+
+    /**
+     * Wakes up the waiting thread, or the next thread to wait if no thread is currently waiting.
+     */
+    public void signal() {
+        _signalled.set(true);
+        Thread waiter = _waiter;
+        if (waiter != null) {
+            LockSupport.unpark(waiter);
+        }
+    }
+
+    /**
+     * Waits until signalled or until the given timeout elapses.
+     * @param timeoutNanos The maximum time to wait in nanoseconds.
+     * @return true if signalled, false if the timeout elapsed.
+     * @throws InterruptedException If the waiting thread is interrupted.
+     */
+    public boolean await(long timeoutNanos) throws InterruptedException {
+        if (_signalled.getAndSet(false)) {
+            return true;
+        }
+        long start = System.nanoTime();
+        long spinTime = Math.min(_spinTimeNanos, timeoutNanos);
+        while (System.nanoTime() - start < spinTime) {
+            if (_signalled.getAndSet(false)) {
+                return true;
+            }
+        }
+
+        _waiter = Thread.currentThread();
+        try {
+            while (true) {
+                // The signal flag must be checked after _waiter is set, or else an unpark may be lost.
+                if (_signalled.getAndSet(false)) {
+                    return true;
+                }
+                long remaining = timeoutNanos - (System.nanoTime() - start);
+                if (remaining <= 0) {
+                    return false;
+                }
+                LockSupport.parkNanos(this, remaining);
+                if (Thread.interrupted()) {
+                    throw new InterruptedException();
+                }
+            }
+        } finally {
+            _waiter = null;
+        }
+    }
+
+    /**
+     * @return The maximum time to spin before the waiting thread is parked, in nanoseconds.
+     */
+    public long getSpinTimeNanos() {
+        return _spinTimeNanos;
+    }
+}
@@ -18,24 +18,66 @@
 */
 package gil.core;
 
+import gil.common.ByteBufferPool;
 import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
+ * A frame of process data together with the simulation time it originates from. The buffer may be leased from a
+ * {@link ByteBufferPool}, in which case the last user of the frame must call release to give it back.
+ * <p>
+ * A frame may be shared by several users, each given a read-only view of the frame by calling {@link #share()}.
+ * The views share the content of the frame without copying it, and the buffer is given back to the pool when
+ * the frame and all of its views are released.
+ * <p>
+ * A frame carries the times, in nanoseconds as given by {@link gil.common.CurrentTime#inNanoseconds()}, when it
+ * was read from an adapter, fed through the transfer pipeline and handed over to the procedure writing it. They
+ * are used to measure the latency of the frame when it is written. A time of zero means the time isn't stamped.
+ * A view created by share is given the read time and the transformed time of the frame, but a hand over time of
+ * its own.
  *
  * @author Göran Larsson @ LearningWell AB
  */
 public class Data {
     private final SimTime _origin;
     private final ByteBuffer _data;
+    private final ByteBufferPool _owner;
+    private final Data _shared;
+    private final AtomicInteger _references = new AtomicInteger(1);
+    private long _readTime = 0;
+    private long _transformedTime = 0;
+    private long _handOverTime = 0;
 
     public Data(ByteBuffer data, SimTime origin) {
-        _data = data;
-        _origin = origin;
+        this(data, origin, null);
     }
 
     public Data(ByteBuffer data) {
+        this(data, new SimTime(), null);
+    }
+
+    /**
+     * @param data The process data.
+     * @param origin The simulation time of the process data.
+     * @param owner The pool the data buffer is leased from. null if the buffer isn't pooled.
+     */
+    public Data(ByteBuffer data, SimTime origin, ByteBufferPool owner) {
         _data = data;
-        _origin = new SimTime();
+        _origin = origin;
+        _owner = owner;
+        _shared = null;
+    }
+
+    private Data(Data shared) {
+        ByteBuffer view = shared._data.asReadOnlyBuffer();
+        view.order(shared._data.order());
+        view.rewind();
+        _data = view;
+        _origin = shared._origin;
+        _owner = null;
+        _shared = shared;
+        _readTime = shared._readTime;
+        _transformedTime = shared._transformedTime;
     }
 
     public SimTime getOrigin() {
@@ -45,4 +87,60 @@ public class Data {
     public ByteBuffer getData() {
         return _data;
     }
+
+    /**
+     * @return The time in nanoseconds when the frame was read from an adapter, or zero if not stamped.
+     */
+    public long getReadTime() {
+        return _readTime;
+    }
+
+    public void setReadTime(long nanos) {
+        _readTime = nanos;
+    }
+
+    /**
+     * @return The time in nanoseconds when the frame was fed through the transfer pipeline, or zero if not stamped.
+     */
+    public long getTransformedTime() {
+        return _transformedTime;
+    }
+
+    public void setTransformedTime(long nanos) {
+        _transformedTime = nanos;
+    }
+
+    /**
+     * @return The time in nanoseconds when the frame was handed over to the procedure writing it, or zero if not
+     * stamped.
+     */
+    public long getHandOverTime() {
+        return _handOverTime;
+    }
+
+    public void setHandOverTime(long nanos) {
+        _handOverTime = nanos;
+    }
+
+    /**
+     * Creates a read-only view of this frame to be handed over to another user. The view has a position and limit
+     * of its own and must be released by its user. This method is thread safe.
+     */
+    public Data share() {
+        _references.incrementAndGet();
+        return new Data(this);
+    }
+
+    /**
+     * Gives the data buffer back to the pool it is leased from, once the frame and all views created by
+     * {@link #share()} are released. Does nothing if the buffer isn't pooled. The data must not be accessed
+     * after it is released. This method is thread safe.
+     */
+    public void release() {
+        if (_shared != null) {
+            _shared.release();
+        } else if (_references.decrementAndGet() == 0 && _owner != null) {
+            _owner.release(_data);
+        }
+    }
 }
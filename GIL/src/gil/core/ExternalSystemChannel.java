@@ -0,0 +1,45 @@
+/*
+    Copyright (C) 2010 LearningWell AB (www.learningwell.com), Kärnkraftsäkerhet och Utbildning AB (www.ksu.se)
+
+    This file is part of GIL (Generic Integration Layer).
+
+    GIL is free software: you can redistribute it and/or modify
+    it under the terms of the GNU Lesser General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    GIL is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public License
+    along with GIL.  If not, see <http://www.gnu.org/licenses/>.
+*/
+package gil.core;
+
+import gil.common.LatestValueExchanger;
+import gil.common.Wakeup;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The part of the {@link IntegrationContext} that is specific to one external system. Each external system
+ * integrated with the process model has a channel of its own, through which process data and simulator commands
+ * are handed over to the thread communicating with that external system. All members are thread safe.
+ *
+ * @author Göran Larsson @ LearningWell AB
+ */
+public class ExternalSystemChannel {
+    public final LatestValueExchanger<Data> pendingTransferToES = new LatestValueExchanger<Data>();
+    public final Queue<Command> pendingSimCommands = new ConcurrentLinkedQueue<Command>();
+    public final Wakeup esWakeup;
+
+    /**
+     * @param wakeupSpinTime The time in microseconds the waiting thread spins before it is parked.
+     */
+    public ExternalSystemChannel(long wakeupSpinTime) {
+        esWakeup = new Wakeup(wakeupSpinTime, TimeUnit.MICROSECONDS);
+    }
+}
@@ -20,18 +20,27 @@ package gil.core;
 
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ExecutionException;
 import org.apache.log4j.Logger;
 import gil.common.AsyncResult;
+import gil.common.ByteBufferPool;
 import gil.common.CurrentTime;
 import gil.io.ExternalSystemAdapter;
 import gil.common.GILConfiguration;
+import gil.common.ICounter;
+import gil.common.IGauge;
 import gil.common.IInvokeable;
 import gil.common.IProgressEventListener;
 import gil.common.Invoker;
+import gil.common.LatencyRecorder;
+import gil.common.LatestValueExchanger;
+import gil.common.MetricsRegistry;
 import gil.common.Result;
+import gil.common.StripedCounter;
 import gil.common.Timeout;
 import gil.common.ValueResult;
 import gil.io.ISignalDataListener;
@@ -48,24 +57,40 @@ public class ExternalSystemProcedure  implements IProcedure, ISignalDataListener
 
     private static Logger _logger = Logger.getLogger(ExternalSystemProcedure.class);
 
+    // The frames that may hold a buffer at the same time: one being read from the external system, one pending
+    // transform, one being fed through the transfer pipeline, one pending transfer to the process model and one
+    // being written. A frame split between several process models is released once split. The frame histories
+    // and the recorder copy the frames. An additional external system reads nothing and gets a single buffer.
+    private static final int _FRAME_POOL_SIZE = 5;
+    private static final Command[] _NO_COMMANDS = new Command[0];
+
     private long _frameCount = - 1;    
     private ByteBuffer _valuesBuf = null;    
+    private ByteBuffer _tailBuf = null;
     private IState _currentState = null;
 
     private final int _valuesBufSize;
     private final IntegrationContext _context;
+    private final ExternalSystemChannel _channel;
+    private final boolean _isPrimary;
+    private final ITransferPipeline _pipelineTail;
     private final ExternalSystemAdapter _esAdapter;
     private final Timeout _readTimeout;
+    private final ByteBufferPool _framePool;
     private final GILConfiguration _config;
-    Invoker _controlCommandInvoker = new Invoker();
+    private final SignalDeltaEncoder _deltaEncoder;
+    private final long _simCommandBudgetNanos;
+    private final LatencyRecorder _simCommandBatchLatency = new LatencyRecorder();
+    private final FrameLatency _toESLatency = new FrameLatency();
+    private final FrameRates _rates = new FrameRates();
+    Invoker _controlCommandInvoker;
     
     private volatile boolean _reconnect = false;
-    private volatile int _commandExecutionFailureCount;
-    private volatile int _dataWriteFailureCount;
-    private volatile int _dataReadFailureCount;
-    private volatile int _droppedExternalSystemFrames;
-    private volatile int _writeFrameCount;
-    private volatile int _readFrameCount;
+    private final StripedCounter _commandExecutionFailureCount = new StripedCounter();
+    private final StripedCounter _dataWriteFailureCount = new StripedCounter();
+    private final StripedCounter _dataReadFailureCount = new StripedCounter();
+    private final StripedCounter _writeFrameCount = new StripedCounter();
+    private final StripedCounter _readFrameCount = new StripedCounter();
     private volatile SystemStatus _disconnectedStatus = new SystemStatus(SystemStatus.UNKNOWN, "");
     private volatile Throwable _pendingException = null;
     
@@ -77,12 +102,63 @@ public class ExternalSystemProcedure  implements IProcedure, ISignalDataListener
      * @param config Object containing configuration parameters that may be used by this object.
      */
     public ExternalSystemProcedure(ExternalSystemAdapter esAdapter, IntegrationContext context, int valuesBufSize, GILConfiguration config) {
+        this(esAdapter, context, valuesBufSize, null, config);
+    }
+
+    /**
+     * @param esAdapter The external system boundary class.
+     * @param context The context data to be shared between the {@link ExternalSystemProcedure} and the
+     * {@link ProcessModelProcedure}.
+     * @param valuesBufSize The number of bytes that must be allocated for signal values read from the external system.
+     * @param signalsToES The signals written to the external system. Used to write changed signals only if the
+     * adapter supports delta transfer. May be null in which case full frames are always written.
+     * @param config Object containing configuration parameters that may be used by this object.
+     */
+    public ExternalSystemProcedure(ExternalSystemAdapter esAdapter, IntegrationContext context, int valuesBufSize,
+            SignalMetadata[] signalsToES, GILConfiguration config) {
+        this(esAdapter, context, context.externalSystem(0), valuesBufSize, signalsToES, null, config);
+    }
+
+    /**
+     * @param esAdapter The external system boundary class.
+     * @param context The context data to be shared between the {@link ExternalSystemProcedure} and the
+     * {@link ProcessModelProcedure}.
+     * @param channel The channel in the context through which data and commands are handed over to this external
+     * system.
+     * @param valuesBufSize The number of bytes that must be allocated for signal values read from the external system.
+     * Zero for an additional external system since only the primary external system transfers data to the process
+     * models.
+     * @param signalsToES The signals written to the external system. Used to write changed signals only if the
+     * adapter supports delta transfer. May be null in which case full frames are always written.
+     * @param pipelineTail Stages feeding process data written to this external system only. Each frame is copied
+     * before it is fed through the stages since frames are shared with other external systems. May be null.
+     * @param config Object containing configuration parameters that may be used by this object.
+     */
+    public ExternalSystemProcedure(ExternalSystemAdapter esAdapter, IntegrationContext context,
+            ExternalSystemChannel channel, int valuesBufSize, SignalMetadata[] signalsToES,
+            ITransferPipeline pipelineTail, GILConfiguration config) {
         _esAdapter = esAdapter;
         _context = context;
+        _channel = channel;
+        _isPrimary = (channel == context.externalSystem(0));
+        _pipelineTail = pipelineTail;
         _config = config;
         _frameCount = _context.esFrameCount;
         _valuesBufSize = valuesBufSize;
-        _readTimeout = new Timeout(config.getESAdapterReadPollRate());
+        _readTimeout = new Timeout(config.getESAdapterReadPollRateInMicroseconds());
+        _controlCommandInvoker = new Invoker(config.getControlCommandTimeBudgetInMicroseconds() * 1000,
+                config.getControlCommandCountBudget());
+        _framePool = new ByteBufferPool(_isPrimary ? _FRAME_POOL_SIZE : 1, valuesBufSize,
+                config.getESAdapterByteOrder());
+        long simCommandBudget = config.getESSimCommandBudgetInMicroseconds();
+        _simCommandBudgetNanos = (simCommandBudget > 0) ? simCommandBudget * 1000
+                : 500000000L / Math.max(1, esAdapter.getOperatingFrequency());
+        if (signalsToES != null && esAdapter.supportsDeltaTransfer()) {
+            _logger.info("The external system adapter supports delta transfer. Only changed signals are written.");
+            _deltaEncoder = new SignalDeltaEncoder(signalsToES);
+        } else {
+            _deltaEncoder = null;
+        }
         _currentState = new DisconnectedState();
         if (esAdapter.isReadEventDriven()) {
             esAdapter.setSignalDataEventListener(this);
@@ -92,38 +168,161 @@ public class ExternalSystemProcedure  implements IProcedure, ISignalDataListener
     public void dataChanged(ByteBuffer data, SimTime origin, Result result, Throwable ex) {        
         if (ex != null) {
             _pendingException = ex;
-        } else {
-            handleReceivedData(data, origin, result);
+            _channel.esWakeup.signal();
+        } else if (!handleReceivedData(data, origin, result)) {
+            _framePool.release(data);
         }
     }
 
-    private void handleReceivedData(ByteBuffer data, SimTime origin, Result result) {
+    public ByteBuffer leaseBuffer() {
+        return _framePool.lease();
+    }
+
+    /**
+     * Adds successfully read data as pending transfer to the process model.
+     * Data received from an additional external system is discarded since only the primary external system
+     * transfers data to the process models.
+     * @return true if the data was added and the ownership of the data buffer is taken.
+     */
+    private boolean handleReceivedData(ByteBuffer data, SimTime origin, Result result) {
+        if (!_isPrimary) {
+            return false;
+        }
         if (result.isSuccess()) {
             data.rewind();
-            synchronized(_context) {
-                if (!_context.pendingTransferToPM.isEmpty()) {
-                    _droppedExternalSystemFrames += _context.pendingTransferToPM.size();
-                    _logger.warn(String.format("Dropped %d ES-frame(s) due to still pending transfers.", _context.pendingTransferToPM.size()));
-                    _context.pendingTransferToPM.clear();
-                }
-                _context.pendingTransferToPM.add(new Data(data, origin));
+            Data values = new Data(data, origin, _framePool);
+            values.setReadTime(CurrentTime.instance().inNanoseconds());
+            Data dropped = _context.pendingTransformToPM.offer(values);
+            _context.pipelineWakeup.signal();
+            if (dropped != null) {
+                _logger.warn("Dropped 1 ES-frame due to still pending transform.");
+                dropped.release();
             }
-            ++_readFrameCount;
+            _readFrameCount.increment();
+            return true;
         }
         else {
             _logger.warn("Failed to read: " + result.getErrorDescription());
-            ++_dataReadFailureCount;
+            _dataReadFailureCount.increment();
+            return false;
         }
     }
 
-    public void runOnce(long currentTimeInMilliseconds) {
-        _currentState = _currentState.handle(currentTimeInMilliseconds);
-        _controlCommandInvoker.executeNextCommandInQueue();
+    /**
+     * Registers the counters, gauges and timers of this procedure, named gil_es_*.
+     * @param labels Pairs of label names and values telling this procedure from the procedures of other external
+     * systems, e.g. "index", "0".
+     */
+    public void registerMetrics(MetricsRegistry registry, String... labels) {
+        registry.registerCounter("gil_es_frames_read_total", "Frames read from the external system.",
+                _readFrameCount, labels);
+        registry.registerCounter("gil_es_frames_written_total", "Frames written to the external system.",
+                _writeFrameCount, labels);
+        registry.registerCounter("gil_es_read_failures_total", "Failed reads of frames from the external system.",
+                _dataReadFailureCount, labels);
+        registry.registerCounter("gil_es_write_failures_total", "Failed writes of frames to the external system.",
+                _dataWriteFailureCount, labels);
+        registry.registerCounter("gil_es_command_failures_total",
+                "Simulator commands failed to execute by the external system.", _commandExecutionFailureCount, labels);
+        registry.registerCounter("gil_es_transform_queue_dropped_total",
+                "Frames read from the external system and dropped while pending transform.", new ICounter() {
+            public long get() {
+                return transformQueueDropCount();
+            }
+        }, labels);
+        registry.registerCounter("gil_es_write_queue_dropped_total",
+                "Frames read from the external system and dropped while pending write to the process models.",
+                new ICounter() {
+            public long get() {
+                return writeQueueDropCount();
+            }
+        }, labels);
+        registry.registerCounter("gil_es_buffer_pool_starvation_total",
+                "Frame buffers allocated since the pool was empty.", new ICounter() {
+            public long get() {
+                return _framePool.getStarvationCount();
+            }
+        }, labels);
+        registry.registerGauge("gil_es_write_queue_depth", "Frames pending write to the external system.",
+                new IGauge() {
+            public double getValue() {
+                return _channel.pendingTransferToES.size();
+            }
+        }, labels);
+        registry.registerGauge("gil_es_frame_buffers_available", "Frame buffers available in the pool.", new IGauge() {
+            public double getValue() {
+                return _framePool.getAvailableCount();
+            }
+        }, labels);
+        registry.registerTimer("gil_es_frame_latency_seconds",
+                "Time from reading a frame from the process model until written to the external system.",
+                _toESLatency.getTotal(), labels);
+    }
+
+    public void runOnce(long currentTimeInMicroseconds) {
+        _currentState = _currentState.handle(currentTimeInMicroseconds);
+        _controlCommandInvoker.executeCommandsInQueue();
+    }
+
+    /**
+     * Samples the counts of this procedure for the rates reported in the statistics, if the sample interval has
+     * elapsed. Shall be called by the thread running this procedure, once every cycle.
+     * @param now The current time in nanoseconds, as given by {@link gil.common.CurrentTime#inNanoseconds()}.
+     */
+    public void sampleRates(long now) {
+        if (_rates.isSampleDue(now)) {
+            _rates.sample(_readFrameCount.get(), _writeFrameCount.get(), droppedFrameCount(),
+                    _dataReadFailureCount.get() + _dataWriteFailureCount.get() + _commandExecutionFailureCount.get(),
+                    now);
+        }
     }
 
     public Statistics getStatistics() {
-        return new Statistics(_droppedExternalSystemFrames, _commandExecutionFailureCount,
-                _dataWriteFailureCount, _dataReadFailureCount, _readFrameCount, _writeFrameCount);
+        return fillStatistics(new Statistics.Builder()).build();
+    }
+
+    /**
+     * Fills in the statistics of this procedure.
+     * @return The given builder.
+     */
+    public Statistics.Builder fillStatistics(Statistics.Builder builder) {
+        int transformQueueDepth = _isPrimary ? _context.pendingTransformToPM.size() : 0;
+        int writeQueueDepth = 0;
+        for (int i = 0; _isPrimary && i < _context.processModelCount(); i++) {
+            writeQueueDepth += _context.processModel(i).pendingTransferToPM.size();
+        }
+        long transformQueueDropCount = transformQueueDropCount();
+        long writeQueueDropCount = writeQueueDropCount();
+        return builder.frameCounts(transformQueueDropCount + writeQueueDropCount,
+                _commandExecutionFailureCount.get(), _dataWriteFailureCount.get(), _dataReadFailureCount.get(),
+                _readFrameCount.get(), _writeFrameCount.get())
+                .bufferPool(_framePool)
+                .transformQueue(transformQueueDepth, transformQueueDropCount)
+                .writeQueue(writeQueueDepth, writeQueueDropCount)
+                .commandBatchLatency(_simCommandBatchLatency)
+                .controlCommands(_controlCommandInvoker)
+                .frameLatency(_toESLatency)
+                .rates(_rates, CurrentTime.instance().inNanoseconds());
+    }
+
+    /**
+     * @return The frames read from this external system and dropped on their way to the process models. Always 0
+     * for an additional external system since it is never read from.
+     */
+    private long droppedFrameCount() {
+        return transformQueueDropCount() + writeQueueDropCount();
+    }
+
+    private long transformQueueDropCount() {
+        return _isPrimary ? _context.pendingTransformToPM.getDroppedCount() : 0;
+    }
+
+    private long writeQueueDropCount() {
+        long count = 0;
+        for (int i = 0; _isPrimary && i < _context.processModelCount(); i++) {
+            count += _context.processModel(i).pendingTransferToPM.getDroppedCount();
+        }
+        return count;
     }
 
     public int getExternalSystemState() {
@@ -153,14 +352,29 @@ public class ExternalSystemProcedure  implements IProcedure, ISignalDataListener
         _reconnect = true;
     }
     
+    /**
+     * Invokes a control command on the external system adapter. This method blocks until the command is completed
+     * and is thread safe.
+     */
     public Map<String, String> invokeControlCommand(final String commandID, final Map<String, String> parameters)
             throws InterruptedException, ExecutionException {
+        return scheduleControlCommand(commandID, parameters).get(); // Block until async operation completes
+    }
+
+    /**
+     * Schedules a control command to be invoked on the external system adapter by a subsequent call to runOnce.
+     * This method returns at once and is thread safe.
+     * @return An object providing the result map when the command is completed.
+     */
+    public AsyncResult<Map<String, String>> scheduleControlCommand(final String commandID,
+            final Map<String, String> parameters) {
         if (commandID.equals("reconnect")) {
             reconnect();
         }
         else {
-            AsyncResult result = _controlCommandInvoker.schedule(new IInvokeable() {
-                public Object invoke() throws Exception {
+            AsyncResult<Map<String, String>> result = _controlCommandInvoker.schedule(
+                    new IInvokeable<Map<String, String>>() {
+                public Map<String, String> invoke() throws Exception {
                     Command cmd = new Command(commandID, parameters, new SimTime());
                     try {
                         return _esAdapter.invokeControlCommand(cmd);
@@ -170,13 +384,21 @@ public class ExternalSystemProcedure  implements IProcedure, ISignalDataListener
                     }
                 }
             });
-            return (Map<String, String>) result.get(); // Block until async operation completes
+            _channel.esWakeup.signal();
+            return result;
+        }
+        return AsyncResult.done((Map<String, String>) new HashMap<String, String>());
+    }
+
+    private static void discardPending(LatestValueExchanger<Data> exchanger) {
+        Data pending = exchanger.poll();
+        if (pending != null) {
+            pending.release();
         }
-        return new HashMap<String, String>();
     }
 
     public class DisconnectedState implements IState {
-        public IState handle(long currentTimeInMilliseconds)  {
+        public IState handle(long currentTimeInMicroseconds)  {
             try {
                 _logger.debug("Try connect...");
                 _pendingException = null;
@@ -186,8 +408,15 @@ public class ExternalSystemProcedure  implements IProcedure, ISignalDataListener
                     } catch (InterruptedException ex) { /* ignore */ }
                     return this;
                 }
-                synchronized(_context) {
-                    _context.pendingTransferToPM.clear();
+                // Frames read before the reconnection are outdated. Only the primary external system owns them.
+                if (_isPrimary) {
+                    discardPending(_context.pendingTransformToPM);
+                    for (int i = 0; i < _context.processModelCount(); i++) {
+                        discardPending(_context.processModel(i).pendingTransferToPM);
+                    }
+                }
+                if (_deltaEncoder != null) {
+                    _deltaEncoder.reset();
                 }
                 _reconnect = false;
                 return new ConnectedState();
@@ -202,7 +431,7 @@ public class ExternalSystemProcedure  implements IProcedure, ISignalDataListener
     }
 
     public class ConnectedState implements IState {
-        public IState handle(long currentTimeInMilliseconds)  {
+        public IState handle(long currentTimeInMicroseconds)  {
             try {
                 if (_esAdapter.isSynchronous()) {
                     long newFrameCount = _context.esFrameCount;
@@ -210,7 +439,7 @@ public class ExternalSystemProcedure  implements IProcedure, ISignalDataListener
                         Result result = _esAdapter.timeStepControl();
                         if (!result.isSuccess()) {
                             _logger.warn("Unsuccessful call to timeStepControl. May cause the external system to lag");
-                            ++_dataWriteFailureCount;
+                            _dataWriteFailureCount.increment();
                         }
                     }
                     _frameCount = newFrameCount;
@@ -220,48 +449,25 @@ public class ExternalSystemProcedure  implements IProcedure, ISignalDataListener
                     if (_pendingException != null)
                         throw _pendingException;
                 } 
-                else {
-                    if (_valuesBuf == null) {
-                         // Must allocate direct since the buffer may be used across boundaries to native code (JNI).
-                        _valuesBuf = ByteBuffer.allocateDirect(_valuesBufSize);
-                        _valuesBuf.order(_config.getESAdapterByteOrder());
-                    }
-
-                    if (_readTimeout.isTimeout(currentTimeInMilliseconds)) {
-                        _readTimeout.reset(currentTimeInMilliseconds);
+                else if (_isPrimary) {
+                    if (_readTimeout.isTimeout(currentTimeInMicroseconds)) {
+                        _readTimeout.reset(currentTimeInMicroseconds);
+                        // A buffer not handed over by the previous poll is reused.
+                        if (_valuesBuf == null) {
+                            _valuesBuf = _framePool.lease();
+                        } else {
+                            _valuesBuf.clear();
+                        }
                         ValueResult<SimTime> result = _esAdapter.readSignalData(_valuesBuf);
 
-                        if (result != null) {
-                            handleReceivedData(_valuesBuf, result.getReturnValue(), result);
+                        if (result != null && handleReceivedData(_valuesBuf, result.getReturnValue(), result)) {
+                            _valuesBuf = null;
                         }
-                         // Must allocate direct since the buffer may be used across boundaries to native code (JNI).
-                        _valuesBuf = ByteBuffer.allocateDirect(_valuesBufSize);
-                        _valuesBuf.order(_config.getESAdapterByteOrder());
                     }
                 }
 
-                Command nextCommand;
-                synchronized(_context) {
-                    nextCommand = _context.pendingSimCommands.poll();
-                }
-                if (_esAdapter.expectsSimulatorCommands()) {
-                    if (nextCommand != null) {
-                        _logger.debug("Executing command: " + nextCommand.getID());
-                        Result cmdResult = _esAdapter.executeSimCommand(nextCommand);
-                        if (cmdResult.isSuccess()) {
-                            _logger.debug("Command executed: " + nextCommand.getID());
-                        }
-                        else {
-                            _logger.warn("Failed to execute command " + nextCommand.toString() + ": " + cmdResult.getErrorDescription());
-                            ++_commandExecutionFailureCount;
-                        }
-                    }
-                }
-                Data values;
-                synchronized(_context) {
-                    values = _context.pendingTransferToES.pollLast();
-                    _context.pendingTransferToES.clear();
-                }
+                executePendingSimCommands();
+                Data values = _channel.pendingTransferToES.poll();
                 if (values != null) {
                     transferSignalDataES(values);
                 }
@@ -278,17 +484,117 @@ public class ExternalSystemProcedure  implements IProcedure, ISignalDataListener
             }
             return this;
         }        
+        /**
+         * Executes all pending simulator commands in batches. Commands arriving while a batch is executed form the
+         * next batch, as long as the time budget is not used up. Commands left are executed in the next iteration.
+         */
+        private void executePendingSimCommands() throws IOException {
+            long start = CurrentTime.instance().inNanoseconds();
+            long now = start;
+            while (now - start < _simCommandBudgetNanos) {
+                Command[] batch = drainPendingSimCommands();
+                if (batch.length == 0) {
+                    return;
+                }
+                if (!_esAdapter.expectsSimulatorCommands()) {
+                    continue;
+                }
+                _logger.debug("Executing " + batch.length + " command(s), starting with: " + batch[0].getID());
+                long batchStart = now;
+                Result[] results = _esAdapter.executeSimCommands(batch);
+                now = CurrentTime.instance().inNanoseconds();
+                _simCommandBatchLatency.record(now - batchStart);
+                if (results == null || results.length != batch.length) {
+                    // The results cannot be matched with the commands, so none of them is known to be executed.
+                    _logger.warn("Failed to execute " + batch.length + " command(s), starting with: "
+                            + batch[0].getID() + ". Got " + ((results == null) ? 0 : results.length)
+                            + " result(s) from the external system.");
+                    _commandExecutionFailureCount.add(batch.length);
+                    continue;
+                }
+                for (int i = 0; i < results.length; i++) {
+                    if (results[i].isSuccess()) {
+                        _logger.debug("Command executed: " + batch[i].getID());
+                    }
+                    else {
+                        _logger.warn("Failed to execute command " + batch[i].toString() + ": " + results[i].getErrorDescription());
+                        _commandExecutionFailureCount.increment();
+                    }
+                }
+            }
+        }
+
+        private Command[] drainPendingSimCommands() {
+            Command command = _channel.pendingSimCommands.poll();
+            if (command == null) {
+                return _NO_COMMANDS;
+            }
+            List<Command> commands = new ArrayList<Command>();
+            while (command != null) {
+                commands.add(command);
+                command = _channel.pendingSimCommands.poll();
+            }
+            return commands.toArray(new Command[0]);
+        }
+
         private void transferSignalDataES(Data values) throws IOException {
-            Result result = _esAdapter.writeSignalData(values.getData(), values.getOrigin());
-            if (result.isSuccess()) {
-                ++_writeFrameCount;
-            } else {
-                _logger.warn("Failed to write: " + result.getErrorDescription());
-                ++_dataWriteFailureCount;                
+            try {
+                ByteBuffer frame = values.getData();
+                if (_pipelineTail != null) {
+                    frame = processInPipelineTail(frame);
+                    if (frame == null) {
+                        return;
+                    }
+                }
+                Result result;
+                if (_deltaEncoder != null) {
+                    _deltaEncoder.encode(frame);
+                    result = _esAdapter.writeChangedSignalData(_deltaEncoder.getChangedValues(),
+                            _deltaEncoder.getChangedSignals(), values.getOrigin());
+                } else {
+                    result = _esAdapter.writeSignalData(frame, values.getOrigin());
+                }
+                if (result.isSuccess()) {
+                    _toESLatency.record(values, CurrentTime.instance().inNanoseconds());
+                    _writeFrameCount.increment();
+                } else {
+                    _logger.warn("Failed to write: " + result.getErrorDescription());
+                    _dataWriteFailureCount.increment();
+                    if (_deltaEncoder != null) {
+                        _deltaEncoder.reset(); // The external system may have lost track of previous values.
+                    }
+                }
+            } finally {
+                values.release();
             }
         }
     }
 
+    /**
+     * Feeds a copy of the given frame through the pipeline tail of this external system.
+     * @return The processed copy, or null if the processing failed and the frame is dropped.
+     */
+    private ByteBuffer processInPipelineTail(ByteBuffer frame) {
+        if (_tailBuf == null || _tailBuf.capacity() < frame.capacity()) {
+            // Must allocate direct since the buffer may be used across boundaries to native code (JNI).
+            _tailBuf = ByteBuffer.allocateDirect(frame.capacity());
+        }
+        ByteBuffer src = frame.duplicate();
+        src.clear();
+        _tailBuf.clear();
+        _tailBuf.order(frame.order());
+        _tailBuf.put(src);
+        _tailBuf.flip();
+        try {
+            _pipelineTail.processSignals(_tailBuf, SignalMetadata.DataflowDirection.ToES);
+        } catch (RuntimeException ex) {
+            _logger.error("Failure when processing signals in the pipeline tail. The frame is dropped.", ex);
+            return null;
+        }
+        _tailBuf.rewind();
+        return _tailBuf;
+    }
+
     public class ErrorState implements IState {
         private String _cause = "";
 
@@ -296,7 +602,7 @@ public class ExternalSystemProcedure  implements IProcedure, ISignalDataListener
             _cause = cause;
         }
 
-        public IState handle(long currentTimeInMilliseconds)  {
+        public IState handle(long currentTimeInMicroseconds)  {
             if (_reconnect) {
                 return new DisconnectedState();
             }
@@ -0,0 +1,266 @@
+/*
+    Copyright (C) 2010 LearningWell AB (www.learningwell.com), Kärnkraftsäkerhet och Utbildning AB (www.ksu.se)
+
+    This file is part of GIL (Generic Integration Layer).
+
+    GIL is free software: you can redistribute it and/or modify
+    it under the terms of the GNU Lesser General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    GIL is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public License
+    along with GIL.  If not, see <http://www.gnu.org/licenses/>.
+*/
+package gil.core;
+
+import gil.common.ByteBufferPool;
+import gil.core.SignalMetadata.DataflowDirection;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Merges the process data of several process models into the frames transferred to the external systems, and
+ * splits the frames transferred from the external systems into the process models.
+ * <p>
+ * Each process model owns a partition of the signal exchange list. A signal belongs to the process model named by
+ * its custom attribute {@link #PROCESS_MODEL_ATTRIBUTE}, or to the primary process model if the attribute is not
+ * given. A process model reads and writes a slice holding only the signals of its partition, packed in signal
+ * order. The position of each signal in the full frame is the buffer position given by the signal metadata.
+ * <p>
+ * The assembler keeps an image of the latest values of all signals to the external systems. Each slice received
+ * is scattered into the image, and each assembled frame is a copy of the image. Signals of a process model that
+ * has not delivered a new slice since the previous frame keep their previous values.
+ * <p>
+ * Methods in this object are not thread safe. They are intended to be called from the thread running the
+ * transfer pipeline.
+ *
+ * @author Göran Larsson @ LearningWell AB
+ */
+public class FrameAssembler {
+    public static final String PROCESS_MODEL_ATTRIBUTE = "ProcessModel";
+
+    private final Ranges[] _toES;
+    private final Ranges[] _toPM;
+    private final boolean[] _updated;
+    private final ByteBuffer _image;
+    private final ByteBufferPool _framePool;
+    private final ByteBufferPool[] _slicePools;
+
+    /**
+     * @param partitions The signals of each process model, with buffer positions in the full frame. Index 0 is
+     * the primary process model.
+     * @param poolCapacity The number of buffers pre-allocated for assembled frames and for the slices of each
+     * process model.
+     * @param byteOrder The byte order of the process data of the process models.
+     */
+    public FrameAssembler(SignalMetadata[][] partitions, int poolCapacity, ByteOrder byteOrder) {
+        _toES = new Ranges[partitions.length];
+        _toPM = new Ranges[partitions.length];
+        _updated = new boolean[partitions.length];
+        _slicePools = new ByteBufferPool[partitions.length];
+        int frameSize = 0;
+        for (int i = 0; i < partitions.length; i++) {
+            _toES[i] = new Ranges(partitions[i], DataflowDirection.ToES);
+            _toPM[i] = new Ranges(partitions[i], DataflowDirection.ToPM);
+            _slicePools[i] = new ByteBufferPool(poolCapacity, _toPM[i].sliceSize, byteOrder);
+            frameSize = Math.max(frameSize, _toES[i].frameEnd);
+        }
+        // Must allocate direct since the buffer may be used across boundaries to native code (JNI).
+        _image = ByteBuffer.allocateDirect(frameSize);
+        _framePool = new ByteBufferPool(poolCapacity, frameSize, byteOrder);
+    }
+
+    /**
+     * Scatters a slice read from a process model into the image of the next frame, and releases the slice.
+     * @param processModel The index of the process model the slice is read from.
+     */
+    public void update(int processModel, Data slice) {
+        try {
+            _toES[processModel].scatter(slice.getData(), _image);
+        } finally {
+            slice.release();
+        }
+        _updated[processModel] = true;
+    }
+
+    /**
+     * @return true if a slice from the given process model is received since the previous frame was assembled.
+     */
+    public boolean isUpdated(int processModel) {
+        return _updated[processModel];
+    }
+
+    /**
+     * Assembles a frame holding the latest values of all signals to the external systems.
+     * @param origin The time of the process model driving the frames to the external systems.
+     * @return A frame leased from the pool of this object, rewound and ready to be read.
+     */
+    public Data assemble(SimTime origin) {
+        ByteBuffer frame = _framePool.lease();
+        ByteBuffer src = _image.duplicate();
+        src.clear();
+        frame.put(src);
+        frame.rewind();
+        for (int i = 0; i < _updated.length; i++) {
+            _updated[i] = false;
+        }
+        return new Data(frame, origin, _framePool);
+    }
+
+    /**
+     * Splits a frame to the process models into one slice for each process model. The frame is not released. The
+     * slices are given the read time and the transformed time of the frame.
+     * @return The slices leased from the pools of this object, rewound and ready to be read. Index 0 is the slice
+     * of the primary process model.
+     */
+    public Data[] split(Data frame) {
+        Data[] slices = new Data[_toPM.length];
+        for (int i = 0; i < _toPM.length; i++) {
+            ByteBuffer slice = _slicePools[i].lease();
+            _toPM[i].gather(frame.getData(), slice);
+            slices[i] = new Data(slice, frame.getOrigin(), _slicePools[i]);
+            slices[i].setReadTime(frame.getReadTime());
+            slices[i].setTransformedTime(frame.getTransformedTime());
+        }
+        return slices;
+    }
+
+    /**
+     * @return The number of process models merged by this object.
+     */
+    public int getProcessModelCount() {
+        return _toES.length;
+    }
+
+    /**
+     * Divides the signals into the partitions of the process models.
+     * @param allSignals The complete set of signals.
+     * @param processModelIDs The IDs of the process models. Index 0 is the primary process model, to which all
+     * signals without the {@link #PROCESS_MODEL_ATTRIBUTE} attribute belong.
+     * @return The signals of each process model, in the order of the given IDs.
+     * @throws IllegalArgumentException If a signal names a process model not among the given IDs.
+     */
+    public static SignalMetadata[][] partition(SignalMetadata[] allSignals, String[] processModelIDs) {
+        List<List<SignalMetadata>> partitions = new ArrayList<List<SignalMetadata>>();
+        for (int i = 0; i < processModelIDs.length; i++) {
+            partitions.add(new ArrayList<SignalMetadata>());
+        }
+        for (SignalMetadata md : allSignals) {
+            Map<String, String> attributes = md.getCustomAttributes();
+            String id = (attributes == null) ? null : attributes.get(PROCESS_MODEL_ATTRIBUTE);
+            int index = (id == null) ? 0 : indexOf(processModelIDs, id);
+            if (index < 0) {
+                throw new IllegalArgumentException("The signal on SEL line " + md.getSelFileLineNo() +
+                        " belongs to the unknown process model '" + id + "'.");
+            }
+            partitions.get(index).add(md);
+        }
+        SignalMetadata[][] result = new SignalMetadata[processModelIDs.length][];
+        for (int i = 0; i < processModelIDs.length; i++) {
+            result[i] = partitions.get(i).toArray(new SignalMetadata[0]);
+        }
+        return result;
+    }
+
+    /**
+     * Creates the signals of a partition as seen by its process model, i.e. copies of the signals with buffer
+     * positions in the slice rather than in the full frame.
+     */
+    public static SignalMetadata[] createSliceSignals(SignalMetadata[] partition) {
+        SignalMetadata[] sliceSignals = new SignalMetadata[partition.length];
+        int toESbufferPos = 0;
+        int toPMbufferPos = 0;
+        for (int i = 0; i < partition.length; i++) {
+            sliceSignals[i] = (SignalMetadata)partition[i].clone();
+            if (partition[i].getDataflowDirection() == DataflowDirection.ToES) {
+                sliceSignals[i].setBufferPos(toESbufferPos);
+                toESbufferPos += partition[i].getBufferSize();
+            } else {
+                sliceSignals[i].setBufferPos(toPMbufferPos);
+                toPMbufferPos += partition[i].getBufferSize();
+            }
+        }
+        return sliceSignals;
+    }
+
+    private static int indexOf(String[] ids, String id) {
+        for (int i = 0; i < ids.length; i++) {
+            if (id.equals(ids[i])) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * The byte ranges of the signals of one partition in one direction. Signals adjacent both in the slice and
+     * in the frame are coalesced into one range.
+     */
+    private static class Ranges {
+        final int[] slicePos;
+        final int[] framePos;
+        final int[] sizes;
+        final int sliceSize;
+        final int frameEnd;
+
+        Ranges(SignalMetadata[] partition, DataflowDirection direction) {
+            List<int[]> ranges = new ArrayList<int[]>();
+            int pos = 0;
+            int end = 0;
+            for (SignalMetadata md : partition) {
+                if (md.getDataflowDirection() != direction) {
+                    continue;
+                }
+                int size = md.getBufferSize();
+                int[] last = ranges.isEmpty() ? null : ranges.get(ranges.size() - 1);
+                if (last != null && last[1] + last[2] == md.getBufferPos()) {
+                    last[2] += size;
+                } else {
+                    ranges.add(new int[] { pos, md.getBufferPos(), size });
+                }
+                pos += size;
+                end = Math.max(end, md.getBufferPos() + size);
+            }
+            slicePos = new int[ranges.size()];
+            framePos = new int[ranges.size()];
+            sizes = new int[ranges.size()];
+            for (int i = 0; i < ranges.size(); i++) {
+                slicePos[i] = ranges.get(i)[0];
+                framePos[i] = ranges.get(i)[1];
+                sizes[i] = ranges.get(i)[2];
+            }
+            sliceSize = pos;
+            frameEnd = end;
+        }
+
+        void scatter(ByteBuffer slice, ByteBuffer frame) {
+            copy(slice, slicePos, frame, framePos);
+        }
+
+        void gather(ByteBuffer frame, ByteBuffer slice) {
+            copy(frame, framePos, slice, slicePos);
+            slice.rewind();
+        }
+
+        private void copy(ByteBuffer from, int[] fromPos, ByteBuffer to, int[] toPos) {
+            ByteBuffer src = from.duplicate();
+            ByteBuffer dst = to.duplicate();
+            src.clear();
+            dst.clear();
+            for (int i = 0; i < sizes.length; i++) {
+                src.limit(fromPos[i] + sizes[i]);
+                src.position(fromPos[i]);
+                dst.position(toPos[i]);
+                dst.put(src);
+            }
+        }
+    }
+}
@@ -0,0 +1,258 @@
+/*
+    Copyright (C) 2010 LearningWell AB (www.learningwell.com), Kärnkraftsäkerhet och Utbildning AB (www.ksu.se)
+
+    This file is part of GIL (Generic Integration Layer).
+
+    GIL is free software: you can redistribute it and/or modify
+    it under the terms of the GNU Lesser General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    GIL is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public License
+    along with GIL.  If not, see <http://www.gnu.org/licenses/>.
+*/
+package gil.core;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Keeps the last frames of process data transferred in one direction, together with their origin time, so that
+ * the recent values of any signal may be inspected.
+ * <p>
+ * The frames are held in a ring of a fixed number of slots allocated off-heap, so the memory used is bounded by
+ * the number of slots times the frame size and the recording does not add to the garbage collected heap. When the
+ * ring is full the oldest frame is overwritten.
+ * <p>
+ * Frames are recorded by a single thread. Time series may be read by any number of other threads. Each slot is
+ * guarded by a lock of its own, held while a frame is copied into the slot and while the values of a frame are
+ * read from it, so the recording thread waits at most for the values of one frame being read from the slot it is
+ * about to overwrite. Each slot holds the number of the frame it contains; a reader skips a slot that has been
+ * overwritten before it was read.
+ * <p>
+ * Recording may be turned off while nobody reads the history, in which case frames are not copied at all.
+ *
+ * @author Göran Larsson @ LearningWell AB
+ */
+public class FrameHistory {
+
+    /**
+     * The value(s) of a signal in one recorded frame.
+     */
+    public static class Sample {
+        public final SimTime origin;
+        public final double[] values;
+
+        Sample(SimTime origin, double[] values) {
+            this.origin = origin;
+            this.values = values;
+        }
+    }
+
+    /**
+     * The values of several signals in one recorded frame.
+     */
+    public static class Snapshot {
+        public final long frameNo;
+        public final SimTime origin;
+        public final double[][] values;
+
+        Snapshot(long frameNo, SimTime origin, double[][] values) {
+            this.frameNo = frameNo;
+            this.origin = origin;
+            this.values = values;
+        }
+    }
+
+    private static final long _EMPTY = -1;
+
+    private final int _capacity;
+    private final int _frameSize;
+    private final ByteBuffer _frames;
+    private final Object[] _slotLocks;
+    // Guarded by the lock of each slot.
+    private final SimTime[] _origins;
+    private final long[] _slotFrameNo;
+    private volatile long _recordedCount = 0;
+    private volatile ByteOrder _order = ByteOrder.BIG_ENDIAN;
+    private volatile boolean _recording = true;
+
+    /**
+     * @param capacity The number of frames to keep, at most {@link #maxCapacity(int)}.
+     * @param frameSize The size in bytes of each frame.
+     */
+    public FrameHistory(int capacity, int frameSize) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("The capacity of a frame history must be at least one frame.");
+        }
+        if (capacity > maxCapacity(frameSize)) {
+            throw new IllegalArgumentException("A frame history of " + capacity + " frames of " + frameSize
+                    + " bytes exceeds the maximum size of " + Integer.MAX_VALUE + " bytes.");
+        }
+        _capacity = capacity;
+        _frameSize = frameSize;
+        // Must allocate direct to keep the history off the garbage collected heap.
+        _frames = ByteBuffer.allocateDirect(capacity * frameSize);
+        _slotLocks = new Object[capacity];
+        _origins = new SimTime[capacity];
+        _slotFrameNo = new long[capacity];
+        for (int i = 0; i < capacity; i++) {
+            _slotLocks[i] = new Object();
+            _slotFrameNo[i] = _EMPTY;
+        }
+    }
+
+    /**
+     * @return The maximum number of frames of the given size kept by a frame history, all held in one buffer.
+     */
+    public static int maxCapacity(int frameSize) {
+        return (frameSize > 0) ? (int)((long)Integer.MAX_VALUE / frameSize) : Integer.MAX_VALUE;
+    }
+
+    /**
+     * Records a copy of the given frame, overwriting the oldest frame if the history is full. Does nothing while
+     * recording is turned off. Must only be called from a single thread.
+     * @param frame The process data. The content from position zero up to the limit, or up to the frame size of
+     * this history if less, is recorded. The position and limit of the buffer are left unchanged.
+     * @param origin The time the frame originates from. May be null.
+     */
+    public void record(ByteBuffer frame, SimTime origin) {
+        if (!_recording) {
+            return;
+        }
+        long frameNo = _recordedCount;
+        int slot = (int)(frameNo % _capacity);
+        int position = frame.position();
+        int limit = frame.limit();
+        synchronized (_slotLocks[slot]) {
+            frame.position(0);
+            frame.limit(Math.min(limit, _frameSize));
+            _frames.position(slot * _frameSize);
+            _frames.put(frame);
+            frame.limit(limit);
+            frame.position(position);
+            _origins[slot] = origin;
+            _slotFrameNo[slot] = frameNo;
+        }
+        _order = frame.order();
+        _recordedCount = frameNo + 1;
+    }
+
+    /**
+     * Returns the values of the given signal in the recorded frames, oldest first. Thread safe.
+     * @param signal A signal contained in the frames recorded by this history.
+     * @param maxSamples The maximum number of samples to return. The most recent samples are returned.
+     */
+    public List<Sample> getTimeSeries(SignalMetadata signal, int maxSamples) {
+        checkContained(signal);
+        int pos = signal.getBufferPos();
+        ByteBuffer view = _frames.duplicate();
+        view.order(_order);
+        long end = _recordedCount;
+        long start = Math.max(0, end - Math.min(_capacity, Math.max(0, maxSamples)));
+        List<Sample> samples = new ArrayList<Sample>((int)(end - start));
+        for (long frameNo = start; frameNo < end; frameNo++) {
+            int slot = (int)(frameNo % _capacity);
+            synchronized (_slotLocks[slot]) {
+                if (_slotFrameNo[slot] == frameNo) {
+                    samples.add(new Sample(_origins[slot], decode(view, slot * _frameSize + pos, signal)));
+                }
+            }
+        }
+        return samples;
+    }
+
+    /**
+     * Returns the values of the given signals in the most recently recorded frame. Thread safe.
+     * @param signals Signals contained in the frames recorded by this history.
+     * @return The values of each signal, in the order given, or null if no frame is recorded.
+     */
+    public Snapshot getLatest(SignalMetadata[] signals) {
+        for (SignalMetadata signal : signals) {
+            checkContained(signal);
+        }
+        ByteBuffer view = _frames.duplicate();
+        view.order(_order);
+        while (true) {
+            long frameNo = _recordedCount - 1;
+            if (frameNo < 0) {
+                return null;
+            }
+            int slot = (int)(frameNo % _capacity);
+            synchronized (_slotLocks[slot]) {
+                if (_slotFrameNo[slot] != frameNo) {
+                    continue; // Overwritten by a newer frame.
+                }
+                double[][] values = new double[signals.length][];
+                for (int i = 0; i < signals.length; i++) {
+                    values[i] = decode(view, slot * _frameSize + signals[i].getBufferPos(), signals[i]);
+                }
+                return new Snapshot(frameNo, _origins[slot], values);
+            }
+        }
+    }
+
+    /**
+     * @return The number of frames recorded since this object was created, including overwritten frames.
+     */
+    public long getRecordedCount() {
+        return _recordedCount;
+    }
+
+    public int getCapacity() {
+        return _capacity;
+    }
+
+    /**
+     * Turns the recording of frames on or off. The frames already recorded are kept. Thread safe.
+     */
+    public void setRecording(boolean recording) {
+        _recording = recording;
+    }
+
+    public boolean isRecording() {
+        return _recording;
+    }
+
+    private void checkContained(SignalMetadata signal) {
+        int pos = signal.getBufferPos();
+        if (pos < 0 || pos + signal.getBufferSize() > _frameSize) {
+            throw new IllegalArgumentException("The signal is not contained in the recorded frames.");
+        }
+    }
+
+    private static double[] decode(ByteBuffer view, int pos, SignalMetadata signal) {
+        double[] values = new double[signal.getLength()];
+        int size = SignalMetadata.size(signal.getDataType());
+        for (int i = 0; i < values.length; i++) {
+            int p = pos + i * size;
+            switch (signal.getDataType()) {
+                case Float32:
+                    values[i] = view.getFloat(p);
+                    break;
+                case Float64:
+                    values[i] = view.getDouble(p);
+                    break;
+                case Int8:
+                    values[i] = view.get(p);
+                    break;
+                case Int16:
+                    values[i] = view.getShort(p);
+                    break;
+                case Int32:
+                    values[i] = view.getInt(p);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Illegal data type of signal.");
+            }
+        }
+        return values;
+    }
+}
@@ -0,0 +1,85 @@
+/*
+    Copyright (C) 2010 LearningWell AB (www.learningwell.com), Kärnkraftsäkerhet och Utbildning AB (www.ksu.se)
+
+    This file is part of GIL (Generic Integration Layer).
+
+    GIL is free software: you can redistribute it and/or modify
+    it under the terms of the GNU Lesser General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    GIL is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public License
+    along with GIL.  If not, see <http://www.gnu.org/licenses/>.
+*/
+package gil.core;
+
+import gil.common.LatencyHistogram;
+
+/**
+ * Records the latency of the frames written in one direction, from the time each frame was read from the adapter
+ * on the other side until it was written. The latency is also recorded split into the parts a frame passes:
+ * <ul>
+ * <li>transform - From read until fed through the transfer pipeline, including the wait for the pipeline.</li>
+ * <li>hand over - From fed through the transfer pipeline until handed over to the procedure writing it.</li>
+ * <li>write - From handed over until written, including the wait for the writing procedure and the write.</li>
+ * </ul>
+ * Frames without a stamped read time are not recorded. A part is not recorded if a time it depends on isn't
+ * stamped.
+ * <p>
+ * Methods in this object are thread safe.
+ *
+ * @author Göran Larsson @ LearningWell AB
+ */
+public class FrameLatency {
+    private final LatencyHistogram _total = new LatencyHistogram();
+    private final LatencyHistogram _transform = new LatencyHistogram();
+    private final LatencyHistogram _handOver = new LatencyHistogram();
+    private final LatencyHistogram _write = new LatencyHistogram();
+
+    /**
+     * @param frame The frame written.
+     * @param writtenTime The time in nanoseconds when the frame was written.
+     */
+    public void record(Data frame, long writtenTime) {
+        long readTime = frame.getReadTime();
+        if (readTime == 0) {
+            return;
+        }
+        _total.record(writtenTime - readTime);
+        long transformedTime = frame.getTransformedTime();
+        long handOverTime = frame.getHandOverTime();
+        if (transformedTime != 0) {
+            _transform.record(transformedTime - readTime);
+            if (handOverTime != 0) {
+                _handOver.record(handOverTime - transformedTime);
+            }
+        }
+        if (handOverTime != 0) {
+            _write.record(writtenTime - handOverTime);
+        }
+    }
+
+    /**
+     * @return The latency from read until written.
+     */
+    public LatencyHistogram getTotal() {
+        return _total;
+    }
+
+    public LatencyHistogram getTransform() {
+        return _transform;
+    }
+
+    public LatencyHistogram getHandOver() {
+        return _handOver;
+    }
+
+    public LatencyHistogram getWrite() {
+        return _write;
+    }
+}
@@ -0,0 +1,72 @@
+/*
+    Copyright (C) 2010 LearningWell AB (www.learningwell.com), Kärnkraftsäkerhet och Utbildning AB (www.ksu.se)
+
+    This file is part of GIL (Generic Integration Layer).
+
+    GIL is free software: you can redistribute it and/or modify
+    it under the terms of the GNU Lesser General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    GIL is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public License
+    along with GIL.  If not, see <http://www.gnu.org/licenses/>.
+*/
+package gil.core;
+
+import gil.common.SlidingRate;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Derives the rates of the frames read, written and dropped and of the failures of a procedure over sliding
+ * windows of up to {@value #MAX_WINDOW_SECONDS} seconds, from the cumulative counts of the procedure.
+ * <p>
+ * The sample methods must be called from a single thread, i.e. the thread running the procedure. getRates is
+ * thread safe.
+ *
+ * @author Göran Larsson @ LearningWell AB
+ */
+public class FrameRates {
+    public static final int MAX_WINDOW_SECONDS = 60;
+    private static final long _SAMPLE_INTERVAL = TimeUnit.MILLISECONDS.toNanos(100);
+    private static final long _MAX_WINDOW = TimeUnit.SECONDS.toNanos(MAX_WINDOW_SECONDS);
+
+    private final SlidingRate _readFrames = new SlidingRate(_SAMPLE_INTERVAL, _MAX_WINDOW);
+    private final SlidingRate _writtenFrames = new SlidingRate(_SAMPLE_INTERVAL, _MAX_WINDOW);
+    private final SlidingRate _droppedFrames = new SlidingRate(_SAMPLE_INTERVAL, _MAX_WINDOW);
+    private final SlidingRate _failures = new SlidingRate(_SAMPLE_INTERVAL, _MAX_WINDOW);
+
+    /**
+     * @param now The current time in nanoseconds, as given by {@link gil.common.CurrentTime#inNanoseconds()}.
+     * @return true if the counts shall be sampled, i.e. the sample interval has elapsed since the latest sample.
+     */
+    public boolean isSampleDue(long now) {
+        return _readFrames.isSampleDue(now);
+    }
+
+    /**
+     * Samples the cumulative counts of the procedure.
+     */
+    public void sample(long readFrames, long writtenFrames, long droppedFrames, long failures, long now) {
+        _readFrames.sample(readFrames, now);
+        _writtenFrames.sample(writtenFrames, now);
+        _droppedFrames.sample(droppedFrames, now);
+        _failures.sample(failures, now);
+    }
+
+    /**
+     * @param windowSeconds The length of the window, at most {@value #MAX_WINDOW_SECONDS} seconds.
+     * @param now The current time in nanoseconds, as given by {@link gil.common.CurrentTime#inNanoseconds()}.
+     * @return The rates over the window ending now.
+     */
+    public RateStatistics getRates(int windowSeconds, long now) {
+        long window = TimeUnit.SECONDS.toNanos(windowSeconds);
+        return new RateStatistics(windowSeconds, _readFrames.getRate(window, now),
+                _writtenFrames.getRate(window, now), _droppedFrames.getRate(window, now),
+                _failures.getRate(window, now));
+    }
+}
@@ -19,14 +19,17 @@
 package gil.core;
 
 /**
+ * A procedure handling one part of the integration, run by a controlling thread. Times passed to the procedure
+ * are given in microseconds from an arbitrary origin.
+ *
  * @author Göran Larsson @ LearningWell AB
  */
 public interface IProcedure {
 
     public interface IState {
-        IState handle(long currentTimeInMilliseconds);
+        IState handle(long currentTimeInMicroseconds);
     }
 
-    void runOnce(long currentTimeInMilliseconds);
+    void runOnce(long currentTimeInMicroseconds);
     IState currentState();
 }
@@ -31,4 +31,9 @@ public interface ITransferPipeline {
     List<IPipelineStage> getStages();
 
     void processSignals(ByteBuffer values, SignalMetadata.DataflowDirection direction);
+
+    /**
+     * @return The processing times of each stage, in the order of the stages.
+     */
+    StageTiming[] getStageTimings();
 }
@@ -18,18 +18,109 @@
 */
 package gil.core;
 
-import java.util.ArrayDeque;
+import gil.common.LatestValueExchanger;
+import gil.common.Wakeup;
+import java.util.concurrent.TimeUnit;
 
 /**
- * Class containing context data to be shared between the two threads hadling the communication
- * with the external system and the process models.
+ * Class containing context data to be shared between the threads hadling the communication
+ * with the external system and the process models and the thread running the transfer pipeline.
+ *
+ * Process data read from either side is first pending transform by the transfer pipeline and is then pending
+ * transfer to the other side. All members are thread safe and lock free. Process data is handed over with
+ * latest-wins semantics, i.e. a frame still pending when a new frame is offered is dropped.
+ *
+ * Several external systems may be integrated with one process model. Data and commands handed over to an
+ * external system are found in the {@link ExternalSystemChannel} of that external system. Likewise, several
+ * process models may be merged into one integration, each one handing over its slice of the process data
+ * through a {@link ProcessModelChannel} of its own.
+ *
+ * Only the primary external system, i.e. the one of channel 0, transfers data to the process models. It is the only
+ * one offering frames pending transform to the process models, and the only one counting drops of them and of the
+ * frames pending transfer to the process models. Additional external systems receive data from the process models
+ * only and are never read from.
+ *
+ * Each thread waits on its own wakeup between iterations. A thread handing over data or commands to another
+ * thread signals the wakeup of that thread, so the data is handled without delay.
  * @author Göran Larsson @ LearningWell AB
  */
 public class IntegrationContext {
 
-    // Theese are shared between threads and concurrency issues must be handled
-    public final ArrayDeque<Data> pendingTransferToPM = new ArrayDeque<Data>();
-    public final ArrayDeque<Data> pendingTransferToES = new ArrayDeque<Data>();
-    public final ArrayDeque<Command> pendingSimCommands = new ArrayDeque<Command>();
+    // Theese are shared between threads
+    // Offered by the primary external system only.
+    public final LatestValueExchanger<Data> pendingTransformToPM = new LatestValueExchanger<Data>();
     public volatile long esFrameCount = 0;
+
+    public final Wakeup pipelineWakeup;
+
+    private final ProcessModelChannel[] _processModels;
+    private final ExternalSystemChannel[] _externalSystems;
+
+    /**
+     * Creates a context for one process model and one external system where waiting threads are parked
+     * without spinning.
+     */
+    public IntegrationContext() {
+        this(0, 1, 1);
+    }
+
+    /**
+     * Creates a context for one process model.
+     * @param wakeupSpinTime The time in microseconds a waiting thread spins before it is parked.
+     * @param externalSystemCount The number of external systems integrated with the process model.
+     */
+    public IntegrationContext(long wakeupSpinTime, int externalSystemCount) {
+        this(wakeupSpinTime, 1, externalSystemCount);
+    }
+
+    /**
+     * @param wakeupSpinTime The time in microseconds a waiting thread spins before it is parked.
+     * @param processModelCount The number of process models merged into the integration.
+     * @param externalSystemCount The number of external systems integrated with the process models.
+     */
+    public IntegrationContext(long wakeupSpinTime, int processModelCount, int externalSystemCount) {
+        if (processModelCount < 1) {
+            throw new IllegalArgumentException("At least one process model must be integrated.");
+        }
+        if (externalSystemCount < 1) {
+            throw new IllegalArgumentException("At least one external system must be integrated.");
+        }
+        pipelineWakeup = new Wakeup(wakeupSpinTime, TimeUnit.MICROSECONDS);
+        _processModels = new ProcessModelChannel[processModelCount];
+        for (int i = 0; i < processModelCount; i++) {
+            _processModels[i] = new ProcessModelChannel(wakeupSpinTime);
+        }
+        _externalSystems = new ExternalSystemChannel[externalSystemCount];
+        for (int i = 0; i < externalSystemCount; i++) {
+            _externalSystems[i] = new ExternalSystemChannel(wakeupSpinTime);
+        }
+    }
+
+    /**
+     * @return The channel to the process model with the given index. Index 0 is the primary process model.
+     */
+    public ProcessModelChannel processModel(int index) {
+        return _processModels[index];
+    }
+
+    /**
+     * @return The number of process models merged into the integration.
+     */
+    public int processModelCount() {
+        return _processModels.length;
+    }
+
+    /**
+     * @return The channel to the external system with the given index.
+     */
+    public ExternalSystemChannel externalSystem(int index) {
+        return _externalSystems[index];
+    }
+
+    /**
+     * @return The number of external systems integrated with the process models.
+     */
+    public int externalSystemCount() {
+        return _externalSystems.length;
+    }
 }
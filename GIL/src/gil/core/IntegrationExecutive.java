@@ -21,50 +21,69 @@ package gil.core;
 import java.util.concurrent.ExecutionException;
 import gil.common.IProgressEventListener;
 import gil.common.ProgressChangedEventArgs;
+import java.io.File;
 import java.io.IOException;
+import java.text.SimpleDateFormat;
+import java.util.Date;
 import java.util.List;
 import java.util.Map;
 import org.apache.log4j.Logger;
 import gil.io.*;
+import gil.common.AsyncResult;
 import gil.common.CurrentTime;
 import gil.common.GILConfiguration;
-import gil.common.StopWatch;
+import gil.common.MetricsRegistry;
+import gil.common.CycleScheduler;
 import gil.common.Timeout;
+import gil.core.SignalMetadata.DataflowDirection;
 
 /**
- * This class manages the data and command interchange between the process model and an external system.
+ * This class manages the data and command interchange between one or more process models and one or more external
+ * systems. Threads are run for communicating with each process model, for communicating with each external system
+ * and for feeding process data through the transfer pipeline.
+ * <p>
+ * The process model is read once each frame, however many external systems there are. The frame is fed once
+ * through the transfer pipeline and then shared by all external systems without being copied.
+ * <p>
+ * When several process models are merged, each one owns a partition of the signals and runs at its own operating
+ * frequency. The primary process model drives the frames to the external systems, and the latest slices of the
+ * other process models are assembled into each frame by the transfer pipeline thread.
+ * <p>
+ * If a recording directory is configured, a new session is recorded by a {@link SessionRecorder} each time the
+ * integration is started.
  *
  * @author Göran Larsson @ LearningWell AB
  */
 @SuppressWarnings("SleepWhileHoldingLock")
 public class IntegrationExecutive {    
-    private static final int _UPDATE_TIMEOUT = 1 * 1000; //in milliseconds
-
-    private volatile int _externalSystemState = SimState.UNKNOWN;
-    private volatile SystemStatus _externalSystemStatus = new SystemStatus(SystemStatus.UNKNOWN, "");
-    private volatile int _processModelState = SimState.UNKNOWN;
-    private volatile SystemStatus _processModelStatus = new SystemStatus(SystemStatus.UNKNOWN, "");
-    private volatile ProgressChangedEventArgs _currentESActivity = new ProgressChangedEventArgs(0, "Not available", true);
-    private volatile ProgressChangedEventArgs _currentPMActivity = new ProgressChangedEventArgs(0, "Not available", true);
+    private static final int _UPDATE_TIMEOUT = 1 * 1000 * 1000; //in microseconds
+    private static final long _PIPELINE_IDLE_TIMEOUT = 100 * 1000000L; //in nanoseconds
+    // The adapters are polled several times within each of their frames to detect frame changes in time.
+    private static final int _CYCLES_PER_FRAME = 5;
+    // The latest frames are kept for the live values of signals, recorded only while read if no frame history is
+    // configured. More than one keeps readers of the latest frame from waiting for the next frame being recorded.
+    private static final int _MIN_FRAME_HISTORY_LENGTH = 2;
+
     private volatile boolean _stopESThread;
     private volatile boolean _stopPMThread;
-    private volatile Statistics _externalSystemStatistics = new Statistics(0, 0, 0, 0, 0, 0);
-    private volatile Statistics _processModelStatistics = new Statistics(0, 0, 0, 0, 0, 0);
-    private final long _maxExecTimeForPM;
-    private final long _maxExecTimeForES;
-
-    private Thread _externalSystemThread;
-    private Thread _processModelThread;
-    private ExternalSystemAdapter _externalSystem;
-    private IProcessModelAdapter _processModel;
-    private ExternalSystemProcedure _externalSystemProcedure;
-    private ProcessModelProcedure _processModelProcedure;
+    private volatile boolean _stopPipelineThread;
+
+    private Thread _pipelineThread;
+    private final ProcessModelRunner[] _processModels;
+    private final ExternalSystemRunner[] _externalSystems;
+    private TransferPipelineProcedure _pipelineProcedure;
     private static Logger _logger = Logger.getLogger(IntegrationExecutive.class);
     private ITransferPipeline _pipeline;
-    private AdapterValueObject _esAdapterVO;
-    private AdapterValueObject _pmAdapterVO;
-    private Timeout _esVarsUpdateTimer = new Timeout(0, _UPDATE_TIMEOUT);
-    private Timeout _pmVarsUpdateTimer = new Timeout(0, _UPDATE_TIMEOUT);
+    private final ITransferPipeline[] _esPipelineTails;
+    private IntegrationContext _context;
+    private final SignalMetadata[] _signals;
+    private final FrameHistory _toESHistory;
+    private final FrameHistory _toPMHistory;
+    private final boolean _frameHistoryKept;
+    private final String _recordingDirectory;
+    private final int _recordingSegmentSize;
+    private SessionRecorder _recorder = null;
+    private final MetricsRegistry _metrics = new MetricsRegistry();
 
 
     /**
@@ -75,40 +94,101 @@ public class IntegrationExecutive {
      */
     public IntegrationExecutive(IProcessModelAdapter pm, ExternalSystemAdapter es, ITransferPipeline pipe,
             SignalMetadata[] smd, GILConfiguration config) {
-        _externalSystem = es;
-        _processModel = pm;
-        IntegrationContext context = new IntegrationContext();
-        _processModelProcedure = new ProcessModelProcedure(_processModel,
-                    es.getOperatingFrequency(), pipe, context,
-                    SignalMetadata.calcBufferSize(SignalMetadata.getSignalsToExternalSystem(smd)), config);
-        _externalSystemProcedure = new ExternalSystemProcedure(_externalSystem, context,
-                SignalMetadata.calcBufferSize(SignalMetadata.getSignalsToProcessModel(smd)), config);
-
-        _externalSystemState = _externalSystem.getState();        
-        _externalSystemStatus = _externalSystem.getStatus();
-        _processModelState = _processModel.getState();
-        _processModelStatus = _processModel.getStatus();
-        _pipeline = pipe;
+        this(pm, new ExternalSystemAdapter[] { es }, new ITransferPipeline[] { null }, pipe, smd, config);
+    }
 
-        if (_externalSystem.reportsProgress()) {
-            _externalSystem.setProgressChangeListener(new IProgressEventListener() {
-                public void progressChanged(ProgressChangedEventArgs args) {
-                    _currentESActivity = args;
-                }
-            });
-        }
+    /**
+     * Initializes this object to integrate several external systems with one process model. All external systems
+     * must have the same operating frequency.
+     * @param pm The adapter facing the process model.
+     * @param es The adapters facing the external systems.
+     * @param esPipelineTails For each external system, the stages feeding process data written to that external
+     * system only, after the data has passed the common transfer pipeline. An element may be null.
+     * @param pipe The transfer pipeline common to all external systems.
+     * @param smd The signal metadata of all signals exchanged.
+     * @param config The GIL configuration.
+     */
+    public IntegrationExecutive(IProcessModelAdapter pm, ExternalSystemAdapter[] es, ITransferPipeline[] esPipelineTails,
+            ITransferPipeline pipe, SignalMetadata[] smd, GILConfiguration config) {
+        this(new IProcessModelAdapter[] { pm }, new SignalMetadata[][] { smd }, es, esPipelineTails, pipe, smd, config);
+    }
 
-        _processModel.setProgressChangeListener(new IProgressEventListener() {
-            public void progressChanged(ProgressChangedEventArgs args) {
-                _currentPMActivity = args;
+    /**
+     * Initializes this object to merge several process models and integrate them with one or more external
+     * systems.
+     * @param pm The adapters facing the process models. Index 0 is the primary process model.
+     * @param pmSignals For each process model, the signals of its partition as returned by
+     * {@link FrameAssembler#partition}.
+     * @see #IntegrationExecutive(IProcessModelAdapter, ExternalSystemAdapter[], ITransferPipeline[],
+     * ITransferPipeline, SignalMetadata[], GILConfiguration)
+     */
+    public IntegrationExecutive(IProcessModelAdapter[] pm, SignalMetadata[][] pmSignals, ExternalSystemAdapter[] es,
+            ITransferPipeline[] esPipelineTails, ITransferPipeline pipe, SignalMetadata[] smd, GILConfiguration config) {
+        if (pm.length != pmSignals.length) {
+            throw new IllegalArgumentException("Expected one signal partition for each process model.");
+        }
+        if (es.length != esPipelineTails.length) {
+            throw new IllegalArgumentException("Expected one pipeline tail for each external system.");
+        }
+        int esOperatingFrequency = es[0].getOperatingFrequency();
+        for (int i = 1; i < es.length; i++) {
+            if (es[i].getOperatingFrequency() != esOperatingFrequency) {
+                throw new IllegalArgumentException("All external systems must have the same operating frequency. "
+                        + es[i].getClass().getSimpleName() + " operates at " + es[i].getOperatingFrequency()
+                        + " Hz while " + es[0].getClass().getSimpleName() + " operates at " + esOperatingFrequency
+                        + " Hz.");
             }
-        });
+        }
+        IntegrationContext context = new IntegrationContext(config.getWakeupSpinTime(), pm.length, es.length);
+        _context = context;
+        _processModels = new ProcessModelRunner[pm.length];
+        for (int i = 0; i < pm.length; i++) {
+            _processModels[i] = new ProcessModelRunner(pm[i], new ProcessModelProcedure(pm[i], esOperatingFrequency,
+                    context, context.processModel(i), i == 0,
+                    SignalMetadata.calcBufferSize(SignalMetadata.getSignalsToExternalSystem(pmSignals[i])), config),
+                    context.processModel(i));
+        }
+        FrameAssembler assembler = null;
+        if (pm.length > 1) {
+            // Each external system may hold one frame pending and one being written.
+            assembler = new FrameAssembler(pmSignals, 2 * es.length + 2, config.getPMAdapterByteOrder());
+        }
+        _pipelineProcedure = new TransferPipelineProcedure(pipe, context, assembler, config);
+        int frameHistoryLength = Math.max(_MIN_FRAME_HISTORY_LENGTH, config.getFrameHistoryLength());
+        int toESFrameSize = SignalMetadata.calcBufferSize(SignalMetadata.getSignalsToExternalSystem(smd));
+        int toPMFrameSize = SignalMetadata.calcBufferSize(SignalMetadata.getSignalsToProcessModel(smd));
+        int maxFrameHistoryLength = FrameHistory.maxCapacity(Math.max(toESFrameSize, toPMFrameSize));
+        if (frameHistoryLength > maxFrameHistoryLength) {
+            throw new IllegalArgumentException("The frame history length of " + frameHistoryLength + " frames exceeds "
+                    + "the maximum of " + maxFrameHistoryLength + " frames of " + Math.max(toESFrameSize, toPMFrameSize)
+                    + " bytes. Please review the configuration parameter frameHistoryLength.");
+        }
+        _toESHistory = new FrameHistory(frameHistoryLength, toESFrameSize);
+        _toPMHistory = new FrameHistory(frameHistoryLength, toPMFrameSize);
+        _pipelineProcedure.setFrameHistories(_toESHistory, _toPMHistory);
+        _frameHistoryKept = config.getFrameHistoryLength() > 0;
+        _toESHistory.setRecording(_frameHistoryKept);
+        _toPMHistory.setRecording(_frameHistoryKept);
+        _externalSystems = new ExternalSystemRunner[es.length];
+        for (int i = 0; i < es.length; i++) {
+            // Only the primary external system reads frames to the process models.
+            _externalSystems[i] = new ExternalSystemRunner(es[i], new ExternalSystemProcedure(es[i], context,
+                    context.externalSystem(i), (i == 0) ? toPMFrameSize : 0,
+                    SignalMetadata.getSignalsToExternalSystem(smd), esPipelineTails[i], config), context.externalSystem(i));
+        }
 
-        _esAdapterVO = createESAdapterValueObject();
-        _pmAdapterVO = createPMAdapterValueObject();
+        for (int i = 0; i < _processModels.length; i++) {
+            _processModels[i].procedure.registerMetrics(_metrics, "index", Integer.toString(i));
+        }
+        for (int i = 0; i < _externalSystems.length; i++) {
+            _externalSystems[i].procedure.registerMetrics(_metrics, "index", Integer.toString(i));
+        }
 
-        _maxExecTimeForPM = (1000 / _processModel.getOperatingFrequency()) / 5;
-        _maxExecTimeForES = (1000 / _externalSystem.getOperatingFrequency()) / 5;
+        _pipeline = pipe;
+        _esPipelineTails = esPipelineTails;
+        _signals = smd;
+        _recordingDirectory = config.getRecordingDirectory();
+        _recordingSegmentSize = config.getRecordingSegmentSize() * 1024 * 1024;
     }
 
     /**
@@ -116,56 +196,142 @@ public class IntegrationExecutive {
      * If allready started this method does nothing.
      */
     public void start() throws IOException {        
-        _externalSystemThread = new Thread(_esRunnable, "GIL-ES");
-        _processModelThread = new Thread(_pmRunnable, "GIL-PM");
+        for (int i = 0; i < _externalSystems.length; i++) {
+            _externalSystems[i].thread = new Thread(_externalSystems[i], (i == 0) ? "GIL-ES" : "GIL-ES-" + i);
+        }
+        for (int i = 0; i < _processModels.length; i++) {
+            _processModels[i].thread = new Thread(_processModels[i], (i == 0) ? "GIL-PM" : "GIL-PM-" + i);
+        }
+        _pipelineThread = new Thread(_pipelineRunnable, "GIL-Pipeline");
         _stopESThread = false;
         _stopPMThread = false;        
+        _stopPipelineThread = false;
+        if (_recordingDirectory.length() > 0) {
+            startRecording();
+        }
         _logger.info("Integration executive started");
-        _externalSystemThread.start();       
-        _processModelThread.start();
+        _pipelineThread.start();
+        for (ExternalSystemRunner es : _externalSystems) {
+            es.thread.start();
+        }
+        for (ProcessModelRunner pm : _processModels) {
+            pm.thread.start();
+        }
     }
 
     public void stop() throws IOException {
         _stopESThread = true;
         _stopPMThread = true;
+        _stopPipelineThread = true;
+        for (ExternalSystemRunner es : _externalSystems) {
+            es.channel.esWakeup.signal();
+        }
+        for (ProcessModelRunner pm : _processModels) {
+            pm.channel.pmWakeup.signal();
+        }
+        _context.pipelineWakeup.signal();
 
         try {
-            _externalSystemThread.join(10000);
-            _processModelThread.join(10000);
+            for (ExternalSystemRunner es : _externalSystems) {
+                es.thread.join(10000);
+            }
+            for (ProcessModelRunner pm : _processModels) {
+                pm.thread.join(10000);
+            }
+            _pipelineThread.join(10000);
         }
         catch (InterruptedException e) {}
 
-        _processModelThread.interrupt();
-        _externalSystemThread.interrupt();
-        _externalSystemThread = null;
-        _processModelThread = null;
-        _externalSystem.disconnect();
-        _externalSystem.tearDown();
-        _processModel.disconnect();
-        _processModel.tearDown();
+        _pipelineThread.interrupt();
+        _pipelineThread = null;
+        if (_recorder != null) {
+            stopRecording();
+        }
+        for (ExternalSystemRunner es : _externalSystems) {
+            es.thread.interrupt();
+            es.thread = null;
+            es.adapter.disconnect();
+            es.adapter.tearDown();
+        }
+        for (ProcessModelRunner pm : _processModels) {
+            pm.thread.interrupt();
+            pm.thread = null;
+            pm.adapter.disconnect();
+            pm.adapter.tearDown();
+        }
+    }
+
+    private void startRecording() throws IOException {
+        String sessionName = "gil-" + new SimpleDateFormat("yyyyMMdd-HHmmss").format(new Date());
+        _recorder = new SessionRecorder(new File(_recordingDirectory), sessionName, _recordingSegmentSize, _signals);
+        _recorder.start();
+        _pipelineProcedure.setSessionRecorder(_recorder);
+        for (ProcessModelRunner pm : _processModels) {
+            pm.procedure.setSessionRecorder(_recorder);
+        }
     }
 
-    private Runnable _esRunnable = new Runnable() {        
+    private void stopRecording() {
+        _pipelineProcedure.setSessionRecorder(null);
+        for (ProcessModelRunner pm : _processModels) {
+            pm.procedure.setSessionRecorder(null);
+        }
+        _recorder.stop();
+        _recorder = null;
+    }
+
+    /**
+     * Runs the communication with one external system and holds the state published from it.
+     */
+    private class ExternalSystemRunner implements Runnable {
+        final ExternalSystemAdapter adapter;
+        final ExternalSystemProcedure procedure;
+        final ExternalSystemChannel channel;
+        final CycleScheduler scheduler;
+        final AdapterValueObject adapterVO;
+        final Timeout varsUpdateTimer = new Timeout(0, _UPDATE_TIMEOUT);
+        Thread thread;
+        volatile int state;
+        volatile SystemStatus status;
+        volatile Statistics statistics = new Statistics(0, 0, 0, 0, 0, 0);
+        volatile ProgressChangedEventArgs activity = new ProgressChangedEventArgs(0, "Not available", true);
+
+        ExternalSystemRunner(ExternalSystemAdapter adapter, ExternalSystemProcedure procedure,
+                ExternalSystemChannel channel) {
+            this.adapter = adapter;
+            this.procedure = procedure;
+            this.channel = channel;
+            state = adapter.getState();
+            status = adapter.getStatus();
+            if (adapter.reportsProgress()) {
+                adapter.setProgressChangeListener(new IProgressEventListener() {
+                    public void progressChanged(ProgressChangedEventArgs args) {
+                        activity = args;
+                    }
+                });
+            }
+            adapterVO = createESAdapterValueObject(adapter);
+            scheduler = CycleScheduler.forFrequency(adapter.getOperatingFrequency(), _CYCLES_PER_FRAME);
+        }
+
         public void run() {
             _logger.debug("External system thread started");
-            _logger.info("ProcessModel operating frequency: " + _processModel.getOperatingFrequency());
-            _logger.info("ExternalSystem operating frequency: " + _externalSystem.getOperatingFrequency());
-            StopWatch stopWatch = new StopWatch();
+            _logger.info("ProcessModel operating frequency: " + _processModels[0].adapter.getOperatingFrequency());
+            _logger.info("ExternalSystem operating frequency: " + adapter.getOperatingFrequency());
             try
             {
+                scheduler.start();
                 while(!_stopESThread) {
-                    stopWatch.start();
-                    _externalSystemProcedure.runOnce(CurrentTime.instance().inMilliseconds());
-                    if (_esVarsUpdateTimer.isTimeout(CurrentTime.instance().inMilliseconds())) {
-                        _externalSystemState = _externalSystemProcedure.getExternalSystemState();
-                        _externalSystemStatus = _externalSystemProcedure.getExternalSystemStatus();
-                        _externalSystemStatistics = _externalSystemProcedure.getStatistics();
-                        _esVarsUpdateTimer.reset(CurrentTime.instance().inMilliseconds());
+                    procedure.runOnce(CurrentTime.instance().inMicroseconds());
+                    procedure.sampleRates(CurrentTime.instance().inNanoseconds());
+                    if (varsUpdateTimer.isTimeout(CurrentTime.instance().inMicroseconds())) {
+                        state = procedure.getExternalSystemState();
+                        status = procedure.getExternalSystemStatus();
+                        statistics = procedure.fillStatistics(new Statistics.Builder()).cycleTiming(scheduler).build();
+                        varsUpdateTimer.reset(CurrentTime.instance().inMicroseconds());
                     }
                     
-                    if (stopWatch.getElapsedMilliseconds() < _maxExecTimeForES) {
-                        Thread.sleep(1);
-                    }                    
+                    scheduler.awaitNextCycle(channel.esWakeup);
                 }
             }
             catch(Exception e) {
@@ -173,27 +339,56 @@ public class IntegrationExecutive {
             }
             _logger.debug("External system thread stopped");
         }
-    };
+    }
+
+    /**
+     * Runs the communication with one process model and holds the state published from it.
+     */
+    private class ProcessModelRunner implements Runnable {
+        final IProcessModelAdapter adapter;
+        final ProcessModelProcedure procedure;
+        final ProcessModelChannel channel;
+        final CycleScheduler scheduler;
+        final AdapterValueObject adapterVO;
+        final Timeout varsUpdateTimer = new Timeout(0, _UPDATE_TIMEOUT);
+        Thread thread;
+        volatile int state;
+        volatile SystemStatus status;
+        volatile Statistics statistics = new Statistics(0, 0, 0, 0, 0, 0);
+        volatile ProgressChangedEventArgs activity = new ProgressChangedEventArgs(0, "Not available", true);
+
+        ProcessModelRunner(IProcessModelAdapter adapter, ProcessModelProcedure procedure,
+                ProcessModelChannel channel) {
+            this.adapter = adapter;
+            this.procedure = procedure;
+            this.channel = channel;
+            state = adapter.getState();
+            status = adapter.getStatus();
+            adapter.setProgressChangeListener(new IProgressEventListener() {
+                public void progressChanged(ProgressChangedEventArgs args) {
+                    activity = args;
+                }
+            });
+            adapterVO = createPMAdapterValueObject(adapter);
+            scheduler = CycleScheduler.forFrequency(adapter.getOperatingFrequency(), _CYCLES_PER_FRAME);
+        }
 
-    private Runnable _pmRunnable = new Runnable() {
         public void run() {
             _logger.debug("Process model thread started");
-            StopWatch stopWatch = new StopWatch();
             try
             {
+                scheduler.start();
                 while(!_stopPMThread) {
-                    stopWatch.start();
-                    _processModelProcedure.runOnce(CurrentTime.instance().inMilliseconds());
-                    if (_pmVarsUpdateTimer.isTimeout(CurrentTime.instance().inMilliseconds())) {
-                        _processModelState = _processModelProcedure.getProcessModelState();
-                        _processModelStatus = _processModelProcedure.getProcessModelStatus();
-                        _processModelStatistics = _processModelProcedure.getStatistics();
-                        _pmVarsUpdateTimer.reset(CurrentTime.instance().inMilliseconds());
+                    procedure.runOnce(CurrentTime.instance().inMicroseconds());
+                    procedure.sampleRates(CurrentTime.instance().inNanoseconds());
+                    if (varsUpdateTimer.isTimeout(CurrentTime.instance().inMicroseconds())) {
+                        state = procedure.getProcessModelState();
+                        status = procedure.getProcessModelStatus();
+                        statistics = procedure.fillStatistics(new Statistics.Builder()).cycleTiming(scheduler).build();
+                        varsUpdateTimer.reset(CurrentTime.instance().inMicroseconds());
                     }
                     
-                    if (stopWatch.getElapsedMilliseconds() < _maxExecTimeForPM) {
-                        Thread.sleep(1);
-                    }
+                    scheduler.awaitNextCycle(channel.pmWakeup);
                 }
             }
             catch(Exception e) {
@@ -201,43 +396,162 @@ public class IntegrationExecutive {
             }
             _logger.debug("Process model thread stopped");
         }
+    }
+
+    private Runnable _pipelineRunnable = new Runnable() {
+        public void run() {
+            _logger.debug("Pipeline thread started");
+            try
+            {
+                while(!_stopPipelineThread) {
+                    _pipelineProcedure.runOnce(CurrentTime.instance().inMicroseconds());
+                    _context.pipelineWakeup.await(_PIPELINE_IDLE_TIMEOUT);
+                }
+            }
+            catch(Exception e) {
+                _logger.fatal("Unexpected failure in pipeline thread", e);
+            }
+            _logger.debug("Pipeline thread stopped");
+        }
     };
 
+    /**
+     * @return The number of external systems integrated with the process model.
+     */
+    public int getExternalSystemCount() {
+        return _externalSystems.length;
+    }
+
     public Statistics getExternalSystemStatistics() {
-        return _externalSystemStatistics;
+        return getExternalSystemStatistics(0);
+    }
+
+    /**
+     * @param index The index of the external system, in the order the adapters were given when this object was
+     * created.
+     */
+    public Statistics getExternalSystemStatistics(int index) {
+        return _externalSystems[index].statistics;
+    }
+
+    /**
+     * @return The number of process models merged into the integration.
+     */
+    public int getProcessModelCount() {
+        return _processModels.length;
     }
 
     public Statistics getProcessModelStatistics() {
-        return _processModelStatistics;
+        return getProcessModelStatistics(0);
+    }
+
+    /**
+     * @param index The index of the process model, in the order the adapters were given when this object was
+     * created.
+     */
+    public Statistics getProcessModelStatistics(int index) {
+        return _processModels[index].statistics;
+    }
+
+    /**
+     * @return The registry of the counters, gauges and timers of the procedures, read live, i.e. not limited to the
+     * update interval of the statistics.
+     */
+    public MetricsRegistry getMetrics() {
+        return _metrics;
     }
 
     public int getExternalSystemState() {
-        return _externalSystemState;
+        return getExternalSystemState(0);
+    }
+
+    public int getExternalSystemState(int index) {
+        return _externalSystems[index].state;
     }
 
     public SystemStatus getExternalSystemStatus() {
-        return _externalSystemStatus;
+        return getExternalSystemStatus(0);
+    }
+
+    public SystemStatus getExternalSystemStatus(int index) {
+        return _externalSystems[index].status;
     }
 
     public int getProcessModelState() {
-        return _processModelState;
+        return getProcessModelState(0);
+    }
+
+    public int getProcessModelState(int index) {
+        return _processModels[index].state;
     }
 
     public SystemStatus getProcessModelStatus() {
-        return _processModelStatus;
+        return getProcessModelStatus(0);
+    }
+
+    public SystemStatus getProcessModelStatus(int index) {
+        return _processModels[index].status;
     }
 
     public ProgressChangedEventArgs getExternalSystemActivity() {
-            return _currentESActivity;
+            return getExternalSystemActivity(0);
+    }
+
+    public ProgressChangedEventArgs getExternalSystemActivity(int index) {
+            return _externalSystems[index].activity;
     }
 
     public ProgressChangedEventArgs getProcessModelActivity() {
-            return _currentPMActivity;
+            return getProcessModelActivity(0);
+    }
+
+    public ProgressChangedEventArgs getProcessModelActivity(int index) {
+            return _processModels[index].activity;
     }
     
+    /**
+     * @return The metadata of all signals exchanged.
+     */
+    public SignalMetadata[] getSignals() {
+        return _signals;
+    }
+
+    /**
+     * @return The history of the frames transferred in the given direction, or null if no history is kept.
+     */
+    public FrameHistory getFrameHistory(DataflowDirection direction) {
+        return _frameHistoryKept ? getLatestFrames(direction) : null;
+    }
+
+    /**
+     * @return The latest frames transferred in the given direction, kept whether a frame history is configured or
+     * not. If no frame history is configured the frames are recorded only while recording is turned on by the
+     * reader, see {@link FrameHistory#setRecording(boolean)}.
+     */
+    public FrameHistory getLatestFrames(DataflowDirection direction) {
+        return (direction == DataflowDirection.ToES) ? _toESHistory : _toPMHistory;
+    }
+
     public StageValueObject[] getTransferPipelineStages() {
+        return createStageValueObjects(_pipeline);
+    }
+
+    /**
+     * @return The stages feeding process data written to the external system with the given index only. Empty if
+     * the external system has no stages of its own.
+     */
+    public StageValueObject[] getExternalSystemPipelineStages(int index) {
+        if (_esPipelineTails[index] == null) {
+            return new StageValueObject[0];
+        }
+        return createStageValueObjects(_esPipelineTails[index]);
+    }
+
+    private static StageValueObject[] createStageValueObjects(ITransferPipeline pipeline) {
         
-        List<IPipelineStage> stages = _pipeline.getStages();
+        List<IPipelineStage> stages = pipeline.getStages();
+        StageTiming[] timings = pipeline.getStageTimings();
+        long now = CurrentTime.instance().inNanoseconds();
         StageValueObject[] sv = new StageValueObject[stages.size()];
         int i = 0;
         for (IPipelineStage stage: stages) {
@@ -247,18 +561,31 @@ public class IntegrationExecutive {
                         String.format("Expected stage %s to return available commands.", stage.getClass().getName()));
             }
 
-            sv[i] = new StageValueObject(i, stage.getClass().getSimpleName(), stage.availableCommands());
+            if (timings != null && i < timings.length) {
+                sv[i] = new StageValueObject(i, stage.getClass().getSimpleName(), stage.availableCommands(),
+                        timings[i].getToES(now), timings[i].getToPM(now));
+            } else {
+                sv[i] = new StageValueObject(i, stage.getClass().getSimpleName(), stage.availableCommands());
+            }
             i++;
         }                
         return sv;
     }
 
     public AdapterValueObject getExternalSystemAdapter() {
-        return _esAdapterVO;
+        return getExternalSystemAdapter(0);
+    }
+
+    public AdapterValueObject getExternalSystemAdapter(int index) {
+        return _externalSystems[index].adapterVO;
     }
 
     public AdapterValueObject getProcessModelAdapter() {
-        return _pmAdapterVO;
+        return getProcessModelAdapter(0);
+    }
+
+    public AdapterValueObject getProcessModelAdapter(int index) {
+        return _processModels[index].adapterVO;
     }
 
     /**
@@ -274,7 +601,18 @@ public class IntegrationExecutive {
      */
     public Map<String, String> invokePipelineStageCommand(int stageSeqNo, String commandID, Map<String, String> parameters)
             throws InterruptedException, ExecutionException {
-        return _processModelProcedure.invokePipelineStageControlCommand(stageSeqNo, commandID, parameters);
+        return _pipelineProcedure.invokeControlCommand(stageSeqNo, commandID, parameters);
+    }
+
+    /**
+     * Schedules the control command with the given command ID on a stage in the transfer pipeline.
+     * This method returns at once.
+     * @return An object providing the map of result values when the command is completed.
+     * @see #invokePipelineStageCommand(int, java.lang.String, java.util.Map)
+     */
+    public AsyncResult<Map<String, String>> schedulePipelineStageCommand(int stageSeqNo, String commandID,
+            Map<String, String> parameters) {
+        return _pipelineProcedure.scheduleControlCommand(stageSeqNo, commandID, parameters);
     }
 
     /**
@@ -289,7 +627,28 @@ public class IntegrationExecutive {
      */
     public Map<String, String> invokeExternalSystemCommand(String commandID, Map<String, String> parameters) 
             throws InterruptedException, ExecutionException {
-        return _externalSystemProcedure.invokeControlCommand(commandID, parameters);
+        return invokeExternalSystemCommand(0, commandID, parameters);
+    }
+
+    /**
+     * Invokes the control command with the given command ID on the external system with the given index.
+     * This method blocks until the command is completed.
+     * @see #invokeExternalSystemCommand(java.lang.String, java.util.Map)
+     */
+    public Map<String, String> invokeExternalSystemCommand(int index, String commandID, Map<String, String> parameters)
+            throws InterruptedException, ExecutionException {
+        return _externalSystems[index].procedure.invokeControlCommand(commandID, parameters);
+    }
+
+    /**
+     * Schedules the control command with the given command ID on the external system with the given index.
+     * This method returns at once.
+     * @return An object providing the map of result values when the command is completed.
+     * @see #invokeExternalSystemCommand(java.lang.String, java.util.Map)
+     */
+    public AsyncResult<Map<String, String>> scheduleExternalSystemCommand(int index, String commandID,
+            Map<String, String> parameters) {
+        return _externalSystems[index].procedure.scheduleControlCommand(commandID, parameters);
     }
     
     /**
@@ -304,22 +663,43 @@ public class IntegrationExecutive {
      */
     public Map<String, String> invokeProcessModelCommand(String commandID, Map<String, String> parameters)
             throws InterruptedException, ExecutionException {
-        return _processModelProcedure.invokeControlCommand(commandID, parameters);
+        return invokeProcessModelCommand(0, commandID, parameters);
+    }
+
+    /**
+     * Invokes the control command with the given command ID on the process model with the given index.
+     * This method blocks until the command is completed.
+     * @see #invokeProcessModelCommand(java.lang.String, java.util.Map)
+     */
+    public Map<String, String> invokeProcessModelCommand(int index, String commandID, Map<String, String> parameters)
+            throws InterruptedException, ExecutionException {
+        return _processModels[index].procedure.invokeControlCommand(commandID, parameters);
+    }
+
+    /**
+     * Schedules the control command with the given command ID on the process model with the given index.
+     * This method returns at once.
+     * @return An object providing the map of result values when the command is completed.
+     * @see #invokeProcessModelCommand(java.lang.String, java.util.Map)
+     */
+    public AsyncResult<Map<String, String>> scheduleProcessModelCommand(int index, String commandID,
+            Map<String, String> parameters) {
+        return _processModels[index].procedure.scheduleControlCommand(commandID, parameters);
     }
 
-    private AdapterValueObject createESAdapterValueObject() {
-        CommandDescriptor[] cmds = _externalSystem.availableControlCommands();
+    private static AdapterValueObject createESAdapterValueObject(ExternalSystemAdapter adapter) {
+        CommandDescriptor[] cmds = adapter.availableControlCommands();
         CommandDescriptor[] cmds2 = new CommandDescriptor[cmds.length + 1];
         System.arraycopy(cmds, 0, cmds2, 1, cmds.length);
         cmds2[0] = new CommandDescriptor("reconnect", "Disconnects (if connected) from the external system and tries to connect.");
-        return new AdapterValueObject(_externalSystem.getClass().getSimpleName(), cmds2);
+        return new AdapterValueObject(adapter.getClass().getSimpleName(), cmds2);
     }
 
-    private AdapterValueObject createPMAdapterValueObject() {
-        CommandDescriptor[] cmds = _processModel.availableControlCommands();
+    private static AdapterValueObject createPMAdapterValueObject(IProcessModelAdapter adapter) {
+        CommandDescriptor[] cmds = adapter.availableControlCommands();
         CommandDescriptor[] cmds2 = new CommandDescriptor[cmds.length + 1];
         System.arraycopy(cmds, 0, cmds2, 1, cmds.length);
         cmds2[0] = new CommandDescriptor("reconnect", "Disconnects (if connected) from the process model and tries to connect.");
-        return new AdapterValueObject(_processModel.getClass().getSimpleName(), cmds2);
+        return new AdapterValueObject(adapter.getClass().getSimpleName(), cmds2);
     }
 }
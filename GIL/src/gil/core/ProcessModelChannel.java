@@ -0,0 +1,49 @@
+/*
+    Copyright (C) 2010 LearningWell AB (www.learningwell.com), Kärnkraftsäkerhet och Utbildning AB (www.ksu.se)
+
+    This file is part of GIL (Generic Integration Layer).
+
+    GIL is free software: you can redistribute it and/or modify
+    it under the terms of the GNU Lesser General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    GIL is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public License
+    along with GIL.  If not, see <http://www.gnu.org/licenses/>.
+*/
+package gil.core;
+
+import gil.common.LatestValueExchanger;
+import gil.common.Wakeup;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The part of the {@link IntegrationContext} that is specific to one process model. Each process model merged
+ * into the integration has a channel of its own, through which its slice of the process data is handed over to
+ * and from the thread running the transfer pipeline. All members are thread safe.
+ *
+ * @author Göran Larsson @ LearningWell AB
+ */
+public class ProcessModelChannel {
+    public final LatestValueExchanger<Data> pendingTransformToES = new LatestValueExchanger<Data>();
+    public final LatestValueExchanger<Data> pendingTransferToPM = new LatestValueExchanger<Data>();
+    public final Wakeup pmWakeup;
+
+    /**
+     * The number of frames to the external systems assembled without a new slice from this process model.
+     * Written by the thread running the transfer pipeline only.
+     */
+    public volatile long laggedFrameCount = 0;
+
+    /**
+     * @param wakeupSpinTime The time in microseconds the waiting thread spins before it is parked.
+     */
+    public ProcessModelChannel(long wakeupSpinTime) {
+        pmWakeup = new Wakeup(wakeupSpinTime, TimeUnit.MICROSECONDS);
+    }
+}
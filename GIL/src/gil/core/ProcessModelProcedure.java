@@ -18,24 +18,28 @@
 */
 package gil.core;
 
-import gil.io.IPipelineStage;
 import gil.common.Result;
 import gil.common.ValueResult;
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.util.Arrays;
 import java.util.HashMap;
-import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ExecutionException;
 import org.apache.log4j.Logger;
 import gil.common.AsyncResult;
-import gil.core.SignalMetadata.DataflowDirection;
+import gil.common.ByteBufferPool;
+import gil.common.CurrentTime;
 import gil.io.IProcessModelAdapter;
 import gil.common.FrequencySubdivider;
 import gil.common.GILConfiguration;
+import gil.common.ICounter;
+import gil.common.IGauge;
 import gil.common.IInvokeable;
 import gil.common.Invoker;
+import gil.common.LatestValueExchanger;
+import gil.common.MetricsRegistry;
+import gil.common.StripedCounter;
 import gil.common.Timeout;
 import gil.core.IProcedure.IState;
 import gil.io.IControlCommandInvokeable;
@@ -51,60 +55,199 @@ import gil.io.IControlCommandInvokeable;
  */
 public class ProcessModelProcedure  {    
     private static Logger _logger = Logger.getLogger(ProcessModelProcedure.class);
+
+    // The frames that may hold a buffer at the same time: one being read from the process model, one pending
+    // transform, one being fed through the transfer pipeline and, shared by each external system, one pending
+    // transfer and one being written. The frame histories and the recorder copy the frames.
+    private static final int _FRAME_POOL_BASE_SIZE = 3;
+    private static final int _FRAME_POOL_SIZE_PER_ES = 2;
     
     private IState _currentState = null;
     
     private final IProcessModelAdapter _pmAdapter;    
     private final FrequencySubdivider _subdivider;
     private final IntegrationContext _context;
-    private final ITransferPipeline _pipeline;
+    private final ProcessModelChannel _channel;
+    private final boolean _isPrimary;
     private final int _valuesBufSize;
     private final GILConfiguration _config;
     private final Timeout _idleTransfer;
-    Invoker _controlCommandInvoker = new Invoker();
+    private final ByteBufferPool _framePool;
+    private final FrameLatency _toPMLatency = new FrameLatency();
+    private final FrameRates _rates = new FrameRates();
+    Invoker _controlCommandInvoker;
+    private SessionRecorder _recorder = null;
 
     private volatile boolean _reconnect = false;
-    private volatile int _droppedProcessModelFrames;
-    private volatile int _dataReadFailureCount;
-    private volatile int _dataWriteFailureCount;
-    private volatile int _commandReadFailureCount;
-    private volatile int _writeFrameCount;
-    private volatile int _readFrameCount;
+    private final StripedCounter _droppedProcessModelFrames = new StripedCounter();
+    private final StripedCounter _dataReadFailureCount = new StripedCounter();
+    private final StripedCounter _dataWriteFailureCount = new StripedCounter();
+    private final StripedCounter _commandReadFailureCount = new StripedCounter();
+    private final StripedCounter _writeFrameCount = new StripedCounter();
+    private final StripedCounter _readFrameCount = new StripedCounter();
 
 
     /**
      * @param pmAdapter The process model boundary class
      * @param esOperatingFrequency The process model operating frequency in Hertz.
-     * @param pipeline The pipeline instance through which process data will be fed.
-     * @param context The context data to be shared between the {@link ExternalSystemProceedure} and the
-     * {@link ProcessModelProcedure}.
+     * @param context The context data to be shared between the {@link ExternalSystemProceedure}, the
+     * {@link ProcessModelProcedure} and the {@link TransferPipelineProcedure}.
      * @param valuesBufSize The number of bytes that must be allocated for signal values read from the process model.
      * @param config Object containing configuration parameters to be used by this object.
      */
     public ProcessModelProcedure(IProcessModelAdapter pmAdapter, int esOperatingFrequency,
-            ITransferPipeline pipeline, IntegrationContext context, int valuesBufSize, GILConfiguration config) {
+            IntegrationContext context, int valuesBufSize, GILConfiguration config) {
+        this(pmAdapter, esOperatingFrequency, context, context.processModel(0), true, valuesBufSize, config);
+    }
+
+    /**
+     * Creates a procedure for one of several process models merged into the integration. Only the primary
+     * process model drives the frame count of the external systems and clears the data pending transfer to them
+     * when connecting. The others only hand over their slice of the process data.
+     * @param channel The channel through which the process data of this process model is handed over.
+     * @param isPrimary true if this is the primary process model.
+     */
+    public ProcessModelProcedure(IProcessModelAdapter pmAdapter, int esOperatingFrequency,
+            IntegrationContext context, ProcessModelChannel channel, boolean isPrimary, int valuesBufSize,
+            GILConfiguration config) {
         _pmAdapter = pmAdapter;
         _context = context;
-        _pipeline = pipeline;
+        _channel = channel;
+        _isPrimary = isPrimary;
         _config = config;
         _subdivider = new FrequencySubdivider(esOperatingFrequency);
-        _idleTransfer = new Timeout(config.getIdleProcessDataTransferInterval());
+        _idleTransfer = new Timeout(config.getIdleProcessDataTransferInterval() * 1000L);
+        _controlCommandInvoker = new Invoker(config.getControlCommandTimeBudgetInMicroseconds() * 1000,
+                config.getControlCommandCountBudget());
         _valuesBufSize = valuesBufSize;
+        int framePoolSize = _FRAME_POOL_BASE_SIZE + _FRAME_POOL_SIZE_PER_ES * context.externalSystemCount();
+        _framePool = new ByteBufferPool(framePoolSize, valuesBufSize, config.getPMAdapterByteOrder());
         _currentState = new DisconnectedState();
     }
 
-    public void runOnce(long currentTimeInMilliseconds) {
-        _currentState = _currentState.handle(currentTimeInMilliseconds);
-        _controlCommandInvoker.executeNextCommandInQueue();
+    /**
+     * Sets the recorder to which the simulator commands read from the process model are handed. Must not be
+     * called while runOnce is running.
+     * @param recorder The recorder, or null if not recorded.
+     */
+    public void setSessionRecorder(SessionRecorder recorder) {
+        _recorder = recorder;
+    }
+
+    /**
+     * Registers the counters, gauges and timers of this procedure, named gil_pm_*.
+     * @param labels Pairs of label names and values telling this procedure from the procedures of other process
+     * models, e.g. "index", "0".
+     */
+    public void registerMetrics(MetricsRegistry registry, String... labels) {
+        registry.registerCounter("gil_pm_frames_read_total", "Frames read from the process model.",
+                _readFrameCount, labels);
+        registry.registerCounter("gil_pm_frames_written_total", "Frames written to the process model.",
+                _writeFrameCount, labels);
+        registry.registerCounter("gil_pm_frames_dropped_total",
+                "Process model frames passed without being read due to overruns.", _droppedProcessModelFrames, labels);
+        registry.registerCounter("gil_pm_read_failures_total", "Failed reads of frames from the process model.",
+                _dataReadFailureCount, labels);
+        registry.registerCounter("gil_pm_write_failures_total", "Failed writes of frames to the process model.",
+                _dataWriteFailureCount, labels);
+        registry.registerCounter("gil_pm_command_read_failures_total",
+                "Failed reads of simulator commands or time from the process model.", _commandReadFailureCount,
+                labels);
+        registry.registerCounter("gil_pm_transform_queue_dropped_total",
+                "Frames read from the process model and dropped while pending transform.", new ICounter() {
+            public long get() {
+                return _channel.pendingTransformToES.getDroppedCount();
+            }
+        }, labels);
+        registry.registerCounter("gil_pm_write_queue_dropped_total",
+                "Frames read from the process model and dropped while pending write to the external systems.",
+                new ICounter() {
+            public long get() {
+                return writeQueueDropCount();
+            }
+        }, labels);
+        registry.registerCounter("gil_pm_buffer_pool_starvation_total",
+                "Frame buffers allocated since the pool was empty.", new ICounter() {
+            public long get() {
+                return _framePool.getStarvationCount();
+            }
+        }, labels);
+        registry.registerGauge("gil_pm_transform_queue_depth", "Frames read pending transform.", new IGauge() {
+            public double getValue() {
+                return _channel.pendingTransformToES.size();
+            }
+        }, labels);
+        registry.registerGauge("gil_pm_frame_buffers_available", "Frame buffers available in the pool.", new IGauge() {
+            public double getValue() {
+                return _framePool.getAvailableCount();
+            }
+        }, labels);
+        registry.registerTimer("gil_pm_frame_latency_seconds",
+                "Time from reading a frame from the external system until written to the process model.",
+                _toPMLatency.getTotal(), labels);
+    }
+
+    public void runOnce(long currentTimeInMicroseconds) {
+        _currentState = _currentState.handle(currentTimeInMicroseconds);
+        _controlCommandInvoker.executeCommandsInQueue();
     }
 
     public IState currentState() {
         return _currentState;
     }
 
+    /**
+     * Samples the counts of this procedure for the rates reported in the statistics, if the sample interval has
+     * elapsed. Shall be called by the thread running this procedure, once every cycle.
+     * @param now The current time in nanoseconds, as given by {@link gil.common.CurrentTime#inNanoseconds()}.
+     */
+    public void sampleRates(long now) {
+        if (_rates.isSampleDue(now)) {
+            _rates.sample(_readFrameCount.get(), _writeFrameCount.get(), droppedFrameCount(),
+                    _dataReadFailureCount.get() + _dataWriteFailureCount.get() + _commandReadFailureCount.get(),
+                    now);
+        }
+    }
+
     public Statistics getStatistics() {
-        return new Statistics(_droppedProcessModelFrames, _commandReadFailureCount,
-                _dataWriteFailureCount, _dataReadFailureCount, _readFrameCount, _writeFrameCount);
+        return fillStatistics(new Statistics.Builder()).build();
+    }
+
+    /**
+     * Fills in the statistics of this procedure.
+     * @return The given builder.
+     */
+    public Statistics.Builder fillStatistics(Statistics.Builder builder) {
+        long transformQueueDropCount = _channel.pendingTransformToES.getDroppedCount();
+        int writeQueueDepth = 0;
+        // The frames pending transfer to the external systems are assembled from the primary process model.
+        for (int i = 0; _isPrimary && i < _context.externalSystemCount(); i++) {
+            writeQueueDepth += _context.externalSystem(i).pendingTransferToES.size();
+        }
+        long writeQueueDropCount = writeQueueDropCount();
+        return builder.frameCounts(_droppedProcessModelFrames.get() + transformQueueDropCount + writeQueueDropCount,
+                _commandReadFailureCount.get(), _dataWriteFailureCount.get(), _dataReadFailureCount.get(),
+                _readFrameCount.get(), _writeFrameCount.get())
+                .bufferPool(_framePool)
+                .transformQueue(_channel.pendingTransformToES.size(), transformQueueDropCount)
+                .writeQueue(writeQueueDepth, writeQueueDropCount)
+                .laggedFrameCount(_channel.laggedFrameCount)
+                .controlCommands(_controlCommandInvoker)
+                .frameLatency(_toPMLatency)
+                .rates(_rates, CurrentTime.instance().inNanoseconds());
+    }
+
+    private long droppedFrameCount() {
+        return _droppedProcessModelFrames.get() + _channel.pendingTransformToES.getDroppedCount()
+                + writeQueueDropCount();
+    }
+
+    private long writeQueueDropCount() {
+        long count = 0;
+        for (int i = 0; _isPrimary && i < _context.externalSystemCount(); i++) {
+            count += _context.externalSystem(i).pendingTransferToES.getDroppedCount();
+        }
+        return count;
     }
 
     public int getProcessModelState() {
@@ -126,32 +269,36 @@ public class ProcessModelProcedure  {
         _reconnect = true;
     }
 
+    /**
+     * Invokes a control command on the process model adapter. This method blocks until the command is completed
+     * and is thread safe.
+     */
     public Map<String, String> invokeControlCommand(final String commandID, final Map<String, String> parameters)
             throws InterruptedException, ExecutionException {
+        return scheduleControlCommand(commandID, parameters).get(); // Block until async operation completes
+    }
+
+    /**
+     * Schedules a control command to be invoked on the process model adapter by a subsequent call to runOnce.
+     * This method returns at once and is thread safe.
+     * @return An object providing the result map when the command is completed.
+     */
+    public AsyncResult<Map<String, String>> scheduleControlCommand(final String commandID,
+            final Map<String, String> parameters) {
         if (commandID.equals("reconnect")) {
             reconnect();
         }
         else {
-            return internalInvokeControlCommand(_pmAdapter, commandID, parameters);
-        }
-        return new HashMap<String, String>();
-    }
-
-    public Map<String, String> invokePipelineStageControlCommand(final int stageSeqNo, final String commandID,
-            final Map<String, String> parameters) throws InterruptedException, ExecutionException {
-
-        final List<IPipelineStage> stages = _pipeline.getStages();
-
-        if ((stageSeqNo < 0) || (stageSeqNo >= stages.size())) {
-            throw new IllegalArgumentException("Invalid pipeline seqNo: " + stageSeqNo);
+            return internalScheduleControlCommand(_pmAdapter, commandID, parameters);
         }
-        return internalInvokeControlCommand(stages.get(stageSeqNo), commandID, parameters);
+        return AsyncResult.done((Map<String, String>) new HashMap<String, String>());
     }
 
-    private Map<String, String> internalInvokeControlCommand(final IControlCommandInvokeable theExecutor, final String commandID, final Map<String, String> parameters) throws ExecutionException, InterruptedException {
-        AsyncResult result = _controlCommandInvoker.schedule(new IInvokeable() {
+    private AsyncResult<Map<String, String>> internalScheduleControlCommand(final IControlCommandInvokeable theExecutor, final String commandID, final Map<String, String> parameters) {
+        AsyncResult<Map<String, String>> result = _controlCommandInvoker.schedule(
+                new IInvokeable<Map<String, String>>() {
 
-            public Object invoke() throws Exception {
+            public Map<String, String> invoke() throws Exception {
                 Command cmd = new Command(commandID, parameters, new SimTime());
                 try {
                     return theExecutor.invokeControlCommand(cmd);
@@ -161,11 +308,25 @@ public class ProcessModelProcedure  {
                 }
             }
         });
-        return (Map<String, String>) result.get(); // Block until async operation completes
+        _channel.pmWakeup.signal();
+        return result;
     }
     
+    private void signalExternalSystems() {
+        for (int i = 0; i < _context.externalSystemCount(); i++) {
+            _context.externalSystem(i).esWakeup.signal();
+        }
+    }
+
+    private static void discardPending(LatestValueExchanger<Data> exchanger) {
+        Data pending = exchanger.poll();
+        if (pending != null) {
+            pending.release();
+        }
+    }
+
     public class DisconnectedState implements IState {
-        public IState handle(long currentTimeInMilliseconds)  {
+        public IState handle(long currentTimeInMicroseconds)  {
             try {
                 if (!_pmAdapter.connect()) {
                     return this;
@@ -175,11 +336,14 @@ public class ProcessModelProcedure  {
                     throw new IOException(result.getErrorDescription());
                 }
                 _subdivider.reset(result.getReturnValue());                
-                _idleTransfer.reset(currentTimeInMilliseconds);
+                _idleTransfer.reset(currentTimeInMicroseconds);
                 _idleTransfer.forceTimeout();
-                synchronized(_context) {
-                    _context.pendingSimCommands.clear();
-                    _context.pendingTransferToES.clear();
+                discardPending(_channel.pendingTransformToES);
+                if (_isPrimary) {
+                    for (int i = 0; i < _context.externalSystemCount(); i++) {
+                        _context.externalSystem(i).pendingSimCommands.clear();
+                        discardPending(_context.externalSystem(i).pendingTransferToES);
+                    }
                 }
                 _reconnect = false;
                 return new ConnectedState();
@@ -192,45 +356,49 @@ public class ProcessModelProcedure  {
     }
 
     public class ConnectedState implements IState {
-        public IState handle(long currentTimeInMilliseconds)  {
+        public IState handle(long currentTimeInMicroseconds)  {
             try {
                 this.readCommandsFromProcessModelAndConditionallyAddAsPendingCommands();
 
                 ValueResult<SimTime> simTimeResult = _pmAdapter.getSimTime();
                 if (!simTimeResult.isSuccess()) {
-                    ++_commandReadFailureCount;
+                    _commandReadFailureCount.increment();
                     _logger.warn("Failure reading process model time: " + simTimeResult.getErrorDescription());
                     return this;
                 }
                 long stepChange = _subdivider.getSystem2TimeStepChange(simTimeResult.getReturnValue());
-                _context.esFrameCount += stepChange;
                 if (stepChange > 0) {
+                    if (_isPrimary) {
+                        _context.esFrameCount += stepChange;
+                        signalExternalSystems();
+                    }
                     this.addPendingTransferToExternalSystem();
                     if (stepChange > 1) {
                         // The process model has advanced more than a single time step since last 
                         // check resulting in lost frames.
-                        _droppedProcessModelFrames += stepChange - 1;
-                        _readFrameCount += stepChange - 1;
+                        _droppedProcessModelFrames.add(stepChange - 1);
+                        _readFrameCount.add(stepChange - 1);
                         _logger.warn(String.format("Dropped %d PM-frame(s) due to PM frame changes.", stepChange - 1));
                     }                    
-                    _idleTransfer.reset(currentTimeInMilliseconds);
+                    _idleTransfer.reset(currentTimeInMicroseconds);
 
                 }
-                else if (_idleTransfer.isTimeout(currentTimeInMilliseconds)) {
+                else if (_idleTransfer.isTimeout(currentTimeInMicroseconds)) {
                     this.addPendingTransferToExternalSystem();
-                    long timeoutCount = _idleTransfer.reschedule(currentTimeInMilliseconds);
+                    long timeoutCount = _idleTransfer.reschedule(currentTimeInMicroseconds);
                     if (timeoutCount > 1) {
                         // More than a single timeout has ocurred since last 
                         // check resulting in lost frames.
-                        _droppedProcessModelFrames += (timeoutCount - 1);
-                        _readFrameCount += (timeoutCount - 1);
+                        _droppedProcessModelFrames.add(timeoutCount - 1);
+                        _readFrameCount.add(timeoutCount - 1);
                         _logger.warn(String.format("Overrun when transferring data. Dropped %d PM-frame(s)", timeoutCount - 1));
                     }                    
                 }
 
 
-                if (_context.pendingTransferToPM.size() > 0) {
-                    this.writeProcessDataToProcessModel();
+                Data valuesToPM = _channel.pendingTransferToPM.poll();
+                if (valuesToPM != null) {
+                    this.writeProcessDataToProcessModel(valuesToPM);
                 }
             }
             catch (IOException ex) {
@@ -246,64 +414,62 @@ public class ProcessModelProcedure  {
         private void readCommandsFromProcessModelAndConditionallyAddAsPendingCommands() throws IOException {
             ValueResult<Command[]> result = _pmAdapter.readSimCommands();
             if (!result.isSuccess()) {
-                ++_commandReadFailureCount;
+                _commandReadFailureCount.increment();
                 _logger.warn("Failure reading commands: " + result.getErrorDescription());
                 return;
             }
             if (result.getReturnValue().length <= 0) {
                 return;
             }
-            synchronized(_context) {
-                _context.pendingSimCommands.addAll(Arrays.asList(result.getReturnValue()));
+            if (_recorder != null) {
+                _recorder.recordCommands(result.getReturnValue());
             }
-        }
-
-        private void writeProcessDataToProcessModel() throws IOException {
-            Data valuesToPM;
-            synchronized (_context) {
-                valuesToPM = _context.pendingTransferToPM.pollLast();
-                _context.pendingTransferToPM.clear();
+            for (int i = 0; i < _context.externalSystemCount(); i++) {
+                _context.externalSystem(i).pendingSimCommands.addAll(Arrays.asList(result.getReturnValue()));
             }
+            signalExternalSystems();
+        }
 
-            if (valuesToPM != null) {
-                _logger.debug("Processing signals transferred to PM");
-                _pipeline.processSignals(valuesToPM.getData(), DataflowDirection.ToPM);
-                _logger.debug("Done processing signals transferred to PM");
-
+        private void writeProcessDataToProcessModel(Data valuesToPM) throws IOException {
+            try {
                 Result result = _pmAdapter.writeSignalData(valuesToPM.getData(), valuesToPM.getOrigin());
                 if (result.isSuccess()) {
-                    ++_writeFrameCount;
+                    _toPMLatency.record(valuesToPM, CurrentTime.instance().inNanoseconds());
+                    _writeFrameCount.increment();
                 } else {
-                    ++_dataWriteFailureCount;
-                    _logger.warn("Failure writing signals: " + result.getErrorDescription());                    
+                    _dataWriteFailureCount.increment();
+                    _logger.warn("Failure writing signals: " + result.getErrorDescription());
                 }
+            } finally {
+                valuesToPM.release();
             }
         }
 
         private void addPendingTransferToExternalSystem() throws IOException {
 
-            // Must allocate direct since the buffer may be used across boundaries to native code (JNI).
-            ByteBuffer valuesBuf = ByteBuffer.allocateDirect(_valuesBufSize);            
-            valuesBuf.order(_config.getPMAdapterByteOrder());
-
-            ValueResult<SimTime> result = _pmAdapter.readSignalData(valuesBuf);
+            ByteBuffer valuesBuf = _framePool.lease();
+            ValueResult<SimTime> result;
+            try {
+                result = _pmAdapter.readSignalData(valuesBuf);
+            } catch (IOException ex) {
+                _framePool.release(valuesBuf);
+                throw ex;
+            }
             if (result.isSuccess()) {
-                synchronized (_context) {
-                    _logger.debug("Processing signals transferred to ES");
-                    _pipeline.processSignals(valuesBuf, DataflowDirection.ToES);
-                    _logger.debug("Done processing signals transferred to ES");
-                    valuesBuf.rewind();
-                    if (!_context.pendingTransferToES.isEmpty()) {
-                        _logger.warn(String.format("Dropped %d PM frames(s) due to still pending transfers.", _context.pendingTransferToES.size()));
-                        _droppedProcessModelFrames += _context.pendingTransferToES.size();
-                        _context.pendingTransferToES.clear();
-                    }
-                    ++_readFrameCount;
-                    _context.pendingTransferToES.add(new Data(valuesBuf, result.getReturnValue()));
+                valuesBuf.rewind();
+                _readFrameCount.increment();
+                Data values = new Data(valuesBuf, result.getReturnValue(), _framePool);
+                values.setReadTime(CurrentTime.instance().inNanoseconds());
+                Data dropped = _channel.pendingTransformToES.offer(values);
+                _context.pipelineWakeup.signal();
+                if (dropped != null) {
+                    _logger.warn("Dropped 1 PM frame due to still pending transform.");
+                    dropped.release();
                 }
             } else {
+                _framePool.release(valuesBuf);
                 _logger.warn("Failure reading signals: " + result.getErrorDescription());
-                ++_dataReadFailureCount;
+                _dataReadFailureCount.increment();
             }
         }
     }
@@ -315,7 +481,7 @@ public class ProcessModelProcedure  {
             _cause = cause;
         }
 
-        public IState handle(long currentTimeInMilliseconds)  {
+        public IState handle(long currentTimeInMicroseconds)  {
             if (_reconnect) {
                 return new DisconnectedState();
             }
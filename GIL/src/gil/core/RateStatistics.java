@@ -0,0 +1,47 @@
+/*
+    Copyright (C) 2010 LearningWell AB (www.learningwell.com), Kärnkraftsäkerhet och Utbildning AB (www.ksu.se)
+
+    This file is part of GIL (Generic Integration Layer).
+
+    GIL is free software: you can redistribute it and/or modify
+    it under the terms of the GNU Lesser General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    GIL is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public License
+    along with GIL.  If not, see <http://www.gnu.org/licenses/>.
+*/
+package gil.core;
+
+/**
+ * Container for the rates of a procedure over a window of time. Rates are given per second.
+ * @author Göran Larsson @ LearningWell AB
+ */
+public class RateStatistics {
+    public RateStatistics(int windowSeconds) {
+        this(windowSeconds, 0, 0, 0, 0);
+    }
+
+    /**
+     * @param failureRate The rate of the failed reads, writes and commands.
+     */
+    public RateStatistics(int windowSeconds, double readFrameRate, double writeFrameRate, double droppedFrameRate,
+            double failureRate) {
+        this.windowSeconds = windowSeconds;
+        this.readFrameRate = readFrameRate;
+        this.writeFrameRate = writeFrameRate;
+        this.droppedFrameRate = droppedFrameRate;
+        this.failureRate = failureRate;
+    }
+
+    public final int windowSeconds;
+    public final double readFrameRate;
+    public final double writeFrameRate;
+    public final double droppedFrameRate;
+    public final double failureRate;
+}
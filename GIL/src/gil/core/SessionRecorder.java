@@ -0,0 +1,416 @@
+/*
+    Copyright (C) 2010 LearningWell AB (www.learningwell.com), Kärnkraftsäkerhet och Utbildning AB (www.ksu.se)
+
+    This file is part of GIL (Generic Integration Layer).
+
+    GIL is free software: you can redistribute it and/or modify
+    it under the terms of the GNU Lesser General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    GIL is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public License
+    along with GIL.  If not, see <http://www.gnu.org/licenses/>.
+*/
+package gil.core;
+
+import gil.core.SignalMetadata.DataflowDirection;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.apache.log4j.Logger;
+
+/**
+ * Records a whole session of transferred process data and simulator commands to binary files, to be replayed
+ * or analysed afterwards.
+ * <p>
+ * Frames and commands are handed to the recorder by the procedures and written to file by a thread of its own,
+ * so recording never blocks the transfer of process data. Frames are copied when handed over, into buffers
+ * owned by the recorder and reused once written, so the recorder never holds on to the pooled buffers of the
+ * procedures. At most a fixed number of frames and commands may be pending. If the recorder falls behind,
+ * further frames and commands are dropped and counted rather than waited for.
+ * <p>
+ * The recording is written to a sequence of segment files named
+ * <code>&lt;sessionName&gt;-&lt;segment number, four digits&gt;.gilrec</code>. Each segment file is allocated at
+ * its full size and memory mapped when created, and a new segment is started when the next record does not fit.
+ * The part of a segment not yet written is zero filled. All numbers in the structure of a segment are big endian.
+ * Each segment is self-describing and starts with a header:
+ * <pre>
+ * int    magic number 0x47494C52 ("GILR")
+ * short  format version, 1
+ * int    segment number, starting at 0
+ * int    size in bytes of the frames to the external systems
+ * int    size in bytes of the frames to the process models
+ * int    signal count, followed by for each signal:
+ *        byte   dataflow direction ({@link SignalMetadata.DataflowDirection} ordinal)
+ *        byte   signal type ({@link SignalMetadata.SignalType} ordinal)
+ *        byte   data type ({@link SignalMetadata.SignalDataType} ordinal)
+ *        int    length
+ *        int    position in the frame of its direction
+ *        string PM signal ID
+ *        string ES signal ID
+ * </pre>
+ * followed by records:
+ * <pre>
+ * byte   record type, 1 = frame to the external systems, 2 = frame to the process models, 3 = simulator command.
+ *        0 marks the end of the records in the segment.
+ * byte   flags, bit 0 set if the frame is little endian, bit 1 set if the record has an origin time
+ * short  origin year
+ * byte   origin month, day of month, hour, minute and second, one byte each
+ * short  origin millisecond
+ * short  origin microsecond
+ * int    payload size in bytes, followed by the payload:
+ *        for a frame, the process data as transferred
+ *        for a command, string command ID, short parameter count and string name and value of each parameter
+ * </pre>
+ * Strings are written as a short byte count followed by the UTF-8 encoded characters.
+ *
+ * @author Göran Larsson @ LearningWell AB
+ */
+public class SessionRecorder {
+    private static Logger _logger = Logger.getLogger(SessionRecorder.class);
+
+    public static final int MAGIC = 0x47494C52;
+    public static final short VERSION = 1;
+    public static final String FILE_SUFFIX = ".gilrec";
+
+    static final byte RECORD_END = 0;
+    static final byte RECORD_TO_ES_FRAME = 1;
+    static final byte RECORD_TO_PM_FRAME = 2;
+    static final byte RECORD_SIM_COMMAND = 3;
+    static final byte FLAG_LITTLE_ENDIAN = 1;
+    static final byte FLAG_HAS_ORIGIN = 2;
+    static final int RECORD_HEADER_SIZE = 17;
+
+    private static final int _QUEUE_CAPACITY = 64;
+    private static final long _POLL_TIMEOUT = 100; // in milliseconds
+
+    private final File _directory;
+    private final String _sessionName;
+    private final int _segmentSize;
+    private final byte[] _signalLayout;
+    private final ArrayBlockingQueue<Entry> _pending = new ArrayBlockingQueue<Entry>(_QUEUE_CAPACITY);
+    // Buffers of written frames to be reused, one queue for each direction since the frame sizes differ.
+    private final ArrayBlockingQueue<ByteBuffer> _spareToESBuffers =
+            new ArrayBlockingQueue<ByteBuffer>(_QUEUE_CAPACITY);
+    private final ArrayBlockingQueue<ByteBuffer> _spareToPMBuffers =
+            new ArrayBlockingQueue<ByteBuffer>(_QUEUE_CAPACITY);
+    private final AtomicLong _droppedCount = new AtomicLong();
+
+    private volatile long _recordedCount = 0;
+    private volatile int _segmentCount = 0;
+    private volatile boolean _stop = false;
+    private volatile boolean _failed = false;
+    private Thread _thread = null;
+    private RandomAccessFile _segmentFile = null;
+    private MappedByteBuffer _segment = null;
+
+    /**
+     * A frame or a command pending to be written.
+     */
+    private static class Entry {
+        final byte type;
+        final ByteBuffer frame;
+        final SimTime origin;
+        final Command command;
+
+        Entry(byte type, ByteBuffer frame, SimTime origin, Command command) {
+            this.type = type;
+            this.frame = frame;
+            this.origin = origin;
+            this.command = command;
+        }
+    }
+
+    /**
+     * @param directory The directory in which the segment files are created. Created if it does not exist.
+     * @param sessionName The name of the session, from which the segment file names are formed.
+     * @param segmentSize The size in bytes of each segment file.
+     * @param signals The metadata of all signals transferred, with their positions in the frames set.
+     */
+    public SessionRecorder(File directory, String sessionName, int segmentSize, SignalMetadata[] signals) {
+        _directory = directory;
+        _sessionName = sessionName;
+        _segmentSize = segmentSize;
+        try {
+            _signalLayout = encodeSignalLayout(signals);
+        } catch (IOException ex) {
+            throw new RuntimeException(ex); // Not thrown when writing to memory.
+        }
+        if (segmentHeaderSize() + RECORD_HEADER_SIZE >= segmentSize) {
+            throw new IllegalArgumentException("A segment size of " + segmentSize + " bytes does not hold the "
+                    + segmentHeaderSize() + " bytes header of the " + signals.length + " signals recorded.");
+        }
+    }
+
+    /**
+     * Returns the file of the given segment of a recorded session.
+     */
+    public static File segmentFile(File directory, String sessionName, int segmentNo) {
+        return new File(directory, sessionName + String.format("-%04d", segmentNo) + FILE_SUFFIX);
+    }
+
+    /**
+     * Creates the first segment file and starts the thread writing the recording.
+     * @throws IOException If the first segment file could not be created.
+     */
+    public void start() throws IOException {
+        if (!_directory.isDirectory() && !_directory.mkdirs()) {
+            throw new IOException("Failed to create the recording directory '" + _directory + "'.");
+        }
+        openSegment();
+        _stop = false;
+        _thread = new Thread(_writer, "GIL-Recorder");
+        _thread.start();
+        _logger.info("Recording session to '" + segmentFile(_directory, _sessionName, 0) + "'.");
+    }
+
+    /**
+     * Writes the frames and commands still pending, closes the recording and stops the writing thread.
+     */
+    public void stop() {
+        _stop = true;
+        try {
+            _thread.join(10000);
+        } catch (InterruptedException ex) {}
+        _thread.interrupt();
+        _thread = null;
+        _logger.info("Recorded " + _recordedCount + " frames and commands in " + _segmentCount
+                + " segment(s). " + _droppedCount.get() + " dropped.");
+    }
+
+    /**
+     * Hands over a frame to be recorded. The frame is copied and the caller keeps ownership of it. Returns at
+     * once. Thread safe.
+     * @param frame A frame of process data. The content from position zero up to the limit is recorded.
+     * @param direction The direction in which the frame is transferred.
+     */
+    public void recordFrame(Data frame, DataflowDirection direction) {
+        byte type = (direction == DataflowDirection.ToES) ? RECORD_TO_ES_FRAME : RECORD_TO_PM_FRAME;
+        ByteBuffer src = frame.getData().duplicate();
+        src.rewind();
+        ByteBuffer copy = spareBuffers(type).poll();
+        if (copy == null || copy.capacity() < src.remaining()) {
+            copy = ByteBuffer.allocate(src.remaining());
+        }
+        copy.clear();
+        copy.order(frame.getData().order());
+        copy.put(src);
+        copy.flip();
+        if (!offer(new Entry(type, copy, frame.getOrigin(), null))) {
+            spareBuffers(type).offer(copy);
+        }
+    }
+
+    /**
+     * Hands over simulator commands to be recorded. Returns at once. Thread safe.
+     */
+    public void recordCommands(Command[] commands) {
+        for (Command command : commands) {
+            offer(new Entry(RECORD_SIM_COMMAND, null, null, command));
+        }
+    }
+
+    /**
+     * @return The number of frames and commands written to the recording.
+     */
+    public long getRecordedCount() {
+        return _recordedCount;
+    }
+
+    /**
+     * @return The number of frames and commands dropped since the recorder had fallen behind or failed.
+     */
+    public long getDroppedCount() {
+        return _droppedCount.get();
+    }
+
+    /**
+     * @return The number of segment files created.
+     */
+    public int getSegmentCount() {
+        return _segmentCount;
+    }
+
+    private boolean offer(Entry entry) {
+        if (!_failed && _pending.offer(entry)) {
+            return true;
+        }
+        if (_droppedCount.getAndIncrement() == 0) {
+            _logger.warn("Recording has fallen behind. Frames and commands are dropped.");
+        }
+        return false;
+    }
+
+    private Runnable _writer = new Runnable() {
+        public void run() {
+            try {
+                while (!_stop || !_pending.isEmpty()) {
+                    Entry entry = _pending.poll(_POLL_TIMEOUT, TimeUnit.MILLISECONDS);
+                    if (entry != null) {
+                        write(entry);
+                    }
+                }
+            } catch (InterruptedException ex) {
+            } finally {
+                closeSegment();
+                Entry entry;
+                while ((entry = _pending.poll()) != null) {
+                    release(entry);
+                    _droppedCount.incrementAndGet();
+                }
+            }
+        }
+    };
+
+    private void write(Entry entry) {
+        try {
+            if (_failed) {
+                _droppedCount.incrementAndGet();
+                return;
+            }
+            ByteBuffer payload;
+            byte flags = 0;
+            SimTime origin;
+            if (entry.frame != null) {
+                payload = entry.frame;
+                origin = entry.origin;
+                if (entry.frame.order() == ByteOrder.LITTLE_ENDIAN) {
+                    flags |= FLAG_LITTLE_ENDIAN;
+                }
+            } else {
+                payload = ByteBuffer.wrap(encodeCommand(entry.command));
+                origin = entry.command.getOrigin();
+            }
+            int recordSize = RECORD_HEADER_SIZE + payload.remaining();
+            if (recordSize > _segment.remaining()) {
+                if (recordSize > _segmentSize - segmentHeaderSize()) {
+                    _logger.error("A record of " + recordSize + " bytes does not fit in a segment and is dropped.");
+                    _droppedCount.incrementAndGet();
+                    return;
+                }
+                closeSegment();
+                openSegment();
+            }
+            if (origin != null) {
+                flags |= FLAG_HAS_ORIGIN;
+            } else {
+                origin = new SimTime(0, 0, 0, 0, 0, 0, 0);
+            }
+            _segment.put(entry.type);
+            _segment.put(flags);
+            _segment.putShort((short)origin.year());
+            _segment.put((byte)origin.month());
+            _segment.put((byte)origin.dayOfMonth());
+            _segment.put((byte)origin.hour());
+            _segment.put((byte)origin.minute());
+            _segment.put((byte)origin.second());
+            _segment.putShort((short)origin.millisecond());
+            _segment.putShort((short)origin.microsecond());
+            _segment.putInt(payload.remaining());
+            _segment.put(payload);
+            ++_recordedCount;
+        } catch (IOException ex) {
+            _logger.error("Failure when writing the recording. Recording is stopped.", ex);
+            _failed = true;
+            _droppedCount.incrementAndGet();
+        } finally {
+            release(entry);
+        }
+    }
+
+    private void release(Entry entry) {
+        if (entry.frame != null) {
+            spareBuffers(entry.type).offer(entry.frame);
+        }
+    }
+
+    private ArrayBlockingQueue<ByteBuffer> spareBuffers(byte type) {
+        return (type == RECORD_TO_ES_FRAME) ? _spareToESBuffers : _spareToPMBuffers;
+    }
+
+    private void openSegment() throws IOException {
+        File file = segmentFile(_directory, _sessionName, _segmentCount);
+        _segmentFile = new RandomAccessFile(file, "rw");
+        _segmentFile.setLength(_segmentSize);
+        _segment = _segmentFile.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, _segmentSize);
+        _segment.putInt(MAGIC);
+        _segment.putShort(VERSION);
+        _segment.putInt(_segmentCount);
+        _segment.put(_signalLayout);
+        ++_segmentCount;
+    }
+
+    private void closeSegment() {
+        if (_segment == null) {
+            return;
+        }
+        _segment.force();
+        _segment = null;
+        try {
+            _segmentFile.close();
+        } catch (IOException ex) {
+            _logger.warn("Failure when closing a recording segment.", ex);
+        }
+        _segmentFile = null;
+    }
+
+    private int segmentHeaderSize() {
+        return 10 + _signalLayout.length;
+    }
+
+    private static byte[] encodeSignalLayout(SignalMetadata[] signals) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(SignalMetadata.calcBufferSize(SignalMetadata.getSignalsToExternalSystem(signals)));
+        out.writeInt(SignalMetadata.calcBufferSize(SignalMetadata.getSignalsToProcessModel(signals)));
+        out.writeInt(signals.length);
+        for (SignalMetadata signal : signals) {
+            out.writeByte(signal.getDataflowDirection().ordinal());
+            out.writeByte(signal.getType().ordinal());
+            out.writeByte(signal.getDataType().ordinal());
+            out.writeInt(signal.getLength());
+            out.writeInt(signal.getBufferPos());
+            writeString(out, signal.getPMSignalID());
+            writeString(out, signal.getESSignalID());
+        }
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    private static byte[] encodeCommand(Command command) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        writeString(out, command.getID());
+        Map<String, String> parameters = command.getParameters();
+        out.writeShort((parameters == null) ? 0 : parameters.size());
+        if (parameters != null) {
+            for (Map.Entry<String, String> parameter : parameters.entrySet()) {
+                writeString(out, parameter.getKey());
+                writeString(out, parameter.getValue());
+            }
+        }
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    private static void writeString(DataOutputStream out, String s) throws IOException {
+        byte[] chars = (s == null) ? new byte[0] : s.getBytes("UTF-8");
+        out.writeShort(chars.length);
+        out.write(chars);
+    }
+}
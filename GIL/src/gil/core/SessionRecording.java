@@ -0,0 +1,254 @@
+/*
+    Copyright (C) 2010 LearningWell AB (www.learningwell.com), Kärnkraftsäkerhet och Utbildning AB (www.ksu.se)
+
+    This file is part of GIL (Generic Integration Layer).
+
+    GIL is free software: you can redistribute it and/or modify
+    it under the terms of the GNU Lesser General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    GIL is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public License
+    along with GIL.  If not, see <http://www.gnu.org/licenses/>.
+*/
+package gil.core;
+
+import gil.common.InvalidFileFormatException;
+import gil.core.SignalMetadata.DataflowDirection;
+import gil.core.SignalMetadata.SignalDataType;
+import gil.core.SignalMetadata.SignalType;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.HashMap;
+
+/**
+ * Reads a session recorded by a {@link SessionRecorder}, record by record in the order they were recorded.
+ * <p>
+ * One segment file at a time is memory mapped. Frames are returned as views of the mapped file, without copying.
+ * <p>
+ * Methods in this object are not thread safe.
+ *
+ * @author Göran Larsson @ LearningWell AB
+ */
+public class SessionRecording {
+
+    public static enum RecordType {
+        ToESFrame,
+        ToPMFrame,
+        SimCommand
+    }
+
+    /**
+     * A frame or a simulator command read from the recording.
+     */
+    public static class Record {
+        public final RecordType type;
+        /** The origin time of the record, or null if recorded without one. */
+        public final SimTime origin;
+        /** The process data of a frame record, in the byte order it was recorded in. null for a command record. */
+        public final ByteBuffer frame;
+        /** The command of a command record. null for a frame record. */
+        public final Command command;
+
+        Record(RecordType type, SimTime origin, ByteBuffer frame, Command command) {
+            this.type = type;
+            this.origin = origin;
+            this.frame = frame;
+            this.command = command;
+        }
+    }
+
+    private final File _directory;
+    private final String _sessionName;
+    private final int _segmentCount;
+    private SignalMetadata[] _signals;
+    private int _toESFrameSize;
+    private int _toPMFrameSize;
+    private int _currentSegmentNo = -1;
+    private MappedByteBuffer _segment = null;
+
+    /**
+     * @param directory The directory holding the segment files of the recording.
+     * @param sessionName The name the session was recorded with.
+     * @throws IOException If the first segment does not exist or is not a valid recording.
+     */
+    public SessionRecording(File directory, String sessionName) throws IOException {
+        _directory = directory;
+        _sessionName = sessionName;
+        int count = 0;
+        while (SessionRecorder.segmentFile(directory, sessionName, count).isFile()) {
+            ++count;
+        }
+        if (count == 0) {
+            throw new IOException("No recording '" + sessionName + "' found in '" + directory + "'.");
+        }
+        _segmentCount = count;
+        openSegment(0);
+    }
+
+    /**
+     * @return The metadata of the signals recorded, with their positions in the frames set.
+     */
+    public SignalMetadata[] getSignals() {
+        return _signals;
+    }
+
+    public int getToESFrameSize() {
+        return _toESFrameSize;
+    }
+
+    public int getToPMFrameSize() {
+        return _toPMFrameSize;
+    }
+
+    public int getSegmentCount() {
+        return _segmentCount;
+    }
+
+    /**
+     * Reads the next record.
+     * @return The next record, or null if the end of the recording is reached. A returned frame is valid until
+     * the recording is rewound or closed.
+     * @throws IOException If a segment file is not a valid recording.
+     */
+    public Record next() throws IOException {
+        try {
+            while (true) {
+                if (_segment == null) {
+                    return null;
+                }
+                if (_segment.remaining() > 0) {
+                    byte type = _segment.get();
+                    if (type != SessionRecorder.RECORD_END) {
+                        return readRecord(type);
+                    }
+                }
+                if (_currentSegmentNo + 1 >= _segmentCount) {
+                    _segment = null;
+                    return null;
+                }
+                openSegment(_currentSegmentNo + 1);
+            }
+        } catch (BufferUnderflowException ex) {
+            throw new InvalidFileFormatException("Unexpected end of recording segment '" + currentSegmentFile() + "'.");
+        }
+    }
+
+    /**
+     * Moves back to the first record of the recording.
+     */
+    public void rewind() throws IOException {
+        openSegment(0);
+    }
+
+    /**
+     * Releases the mapped segment. The recording must not be read after it is closed.
+     */
+    public void close() {
+        _segment = null;
+    }
+
+    private Record readRecord(byte type) throws IOException {
+        byte flags = _segment.get();
+        SimTime origin = new SimTime(_segment.getShort(), _segment.get(), _segment.get(), _segment.get(),
+                _segment.get(), _segment.get(), _segment.getShort(), _segment.getShort());
+        if ((flags & SessionRecorder.FLAG_HAS_ORIGIN) == 0) {
+            origin = null;
+        }
+        int size = _segment.getInt();
+        if (size < 0 || size > _segment.remaining()) {
+            throw new InvalidFileFormatException("Invalid record size " + size + " in recording segment '"
+                    + currentSegmentFile() + "'.");
+        }
+        ByteBuffer payload = _segment.slice();
+        payload.limit(size);
+        _segment.position(_segment.position() + size);
+
+        switch (type) {
+            case SessionRecorder.RECORD_TO_ES_FRAME:
+            case SessionRecorder.RECORD_TO_PM_FRAME:
+                payload.order(((flags & SessionRecorder.FLAG_LITTLE_ENDIAN) != 0) ?
+                    ByteOrder.LITTLE_ENDIAN : ByteOrder.BIG_ENDIAN);
+                return new Record((type == SessionRecorder.RECORD_TO_ES_FRAME) ? RecordType.ToESFrame :
+                    RecordType.ToPMFrame, origin, payload, null);
+            case SessionRecorder.RECORD_SIM_COMMAND:
+                String id = readString(payload);
+                int count = payload.getShort() & 0xFFFF;
+                HashMap<String, String> parameters = new HashMap<String, String>();
+                for (int i = 0; i < count; i++) {
+                    String name = readString(payload);
+                    parameters.put(name, readString(payload));
+                }
+                return new Record(RecordType.SimCommand, origin, null,
+                        new Command(id, parameters, (origin != null) ? origin : new SimTime()));
+            default:
+                throw new InvalidFileFormatException("Unknown record type " + type + " in recording segment '"
+                        + currentSegmentFile() + "'.");
+        }
+    }
+
+    private void openSegment(int segmentNo) throws IOException {
+        File file = SessionRecorder.segmentFile(_directory, _sessionName, segmentNo);
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            _segment = raf.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, raf.length());
+        } finally {
+            raf.close();
+        }
+        _currentSegmentNo = segmentNo;
+        try {
+            readHeader();
+        } catch (BufferUnderflowException ex) {
+            throw new InvalidFileFormatException("Unexpected end of recording segment '" + file + "'.");
+        }
+    }
+
+    private void readHeader() throws IOException {
+        if (_segment.getInt() != SessionRecorder.MAGIC) {
+            throw new InvalidFileFormatException("'" + currentSegmentFile() + "' is not a GIL recording.");
+        }
+        short version = _segment.getShort();
+        if (version != SessionRecorder.VERSION) {
+            throw new InvalidFileFormatException("Unsupported recording format version " + version + " in '"
+                    + currentSegmentFile() + "'.");
+        }
+        _segment.getInt(); // The segment number
+        _toESFrameSize = _segment.getInt();
+        _toPMFrameSize = _segment.getInt();
+        SignalMetadata[] signals = new SignalMetadata[_segment.getInt()];
+        for (int i = 0; i < signals.length; i++) {
+            DataflowDirection direction = DataflowDirection.values()[_segment.get()];
+            SignalType type = SignalType.values()[_segment.get()];
+            SignalDataType dataType = SignalDataType.values()[_segment.get()];
+            int length = _segment.getInt();
+            int pos = _segment.getInt();
+            String pmSignalID = readString(_segment);
+            String esSignalID = readString(_segment);
+            signals[i] = new SignalMetadata(type, dataType, length, direction, pmSignalID, esSignalID, "",
+                    new HashMap<String, String>());
+            signals[i].setBufferPos(pos);
+        }
+        _signals = signals;
+    }
+
+    private File currentSegmentFile() {
+        return SessionRecorder.segmentFile(_directory, _sessionName, _currentSegmentNo);
+    }
+
+    private static String readString(ByteBuffer buf) throws IOException {
+        byte[] chars = new byte[buf.getShort() & 0xFFFF];
+        buf.get(chars);
+        return new String(chars, "UTF-8");
+    }
+}
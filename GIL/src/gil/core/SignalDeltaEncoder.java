@@ -0,0 +1,127 @@
+/*
+    Copyright (C) 2010 LearningWell AB (www.learningwell.com), Kärnkraftsäkerhet och Utbildning AB (www.ksu.se)
+
+    This file is part of GIL (Generic Integration Layer).
+
+    GIL is free software: you can redistribute it and/or modify
+    it under the terms of the GNU Lesser General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    GIL is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public License
+    along with GIL.  If not, see <http://www.gnu.org/licenses/>.
+*/
+package gil.core;
+
+import java.nio.ByteBuffer;
+import java.util.BitSet;
+
+/**
+ * Extracts the signals that have changed since the previous frame of process data.
+ * <p>
+ * The encoder keeps a copy of the previously encoded frame. Each call to encode compares the new frame signal by
+ * signal with the previous one and packs the values of the changed signals, in signal order, into a separate buffer.
+ * A bitmap tells which signals have changed; bit n corresponds to element n in the signal metadata array given
+ * when this object was created. The first frame encoded, and the first frame after a reset, is reported as
+ * changed in all signals.
+ * <p>
+ * Methods in this object are not thread safe.
+ *
+ * @author Göran Larsson @ LearningWell AB
+ */
+public class SignalDeltaEncoder {
+    private final int[] _positions;
+    private final int[] _sizes;
+    private final byte[] _previous;
+    private final byte[] _current;
+    private final ByteBuffer _changedValues;
+    private final BitSet _changedSignals;
+    private boolean _hasPrevious = false;
+
+    /**
+     * @param signals The metadata of the signals contained in each frame to be encoded.
+     */
+    public SignalDeltaEncoder(SignalMetadata[] signals) {
+        _positions = new int[signals.length];
+        _sizes = new int[signals.length];
+        int pos = 0;
+        for (int i = 0; i < signals.length; i++) {
+            _positions[i] = (signals[i].getBufferPos() >= 0) ? signals[i].getBufferPos() : pos;
+            _sizes[i] = signals[i].getBufferSize();
+            pos = _positions[i] + _sizes[i];
+        }
+        int frameSize = SignalMetadata.calcBufferSize(signals);
+        _previous = new byte[frameSize];
+        _current = new byte[frameSize];
+        // Must allocate direct since the buffer may be used across boundaries to native code (JNI).
+        _changedValues = ByteBuffer.allocateDirect(frameSize);
+        _changedSignals = new BitSet(signals.length);
+    }
+
+    /**
+     * Compares the given frame with the previously encoded frame. The result is available through
+     * {@link #getChangedValues()} and {@link #getChangedSignals()} until the next call to this method.
+     * @param frame A frame of process data. The content from position zero is encoded and the position of the
+     * buffer is left unchanged. The buffer holding the changed values is set to the byte order of the frame.
+     * @return The number of changed signals.
+     */
+    public int encode(ByteBuffer frame) {
+        ByteBuffer src = frame.duplicate();
+        src.clear();
+        src.get(_current, 0, _current.length);
+
+        _changedSignals.clear();
+        _changedValues.clear();
+        _changedValues.order(frame.order());
+        for (int i = 0; i < _positions.length; i++) {
+            int pos = _positions[i];
+            int size = _sizes[i];
+            if (!_hasPrevious || !rangeEquals(pos, size)) {
+                _changedSignals.set(i);
+                _changedValues.put(_current, pos, size);
+                System.arraycopy(_current, pos, _previous, pos, size);
+            }
+        }
+        _changedValues.flip();
+        _hasPrevious = true;
+        return _changedSignals.cardinality();
+    }
+
+    /**
+     * Forgets the previously encoded frame, making the next frame encoded to be reported as changed in all
+     * signals. Shall be called when the receiver of the changed signals may have lost track of previous values.
+     */
+    public void reset() {
+        _hasPrevious = false;
+    }
+
+    /**
+     * @return The values of the signals changed in the last encoded frame, packed in signal order. The buffer is
+     * owned by this object and is overwritten by the next call to encode.
+     */
+    public ByteBuffer getChangedValues() {
+        return _changedValues;
+    }
+
+    /**
+     * @return The bitmap telling which signals changed in the last encoded frame. The bitmap is owned by this
+     * object and is overwritten by the next call to encode.
+     */
+    public BitSet getChangedSignals() {
+        return _changedSignals;
+    }
+
+    private boolean rangeEquals(int pos, int size) {
+        for (int i = pos; i < pos + size; i++) {
+            if (_current[i] != _previous[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
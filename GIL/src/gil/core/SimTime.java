@@ -39,8 +39,19 @@ public class SimTime implements Cloneable {
     private final int _minute;
     private final int _second;
     private final int _millisecond;
+    private final int _microsecond;
 
     public SimTime(int year, int month, int dayOfMonth, int hour, int minute, int second, int millisecond)
+    {
+        this(year, month, dayOfMonth, hour, minute, second, millisecond, 0);
+    }
+
+    /**
+     * Constructs a time with sub millisecond resolution, needed by process models running above 1 kHz.
+     * @param microsecond The microseconds within the given millisecond, 0 - 999.
+     */
+    public SimTime(int year, int month, int dayOfMonth, int hour, int minute, int second, int millisecond,
+            int microsecond)
     {
         _year = year;
         _month = month;
@@ -49,6 +60,7 @@ public class SimTime implements Cloneable {
         _minute = minute;
         _second = second;
         _millisecond = millisecond;
+        _microsecond = microsecond;
     }
 
     public SimTime() {
@@ -64,20 +76,43 @@ public class SimTime implements Cloneable {
         }
     }
 
+    /**
+     * Formats the time as "yyyy-MM-dd HH:mm:ss.SSS". Three more digits with the microseconds are appended when
+     * they are not zero.
+     */
     @Override
     public String toString() {
-        return String.format("%d-%02d-%02d %02d:%02d:%02d.%03d", _year, _month, _dayOfMonth,
+        String text = String.format("%d-%02d-%02d %02d:%02d:%02d.%03d", _year, _month, _dayOfMonth,
                 _hour, _minute, _second, _millisecond);
+        if (_microsecond != 0) {
+            text += String.format("%03d", _microsecond);
+        }
+        return text;
     }
 
+    /**
+     * Parses a time in the format given by {@link #toString()}, with or without the digits of the microseconds.
+     */
     public static SimTime parse(String timeStr) throws ParseException {
+        int microsecond = 0;
+        int fractionStart = timeStr.lastIndexOf('.') + 1;
+        if (fractionStart > 0 && timeStr.length() - fractionStart == 6) {
+            for (int i = timeStr.length() - 3; i < timeStr.length(); i++) {
+                char digit = timeStr.charAt(i);
+                if (digit < '0' || digit > '9') {
+                    throw new ParseException("Unparseable date: \"" + timeStr + "\"", i);
+                }
+                microsecond = microsecond * 10 + (digit - '0');
+            }
+            timeStr = timeStr.substring(0, timeStr.length() - 3);
+        }
         SimpleDateFormat sdf = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss.SSS");
         Date d = sdf.parse(timeStr);
         Calendar c = Calendar.getInstance();
         c.setTime(d);
 
         return new SimTime(c.get(Calendar.YEAR), c.get(Calendar.MONTH) + 1, c.get(Calendar.DAY_OF_MONTH), c.get(Calendar.HOUR_OF_DAY),
-                c.get(Calendar.MINUTE), c.get(Calendar.SECOND),c.get(Calendar.MILLISECOND));
+                c.get(Calendar.MINUTE), c.get(Calendar.SECOND),c.get(Calendar.MILLISECOND), microsecond);
     }
     
     public int year() {
@@ -107,4 +142,11 @@ public class SimTime implements Cloneable {
     public int millisecond() {
         return _millisecond;
     }
+
+    /**
+     * Returns the microseconds within the millisecond. Zero unless the time has sub millisecond resolution.
+     */
+    public int microsecond() {
+        return _microsecond;
+    }
 }
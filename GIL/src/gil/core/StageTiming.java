@@ -0,0 +1,69 @@
+/*
+    Copyright (C) 2010 LearningWell AB (www.learningwell.com), Kärnkraftsäkerhet och Utbildning AB (www.ksu.se)
+
+    This file is part of GIL (Generic Integration Layer).
+
+    GIL is free software: you can redistribute it and/or modify
+    it under the terms of the GNU Lesser General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    GIL is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public License
+    along with GIL.  If not, see <http://www.gnu.org/licenses/>.
+*/
+package gil.core;
+
+import gil.common.LatencyHistogram;
+import gil.common.RollingLatencyHistogram;
+import gil.core.SignalMetadata.DataflowDirection;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Records the time a transfer pipeline stage takes to process each frame, in each direction, over the last
+ * {@value #WINDOW_SECONDS} seconds.
+ * <p>
+ * The record method must be called from a single thread. The get methods are thread safe.
+ *
+ * @author Göran Larsson @ LearningWell AB
+ */
+public class StageTiming {
+    public static final int WINDOW_SECONDS = 60;
+    private static final int _SLOT_COUNT = 6;
+
+    private final RollingLatencyHistogram _toES = new RollingLatencyHistogram(
+            TimeUnit.SECONDS.toNanos(WINDOW_SECONDS), _SLOT_COUNT);
+    private final RollingLatencyHistogram _toPM = new RollingLatencyHistogram(
+            TimeUnit.SECONDS.toNanos(WINDOW_SECONDS), _SLOT_COUNT);
+
+    /**
+     * @param direction The direction of the frame processed.
+     * @param durationNanos The time in nanoseconds the stage took to process the frame.
+     * @param now The current time in nanoseconds, as given by {@link gil.common.CurrentTime#inNanoseconds()}.
+     */
+    public void record(DataflowDirection direction, long durationNanos, long now) {
+        if (direction == DataflowDirection.ToES) {
+            _toES.record(durationNanos, now);
+        } else {
+            _toPM.record(durationNanos, now);
+        }
+    }
+
+    /**
+     * @return The processing times of frames to the external systems within the window ending now.
+     */
+    public LatencyHistogram getToES(long now) {
+        return _toES.getSnapshot(now);
+    }
+
+    /**
+     * @return The processing times of frames to the process models within the window ending now.
+     */
+    public LatencyHistogram getToPM(long now) {
+        return _toPM.getSnapshot(now);
+    }
+}
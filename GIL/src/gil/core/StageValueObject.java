@@ -18,6 +18,8 @@
 */
 package gil.core;
 
+import gil.common.LatencyHistogram;
+
 /**
  *
  * @author Göran Larsson @ LearningWell AB
@@ -27,12 +29,25 @@ public class StageValueObject {
     private final int _seqNo;
     private final String _name;
     private final CommandDescriptor[] _availableCommands;
+    private final LatencyHistogram _toESTimes;
+    private final LatencyHistogram _toPMTimes;
 
             
     public StageValueObject(int seqNo, String name, CommandDescriptor[] availableCommands) {
+        this(seqNo, name, availableCommands, null, null);
+    }
+
+    /**
+     * @param toESTimes The processing times of frames to the external systems, or null if not available.
+     * @param toPMTimes The processing times of frames to the process models, or null if not available.
+     */
+    public StageValueObject(int seqNo, String name, CommandDescriptor[] availableCommands,
+            LatencyHistogram toESTimes, LatencyHistogram toPMTimes) {
         _seqNo = seqNo;
         _name = name;
         _availableCommands = availableCommands;
+        _toESTimes = toESTimes;
+        _toPMTimes = toPMTimes;
     }
 
     public CommandDescriptor[] availableCommands() {
@@ -50,4 +65,20 @@ public class StageValueObject {
     public String name() {
         return _name;
     }
+
+    /**
+     * @return The processing times of frames to the external systems within the last
+     * {@value StageTiming#WINDOW_SECONDS} seconds, or null if not available.
+     */
+    public LatencyHistogram toESTimes() {
+        return _toESTimes;
+    }
+
+    /**
+     * @return The processing times of frames to the process models within the last
+     * {@value StageTiming#WINDOW_SECONDS} seconds, or null if not available.
+     */
+    public LatencyHistogram toPMTimes() {
+        return _toPMTimes;
+    }
 }
@@ -18,26 +18,259 @@
 */
 package gil.core;
 
+import gil.common.ByteBufferPool;
+import gil.common.CycleScheduler;
+import gil.common.Invoker;
+import gil.common.LatencyHistogram;
+import gil.common.LatencyRecorder;
+
 /**
  * Container for statistics data
  * @author Göran Larsson @ LearningWell AB
  */
     public class Statistics {
-        public Statistics(int droppedFrames, int commandFailureCount,
-                int dataWriteFailureCount, int dataReadFailureCount, int readFrameCount, int writeFrameCount) {
-
-            this.droppedFrames = droppedFrames;
-            this.commandFailureCount = commandFailureCount;            
-            this.dataWriteFailureCount = dataWriteFailureCount;
-            this.dataReadFailureCount = dataReadFailureCount;
-            this.dataReadCount = readFrameCount;
-            this.dataWriteCount = writeFrameCount;
+
+        /**
+         * Assembles the statistics of a procedure and the thread running it. Each part is filled in once by the
+         * object owning the data, and the statistics are then created by {@link #build()}. Times are given in
+         * microseconds. Parts not filled in are zero.
+         */
+        public static class Builder {
+            private long droppedFrames;
+            private long commandFailureCount;
+            private long dataWriteFailureCount;
+            private long dataReadFailureCount;
+            private long dataReadCount;
+            private long dataWriteCount;
+            private int bufferPoolCapacity;
+            private int bufferPoolAvailable;
+            private long bufferPoolStarvationCount;
+            private int transformQueueDepth;
+            private long transformQueueDropCount;
+            private int writeQueueDepth;
+            private long writeQueueDropCount;
+            private long laggedFrameCount;
+            private long commandBatchCount;
+            private long meanCommandBatchLatency;
+            private long maxCommandBatchLatency;
+            private int controlCommandQueueDepth;
+            private long controlCommandCount;
+            private long meanControlCommandWait;
+            private long maxControlCommandWait;
+            private long cycleCount;
+            private long cycleOverrunCount;
+            private long meanCycleLateness;
+            private long maxCycleLateness;
+            private long maxCycleJitter;
+            private long frameLatencyCount;
+            private long frameLatencyP50;
+            private long frameLatencyP99;
+            private long frameLatencyP999;
+            private long maxFrameLatency;
+            private long transformLatencyP99;
+            private long handOverLatencyP99;
+            private long writeLatencyP99;
+            private RateStatistics ratesLastSecond = new RateStatistics(1);
+            private RateStatistics ratesLast10Seconds = new RateStatistics(10);
+            private RateStatistics ratesLastMinute = new RateStatistics(60);
+
+            public Builder frameCounts(long droppedFrames, long commandFailureCount, long dataWriteFailureCount,
+                    long dataReadFailureCount, long readFrameCount, long writeFrameCount) {
+                this.droppedFrames = droppedFrames;
+                this.commandFailureCount = commandFailureCount;
+                this.dataWriteFailureCount = dataWriteFailureCount;
+                this.dataReadFailureCount = dataReadFailureCount;
+                this.dataReadCount = readFrameCount;
+                this.dataWriteCount = writeFrameCount;
+                return this;
+            }
+
+            public Builder bufferPool(ByteBufferPool pool) {
+                bufferPoolCapacity = pool.getCapacity();
+                bufferPoolAvailable = pool.getAvailableCount();
+                bufferPoolStarvationCount = pool.getStarvationCount();
+                return this;
+            }
+
+            /**
+             * @param depth The number of frames pending transform by the transfer pipeline.
+             * @param dropCount The number of frames dropped while pending transform.
+             */
+            public Builder transformQueue(int depth, long dropCount) {
+                transformQueueDepth = depth;
+                transformQueueDropCount = dropCount;
+                return this;
+            }
+
+            /**
+             * @param depth The number of frames pending transfer to the other side.
+             * @param dropCount The number of frames dropped while pending transfer.
+             */
+            public Builder writeQueue(int depth, long dropCount) {
+                writeQueueDepth = depth;
+                writeQueueDropCount = dropCount;
+                return this;
+            }
+
+            /**
+             * @param count The number of frames to the external systems assembled without new process data from a
+             * process model merged with other process models.
+             */
+            public Builder laggedFrameCount(long count) {
+                laggedFrameCount = count;
+                return this;
+            }
+
+            /**
+             * Fills in the latency of the batches of simulator commands executed.
+             */
+            public Builder commandBatchLatency(LatencyRecorder latency) {
+                commandBatchCount = latency.getCount();
+                meanCommandBatchLatency = latency.getMeanNanos() / 1000;
+                maxCommandBatchLatency = latency.getMaxNanos() / 1000;
+                return this;
+            }
+
+            /**
+             * Fills in the queue depth and the wait times of the control commands executed by the thread.
+             */
+            public Builder controlCommands(Invoker controlCommandInvoker) {
+                controlCommandQueueDepth = controlCommandInvoker.getQueueDepth();
+                controlCommandCount = controlCommandInvoker.getWaitTimes().getCount();
+                meanControlCommandWait = controlCommandInvoker.getWaitTimes().getMeanNanos() / 1000;
+                maxControlCommandWait = controlCommandInvoker.getWaitTimes().getMaxNanos() / 1000;
+                return this;
+            }
+
+            /**
+             * Fills in the timing statistics of the cycle scheduler pacing the thread.
+             */
+            public Builder cycleTiming(CycleScheduler scheduler) {
+                cycleCount = scheduler.getCycleCount();
+                cycleOverrunCount = scheduler.getOverrunCount();
+                meanCycleLateness = scheduler.getMeanLatenessNanos() / 1000;
+                maxCycleLateness = scheduler.getMaxLatenessNanos() / 1000;
+                maxCycleJitter = scheduler.getMaxJitterNanos() / 1000;
+                return this;
+            }
+
+            /**
+             * Fills in the latency of the frames written.
+             */
+            public Builder frameLatency(FrameLatency latency) {
+                frameLatencyCount = latency.getTotal().getCount();
+                frameLatencyP50 = latency.getTotal().getPercentileNanos(50) / 1000;
+                frameLatencyP99 = latency.getTotal().getPercentileNanos(99) / 1000;
+                frameLatencyP999 = latency.getTotal().getPercentileNanos(99.9) / 1000;
+                maxFrameLatency = latency.getTotal().getMaxNanos() / 1000;
+                transformLatencyP99 = p99(latency.getTransform());
+                handOverLatencyP99 = p99(latency.getHandOver());
+                writeLatencyP99 = p99(latency.getWrite());
+                return this;
+            }
+
+            /**
+             * Fills in the rates over the last second, the last ten seconds and the last minute.
+             * @param now The current time in nanoseconds, as given by
+             * {@link gil.common.CurrentTime#inNanoseconds()}.
+             */
+            public Builder rates(FrameRates rates, long now) {
+                ratesLastSecond = rates.getRates(1, now);
+                ratesLast10Seconds = rates.getRates(10, now);
+                ratesLastMinute = rates.getRates(60, now);
+                return this;
+            }
+
+            public Statistics build() {
+                return new Statistics(this);
+            }
+
+            private static long p99(LatencyHistogram histogram) {
+                return histogram.getPercentileNanos(99) / 1000;
+            }
+        }
+
+        public Statistics(long droppedFrames, long commandFailureCount,
+                long dataWriteFailureCount, long dataReadFailureCount, long readFrameCount, long writeFrameCount) {
+            this(new Builder().frameCounts(droppedFrames, commandFailureCount, dataWriteFailureCount,
+                    dataReadFailureCount, readFrameCount, writeFrameCount));
+        }
+
+        private Statistics(Builder builder) {
+            this.droppedFrames = builder.droppedFrames;
+            this.commandFailureCount = builder.commandFailureCount;
+            this.dataWriteFailureCount = builder.dataWriteFailureCount;
+            this.dataReadFailureCount = builder.dataReadFailureCount;
+            this.dataReadCount = builder.dataReadCount;
+            this.dataWriteCount = builder.dataWriteCount;
+            this.bufferPoolCapacity = builder.bufferPoolCapacity;
+            this.bufferPoolAvailable = builder.bufferPoolAvailable;
+            this.bufferPoolStarvationCount = builder.bufferPoolStarvationCount;
+            this.transformQueueDepth = builder.transformQueueDepth;
+            this.transformQueueDropCount = builder.transformQueueDropCount;
+            this.writeQueueDepth = builder.writeQueueDepth;
+            this.writeQueueDropCount = builder.writeQueueDropCount;
+            this.laggedFrameCount = builder.laggedFrameCount;
+            this.commandBatchCount = builder.commandBatchCount;
+            this.meanCommandBatchLatency = builder.meanCommandBatchLatency;
+            this.maxCommandBatchLatency = builder.maxCommandBatchLatency;
+            this.controlCommandQueueDepth = builder.controlCommandQueueDepth;
+            this.controlCommandCount = builder.controlCommandCount;
+            this.meanControlCommandWait = builder.meanControlCommandWait;
+            this.maxControlCommandWait = builder.maxControlCommandWait;
+            this.cycleCount = builder.cycleCount;
+            this.cycleOverrunCount = builder.cycleOverrunCount;
+            this.meanCycleLateness = builder.meanCycleLateness;
+            this.maxCycleLateness = builder.maxCycleLateness;
+            this.maxCycleJitter = builder.maxCycleJitter;
+            this.frameLatencyCount = builder.frameLatencyCount;
+            this.frameLatencyP50 = builder.frameLatencyP50;
+            this.frameLatencyP99 = builder.frameLatencyP99;
+            this.frameLatencyP999 = builder.frameLatencyP999;
+            this.maxFrameLatency = builder.maxFrameLatency;
+            this.transformLatencyP99 = builder.transformLatencyP99;
+            this.handOverLatencyP99 = builder.handOverLatencyP99;
+            this.writeLatencyP99 = builder.writeLatencyP99;
+            this.ratesLastSecond = builder.ratesLastSecond;
+            this.ratesLast10Seconds = builder.ratesLast10Seconds;
+            this.ratesLastMinute = builder.ratesLastMinute;
         }
 
-        public final int droppedFrames;
-        public final int commandFailureCount;
-        public final int dataWriteFailureCount;
-        public final int dataReadFailureCount;
-        public final int dataReadCount;
-        public final int dataWriteCount;
+        public final long droppedFrames;
+        public final long commandFailureCount;
+        public final long dataWriteFailureCount;
+        public final long dataReadFailureCount;
+        public final long dataReadCount;
+        public final long dataWriteCount;
+        public final int bufferPoolCapacity;
+        public final int bufferPoolAvailable;
+        public final long bufferPoolStarvationCount;
+        public final int transformQueueDepth;
+        public final long transformQueueDropCount;
+        public final int writeQueueDepth;
+        public final long writeQueueDropCount;
+        public final long laggedFrameCount;
+        public final long commandBatchCount;
+        public final long meanCommandBatchLatency;
+        public final long maxCommandBatchLatency;
+        public final int controlCommandQueueDepth;
+        public final long controlCommandCount;
+        public final long meanControlCommandWait;
+        public final long maxControlCommandWait;
+        public final long cycleCount;
+        public final long cycleOverrunCount;
+        public final long meanCycleLateness;
+        public final long maxCycleLateness;
+        public final long maxCycleJitter;
+        public final long frameLatencyCount;
+        public final long frameLatencyP50;
+        public final long frameLatencyP99;
+        public final long frameLatencyP999;
+        public final long maxFrameLatency;
+        public final long transformLatencyP99;
+        public final long handOverLatencyP99;
+        public final long writeLatencyP99;
+        public final RateStatistics ratesLastSecond;
+        public final RateStatistics ratesLast10Seconds;
+        public final RateStatistics ratesLastMinute;
     }
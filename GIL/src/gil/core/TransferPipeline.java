@@ -18,28 +18,31 @@
 */
 package gil.core;
 
+import gil.common.CurrentTime;
 import gil.io.IPipelineStage;
 import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.List;
-import org.apache.log4j.Logger;
 
 /**
  * Representing a chain of stages where each stage can process data flowing through.
  * Data can be transferred in either of two directions and the stages can process data differently
  * depending on the actual transfer direction.
+ * <p>
+ * The time each stage takes to process each frame is recorded in a {@link StageTiming} of the stage. The stages
+ * must not be added or removed after the pipeline is constructed.
  * @author Göran Larsson - LearningWell AB
  */
 public class TransferPipeline implements ITransferPipeline {
-    private static Logger _logger = Logger.getLogger(TransferPipeline.class);
-
     private List<IPipelineStage> _stages;
+    private final StageTiming[] _timings;
 
     /**
      * Creates an empty transfer pipeline with no stages. Data passing through the pipeline will be unaffected.
      */
     public TransferPipeline() {
         _stages = new ArrayList<IPipelineStage>();
+        _timings = new StageTiming[0];
     }
 
     /**
@@ -51,6 +54,10 @@ public class TransferPipeline implements ITransferPipeline {
             throw new IllegalArgumentException("stages");
 
         _stages = stages;
+        _timings = new StageTiming[stages.size()];
+        for (int i = 0; i < _timings.length; i++) {
+            _timings[i] = new StageTiming();
+        }
     }
 
     /**
@@ -69,11 +76,18 @@ public class TransferPipeline implements ITransferPipeline {
      * @param direction used by the pipeline stages when data processing depends on the data flow direction.
      */
     public void processSignals(ByteBuffer values, SignalMetadata.DataflowDirection direction) {
-        for (IPipelineStage stage:_stages) {
-            _logger.debug("Processing signals in stage " + stage.toString());
+        long start = CurrentTime.instance().inNanoseconds();
+        for (int i = 0; i < _timings.length; i++) {
             values.rewind();
-            stage.processSignals(values, direction);
+            _stages.get(i).processSignals(values, direction);
+            long end = CurrentTime.instance().inNanoseconds();
+            _timings[i].record(direction, end - start, end);
+            start = end;
         }
         values.rewind();
     }
+
+    public StageTiming[] getStageTimings() {
+        return _timings;
+    }
 }
@@ -48,7 +48,17 @@ public class TransferPipelineBuilder {
             IOException, XPathExpressionException, SAXException, InvalidFileFormatException,
             InstantiationException, IllegalAccessException {
 
-        Element elm = config.getSection("transferPipeline");        
+        return buildPipeline(sm, config, config.getSection("transferPipeline"));
+    }
+
+    /**
+     * Creates a TransferPipeline dynamically from the stages listed in the given element of the config. Used
+     * to build the pipeline tails of external systems.
+     */
+    public static TransferPipeline buildPipeline(SignalMetadata[] sm, ConfigFile config, Element elm)
+            throws IOException, XPathExpressionException, InvalidFileFormatException,
+            InstantiationException, IllegalAccessException {
+
         NodeList nodes = elm.getChildNodes();        
 
         ArrayList<IPipelineStage> stages = new ArrayList<IPipelineStage>();
@@ -0,0 +1,271 @@
+/*
+    Copyright (C) 2010 LearningWell AB (www.learningwell.com), Kärnkraftsäkerhet och Utbildning AB (www.ksu.se)
+
+    This file is part of GIL (Generic Integration Layer).
+
+    GIL is free software: you can redistribute it and/or modify
+    it under the terms of the GNU Lesser General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    GIL is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public License
+    along with GIL.  If not, see <http://www.gnu.org/licenses/>.
+*/
+package gil.core;
+
+import gil.common.AsyncResult;
+import gil.common.CurrentTime;
+import gil.common.GILConfiguration;
+import gil.common.IInvokeable;
+import gil.common.Invoker;
+import gil.common.LatestValueExchanger;
+import gil.common.Wakeup;
+import gil.core.SignalMetadata.DataflowDirection;
+import gil.io.IPipelineStage;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import org.apache.log4j.Logger;
+
+/**
+ * This is the logic separated from the controlling thread to feed process data through the transfer pipeline.
+ * Process data read by the {@link ProcessModelProcedure} and the {@link ExternalSystemProcedure} is pending
+ * transform in the {@link IntegrationContext}. Each call to runOnce takes the latest pending data in each
+ * direction, feeds it through the pipeline and hands it over as pending transfer to the other side. Running the
+ * pipeline on a thread of its own keeps slow stages from stalling the reads and writes of the adapters.
+ *
+ * When several external systems are integrated, each frame from the process model is fed through the pipeline
+ * once and then handed over to all external systems as read-only views sharing the same frame.
+ *
+ * When several process models are merged, the slices read from them are assembled into one frame by a
+ * {@link FrameAssembler} before being fed through the pipeline, and each frame to the process models is split
+ * into slices after being fed through the pipeline. A frame is assembled each time the primary process model
+ * delivers a slice. Each other process model that has not delivered a slice since the previous frame has its
+ * lagged frame count incremented.
+ *
+ * If frame histories are given, each frame is recorded in the history of its direction after being fed through
+ * the pipeline, i.e. as handed over to the other side. If a session recorder is given, each such frame is handed
+ * to the recorder as well.
+ *
+ * Each frame is stamped with the time it is fed through the pipeline and the time it is handed over, used to
+ * measure the latency of the frame when written.
+ *
+ * Control commands to the pipeline stages are executed by runOnce as well, since stages are not required to
+ * be thread safe.
+ *
+ * Methods in this object are not thread safe unless otherwise noted.
+ *
+ * @author Göran Larsson @ LearningWell AB
+ */
+public class TransferPipelineProcedure {
+    private static Logger _logger = Logger.getLogger(TransferPipelineProcedure.class);
+
+    private final ITransferPipeline _pipeline;
+    private final IntegrationContext _context;
+    private final FrameAssembler _assembler;
+    final Invoker _controlCommandInvoker;
+    private FrameHistory _toESHistory = null;
+    private FrameHistory _toPMHistory = null;
+    private SessionRecorder _recorder = null;
+
+    /**
+     * @param pipeline The pipeline instance through which process data will be fed.
+     * @param context The context data shared with the {@link ExternalSystemProcedure} and the
+     * {@link ProcessModelProcedure}.
+     */
+    public TransferPipelineProcedure(ITransferPipeline pipeline, IntegrationContext context) {
+        this(pipeline, context, null, new Invoker());
+    }
+
+    /**
+     * @param assembler Merges the process data of the process models. Must be given if the context holds more
+     * than one process model, else it may be null.
+     */
+    public TransferPipelineProcedure(ITransferPipeline pipeline, IntegrationContext context,
+            FrameAssembler assembler) {
+        this(pipeline, context, assembler, new Invoker());
+    }
+
+    /**
+     * @param config Object containing the budget for executing control commands in each call to runOnce.
+     */
+    public TransferPipelineProcedure(ITransferPipeline pipeline, IntegrationContext context,
+            FrameAssembler assembler, GILConfiguration config) {
+        this(pipeline, context, assembler, new Invoker(config.getControlCommandTimeBudgetInMicroseconds() * 1000,
+                config.getControlCommandCountBudget()));
+    }
+
+    private TransferPipelineProcedure(ITransferPipeline pipeline, IntegrationContext context,
+            FrameAssembler assembler, Invoker controlCommandInvoker) {
+        if (context.processModelCount() > 1 &&
+                (assembler == null || assembler.getProcessModelCount() != context.processModelCount())) {
+            throw new IllegalArgumentException("A frame assembler for all process models must be given.");
+        }
+        _pipeline = pipeline;
+        _context = context;
+        _assembler = assembler;
+        _controlCommandInvoker = controlCommandInvoker;
+    }
+
+    /**
+     * Sets the histories in which the frames fed through the pipeline are recorded. Must be called before the
+     * first call to runOnce.
+     * @param toESHistory The history of the frames to the external systems, or null if not recorded.
+     * @param toPMHistory The history of the frames to the process models, or null if not recorded.
+     */
+    public void setFrameHistories(FrameHistory toESHistory, FrameHistory toPMHistory) {
+        _toESHistory = toESHistory;
+        _toPMHistory = toPMHistory;
+    }
+
+    /**
+     * Sets the recorder to which the frames fed through the pipeline are handed. Must not be called while
+     * runOnce is running.
+     * @param recorder The recorder, or null if not recorded.
+     */
+    public void setSessionRecorder(SessionRecorder recorder) {
+        _recorder = recorder;
+    }
+
+    public void runOnce(long currentTimeInMicroseconds) {
+        Data values = pollFromProcessModels();
+        if (values != null && transform(values, DataflowDirection.ToES)) {
+            if (_toESHistory != null) {
+                _toESHistory.record(values.getData(), values.getOrigin());
+            }
+            if (_recorder != null) {
+                _recorder.recordFrame(values, DataflowDirection.ToES);
+            }
+            if (_context.externalSystemCount() == 1) {
+                handOver(values, DataflowDirection.ToES, _context.externalSystem(0).pendingTransferToES,
+                        _context.externalSystem(0).esWakeup);
+            } else {
+                for (int i = 0; i < _context.externalSystemCount(); i++) {
+                    handOver(values.share(), DataflowDirection.ToES, _context.externalSystem(i).pendingTransferToES,
+                            _context.externalSystem(i).esWakeup);
+                }
+                values.release();
+            }
+        }
+        values = _context.pendingTransformToPM.poll();
+        if (values != null && transform(values, DataflowDirection.ToPM)) {
+            if (_toPMHistory != null) {
+                _toPMHistory.record(values.getData(), values.getOrigin());
+            }
+            if (_recorder != null) {
+                _recorder.recordFrame(values, DataflowDirection.ToPM);
+            }
+            if (_assembler == null) {
+                handOver(values, DataflowDirection.ToPM, _context.processModel(0).pendingTransferToPM,
+                        _context.processModel(0).pmWakeup);
+            } else {
+                Data[] slices = _assembler.split(values);
+                values.release();
+                for (int i = 0; i < slices.length; i++) {
+                    handOver(slices[i], DataflowDirection.ToPM, _context.processModel(i).pendingTransferToPM,
+                            _context.processModel(i).pmWakeup);
+                }
+            }
+        }
+        _controlCommandInvoker.executeCommandsInQueue();
+    }
+
+    /**
+     * Invokes a control command on a pipeline stage. The command is executed by a subsequent call to runOnce.
+     * This method blocks until the command is completed and is thread safe.
+     */
+    public Map<String, String> invokeControlCommand(final int stageSeqNo, final String commandID,
+            final Map<String, String> parameters) throws InterruptedException, ExecutionException {
+        return scheduleControlCommand(stageSeqNo, commandID, parameters).get(); // Block until async operation completes
+    }
+
+    /**
+     * Schedules a control command to be invoked on a pipeline stage by a subsequent call to runOnce. This method
+     * returns at once and is thread safe.
+     * @return An object providing the result map when the command is completed.
+     */
+    public AsyncResult<Map<String, String>> scheduleControlCommand(final int stageSeqNo, final String commandID,
+            final Map<String, String> parameters) {
+        final List<IPipelineStage> stages = _pipeline.getStages();
+
+        if ((stageSeqNo < 0) || (stageSeqNo >= stages.size())) {
+            throw new IllegalArgumentException("Invalid pipeline seqNo: " + stageSeqNo);
+        }
+        AsyncResult<Map<String, String>> result = _controlCommandInvoker.schedule(
+                new IInvokeable<Map<String, String>>() {
+            public Map<String, String> invoke() throws Exception {
+                Command cmd = new Command(commandID, parameters, new SimTime());
+                try {
+                    return stages.get(stageSeqNo).invokeControlCommand(cmd);
+                } catch (Exception ex) {
+                    _logger.error("Error when invoking control command '" + cmd.toString() + "'.", ex);
+                    throw ex;
+                }
+            }
+        });
+        _context.pipelineWakeup.signal();
+        return result;
+    }
+
+    /**
+     * @return The next frame to feed through the pipeline in the ToES direction, or null if there is none.
+     */
+    private Data pollFromProcessModels() {
+        if (_assembler == null) {
+            return _context.processModel(0).pendingTransformToES.poll();
+        }
+        for (int i = 1; i < _context.processModelCount(); i++) {
+            Data slice = _context.processModel(i).pendingTransformToES.poll();
+            if (slice != null) {
+                _assembler.update(i, slice);
+            }
+        }
+        Data slice = _context.processModel(0).pendingTransformToES.poll();
+        if (slice == null) {
+            return null;
+        }
+        SimTime origin = slice.getOrigin();
+        long readTime = slice.getReadTime();
+        _assembler.update(0, slice);
+        for (int i = 1; i < _context.processModelCount(); i++) {
+            if (!_assembler.isUpdated(i)) {
+                ++_context.processModel(i).laggedFrameCount;
+            }
+        }
+        Data frame = _assembler.assemble(origin);
+        frame.setReadTime(readTime);
+        return frame;
+    }
+
+    /**
+     * @return true if the data is transformed, false if the transform failed and the data is dropped.
+     */
+    private boolean transform(Data values, DataflowDirection direction) {
+        try {
+            _pipeline.processSignals(values.getData(), direction);
+        } catch (RuntimeException ex) {
+            _logger.error("Failure when processing signals transferred " + direction + ". The frame is dropped.", ex);
+            values.release();
+            return false;
+        }
+        values.getData().rewind();
+        values.setTransformedTime(CurrentTime.instance().inNanoseconds());
+        return true;
+    }
+
+    private void handOver(Data values, DataflowDirection direction, LatestValueExchanger<Data> destination,
+            Wakeup destinationWakeup) {
+        values.setHandOverTime(CurrentTime.instance().inNanoseconds());
+        Data dropped = destination.offer(values);
+        destinationWakeup.signal();
+        if (dropped != null) {
+            _logger.warn("Dropped 1 frame transferred " + direction + " due to still pending transfer.");
+            dropped.release();
+        }
+    }
+}
@@ -21,6 +21,7 @@ package gil.io;
 import gil.common.IProgressEventListener;
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.util.BitSet;
 import gil.common.InvalidParameterException;
 import gil.common.Parameters;
 import gil.core.Command;
@@ -186,6 +187,8 @@ public abstract class ExternalSystemAdapter implements IControlCommandInvokeable
      * @param values A buffer containing the sequence of signal values to be written to the external system.
      * The number of signal values and their data type must correspond to the sequence of signal meta data given in
      * a previous call to {@link #setup(gil.core.SignalMetadata[], gil.core.SignalMetadata[], gil.common.Parameters) setup()}.
+     * The buffer must not be modified. When several external systems are integrated the frame is shared by them
+     * and the buffer is a read-only view of it.
      * @param origin The time from when the data originates.
      * @return A result object indicating success or failure. A failure will indicate to the caller that
      * this write was unsuccessful but subsequent writes may succeed. The caller shall not retry to rewrite
@@ -196,6 +199,43 @@ public abstract class ExternalSystemAdapter implements IControlCommandInvokeable
      */
     public abstract Result writeSignalData(ByteBuffer values, SimTime origin) throws IOException;
 
+    /**
+     * Tells whether or not this adapter wants to receive changed signals only.
+     * <p>
+     * If true process data is written by calling
+     * {@link #writeChangedSignalData(java.nio.ByteBuffer, java.util.BitSet, gil.core.SimTime) writeChangedSignalData()}
+     * instead of {@link #writeSignalData(java.nio.ByteBuffer, gil.core.SimTime) writeSignalData()}. This is
+     * recommended for adapters transferring a large number of signals over a network.
+     * <p>
+     * The default implementation returns false.
+     */
+    public boolean supportsDeltaTransfer() {
+        return false;
+    }
+
+    /**
+     * Writes the process data that has changed since the previous write.
+     * <p>
+     * The first write after a connection is established, and the first write after an unsuccessful write,
+     * contains all signals.
+     * <p>
+     * May only be called if {@link #supportsDeltaTransfer()} returns true. The default implementation throws
+     * UnsupportedOperationException.
+     * @param changedValues A buffer containing the values of the changed signals only, in the order of the
+     * sequence of signal metadata given in a previous call to
+     * {@link #setup(gil.core.SignalMetadata[], gil.core.SignalMetadata[], gil.common.Parameters) setup()}.
+     * @param changedSignals Tells which signals are contained in changedValues. Bit n is set if signal n in the
+     * sequence of signal metadata has changed. No bits are set if nothing has changed.
+     * @param origin The time from when the data originates.
+     * @return A result object indicating success or failure. See
+     * {@link #writeSignalData(java.nio.ByteBuffer, gil.core.SimTime) writeSignalData()}.
+     * @throws IOException Thrown when there is a serious failure to force the caller to disconnect from the
+     * external system and reconnect.
+     */
+    public Result writeChangedSignalData(ByteBuffer changedValues, BitSet changedSignals, SimTime origin) throws IOException {
+        throw new UnsupportedOperationException("Delta transfer is not supported by this adapter.");
+    }
+
     /**
      * Reads process data.
      * <p>
@@ -278,6 +318,29 @@ public abstract class ExternalSystemAdapter implements IControlCommandInvokeable
      */
     public abstract Result executeSimCommand(Command command) throws IllegalArgumentException, IOException;
 
+    /**
+     * Executes a batch of simulator commands in the given order.
+     * <p>
+     * Simulator commands often arrive in bursts, e.g. an initial condition being loaded followed by a number of
+     * malfunctions being inserted. Adapters able to send several commands to the external system in one request
+     * should override this method. The default implementation calls
+     * {@link #executeSimCommand(gil.core.Command) executeSimCommand()} once for each command.
+     * @param commands The commands to execute.
+     * @return One result object for each command, in the order of the commands. See
+     * {@link #executeSimCommand(gil.core.Command) executeSimCommand()}.
+     * @throws IOException Thrown when there is a serious failure to force the caller to disconnect from the
+     * external system and reconnect. Commands following the failing command are not executed.
+     * @throws IllegalArgumentException Thrown when either a given command is not supported or the command
+     * parameters are invalid.
+     */
+    public Result[] executeSimCommands(Command[] commands) throws IllegalArgumentException, IOException {
+        Result[] results = new Result[commands.length];
+        for (int i = 0; i < commands.length; i++) {
+            results[i] = executeSimCommand(commands[i]);
+        }
+        return results;
+    }
+
 
     /**
      * Sets a listener to receive progress change notifications.
@@ -294,6 +357,9 @@ public abstract class ExternalSystemAdapter implements IControlCommandInvokeable
      * <p>
      * This method may only be called if
      * {@link #isReadEventDriven()} returns true.
+     * <p>
+     * The adapter should populate buffers obtained from {@link ISignalDataListener#leaseBuffer()} rather
+     * than allocating its own, to avoid memory allocation for each notification.
      * @param listener The listener that subscribes for notifications when data changes. The listeners must
      * handle concurrency since they may be called from separate threads.
      */
@@ -23,9 +23,36 @@ import gil.core.SimTime;
 import java.nio.ByteBuffer;
 
 /**
+ * Listener receiving process data from an event driven {@link ExternalSystemAdapter}.
  * 
  * @author Göran Larsson @ LearningWell AB
  */
 public interface ISignalDataListener {
+
+    /**
+     * Notifies the listener that new process data is available.
+     * <p>
+     * If the given buffer was obtained by calling {@link #leaseBuffer()}, ownership of the buffer is handed over
+     * to the listener by this call and the caller must not access the buffer afterwards. Buffers not obtained by
+     * leaseBuffer must not be modified by the caller until the data has been written to the process model.
+     * @param data The process data. May be null if ex is not null.
+     * @param origin The time from when the data originates.
+     * @param result A result object indicating success or failure of the read.
+     * @param ex An exception if there was a serious failure when reading. Forces GIL to disconnect from the
+     * external system and reconnect. Null otherwise.
+     */
     public void dataChanged(ByteBuffer data, SimTime origin, Result result, Throwable ex);
+
+    /**
+     * Borrows a buffer to be populated with process data and passed back in a call to
+     * {@link #dataChanged(java.nio.ByteBuffer, gil.core.SimTime, gil.common.Result, java.lang.Throwable) dataChanged()}.
+     * <p>
+     * The buffer is direct, cleared, has the preset byte order of the external system adapter and is large enough
+     * to contain the sequence of signals setup for transfer to the process model. GIL reuses the buffer after the
+     * data has been written to the process model, so using leased buffers gives a transfer path without memory
+     * allocation. A leased buffer that is never passed to dataChanged is left to the garbage collector.
+     * <p>
+     * This method may be called from any thread.
+     */
+    public ByteBuffer leaseBuffer();
 }
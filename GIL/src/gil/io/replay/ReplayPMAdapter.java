@@ -0,0 +1,303 @@
+/*
+    Copyright (C) 2010 LearningWell AB (www.learningwell.com), Kärnkraftsäkerhet och Utbildning AB (www.ksu.se)
+
+    This file is part of GIL (Generic Integration Layer).
+
+    GIL is free software: you can redistribute it and/or modify
+    it under the terms of the GNU Lesser General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    GIL is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public License
+    along with GIL.  If not, see <http://www.gnu.org/licenses/>.
+*/
+package gil.io.replay;
+
+import gil.common.CurrentTime;
+import gil.common.IProgressEventListener;
+import gil.common.InvalidParameterException;
+import gil.common.Parameters;
+import gil.common.Result;
+import gil.common.ValueResult;
+import gil.core.Command;
+import gil.core.CommandDescriptor;
+import gil.core.ParameterDescriptor;
+import gil.core.SessionRecording;
+import gil.core.SessionRecording.RecordType;
+import gil.core.SignalMetadata;
+import gil.core.SimState;
+import gil.core.SimTime;
+import gil.core.SoftwareInfo;
+import gil.core.SystemStatus;
+import gil.io.IProcessModelAdapter;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.apache.log4j.Logger;
+
+/**
+ * A process model adapter replaying a session recorded by a {@link gil.core.SessionRecorder}, making the
+ * performance of external system adapters and pipeline stages reproducible without a simulator attached.
+ * <p>
+ * The frames recorded to the external systems are served by readSignalData, with the simulation time they
+ * originate from served by getSimTime. The simulator commands recorded are served by readSimCommands. Frames
+ * written to the process model are discarded. Note that the frames are recorded as handed over to the external
+ * systems, i.e. after being fed through the transfer pipeline, so a replay should be run with a transfer
+ * pipeline that does not transform the process data again.
+ * <p>
+ * The recording is replayed in real time, at a multiple of real time, or as fast as possible, in which case one
+ * frame is served for each call to getSimTime. When the end of the recording is reached the replay is either
+ * started over or the last frame is served until the adapter is reconnected.
+ * <p>
+ * Parameters given in the adapterSettings section:
+ * <ul>
+ * <li>recordingDirectory - The directory holding the segment files of the recording.</li>
+ * <li>sessionName - The name of the recorded session, e.g. gil-20101231-235959.</li>
+ * <li>operatingFrequency - The operating frequency in Hertz of the recorded process model.</li>
+ * <li>speed - Optional. The replay speed as a multiple of real time, or 'max' to replay as fast as possible.
+ * Defaults to 1.</li>
+ * <li>loop - Optional. true to start the replay over when the end of the recording is reached. Defaults to
+ * false.</li>
+ * </ul>
+ *
+ * @author Göran Larsson @ LearningWell AB
+ */
+public class ReplayPMAdapter implements IProcessModelAdapter {
+
+    private static final String CURRENT_VERSION = "1.0.0";
+    private static final int _MAX_SPEED_FREQUENCY = 10000; // Hz
+    private static final long _MICROSECONDS_PER_DAY = 24 * 3600 * 1000000L;
+
+    private static Logger _logger = Logger.getLogger(ReplayPMAdapter.class);
+
+    private SessionRecording _recording = null;
+    private int _recordedFrequency;
+    private double _speed; // Zero to replay as fast as possible.
+    private boolean _loop;
+
+    private SessionRecording.Record _current = null; // The frame currently served.
+    private SessionRecording.Record _next = null; // The next record not yet replayed.
+    private final List<Command> _pendingCommands = new ArrayList<Command>();
+    private long _startTime;
+    private long _startOrigin;
+    private long _replayedFrameCount = 0;
+    private boolean _firstFrameServed = false;
+    private int _currentState = SimState.UNKNOWN;
+
+    public void setup(SignalMetadata[] signalsToPM, SignalMetadata[] signalsToES, Parameters config)
+            throws InvalidParameterException {
+        _recordedFrequency = config.getIntParam("operatingFrequency");
+        if (_recordedFrequency <= 0) {
+            throw new InvalidParameterException("The operating frequency must be greater than zero.");
+        }
+        String speed = config.getParameters().containsKey("speed") ? config.getParam("speed") : "1";
+        if (speed.equals("max")) {
+            _speed = 0;
+        } else {
+            _speed = config.getDoubleParam("speed");
+            if (_speed <= 0) {
+                throw new InvalidParameterException("The replay speed must be greater than zero, or 'max'.");
+            }
+        }
+        _loop = config.getParameters().containsKey("loop") && config.getBoolParam("loop");
+
+        File directory = new File(config.getParam("recordingDirectory"));
+        String sessionName = config.getParam("sessionName");
+        try {
+            _recording = new SessionRecording(directory, sessionName);
+        } catch (IOException ex) {
+            throw new InvalidParameterException("Failed to open the recording: " + ex.getMessage(), ex);
+        }
+        int frameSize = SignalMetadata.calcBufferSize(signalsToES);
+        if (_recording.getToESFrameSize() != frameSize) {
+            throw new InvalidParameterException("The recorded frames of " + _recording.getToESFrameSize()
+                    + " bytes do not match the " + frameSize + " bytes of the signal exchange list.");
+        }
+        _logger.info("Replaying '" + sessionName + "' at " + ((_speed == 0) ? "max" : Double.toString(_speed))
+                + " speed.");
+    }
+
+    public void tearDown() {
+        if (_recording != null) {
+            _recording.close();
+            _recording = null;
+        }
+    }
+
+    public boolean connect() throws IOException {
+        restart();
+        return true;
+    }
+
+    public void disconnect() {
+    }
+
+    public ValueResult<SimTime> readSignalData(ByteBuffer destBuf) throws IOException {
+        ByteBuffer frame = _current.frame.duplicate();
+        frame.rewind();
+        destBuf.put(frame);
+        return new ValueResult<SimTime>(originOf(_current));
+    }
+
+    public Result writeSignalData(ByteBuffer values, SimTime origin) throws IOException {
+        return new Result(true);
+    }
+
+    public ValueResult<SimTime> getSimTime() throws IOException {
+        advance();
+        return new ValueResult<SimTime>(originOf(_current));
+    }
+
+    /**
+     * Returns the recorded operating frequency times the replay speed, so that the replayed frames are polled in
+     * time.
+     */
+    public int getOperatingFrequency() {
+        return (_speed == 0) ? _MAX_SPEED_FREQUENCY : (int)Math.ceil(_recordedFrequency * _speed);
+    }
+
+    public ValueResult<Command[]> readSimCommands() throws IOException {
+        Command[] commands = _pendingCommands.toArray(new Command[_pendingCommands.size()]);
+        _pendingCommands.clear();
+        return new ValueResult<Command[]>(commands);
+    }
+
+    public SoftwareInfo[] getInfo() {
+        return new SoftwareInfo[] {
+                new SoftwareInfo(this.getClass().getSimpleName(),
+                "Replays a recorded session in place of a process model",
+                CURRENT_VERSION,
+                "LearningWell"),
+        };
+    }
+
+    public SystemStatus getStatus() {
+        return new SystemStatus(SystemStatus.OK, _replayedFrameCount + " frames replayed");
+    }
+
+    public int getState() {
+        return _currentState;
+    }
+
+    public boolean setProgressChangeListener(IProgressEventListener listener) {
+        return false;
+    }
+
+    public CommandDescriptor[] availableControlCommands() {
+        return new CommandDescriptor[] {
+            new CommandDescriptor("Restart", "Starts the replay over from the beginning of the recording",
+                new ParameterDescriptor[0]
+            ),
+        };
+    }
+
+    public Map<String, String> invokeControlCommand(Command command) throws IllegalArgumentException, IOException {
+        if (command.isCommand("Restart")) {
+            restart();
+            return new HashMap<String, String>();
+        }
+        throw new IllegalArgumentException("Unknown control command: " + command);
+    }
+
+    /**
+     * @return The number of frames replayed since the adapter was set up.
+     */
+    public long getReplayedFrameCount() {
+        return _replayedFrameCount;
+    }
+
+    /**
+     * Starts the replay over, serving the first recorded frame.
+     */
+    private void restart() throws IOException {
+        _recording.rewind();
+        _current = null;
+        _pendingCommands.clear();
+        _next = _recording.next();
+        replayNextFrame();
+        if (_current == null) {
+            throw new IOException("The recording holds no frames to the external systems.");
+        }
+        _startTime = CurrentTime.instance().inMicroseconds();
+        _startOrigin = timeOfDayInMicroseconds(_current.origin);
+        _firstFrameServed = false;
+        _currentState = SimState.RUN;
+    }
+
+    private void advance() throws IOException {
+        if (_next == null && _loop) {
+            // The last frame is served by the previous call.
+            restart();
+            _firstFrameServed = true;
+            return;
+        }
+        if (_speed == 0) {
+            // The first frame is served by the first call after a restart.
+            if (_firstFrameServed) {
+                replayNextFrame();
+            }
+            _firstFrameServed = true;
+        } else {
+            long elapsed = (long)((CurrentTime.instance().inMicroseconds() - _startTime) * _speed);
+            while (_next != null && offsetOf(_next) <= elapsed) {
+                replayNext();
+            }
+        }
+        if (_next == null && !_loop && _currentState != SimState.FREEZE) {
+            _logger.info("End of recording reached after " + _replayedFrameCount + " frames.");
+            _currentState = SimState.FREEZE;
+        }
+    }
+
+    private void replayNextFrame() throws IOException {
+        while (_next != null) {
+            boolean isFrame = (_next.type == RecordType.ToESFrame);
+            replayNext();
+            if (isFrame) {
+                return;
+            }
+        }
+    }
+
+    private void replayNext() throws IOException {
+        if (_next.type == RecordType.ToESFrame) {
+            _current = _next;
+            ++_replayedFrameCount;
+        } else if (_next.type == RecordType.SimCommand) {
+            _pendingCommands.add(_next.command);
+        }
+        _next = _recording.next();
+    }
+
+    /**
+     * @return The time in microseconds from the start of the replay at which the given record is due.
+     */
+    private long offsetOf(SessionRecording.Record record) {
+        if (record.origin == null) {
+            return 0;
+        }
+        long offset = timeOfDayInMicroseconds(record.origin) - _startOrigin;
+        return (offset < 0) ? offset + _MICROSECONDS_PER_DAY : offset;
+    }
+
+    private static SimTime originOf(SessionRecording.Record record) {
+        return (record.origin != null) ? record.origin : new SimTime();
+    }
+
+    private static long timeOfDayInMicroseconds(SimTime time) {
+        if (time == null) {
+            return 0;
+        }
+        return (time.hour() * 3600L + time.minute() * 60 + time.second()) * 1000000L
+                + time.millisecond() * 1000L + time.microsecond();
+    }
+}
@@ -0,0 +1,234 @@
+/*
+    Copyright (C) 2010 LearningWell AB (www.learningwell.com), Kärnkraftsäkerhet och Utbildning AB (www.ksu.se)
+
+    This file is part of GIL (Generic Integration Layer).
+
+    GIL is free software: you can redistribute it and/or modify
+    it under the terms of the GNU Lesser General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    GIL is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public License
+    along with GIL.  If not, see <http://www.gnu.org/licenses/>.
+*/
+package gil.io.synthetic;
+
+import gil.common.CurrentTime;
+import gil.common.IProgressEventListener;
+import gil.common.InvalidParameterException;
+import gil.common.Parameters;
+import gil.common.Result;
+import gil.common.ValueResult;
+import gil.core.Command;
+import gil.core.CommandDescriptor;
+import gil.core.SignalMetadata;
+import gil.core.SimState;
+import gil.core.SimTime;
+import gil.core.SoftwareInfo;
+import gil.core.SystemStatus;
+import gil.io.ExternalSystemAdapter;
+import gil.io.ISignalDataListener;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Map;
+
+/**
+ * An external system adapter consuming process data and simulator commands and generating synthetic process
+ * data, used to load GIL with any number of signals at any frequency for capacity testing. No external system
+ * is attached.
+ * <p>
+ * Frames written are discarded. readSignalData returns a frame of values changing with each frame once each
+ * frame period, and null in between.
+ * <p>
+ * Parameters given in the adapterSettings section, all optional:
+ * <ul>
+ * <li>operatingFrequency - The operating frequency in Hertz. Defaults to 50.</li>
+ * <li>readLatency - The time in microseconds each call to readSignalData takes. Defaults to 0.</li>
+ * <li>writeLatency - The time in microseconds each call to writeSignalData and each simulator command takes.
+ * Defaults to 0.</li>
+ * </ul>
+ *
+ * @author Göran Larsson @ LearningWell AB
+ */
+public class SyntheticESAdapter extends ExternalSystemAdapter {
+
+    private static final String CURRENT_VERSION = "1.0.0";
+
+    private SignalMetadata[] _signalsToPM;
+    private int _operatingFrequency;
+    private int _readLatency;
+    private int _writeLatency;
+
+    private long _startTime;
+    private long _lastFrameNo = -1;
+    private volatile long _readFrameCount = 0;
+    private volatile long _writeFrameCount = 0;
+    private volatile long _commandCount = 0;
+
+    @Override
+    public void setup(SignalMetadata[] signalsToES, SignalMetadata[] signalsToPM, Parameters config)
+            throws IOException, InvalidParameterException {
+        _signalsToPM = signalsToPM;
+        _operatingFrequency = SyntheticLoad.getOptionalIntParam(config, "operatingFrequency", 50);
+        if (_operatingFrequency <= 0) {
+            throw new InvalidParameterException("The operating frequency must be greater than zero.");
+        }
+        _readLatency = SyntheticLoad.getOptionalIntParam(config, "readLatency", 0);
+        _writeLatency = SyntheticLoad.getOptionalIntParam(config, "writeLatency", 0);
+    }
+
+    @Override
+    public void tearDown() {
+    }
+
+    @Override
+    public boolean connect() throws IOException {
+        _startTime = CurrentTime.instance().inMicroseconds();
+        _lastFrameNo = -1;
+        return true;
+    }
+
+    @Override
+    public void disconnect() {
+    }
+
+    @Override
+    public Result writeSignalData(ByteBuffer values, SimTime origin) throws IOException {
+        SyntheticLoad.delay(_writeLatency);
+        ++_writeFrameCount;
+        return new Result(true);
+    }
+
+    @Override
+    public ValueResult<SimTime> readSignalData(ByteBuffer destBuf) throws IOException {
+        long frameNo = (CurrentTime.instance().inMicroseconds() - _startTime) * _operatingFrequency / 1000000L;
+        if (frameNo == _lastFrameNo) {
+            return null;
+        }
+        _lastFrameNo = frameNo;
+        SyntheticLoad.delay(_readLatency);
+        SyntheticLoad.fill(destBuf, _signalsToPM, frameNo);
+        ++_readFrameCount;
+        return new ValueResult<SimTime>(SyntheticLoad.timeOfFrame(frameNo, _operatingFrequency));
+    }
+
+    @Override
+    public Result executeSimCommand(Command command) throws IOException {
+        SyntheticLoad.delay(_writeLatency);
+        ++_commandCount;
+        return new Result(true);
+    }
+
+    @Override
+    public SoftwareInfo[] getInfo() {
+        return new SoftwareInfo[] {
+                new SoftwareInfo(this.getClass().getSimpleName(),
+                "Consumes and generates synthetic process data for capacity testing",
+                CURRENT_VERSION,
+                "LearningWell"),
+        };
+    }
+
+    @Override
+    public SystemStatus getStatus() {
+        return new SystemStatus(SystemStatus.OK, _readFrameCount + " frames read, " + _writeFrameCount
+                + " frames written, " + _commandCount + " commands executed");
+    }
+
+    @Override
+    public int getOperatingFrequency() {
+        return _operatingFrequency;
+    }
+
+    @Override
+    public int getState() {
+        return SimState.RUN;
+    }
+
+    /**
+     * @return The number of frames written to this adapter.
+     */
+    public long getWriteFrameCount() {
+        return _writeFrameCount;
+    }
+
+    /**
+     * @return The number of simulator commands executed by this adapter.
+     */
+    public long getCommandCount() {
+        return _commandCount;
+    }
+
+    @Override
+    public void setProgressChangeListener(IProgressEventListener listener) {
+    }
+
+    @Override
+    public void setSignalDataEventListener(ISignalDataListener listener) {
+        throw new UnsupportedOperationException("Not supported.");
+    }
+
+    @Override
+    public CommandDescriptor[] availableControlCommands() {
+        return new CommandDescriptor[0];
+    }
+
+    public Map<String, String> invokeControlCommand(Command command) throws IllegalArgumentException {
+        throw new IllegalArgumentException("Unknown control command: " + command);
+    }
+
+    @Override
+    public Result timeStepControl() {
+        return new Result(true);
+    }
+
+    @Override
+    public void powerUp() throws IOException {
+        throw new UnsupportedOperationException("Not supported.");
+    }
+
+    @Override
+    public void shutDown() throws IOException {
+        throw new UnsupportedOperationException("Not supported.");
+    }
+
+    @Override
+    public boolean canShutDownAndPowerUp() {
+        return false;
+    }
+
+    @Override
+    public boolean isSynchronous() {
+        return false;
+    }
+
+    @Override
+    public boolean reportsProgress() {
+        return false;
+    }
+
+    @Override
+    public boolean canReportStatus() {
+        return true;
+    }
+
+    @Override
+    public boolean canReportState() {
+        return true;
+    }
+
+    @Override
+    public boolean expectsSimulatorCommands() {
+        return true;
+    }
+
+    @Override
+    public boolean isReadEventDriven() {
+        return false;
+    }
+}
@@ -0,0 +1,113 @@
+/*
+    Copyright (C) 2010 LearningWell AB (www.learningwell.com), Kärnkraftsäkerhet och Utbildning AB (www.ksu.se)
+
+    This file is part of GIL (Generic Integration Layer).
+
+    GIL is free software: you can redistribute it and/or modify
+    it under the terms of the GNU Lesser General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    GIL is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public License
+    along with GIL.  If not, see <http://www.gnu.org/licenses/>.
+*/
+package gil.io.synthetic;
+
+import gil.common.InvalidParameterException;
+import gil.common.Parameters;
+import gil.core.SignalMetadata;
+import gil.core.SignalMetadata.SignalDataType;
+import gil.core.SimTime;
+import java.nio.ByteBuffer;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Helpers shared by the synthetic adapters, generating process data and simulating the latency of a real system.
+ *
+ * @author Göran Larsson @ LearningWell AB
+ */
+class SyntheticLoad {
+    private static final long _MICROSECONDS_PER_DAY = 24 * 3600 * 1000000L;
+
+    private SyntheticLoad() {
+    }
+
+    /**
+     * @return The value of the given optional integer parameter, or the default value if not given.
+     * @throws InvalidParameterException If the value is not a valid non negative integer.
+     */
+    static int getOptionalIntParam(Parameters config, String paramName, int defaultValue)
+            throws InvalidParameterException {
+        if (!config.getParameters().containsKey(paramName)) {
+            return defaultValue;
+        }
+        int value = config.getIntParam(paramName);
+        if (value < 0) {
+            throw new InvalidParameterException("Parameter '" + paramName + "' must not be negative.");
+        }
+        return value;
+    }
+
+    /**
+     * Blocks the calling thread for the given time, simulating the latency of a call to a real system.
+     */
+    static void delay(long microseconds) {
+        if (microseconds <= 0) {
+            return;
+        }
+        long deadline = System.nanoTime() + microseconds * 1000;
+        long remaining;
+        while ((remaining = deadline - System.nanoTime()) > 0) {
+            LockSupport.parkNanos(remaining);
+        }
+    }
+
+    /**
+     * Puts values for all elements of the given signals into the buffer, from its current position. The values
+     * change with each frame.
+     */
+    static void fill(ByteBuffer destBuf, SignalMetadata[] signals, long frameNo) {
+        int value = (int)frameNo;
+        for (SignalMetadata signal : signals) {
+            SignalDataType dataType = signal.getDataType();
+            for (int elm = 0; elm < signal.getLength(); elm++) {
+                ++value;
+                switch (dataType) {
+                    case Float32:
+                        destBuf.putFloat(value % 1000);
+                        break;
+                    case Float64:
+                        destBuf.putDouble(value % 1000);
+                        break;
+                    case Int8:
+                        destBuf.put((byte)(value & 1));
+                        break;
+                    case Int16:
+                        destBuf.putShort((short)value);
+                        break;
+                    case Int32:
+                        destBuf.putInt(value);
+                        break;
+                    default:
+                        throw new IllegalArgumentException("Unsupported data type " + dataType);
+                }
+            }
+        }
+    }
+
+    /**
+     * @return The simulation time of the given frame of a system running at the given frequency, counting the
+     * first frame from midnight.
+     */
+    static SimTime timeOfFrame(long frameNo, int frequency) {
+        long micros = (frameNo * 1000000L / frequency) % _MICROSECONDS_PER_DAY;
+        long seconds = micros / 1000000L;
+        return new SimTime(2010, 1, 1, (int)(seconds / 3600), (int)(seconds / 60 % 60), (int)(seconds % 60),
+                (int)(micros / 1000 % 1000), (int)(micros % 1000));
+    }
+}
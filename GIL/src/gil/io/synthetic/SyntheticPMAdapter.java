@@ -0,0 +1,175 @@
+/*
+    Copyright (C) 2010 LearningWell AB (www.learningwell.com), Kärnkraftsäkerhet och Utbildning AB (www.ksu.se)
+
+    This file is part of GIL (Generic Integration Layer).
+
+    GIL is free software: you can redistribute it and/or modify
+    it under the terms of the GNU Lesser General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    GIL is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public License
+    along with GIL.  If not, see <http://www.gnu.org/licenses/>.
+*/
+package gil.io.synthetic;
+
+import gil.common.CurrentTime;
+import gil.common.IProgressEventListener;
+import gil.common.InvalidParameterException;
+import gil.common.Parameters;
+import gil.common.Result;
+import gil.common.ValueResult;
+import gil.core.Command;
+import gil.core.CommandDescriptor;
+import gil.core.SignalMetadata;
+import gil.core.SimState;
+import gil.core.SimTime;
+import gil.core.SoftwareInfo;
+import gil.core.SystemStatus;
+import gil.io.IProcessModelAdapter;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Map;
+import org.apache.log4j.Logger;
+
+/**
+ * A process model adapter generating synthetic process data and simulator commands, used to load GIL with any
+ * number of signals at any frequency for capacity testing. No process model is attached.
+ * <p>
+ * The simulation time advances with the clock at the operating frequency, and each call to readSignalData
+ * returns values that change with each frame. Simulator commands are generated at a fixed rate.
+ * <p>
+ * Parameters given in the adapterSettings section, all optional:
+ * <ul>
+ * <li>operatingFrequency - The operating frequency in Hertz. Defaults to 1000.</li>
+ * <li>commandRate - The number of simulator commands generated each second. Defaults to 0.</li>
+ * <li>readLatency - The time in microseconds each call to readSignalData takes. Defaults to 0.</li>
+ * <li>writeLatency - The time in microseconds each call to writeSignalData takes. Defaults to 0.</li>
+ * <li>signalCount, dataTypeMix, toESShare - Read by {@link SyntheticSignalExchangeList} when generating the
+ * signal exchange list.</li>
+ * </ul>
+ *
+ * @author Göran Larsson @ LearningWell AB
+ */
+public class SyntheticPMAdapter implements IProcessModelAdapter {
+
+    private static final String CURRENT_VERSION = "1.0.0";
+    private static final int _MAX_COMMANDS_PER_READ = 100;
+
+    private static Logger _logger = Logger.getLogger(SyntheticPMAdapter.class);
+
+    private SignalMetadata[] _signalsToES;
+    private int _operatingFrequency;
+    private int _commandRate;
+    private int _readLatency;
+    private int _writeLatency;
+
+    private long _startTime;
+    private long _commandCount = 0;
+    private volatile long _readFrameCount = 0;
+    private volatile long _writeFrameCount = 0;
+
+    public void setup(SignalMetadata[] signalsToPM, SignalMetadata[] signalsToES, Parameters config)
+            throws InvalidParameterException {
+        _signalsToES = signalsToES;
+        _operatingFrequency = SyntheticLoad.getOptionalIntParam(config, "operatingFrequency", 1000);
+        if (_operatingFrequency <= 0) {
+            throw new InvalidParameterException("The operating frequency must be greater than zero.");
+        }
+        _commandRate = SyntheticLoad.getOptionalIntParam(config, "commandRate", 0);
+        _readLatency = SyntheticLoad.getOptionalIntParam(config, "readLatency", 0);
+        _writeLatency = SyntheticLoad.getOptionalIntParam(config, "writeLatency", 0);
+        _logger.info("Generating " + signalsToES.length + " signals at " + _operatingFrequency + " Hz.");
+    }
+
+    public void tearDown() {
+    }
+
+    public boolean connect() throws IOException {
+        _startTime = CurrentTime.instance().inMicroseconds();
+        _commandCount = 0;
+        return true;
+    }
+
+    public void disconnect() {
+    }
+
+    public ValueResult<SimTime> readSignalData(ByteBuffer destBuf) throws IOException {
+        SyntheticLoad.delay(_readLatency);
+        long frameNo = currentFrameNo();
+        SyntheticLoad.fill(destBuf, _signalsToES, frameNo);
+        ++_readFrameCount;
+        return new ValueResult<SimTime>(SyntheticLoad.timeOfFrame(frameNo, _operatingFrequency));
+    }
+
+    public Result writeSignalData(ByteBuffer values, SimTime origin) throws IOException {
+        SyntheticLoad.delay(_writeLatency);
+        ++_writeFrameCount;
+        return new Result(true);
+    }
+
+    public ValueResult<SimTime> getSimTime() throws IOException {
+        return new ValueResult<SimTime>(SyntheticLoad.timeOfFrame(currentFrameNo(), _operatingFrequency));
+    }
+
+    public int getOperatingFrequency() {
+        return _operatingFrequency;
+    }
+
+    /**
+     * Returns the commands due since the previous call, each named 'SYNTHETIC' with its sequence number as the
+     * parameter 'seqNo'.
+     */
+    public ValueResult<Command[]> readSimCommands() throws IOException {
+        long elapsed = CurrentTime.instance().inMicroseconds() - _startTime;
+        long due = elapsed * _commandRate / 1000000L;
+        int count = (int)Math.min(due - _commandCount, _MAX_COMMANDS_PER_READ);
+        Command[] commands = new Command[count];
+        SimTime now = SyntheticLoad.timeOfFrame(currentFrameNo(), _operatingFrequency);
+        for (int i = 0; i < count; i++) {
+            commands[i] = new Command("SYNTHETIC", now).addParameter("seqNo", Long.toString(_commandCount++));
+        }
+        // Commands not returned due to the limit are skipped.
+        _commandCount = Math.max(_commandCount, due);
+        return new ValueResult<Command[]>(commands);
+    }
+
+    public SoftwareInfo[] getInfo() {
+        return new SoftwareInfo[] {
+                new SoftwareInfo(this.getClass().getSimpleName(),
+                "Generates synthetic process data for capacity testing",
+                CURRENT_VERSION,
+                "LearningWell"),
+        };
+    }
+
+    public SystemStatus getStatus() {
+        return new SystemStatus(SystemStatus.OK, _readFrameCount + " frames read, " + _writeFrameCount
+                + " frames written");
+    }
+
+    public int getState() {
+        return SimState.RUN;
+    }
+
+    public boolean setProgressChangeListener(IProgressEventListener listener) {
+        return false;
+    }
+
+    public CommandDescriptor[] availableControlCommands() {
+        return new CommandDescriptor[0];
+    }
+
+    public Map<String, String> invokeControlCommand(Command command) throws IllegalArgumentException, IOException {
+        throw new IllegalArgumentException("Unknown control command: " + command);
+    }
+
+    private long currentFrameNo() {
+        return (CurrentTime.instance().inMicroseconds() - _startTime) * _operatingFrequency / 1000000L;
+    }
+}
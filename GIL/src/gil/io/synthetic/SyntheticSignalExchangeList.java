@@ -0,0 +1,152 @@
+/*
+    Copyright (C) 2010 LearningWell AB (www.learningwell.com), Kärnkraftsäkerhet och Utbildning AB (www.ksu.se)
+
+    This file is part of GIL (Generic Integration Layer).
+
+    GIL is free software: you can redistribute it and/or modify
+    it under the terms of the GNU Lesser General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    GIL is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public License
+    along with GIL.  If not, see <http://www.gnu.org/licenses/>.
+*/
+package gil.io.synthetic;
+
+import gil.common.ConfigFile;
+import gil.common.InvalidParameterException;
+import gil.common.Parameters;
+import gil.core.SignalMetadata.SignalDataType;
+import java.io.BufferedWriter;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Generates a signal exchange list for the synthetic adapters, with the number of signals, the mix of data types
+ * and the share of signals to the external system given by the settings of the {@link SyntheticPMAdapter}.
+ * <p>
+ * Settings read from the adapterSettings section of the {@link SyntheticPMAdapter}:
+ * <ul>
+ * <li>signalCount - The number of signals. Defaults to 1000.</li>
+ * <li>dataTypeMix - The relative number of signals of each data type, e.g. "Float32:6,Int32:2,Int8:2".
+ * Defaults to Float32 only.</li>
+ * <li>toESShare - The percentage of the signals transferred to the external system, the rest being transferred
+ * to the process model. Defaults to 50.</li>
+ * </ul>
+ * Run from the command line to write the list to the path given by signalExchangeList in the configuration
+ * file:
+ * <pre>
+ * java -cp GIL.jar gil.io.synthetic.SyntheticSignalExchangeList [configuration file, default gil.config.xml]
+ * </pre>
+ *
+ * @author Göran Larsson @ LearningWell AB
+ */
+public class SyntheticSignalExchangeList {
+
+    private SyntheticSignalExchangeList() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        String configPath = (args.length > 0) ? args[0] : "gil.config.xml";
+        ConfigFile config = ConfigFile.read(configPath);
+        String settingsPath = "adapterSettings/" + SyntheticPMAdapter.class.getName();
+        Parameters settings = config.sectionExists(settingsPath) ?
+            new Parameters(config.getPropertiesSection(settingsPath)) : new Parameters();
+        String selPath = config.getAppSetting("signalExchangeList");
+        Writer writer = new BufferedWriter(new FileWriter(selPath));
+        try {
+            write(writer, settings);
+        } finally {
+            writer.close();
+        }
+        System.out.println("Wrote " + SyntheticLoad.getOptionalIntParam(settings, "signalCount", 1000)
+                + " signals to " + selPath);
+    }
+
+    /**
+     * Writes a signal exchange list according to the given settings. Signals of each data type and direction
+     * are interleaved evenly.
+     * @throws InvalidParameterException If a setting is not valid.
+     */
+    public static void write(Writer writer, Parameters settings) throws IOException, InvalidParameterException {
+        int signalCount = SyntheticLoad.getOptionalIntParam(settings, "signalCount", 1000);
+        int toESShare = SyntheticLoad.getOptionalIntParam(settings, "toESShare", 50);
+        if (toESShare > 100) {
+            throw new InvalidParameterException("Parameter 'toESShare' must be a percentage, 0 - 100.");
+        }
+        String mix = settings.getParameters().containsKey("dataTypeMix") ?
+            settings.getParam("dataTypeMix") : "Float32:1";
+        SignalDataType[] dataTypes = parseDataTypeMix(mix);
+
+        writer.write("! Synthetic signal exchange list, " + signalCount + " signals, data type mix " + mix
+                + ", " + toESShare + "% to the external system.\n");
+        writer.write("Type DataType Length Direction PMID ESID Description\n");
+        for (int i = 0; i < signalCount; i++) {
+            SignalDataType dataType = dataTypes[i % dataTypes.length];
+            // Spreads the signals to the external system evenly, e.g. every other signal at 50%.
+            boolean toES = ((i + 1) * toESShare / 100) > (i * toESShare / 100);
+            String id = String.format("S%06d", i);
+            writer.write((dataType == SignalDataType.Int8) ? "Digital " : "Analog ");
+            writer.write(dataType.name());
+            writer.write(toES ? " 1 ToES " : " 1 ToPM ");
+            writer.write(id);
+            writer.write(' ');
+            writer.write(id);
+            writer.write(" Synthetic\n");
+        }
+    }
+
+    /**
+     * @return The data types in the proportions given, interleaved, e.g. Float32, Int32, Float32 for
+     * "Float32:2,Int32:1".
+     */
+    private static SignalDataType[] parseDataTypeMix(String mix) throws InvalidParameterException {
+        List<SignalDataType> types = new ArrayList<SignalDataType>();
+        List<Integer> weights = new ArrayList<Integer>();
+        int total = 0;
+        for (String entry : mix.split(",")) {
+            String[] parts = entry.trim().split(":");
+            try {
+                SignalDataType type = SignalDataType.valueOf(parts[0].trim());
+                int weight = (parts.length > 1) ? Integer.parseInt(parts[1].trim()) : 1;
+                if (type == SignalDataType.Illegal || weight < 0 || parts.length > 2) {
+                    throw new IllegalArgumentException();
+                }
+                types.add(type);
+                weights.add(weight);
+                total += weight;
+            } catch (IllegalArgumentException ex) {
+                throw new InvalidParameterException("'" + entry + "' in parameter 'dataTypeMix' is not a valid "
+                        + "<data type>:<weight> entry.");
+            }
+        }
+        if (total == 0) {
+            throw new InvalidParameterException("Parameter 'dataTypeMix' must give at least one data type.");
+        }
+        // Picks the type falling most behind its share at each position.
+        SignalDataType[] result = new SignalDataType[total];
+        int[] counts = new int[types.size()];
+        for (int i = 0; i < total; i++) {
+            int best = 0;
+            double bestDeficit = Double.NEGATIVE_INFINITY;
+            for (int t = 0; t < types.size(); t++) {
+                double deficit = (double)weights.get(t) * (i + 1) / total - counts[t];
+                if (deficit > bestDeficit) {
+                    bestDeficit = deficit;
+                    best = t;
+                }
+            }
+            ++counts[best];
+            result[i] = types.get(best);
+        }
+        return result;
+    }
+}
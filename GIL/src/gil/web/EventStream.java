@@ -0,0 +1,192 @@
+/*
+    Copyright (C) 2010 LearningWell AB (www.learningwell.com), Kärnkraftsäkerhet och Utbildning AB (www.ksu.se)
+
+    This file is part of GIL (Generic Integration Layer).
+
+    GIL is free software: you can redistribute it and/or modify
+    it under the terms of the GNU Lesser General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    GIL is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public License
+    along with GIL.  If not, see <http://www.gnu.org/licenses/>.
+*/
+package gil.web;
+
+import java.io.ByteArrayOutputStream;
+import java.io.UnsupportedEncodingException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Distributes named events to the subscribers of a Server-Sent Events stream.
+ * <p>
+ * Only the latest event of each name is kept. Publishing an event equal to the latest one of the same name is
+ * ignored, so subscribers only receive the events that have changed. Each event is encoded once when published,
+ * and the encoded bytes are shared by all subscribers. A subscriber that falls behind skips the events replaced
+ * while it was writing, so slow subscribers never queue up events. A new subscriber receives the latest event of
+ * each name at once. The events are forgotten when the last subscriber cancels, since they are not kept up to date
+ * while nobody subscribes, so a later subscriber only receives events published after that.
+ * <p>
+ * At most the number of subscribers given when this object was created are accepted, since each subscriber holds
+ * a thread of the web server while subscribed.
+ * <p>
+ * Methods in this object are thread safe.
+ *
+ * @author Göran Larsson @ LearningWell AB
+ */
+public class EventStream {
+    public static final String CONTENT_TYPE = "text/event-stream";
+    private static final byte[] _HEARTBEAT = encode(":\n\n");
+
+    private final int _maxSubscribers;
+    private final Map<String, Event> _events = new LinkedHashMap<String, Event>();
+    private long _sequence = 0;
+    private long _forgottenSequence = 0;
+    private int _subscriberCount = 0;
+    private boolean _closed = false;
+
+    /**
+     * Receives the events of the stream. Methods in this object must be called from a single thread.
+     */
+    public class Subscription {
+        private long _sentSequence;
+        private boolean _cancelled = false;
+
+        private Subscription() {
+            _sentSequence = _forgottenSequence;
+        }
+
+        /**
+         * Waits until events are published that are not yet received by this subscription, or until the given
+         * timeout elapses.
+         * @param timeoutMillis The maximum time to wait in milliseconds.
+         * @return The encoded events, or a comment keeping the connection alive if the timeout elapsed. null if
+         * the stream is closed or the subscription cancelled.
+         * @throws InterruptedException If the calling thread is interrupted while waiting.
+         */
+        public byte[] next(long timeoutMillis) throws InterruptedException {
+            synchronized (EventStream.this) {
+                // The deadline is taken from the monotonic clock, so that a change of the wall clock neither
+                // delays nor hastens the heartbeat.
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+                while (!_closed && !_cancelled && _sequence == _sentSequence) {
+                    long remaining = deadline - System.nanoTime();
+                    if (remaining <= 0) {
+                        return _HEARTBEAT;
+                    }
+                    TimeUnit.NANOSECONDS.timedWait(EventStream.this, remaining);
+                }
+                if (_closed || _cancelled) {
+                    return null;
+                }
+                ByteArrayOutputStream events = new ByteArrayOutputStream();
+                for (Event event : _events.values()) {
+                    if (event.sequence > _sentSequence) {
+                        events.write(event.bytes, 0, event.bytes.length);
+                    }
+                }
+                _sentSequence = _sequence;
+                return events.toByteArray();
+            }
+        }
+
+        /**
+         * Ends the subscription, making room for another subscriber.
+         */
+        public void cancel() {
+            synchronized (EventStream.this) {
+                if (!_cancelled) {
+                    _cancelled = true;
+                    if (--_subscriberCount == 0) {
+                        _events.clear();
+                        _forgottenSequence = _sequence;
+                    }
+                    EventStream.this.notifyAll();
+                }
+            }
+        }
+    }
+
+    private static class Event {
+        final long sequence;
+        final String data;
+        final byte[] bytes;
+
+        Event(long sequence, String name, String data) {
+            this.sequence = sequence;
+            this.data = data;
+            StringBuilder text = new StringBuilder();
+            text.append("event: ").append(name).append('\n');
+            for (String line : data.split("\n", -1)) {
+                text.append("data: ").append(line).append('\n');
+            }
+            text.append('\n');
+            this.bytes = encode(text.toString());
+        }
+    }
+
+    /**
+     * @param maxSubscribers The maximum number of simultaneous subscribers.
+     */
+    public EventStream(int maxSubscribers) {
+        _maxSubscribers = maxSubscribers;
+    }
+
+    /**
+     * @return A new subscription, or null if the maximum number of subscribers is reached or the stream is closed.
+     */
+    public synchronized Subscription subscribe() {
+        if (_closed || _subscriberCount >= _maxSubscribers) {
+            return null;
+        }
+        ++_subscriberCount;
+        return new Subscription();
+    }
+
+    /**
+     * Publishes an event to all subscribers, unless it is equal to the latest event of the same name.
+     * @param name The name of the event. Must not contain line breaks.
+     * @param data The data of the event.
+     * @return true if the event is published, false if it is unchanged.
+     */
+    public synchronized boolean publish(String name, String data) {
+        Event latest = _events.get(name);
+        if (latest != null && latest.data.equals(data)) {
+            return false;
+        }
+        _events.put(name, new Event(++_sequence, name, data));
+        notifyAll();
+        return true;
+    }
+
+    /**
+     * Ends all subscriptions. Subsequent calls to subscribe return null.
+     */
+    public synchronized void close() {
+        _closed = true;
+        notifyAll();
+    }
+
+    public int getMaxSubscribers() {
+        return _maxSubscribers;
+    }
+
+    public synchronized int getSubscriberCount() {
+        return _subscriberCount;
+    }
+
+    private static byte[] encode(String text) {
+        try {
+            return text.getBytes("UTF-8");
+        } catch (UnsupportedEncodingException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+}
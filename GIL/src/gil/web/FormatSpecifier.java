@@ -27,4 +27,5 @@ public class FormatSpecifier {
     public static final String XML = ".xml";
     public static final String HTML = ".html";
     public static final String JSON = ".json";
+    public static final String BINARY = ".bin";
 }
@@ -0,0 +1,74 @@
+/*
+    Copyright (C) 2010 LearningWell AB (www.learningwell.com), Kärnkraftsäkerhet och Utbildning AB (www.ksu.se)
+
+    This file is part of GIL (Generic Integration Layer).
+
+    GIL is free software: you can redistribute it and/or modify
+    it under the terms of the GNU Lesser General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    GIL is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public License
+    along with GIL.  If not, see <http://www.gnu.org/licenses/>.
+*/
+package gil.web;
+
+import gil.common.AsyncResult;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Keeps the results of control commands that were not completed when the web request invoking them was answered,
+ * so that the client may fetch the result later by its id.
+ * <p>
+ * A result is kept until it is fetched after the command is completed. At most {@link #MAX_PENDING} results are
+ * kept; when the limit is reached the oldest result is forgotten. Forgetting a result does not cancel its command.
+ * <p>
+ * Methods in this object are thread safe.
+ *
+ * @author Göran Larsson @ LearningWell AB
+ */
+public class PendingCommandResults {
+    public static final int MAX_PENDING = 100;
+
+    private long _nextId = 1;
+    private final Map<String, AsyncResult<Map<String, String>>> _results =
+            new LinkedHashMap<String, AsyncResult<Map<String, String>>>() {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, AsyncResult<Map<String, String>>> eldest) {
+            return size() > MAX_PENDING;
+        }
+    };
+
+    /**
+     * @return The id by which the result may be fetched.
+     */
+    public synchronized String add(AsyncResult<Map<String, String>> result) {
+        String id = Long.toString(_nextId++);
+        _results.put(id, result);
+        return id;
+    }
+
+    /**
+     * @return The result with the given id, or null if there is no such result. A completed result is forgotten
+     * when returned.
+     */
+    public synchronized AsyncResult<Map<String, String>> get(String id) {
+        AsyncResult<Map<String, String>> result = _results.get(id);
+        if (result != null && result.isDone()) {
+            _results.remove(id);
+        }
+        return result;
+    }
+
+    public synchronized int size() {
+        return _results.size();
+    }
+}
@@ -0,0 +1,385 @@
+/*
+    Copyright (C) 2010 LearningWell AB (www.learningwell.com), Kärnkraftsäkerhet och Utbildning AB (www.ksu.se)
+
+    This file is part of GIL (Generic Integration Layer).
+
+    GIL is free software: you can redistribute it and/or modify
+    it under the terms of the GNU Lesser General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    GIL is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public License
+    along with GIL.  If not, see <http://www.gnu.org/licenses/>.
+*/
+package gil.web;
+
+import gil.common.CurrentTime;
+import gil.core.FrameHistory;
+import gil.core.SignalMetadata;
+import gil.core.SignalMetadata.DataflowDirection;
+import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import org.apache.log4j.Logger;
+
+/**
+ * Streams the live values of signals to the subscribers of web clients.
+ * <p>
+ * Each subscription names a set of signals, a maximum update rate and a format. Updates are made by a publisher
+ * thread of its own, which reads the values of the subscribed signals from the latest frames recorded in each
+ * direction, encodes them and hands the update to the subscription. An update is made at most at the rate of the
+ * subscription and only when a new frame is recorded in the direction of any of its signals, so the frames in
+ * between are skipped. A subscriber that has not taken the previous update when the next one is made gets the
+ * latest one only. The frames are read without blocking the recording of them, so neither the publisher nor the
+ * subscribers ever hold up the transfer of process data. If the frames are not recorded when this object is
+ * created, the recording is turned on only while there are subscribers.
+ * <p>
+ * The JSON format is a Server-Sent Events stream of "values" events, each holding an object with the values of
+ * each signal by the ID it was subscribed by. Values not available are given as null. The binary format is a
+ * stream of updates, each a 32 bit length in bytes followed by the values of the signals in the order subscribed,
+ * as 64 bit IEEE 754 floating point numbers, all in network byte order. Values not available are given as NaN.
+ * An empty update, or a comment in the JSON format, is sent when there are no updates within the timeout given
+ * when waiting for the next update.
+ * <p>
+ * At most the number of subscribers given when this object was created are accepted, since each subscriber holds
+ * a thread of the web server while subscribed. Methods in this object are thread safe, except publishOnce which
+ * must be called from a single thread.
+ *
+ * @author Göran Larsson @ LearningWell AB
+ */
+public class SignalStream implements Runnable {
+    public static final int MAX_RATE = 100; // in Hertz
+    public static final String BINARY_CONTENT_TYPE = "application/octet-stream";
+
+    public enum Format { JSON, BINARY }
+
+    private static final byte[] _JSON_HEARTBEAT = encode(":\n\n");
+    private static final byte[] _BINARY_HEARTBEAT = new byte[4];
+
+    private static Logger _logger = Logger.getLogger(SignalStream.class);
+
+    private final FrameHistory _toESFrames;
+    private final FrameHistory _toPMFrames;
+    private final int _maxSubscribers;
+    private final boolean _recordWhileSubscribed;
+    private final List<Subscription> _subscriptions = new CopyOnWriteArrayList<Subscription>();
+    private boolean _closed = false;
+    private volatile boolean _stop = false;
+    private Thread _thread = null;
+
+    /**
+     * Receives the updates of the values of a set of signals. Methods in this object must be called from a single
+     * thread.
+     */
+    public class Subscription {
+        private final String[] _ids;
+        private final Format _format;
+        private final long _intervalNanos;
+        private final SignalMetadata[] _toESSignals;
+        private final SignalMetadata[] _toPMSignals;
+        // The index in the subscribed order of each signal in _toESSignals followed by each in _toPMSignals.
+        private final int[] _order;
+        private final int[] _valueCounts;
+        private long _nextUpdate = Long.MIN_VALUE;
+        private final long _toESStartCount;
+        private final long _toPMStartCount;
+        private long _toESRecordedCount;
+        private long _toPMRecordedCount;
+        private byte[] _pending = null;
+        private boolean _cancelled = false;
+
+        private Subscription(SignalMetadata[] signals, String[] ids, int rate, Format format) {
+            // Only frames recorded from now on are published. Older frames may be outdated if the recording was off.
+            _toESStartCount = _toESFrames.getRecordedCount();
+            _toPMStartCount = _toPMFrames.getRecordedCount();
+            _toESRecordedCount = _toESStartCount;
+            _toPMRecordedCount = _toPMStartCount;
+            _ids = ids;
+            _format = format;
+            _intervalNanos = 1000000000L / rate;
+            List<SignalMetadata> toES = new ArrayList<SignalMetadata>();
+            List<SignalMetadata> toPM = new ArrayList<SignalMetadata>();
+            _order = new int[signals.length];
+            _valueCounts = new int[signals.length];
+            for (int i = 0; i < signals.length; i++) {
+                if (signals[i].getDataflowDirection() == DataflowDirection.ToES) {
+                    toES.add(signals[i]);
+                }
+                _valueCounts[i] = signals[i].getLength();
+            }
+            for (int i = 0, j = 0, k = toES.size(); i < signals.length; i++) {
+                if (signals[i].getDataflowDirection() == DataflowDirection.ToES) {
+                    _order[j++] = i;
+                } else {
+                    toPM.add(signals[i]);
+                    _order[k++] = i;
+                }
+            }
+            _toESSignals = toES.toArray(new SignalMetadata[toES.size()]);
+            _toPMSignals = toPM.toArray(new SignalMetadata[toPM.size()]);
+        }
+
+        /**
+         * Waits until an update is made, or until the given timeout elapses.
+         * @param timeoutMillis The maximum time to wait in milliseconds.
+         * @return The encoded update, or an empty update if the timeout elapsed. null if the stream is closed or
+         * the subscription cancelled.
+         * @throws InterruptedException If the calling thread is interrupted while waiting.
+         */
+        public synchronized byte[] next(long timeoutMillis) throws InterruptedException {
+            // The deadline is taken from the monotonic clock, so that a change of the wall clock neither delays
+            // nor hastens the heartbeat.
+            long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+            while (!_cancelled && _pending == null) {
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    return (_format == Format.JSON) ? _JSON_HEARTBEAT : _BINARY_HEARTBEAT;
+                }
+                TimeUnit.NANOSECONDS.timedWait(this, remaining);
+            }
+            byte[] update = _pending;
+            _pending = null;
+            return _cancelled ? null : update;
+        }
+
+        /**
+         * Ends the subscription, making room for another subscriber.
+         */
+        public void cancel() {
+            if (_subscriptions.remove(this)) {
+                synchronized (this) {
+                    _cancelled = true;
+                    notifyAll();
+                }
+                updateRecording();
+            }
+        }
+
+        private synchronized void offer(byte[] update) {
+            _pending = update;
+            notifyAll();
+        }
+
+        /**
+         * @return The update, or null if no new frame is recorded in the direction of any signal.
+         */
+        private byte[] update() {
+            long toESCount = _toESFrames.getRecordedCount();
+            long toPMCount = _toPMFrames.getRecordedCount();
+            // A direction without subscribed signals never makes an update.
+            boolean toESChanged = _toESSignals.length > 0 && toESCount != _toESRecordedCount;
+            boolean toPMChanged = _toPMSignals.length > 0 && toPMCount != _toPMRecordedCount;
+            if (!toESChanged && !toPMChanged) {
+                return null;
+            }
+            _toESRecordedCount = toESCount;
+            _toPMRecordedCount = toPMCount;
+
+            double[][] values = new double[_order.length][];
+            collect(values, 0, _toESSignals, _toESFrames, _toESStartCount);
+            collect(values, _toESSignals.length, _toPMSignals, _toPMFrames, _toPMStartCount);
+            return (_format == Format.JSON) ? encodeJSON(values) : encodeBinary(values);
+        }
+
+        private void collect(double[][] values, int offset, SignalMetadata[] signals, FrameHistory frames,
+                long startCount) {
+            if (signals.length == 0) {
+                return;
+            }
+            FrameHistory.Snapshot snapshot = frames.getLatest(signals);
+            boolean available = (snapshot != null && snapshot.frameNo >= startCount);
+            for (int i = 0; i < signals.length; i++) {
+                values[_order[offset + i]] = available ? snapshot.values[i] : null;
+            }
+        }
+
+        private byte[] encodeJSON(double[][] values) {
+            StringBuilder text = new StringBuilder("event: values\ndata: {");
+            for (int i = 0; i < values.length; i++) {
+                if (i > 0) {
+                    text.append(',');
+                }
+                appendJSONString(text, _ids[i]);
+                text.append(":[");
+                for (int j = 0; j < _valueCounts[i]; j++) {
+                    if (j > 0) {
+                        text.append(',');
+                    }
+                    appendJSONNumber(text, (values[i] == null) ? Double.NaN : values[i][j]);
+                }
+                text.append(']');
+            }
+            text.append("}\n\n");
+            return encode(text.toString());
+        }
+
+        private byte[] encodeBinary(double[][] values) {
+            int count = 0;
+            for (int valueCount : _valueCounts) {
+                count += valueCount;
+            }
+            ByteBuffer update = ByteBuffer.allocate(4 + count * 8);
+            update.putInt(count * 8);
+            for (int i = 0; i < values.length; i++) {
+                for (int j = 0; j < _valueCounts[i]; j++) {
+                    update.putDouble((values[i] == null) ? Double.NaN : values[i][j]);
+                }
+            }
+            return update.array();
+        }
+    }
+
+    /**
+     * @param toESFrames The latest frames transferred to the external systems.
+     * @param toPMFrames The latest frames transferred to the process models.
+     * @param maxSubscribers The maximum number of simultaneous subscribers.
+     */
+    public SignalStream(FrameHistory toESFrames, FrameHistory toPMFrames, int maxSubscribers) {
+        _toESFrames = toESFrames;
+        _toPMFrames = toPMFrames;
+        _maxSubscribers = maxSubscribers;
+        _recordWhileSubscribed = !toESFrames.isRecording() || !toPMFrames.isRecording();
+    }
+
+    /**
+     * @param signals The signals to receive the values of.
+     * @param ids The ID by which each signal is named in the JSON format.
+     * @param rate The maximum number of updates per second, between 1 and {@value #MAX_RATE}.
+     * @return A new subscription, or null if the maximum number of subscribers is reached or the stream is closed.
+     */
+    public synchronized Subscription subscribe(SignalMetadata[] signals, String[] ids, int rate, Format format) {
+        if (signals.length != ids.length) {
+            throw new IllegalArgumentException("Expected one ID for each signal.");
+        }
+        if (rate < 1 || rate > MAX_RATE) {
+            throw new IllegalArgumentException("The rate must be between 1 and " + MAX_RATE + " updates per second.");
+        }
+        if (_closed || _subscriptions.size() >= _maxSubscribers) {
+            return null;
+        }
+        Subscription subscription = new Subscription(signals, ids, rate, format);
+        _subscriptions.add(subscription);
+        updateRecording();
+        notifyAll();
+        return subscription;
+    }
+
+    /**
+     * Turns the recording of the frames on while there are subscribers, unless the frames are always recorded.
+     */
+    private synchronized void updateRecording() {
+        if (_recordWhileSubscribed) {
+            _toESFrames.setRecording(!_subscriptions.isEmpty());
+            _toPMFrames.setRecording(!_subscriptions.isEmpty());
+        }
+    }
+
+    /**
+     * Makes the updates of the subscriptions that are due.
+     * @param now The current time in nanoseconds, as given by {@link gil.common.CurrentTime#inNanoseconds()}.
+     */
+    public void publishOnce(long now) {
+        for (Subscription subscription : _subscriptions) {
+            if (subscription._nextUpdate != Long.MIN_VALUE && now - subscription._nextUpdate < 0) {
+                continue;
+            }
+            byte[] update = subscription.update();
+            if (update != null) {
+                subscription.offer(update);
+                subscription._nextUpdate = now + subscription._intervalNanos;
+            }
+        }
+    }
+
+    public void start() {
+        _thread = new Thread(this, "GIL-Signals");
+        _thread.setDaemon(true);
+        _thread.start();
+    }
+
+    /**
+     * Stops the publisher thread and ends all subscriptions. Subsequent calls to subscribe return null.
+     */
+    public void stop() throws InterruptedException {
+        synchronized (this) {
+            _closed = true;
+            _stop = true;
+            notifyAll();
+        }
+        for (Subscription subscription : _subscriptions) {
+            subscription.cancel();
+        }
+        if (_thread != null) {
+            _thread.interrupt();
+            _thread.join(10000);
+            _thread = null;
+        }
+    }
+
+    public int getMaxSubscribers() {
+        return _maxSubscribers;
+    }
+
+    public int getSubscriberCount() {
+        return _subscriptions.size();
+    }
+
+    public void run() {
+        try {
+            while (!_stop) {
+                synchronized (this) {
+                    while (!_stop && _subscriptions.isEmpty()) {
+                        wait();
+                    }
+                }
+                publishOnce(CurrentTime.instance().inNanoseconds());
+                Thread.sleep(1000 / MAX_RATE);
+            }
+        } catch (InterruptedException ex) {
+            // Stopped
+        } catch (Exception ex) {
+            _logger.error("Unexpected failure when publishing live signal values. No more values are published.", ex);
+        }
+    }
+
+    private static void appendJSONString(StringBuilder text, String s) {
+        text.append('"');
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c == '"' || c == '\\') {
+                text.append('\\').append(c);
+            } else if (c < 0x20) {
+                text.append(String.format("\\u%04x", (int)c));
+            } else {
+                text.append(c);
+            }
+        }
+        text.append('"');
+    }
+
+    private static void appendJSONNumber(StringBuilder text, double value) {
+        if (Double.isNaN(value) || Double.isInfinite(value)) {
+            text.append("null");
+        } else if (value == Math.rint(value) && Math.abs(value) < 1e15) {
+            text.append((long)value);
+        } else {
+            text.append(value);
+        }
+    }
+
+    private static byte[] encode(String text) {
+        try {
+            return text.getBytes("UTF-8");
+        } catch (UnsupportedEncodingException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+}
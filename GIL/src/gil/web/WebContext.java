@@ -19,12 +19,17 @@
 package gil.web;
 
 /**
+ * Holds the settings and the state shared by the web resources.
  * @author Göran Larsson @ LearningWell AB
  */
 public class WebContext {
     private static WebContext _instance = null;
 
     private String _staticFilesFolder = "files";
+    private volatile long _commandTimeout = 200;
+    private final PendingCommandResults _pendingCommandResults = new PendingCommandResults();
+    private volatile EventStream _eventStream = new EventStream(0);
+    private volatile SignalStream _signalStream = null;
 
     private WebContext() {
     }
@@ -45,4 +50,46 @@ public class WebContext {
     public void setStaticFilesFolder(String path) {
         _staticFilesFolder = path;
     }
+
+    /**
+     * @return The time in milliseconds a control command is waited for before the request is answered with
+     * 202 Accepted and a URI where the result may be fetched later.
+     */
+    public long getCommandTimeout() {
+        return _commandTimeout;
+    }
+
+    public void setCommandTimeout(long milliseconds) {
+        _commandTimeout = milliseconds;
+    }
+
+    /**
+     * @return The results of control commands not completed when their request was answered.
+     */
+    public PendingCommandResults getPendingCommandResults() {
+        return _pendingCommandResults;
+    }
+
+    /**
+     * @return The stream of status and statistics events pushed to the clients. Accepts no subscribers until set
+     * by the web server.
+     */
+    public EventStream getEventStream() {
+        return _eventStream;
+    }
+
+    public void setEventStream(EventStream stream) {
+        _eventStream = stream;
+    }
+
+    /**
+     * @return The stream of live signal values pushed to the clients, or null until set by the web server.
+     */
+    public SignalStream getSignalStream() {
+        return _signalStream;
+    }
+
+    public void setSignalStream(SignalStream stream) {
+        _signalStream = stream;
+    }
 }
@@ -25,6 +25,10 @@ import com.sun.grizzly.tcp.http11.GrizzlyRequest;
 import com.sun.grizzly.tcp.http11.GrizzlyResponse;
 
 import com.sun.jersey.spi.container.servlet.ServletContainer;
+import gil.GIL;
+import gil.core.IntegrationExecutive;
+import gil.core.SignalMetadata.DataflowDirection;
+import gil.web.resources.EventPublisher;
 import java.io.IOException;
 
 /**
@@ -33,8 +37,15 @@ import java.io.IOException;
  * @author Göran Larsson @ LearningWell AB
  */
 public class WebServer {
+    private static final int _REQUEST_THREADS = 5;
+    private static final int _MAX_EVENT_SUBSCRIBERS = 16;
+    private static final int _MAX_SIGNAL_SUBSCRIBERS = 16;
+    private static final long _EVENT_INTERVAL = 1000; // in milliseconds
 
     GrizzlyWebServer _ws = null;
+    EventStream _eventStream = null;
+    EventPublisher _eventPublisher = null;
+    SignalStream _signalStream = null;
 
     /**
      * Starts the GIL web server.
@@ -49,6 +60,14 @@ public class WebServer {
             throw new IllegalStateException("Web server allready started");
 
         _ws = new GrizzlyWebServer(port);
+        // Each event stream and signal stream subscriber holds a thread while subscribed.
+        _ws.setMaxThreads(_REQUEST_THREADS + _MAX_EVENT_SUBSCRIBERS + _MAX_SIGNAL_SUBSCRIBERS);
+        _eventStream = new EventStream(_MAX_EVENT_SUBSCRIBERS);
+        WebContext.instance().setEventStream(_eventStream);
+        IntegrationExecutive exec = GIL.instance().getExecutive();
+        _signalStream = new SignalStream(exec.getLatestFrames(DataflowDirection.ToES),
+                exec.getLatestFrames(DataflowDirection.ToPM), _MAX_SIGNAL_SUBSCRIBERS);
+        WebContext.instance().setSignalStream(_signalStream);
 
         // Jersey web resources
         ServletAdapter jerseyAdapter = new ServletAdapter();
@@ -66,9 +85,29 @@ public class WebServer {
 
         _ws.addGrizzlyAdapter(jerseyAdapter, new String[] {resourcesPath});
         _ws.start();
+        _eventPublisher = new EventPublisher(_eventStream, _EVENT_INTERVAL);
+        _eventPublisher.start();
+        _signalStream.start();
     }
     
     public void stop() {
+        if (_eventPublisher != null) {
+            try {
+                _eventPublisher.stop();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+            _eventPublisher = null;
+            _eventStream.close();
+        }
+        if (_signalStream != null) {
+            try {
+                _signalStream.stop();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+            _signalStream = null;
+        }
         if (_ws != null) {
             _ws.stop();
             _ws = null;
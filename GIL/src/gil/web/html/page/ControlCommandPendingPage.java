@@ -0,0 +1,43 @@
+/*
+    Copyright (C) 2010 LearningWell AB (www.learningwell.com), Kärnkraftsäkerhet och Utbildning AB (www.ksu.se)
+
+    This file is part of GIL (Generic Integration Layer).
+
+    GIL is free software: you can redistribute it and/or modify
+    it under the terms of the GNU Lesser General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    GIL is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public License
+    along with GIL.  If not, see <http://www.gnu.org/licenses/>.
+*/
+package gil.web.html.page;
+
+import gil.web.html.Div;
+import gil.web.html.Heading;
+import gil.web.html.Link;
+import gil.web.html.Paragraph;
+import gil.web.html.PlainText;
+
+/**
+ * Html page telling that a control command is not yet completed and where its result may be fetched.
+ * @author Göran Larsson @ LearningWell AB
+ */
+public class ControlCommandPendingPage extends MasterPage {
+
+    public ControlCommandPendingPage(String resultUri) {
+        Div div = new Div("");
+        div.addContent(new Heading("Result", Heading.H2));
+        div.addContent(new PlainText("The command is not yet completed."));
+        Paragraph p = new Paragraph();
+        p.addContent(new Link(resultUri, "Fetch the result"));
+        div.addContent(p);
+
+        this.setSectionContent("content", div);
+    }
+}
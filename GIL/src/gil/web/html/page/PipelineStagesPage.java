@@ -25,23 +25,81 @@ import gil.web.html.Link;
 import gil.web.html.PlainText;
 import gil.web.html.Table;
 import gil.web.jaxb.PipelineStage;
+import gil.web.jaxb.StageTimes;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
 
 /**
- * Page that list all available transfer pipeline stages as hyperlinks
+ * Page that list all available transfer pipeline stages as hyperlinks, together with the time each stage takes to
+ * process a frame in each direction and its share of the time of all stages. The stages feeding a single external
+ * system only are listed in a table of their own for each external system.
  * @author Göran Larsson @ LearningWell AB
  */
 public class PipelineStagesPage extends MasterPage {
     
     public PipelineStagesPage(PipelineStage[] stages) {
+        Div div = new Div("");
+        div.addContent(new Heading("Transfer pipeline stages", Heading.H2)).addContent(createTable(stages, null));
+
+        Set<Integer> externalSystems = new TreeSet<Integer>();
+        for (PipelineStage stage : stages) {
+            if (stage.getExternalSystem() != null) {
+                externalSystems.add(stage.getExternalSystem());
+            }
+        }
+        for (Integer externalSystem : externalSystems) {
+            div.addContent(new Heading("Stages of external system " + externalSystem, Heading.H2))
+                    .addContent(createTable(stages, externalSystem));
+        }
+        this.setSectionContent("content", div);
+    }
 
-        Table table = new Table(new INodeableContent[] {new PlainText("SeqNo"), new PlainText("Name"), new PlainText("Link")});
+    /**
+     * Creates a table of the stages feeding the given external system only, or of the stages of the transfer
+     * pipeline if externalSystem is null.
+     */
+    private static Table createTable(PipelineStage[] allStages, Integer externalSystem) {
+        List<PipelineStage> stages = new ArrayList<PipelineStage>();
+        for (PipelineStage stage : allStages) {
+            if ((externalSystem == null) ? stage.getExternalSystem() == null
+                    : externalSystem.equals(stage.getExternalSystem())) {
+                stages.add(stage);
+            }
+        }
+
+        Table table = new Table(new INodeableContent[] {new PlainText("SeqNo"), new PlainText("Name"),
+            new PlainText("To ES mean / p99 / max (us)"), new PlainText("To ES share"),
+            new PlainText("To PM mean / p99 / max (us)"), new PlainText("To PM share"), new PlainText("Link")});
+        long toESTotal = 0;
+        long toPMTotal = 0;
+        for (PipelineStage stage : stages) {
+            toESTotal += (stage.getToES() == null) ? 0 : stage.getToES().mean;
+            toPMTotal += (stage.getToPM() == null) ? 0 : stage.getToPM().mean;
+        }
         int seqNo = 0;
         for (PipelineStage stage : stages) {
             table.addRow(new INodeableContent[] {new PlainText(Integer.toString(seqNo++)), new PlainText(stage.getName()),
-                new Link(stage.getCommandsLink(), stage.getCommandsLink())});
+                new PlainText(formatTimes(stage.getToES())), new PlainText(formatShare(stage.getToES(), toESTotal)),
+                new PlainText(formatTimes(stage.getToPM())), new PlainText(formatShare(stage.getToPM(), toPMTotal)),
+                (stage.getCommandsLink() == null) ? new PlainText("-")
+                        : new Link(stage.getCommandsLink(), stage.getCommandsLink())});
         }
-        Div div = new Div("");
-        div.addContent(new Heading("Transfer pipeline stages", Heading.H2)).addContent(table);
-        this.setSectionContent("content", div);
+        return table;
+    }
+
+    private static String formatTimes(StageTimes times) {
+        if (times == null || times.count == 0) {
+            return "-";
+        }
+        return String.format("%.1f / %.1f / %.1f", times.mean / 1000.0, times.p99 / 1000.0, times.max / 1000.0);
+    }
+
+    private static String formatShare(StageTimes times, long total) {
+        if (times == null || total == 0) {
+            return "-";
+        }
+        return String.format("%d %%", Math.round(100.0 * times.mean / total));
     }
 }
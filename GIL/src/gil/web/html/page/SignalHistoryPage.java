@@ -0,0 +1,56 @@
+/*
+    Copyright (C) 2010 LearningWell AB (www.learningwell.com), Kärnkraftsäkerhet och Utbildning AB (www.ksu.se)
+
+    This file is part of GIL (Generic Integration Layer).
+
+    GIL is free software: you can redistribute it and/or modify
+    it under the terms of the GNU Lesser General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    GIL is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public License
+    along with GIL.  If not, see <http://www.gnu.org/licenses/>.
+*/
+package gil.web.html.page;
+
+import gil.web.html.Div;
+import gil.web.html.Heading;
+import gil.web.html.INodeableContent;
+import gil.web.html.PlainText;
+import gil.web.html.Table;
+import gil.web.jaxb.SignalHistoryJAXB;
+
+/**
+ * Html page viewing the recent values of a signal in a table, oldest first.
+ * @author Göran Larsson @ LearningWell AB
+ */
+public class SignalHistoryPage extends MasterPage {
+
+    public SignalHistoryPage(SignalHistoryJAXB history) {
+
+        Table table = new Table(new INodeableContent[] {new PlainText("Time"), new PlainText("Value")});
+        for (SignalHistoryJAXB.Sample s : history.samples) {
+            StringBuilder values = new StringBuilder();
+            for (int i = 0; i < s.values.length; i++) {
+                values.append((i == 0) ? "" : " ").append(s.values[i]);
+            }
+            table.addRow(new INodeableContent[] {new PlainText(s.time), new PlainText(values.toString())});
+        }
+
+        Div div = new Div("history");
+        div.addContent(new Heading("Signal history", Heading.H2));
+        div.addContent(new Heading("PM signal ID / ES signal ID", Heading.H4)).addContent(new PlainText(history.pmSignalID + " / " + history.esSignalID));
+        div.addContent(new Heading("Direction", Heading.H4)).addContent(new PlainText(history.dataflowDirection));
+        if (history.samples.length > 0)
+            div.addContent(table);
+        else
+            div.addContent(new PlainText("No values recorded."));
+
+        this.setSectionContent("content", div);
+    }
+}
@@ -19,6 +19,8 @@
 package gil.web.html.page;
 
 import gil.GIL;
+import gil.core.IntegrationExecutive;
+import gil.core.RateStatistics;
 import gil.core.Statistics;
 import gil.web.html.Div;
 import gil.web.html.Heading;
@@ -34,19 +36,62 @@ public class StatisticsPage extends MasterPage {
         Div div = new Div("statistics");        
         div.addContent(new Heading("System Statistics", Heading.H2));
         
-        addStatSection(div, GIL.instance().getExecutive().getExternalSystemStatistics(), "External system statistics");
-        addStatSection(div, GIL.instance().getExecutive().getProcessModelStatistics(), "Process model statistics");
+        IntegrationExecutive exec = GIL.instance().getExecutive();
+        if (exec.getExternalSystemCount() == 1) {
+            addStatSection(div, exec.getExternalSystemStatistics(), "External system statistics");
+            addCommandBatchStats(div, exec.getExternalSystemStatistics());
+        } else {
+            for (int i = 0; i < exec.getExternalSystemCount(); i++) {
+                addStatSection(div, exec.getExternalSystemStatistics(i), "External system " + (i + 1) + " statistics ("
+                        + exec.getExternalSystemAdapter(i).name() + ")");
+                addCommandBatchStats(div, exec.getExternalSystemStatistics(i));
+            }
+        }
+        if (exec.getProcessModelCount() == 1) {
+            addStatSection(div, exec.getProcessModelStatistics(), "Process model statistics");
+        } else {
+            for (int i = 0; i < exec.getProcessModelCount(); i++) {
+                Statistics s = exec.getProcessModelStatistics(i);
+                addStatSection(div, s, "Process model " + (i + 1) + " statistics ("
+                        + exec.getProcessModelAdapter(i).name() + ")");
+                div.addContent(new Heading("Frames sent without new data (lagged)", Heading.H4)).addContent(new PlainText(Long.toString(s.laggedFrameCount)));
+            }
+        }
 
         this.setSectionContent("content", div);
     }
 
+    private void addCommandBatchStats(Div div, Statistics s) {
+        div.addContent(new Heading("Command batches", Heading.H4)).addContent(new PlainText(Long.toString(s.commandBatchCount)));
+        div.addContent(new Heading("Command batch latency mean / max (us)", Heading.H4)).addContent(new PlainText(s.meanCommandBatchLatency + " / " + s.maxCommandBatchLatency));
+    }
+
     private void addStatSection(Div div, Statistics s, String header) {
         div.addContent(new Heading(header, Heading.H3));
-        div.addContent(new Heading("Dropped frames", Heading.H4)).addContent(new PlainText(Integer.toString(s.droppedFrames)));
-        div.addContent(new Heading("Data write failures", Heading.H4)).addContent(new PlainText(Integer.toString(s.dataWriteFailureCount)));
-        div.addContent(new Heading("Data read failures", Heading.H4)).addContent(new PlainText(Integer.toString(s.dataReadFailureCount)));
-        div.addContent(new Heading("Command failures", Heading.H4)).addContent(new PlainText(Integer.toString(s.commandFailureCount)));
-        div.addContent(new Heading("Successful frames read", Heading.H4)).addContent(new PlainText(Integer.toString(s.dataReadCount)));
-        div.addContent(new Heading("Successful frames written", Heading.H4)).addContent(new PlainText(Integer.toString(s.dataWriteCount)));
+        div.addContent(new Heading("Dropped frames", Heading.H4)).addContent(new PlainText(Long.toString(s.droppedFrames)));
+        div.addContent(new Heading("Data write failures", Heading.H4)).addContent(new PlainText(Long.toString(s.dataWriteFailureCount)));
+        div.addContent(new Heading("Data read failures", Heading.H4)).addContent(new PlainText(Long.toString(s.dataReadFailureCount)));
+        div.addContent(new Heading("Command failures", Heading.H4)).addContent(new PlainText(Long.toString(s.commandFailureCount)));
+        div.addContent(new Heading("Successful frames read", Heading.H4)).addContent(new PlainText(Long.toString(s.dataReadCount)));
+        div.addContent(new Heading("Successful frames written", Heading.H4)).addContent(new PlainText(Long.toString(s.dataWriteCount)));
+        div.addContent(new Heading("Frame buffers available", Heading.H4)).addContent(new PlainText(s.bufferPoolAvailable + " of " + s.bufferPoolCapacity));
+        div.addContent(new Heading("Frame buffer pool starvations", Heading.H4)).addContent(new PlainText(Long.toString(s.bufferPoolStarvationCount)));
+        div.addContent(new Heading("Frames pending transform (dropped)", Heading.H4)).addContent(new PlainText(s.transformQueueDepth + " (" + s.transformQueueDropCount + ")"));
+        div.addContent(new Heading("Frames pending write (dropped)", Heading.H4)).addContent(new PlainText(s.writeQueueDepth + " (" + s.writeQueueDropCount + ")"));
+        div.addContent(new Heading("Cycles (overruns)", Heading.H4)).addContent(new PlainText(s.cycleCount + " (" + s.cycleOverrunCount + ")"));
+        div.addContent(new Heading("Cycle lateness mean / max (us)", Heading.H4)).addContent(new PlainText(s.meanCycleLateness + " / " + s.maxCycleLateness));
+        div.addContent(new Heading("Max cycle jitter (us)", Heading.H4)).addContent(new PlainText(Long.toString(s.maxCycleJitter)));
+        div.addContent(new Heading("Control commands executed (pending)", Heading.H4)).addContent(new PlainText(s.controlCommandCount + " (" + s.controlCommandQueueDepth + ")"));
+        div.addContent(new Heading("Control command wait mean / max (us)", Heading.H4)).addContent(new PlainText(s.meanControlCommandWait + " / " + s.maxControlCommandWait));
+        div.addContent(new Heading("Latency of frames written p50 / p99 / p99.9 / max (us)", Heading.H4)).addContent(new PlainText(s.frameLatencyP50 + " / " + s.frameLatencyP99 + " / " + s.frameLatencyP999 + " / " + s.maxFrameLatency));
+        div.addContent(new Heading("Latency p99 transform / hand over / write (us)", Heading.H4)).addContent(new PlainText(s.transformLatencyP99 + " / " + s.handOverLatencyP99 + " / " + s.writeLatencyP99));
+        addRates(div, s.ratesLastSecond);
+        addRates(div, s.ratesLast10Seconds);
+        addRates(div, s.ratesLastMinute);
+    }
+
+    private void addRates(Div div, RateStatistics r) {
+        div.addContent(new Heading("Frames read / written / dropped, failures per second (last " + r.windowSeconds + " s)", Heading.H4)).addContent(new PlainText(
+                String.format("%.1f / %.1f / %.1f, %.1f", r.readFrameRate, r.writeFrameRate, r.droppedFrameRate, r.failureRate)));
     }
 }
@@ -21,6 +21,7 @@ package gil.web.html.page;
 import gil.web.html.Div;
 import gil.web.html.Heading;
 import gil.web.html.PlainText;
+import gil.web.jaxb.AdapterStatusJAXB;
 import gil.web.jaxb.StatusJAXB;
 
 /**
@@ -30,35 +31,38 @@ public class StatusPage extends MasterPage {
     static final String NO_ACTIVITY_STR = "None";
 
     public StatusPage(StatusJAXB status) {
-        String activityS;
-
         Div div = new Div("status");
         div.addContent(new Heading("System Status", Heading.H2));
        
-        div.addContent(new Heading("External System", Heading.H3));
-        div.addContent(new Heading("Current status", Heading.H4)).addContent(new PlainText(status.externalSystem.status + " : " + status.externalSystem.statusDescription));
-        div.addContent(new Heading("Current operating state", Heading.H4)).addContent(new PlainText(status.externalSystem.operatingState));
-        if (status.externalSystem.isActivityDone) {
-            activityS = NO_ACTIVITY_STR;
+        addAdapterStatus(div, "External System", status.externalSystem);
+        if (status.additionalExternalSystems != null) {
+            for (int i = 0; i < status.additionalExternalSystems.length; i++) {
+                addAdapterStatus(div, "External System " + (i + 1), status.additionalExternalSystems[i]);
+            }
         }
-        else {
-            activityS = status.externalSystem.currentActivity + "  Completed: " + status.externalSystem.activityCompletion + "%";
-        }
-        div.addContent(new Heading("Current activity", Heading.H4)).addContent(new PlainText(activityS));
 
+        addAdapterStatus(div, "Process Model", status.processModel);
+        if (status.additionalProcessModels != null) {
+            for (int i = 0; i < status.additionalProcessModels.length; i++) {
+                addAdapterStatus(div, "Process Model " + (i + 1), status.additionalProcessModels[i]);
+            }
+        }
+        
+        this.setSectionContent("content", div);
+    }
 
-        div.addContent(new Heading("Process Model", Heading.H3));
-        div.addContent(new Heading("Current status", Heading.H4)).addContent(new PlainText(status.processModel.status + " : " + status.processModel.statusDescription));
-        div.addContent(new Heading("Current operating state", Heading.H4)).addContent(new PlainText(status.processModel.operatingState));
+    private static void addAdapterStatus(Div div, String title, AdapterStatusJAXB status) {
+        String activityS;
 
-        if (status.processModel.isActivityDone) {
+        div.addContent(new Heading(title, Heading.H3));
+        div.addContent(new Heading("Current status", Heading.H4)).addContent(new PlainText(status.status + " : " + status.statusDescription));
+        div.addContent(new Heading("Current operating state", Heading.H4)).addContent(new PlainText(status.operatingState));
+        if (status.isActivityDone) {
             activityS = NO_ACTIVITY_STR;
         }
         else {
-            activityS = status.processModel.currentActivity + "  Completed: " + status.processModel.activityCompletion + "%";
-        }        
+            activityS = status.currentActivity + "  Completed: " + status.activityCompletion + "%";
+        }
         div.addContent(new Heading("Current activity", Heading.H4)).addContent(new PlainText(activityS));
-        
-        this.setSectionContent("content", div);
     }
 }
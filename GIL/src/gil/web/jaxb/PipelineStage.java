@@ -31,18 +31,44 @@ import javax.xml.bind.annotation.XmlType;
 @XmlType(name = "", propOrder = {
     "seqNo",
     "name",
-    "commands"
+    "commands",
+    "toES",
+    "toPM",
+    "externalSystem"
 })
 @XmlRootElement(name = "pipelineStage")
 public class PipelineStage {
     private int seqNo;
     private String name;
     private String commands;
+    private StageTimes toES;
+    private StageTimes toPM;
+    private Integer externalSystem;
 
     public PipelineStage(int seqNo, String name, String commandsLink) {
+        this(seqNo, name, commandsLink, null, null);
+    }
+
+    /**
+     * @param toES The processing times of frames to the external systems, or null if not available.
+     * @param toPM The processing times of frames to the process models, or null if not available.
+     */
+    public PipelineStage(int seqNo, String name, String commandsLink, StageTimes toES, StageTimes toPM) {
         this.seqNo = seqNo;
         this.name = name;
         this.commands = commandsLink;
+        this.toES = toES;
+        this.toPM = toPM;
+    }
+
+    /**
+     * Creates a stage feeding process data written to a single external system only.
+     * @param externalSystem The index of the external system.
+     * @param toES The processing times of frames to the external system, or null if not available.
+     */
+    public PipelineStage(int seqNo, String name, int externalSystem, StageTimes toES) {
+        this(seqNo, name, null, toES, null);
+        this.externalSystem = externalSystem;
     }
 
     public PipelineStage() { }
@@ -61,4 +87,26 @@ public class PipelineStage {
     public String getCommandsLink() {
         return commands;
     }
+
+    /**
+     * @return The processing times of frames to the external systems, or null if not available.
+     */
+    public StageTimes getToES() {
+        return toES;
+    }
+
+    /**
+     * @return The processing times of frames to the process models, or null if not available.
+     */
+    public StageTimes getToPM() {
+        return toPM;
+    }
+
+    /**
+     * @return The index of the external system that the stage feeds process data to, or null if the stage is
+     * part of the transfer pipeline shared by all external systems.
+     */
+    public Integer getExternalSystem() {
+        return externalSystem;
+    }
 }
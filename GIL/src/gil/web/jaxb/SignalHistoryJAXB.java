@@ -0,0 +1,64 @@
+/*
+    Copyright (C) 2010 LearningWell AB (www.learningwell.com), Kärnkraftsäkerhet och Utbildning AB (www.ksu.se)
+
+    This file is part of GIL (Generic Integration Layer).
+
+    GIL is free software: you can redistribute it and/or modify
+    it under the terms of the GNU Lesser General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    GIL is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public License
+    along with GIL.  If not, see <http://www.gnu.org/licenses/>.
+*/
+package gil.web.jaxb;
+
+import java.util.List;
+import javax.xml.bind.annotation.XmlRootElement;
+import gil.core.FrameHistory;
+import gil.core.SignalMetadata;
+
+/**
+ * JAXB class for the recent values of a signal supplied by the history REST resource.
+ * @author Göran Larsson @ LearningWell AB
+ */
+@XmlRootElement(name="signalHistory")
+public class SignalHistoryJAXB {
+
+    @XmlRootElement
+    public static class Sample {
+        public Sample() {}
+
+        public Sample(FrameHistory.Sample sample) {
+            this.time = (sample.origin == null) ? "" : sample.origin.toString();
+            this.values = sample.values;
+        }
+
+        public String time;
+        public double[] values;
+    }
+
+    public SignalHistoryJAXB() {}
+
+    public SignalHistoryJAXB(SignalMetadata signal, List<FrameHistory.Sample> samples) {
+        this.pmSignalID = signal.getPMSignalID();
+        this.esSignalID = signal.getESSignalID();
+        this.dataflowDirection = signal.getDataflowDirection().toString();
+        this.dataType = signal.getDataType().toString();
+        this.samples = new Sample[samples.size()];
+        for (int i = 0; i < this.samples.length; i++) {
+            this.samples[i] = new Sample(samples.get(i));
+        }
+    }
+
+    public String pmSignalID;
+    public String esSignalID;
+    public String dataflowDirection;
+    public String dataType;
+    public Sample[] samples;
+}
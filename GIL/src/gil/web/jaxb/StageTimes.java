@@ -0,0 +1,49 @@
+/*
+    Copyright (C) 2010 LearningWell AB (www.learningwell.com), Kärnkraftsäkerhet och Utbildning AB (www.ksu.se)
+
+    This file is part of GIL (Generic Integration Layer).
+
+    GIL is free software: you can redistribute it and/or modify
+    it under the terms of the GNU Lesser General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    GIL is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public License
+    along with GIL.  If not, see <http://www.gnu.org/licenses/>.
+*/
+package gil.web.jaxb;
+
+import javax.xml.bind.annotation.XmlRootElement;
+import gil.common.LatencyHistogram;
+
+/**
+ * JAXB class for the processing times of a transfer pipeline stage in one direction. Times are given in
+ * nanoseconds.
+ * @author Göran Larsson @ LearningWell AB
+ */
+@XmlRootElement
+public class StageTimes {
+
+    public StageTimes() {}
+
+    public StageTimes(LatencyHistogram times) {
+        this.count = times.getCount();
+        this.mean = times.getMeanNanos();
+        this.p50 = times.getPercentileNanos(50);
+        this.p99 = times.getPercentileNanos(99);
+        this.p999 = times.getPercentileNanos(99.9);
+        this.max = times.getMaxNanos();
+    }
+
+    public long count;
+    public long mean;
+    public long p50;
+    public long p99;
+    public long p999;
+    public long max;
+}
@@ -19,6 +19,7 @@
 package gil.web.jaxb;
 
 import javax.xml.bind.annotation.XmlRootElement;
+import gil.core.RateStatistics;
 import gil.core.Statistics;
 
 /**
@@ -28,42 +29,155 @@ import gil.core.Statistics;
 @XmlRootElement(name="statistics")
 public class StatisticsJAXB {
 
+    /**
+     * The rates over a window of time, given per second.
+     */
+    @XmlRootElement
+    public static class Rates {
+
+        public Rates() {}
+
+        public Rates(RateStatistics rates) {
+            this.windowSeconds = rates.windowSeconds;
+            this.readFrameRate = rates.readFrameRate;
+            this.writeFrameRate = rates.writeFrameRate;
+            this.droppedFrameRate = rates.droppedFrameRate;
+            this.failureRate = rates.failureRate;
+        }
+
+        public int windowSeconds;
+        public double readFrameRate;
+        public double writeFrameRate;
+        public double droppedFrameRate;
+        public double failureRate;
+    }
+
     @XmlRootElement
     public static class AdapterStatistics {
 
         public AdapterStatistics() {}
 
-        public AdapterStatistics(int droppedFrames, int commandFailureCount, int dataWriteFailureCount, 
-                int dataReadFailureCount, int dataReadCount, int dataWriteCount) {
-            this.droppedFrames = droppedFrames;
-            this.commandFailureCount = commandFailureCount;
-            this.dataWriteFailureCount = dataWriteFailureCount;
-            this.dataReadFailureCount = dataReadFailureCount;
-            this.dataReadCount = dataReadCount;
-            this.dataWriteCount = dataWriteCount;
+        public AdapterStatistics(Statistics stats) {
+            this.droppedFrames = stats.droppedFrames;
+            this.commandFailureCount = stats.commandFailureCount;
+            this.dataWriteFailureCount = stats.dataWriteFailureCount;
+            this.dataReadFailureCount = stats.dataReadFailureCount;
+            this.dataReadCount = stats.dataReadCount;
+            this.dataWriteCount = stats.dataWriteCount;
+            this.bufferPoolCapacity = stats.bufferPoolCapacity;
+            this.bufferPoolAvailable = stats.bufferPoolAvailable;
+            this.bufferPoolStarvationCount = stats.bufferPoolStarvationCount;
+            this.transformQueueDepth = stats.transformQueueDepth;
+            this.transformQueueDropCount = stats.transformQueueDropCount;
+            this.writeQueueDepth = stats.writeQueueDepth;
+            this.writeQueueDropCount = stats.writeQueueDropCount;
+            this.cycleCount = stats.cycleCount;
+            this.cycleOverrunCount = stats.cycleOverrunCount;
+            this.meanCycleLateness = stats.meanCycleLateness;
+            this.maxCycleLateness = stats.maxCycleLateness;
+            this.maxCycleJitter = stats.maxCycleJitter;
+            this.laggedFrameCount = stats.laggedFrameCount;
+            this.commandBatchCount = stats.commandBatchCount;
+            this.meanCommandBatchLatency = stats.meanCommandBatchLatency;
+            this.maxCommandBatchLatency = stats.maxCommandBatchLatency;
+            this.controlCommandQueueDepth = stats.controlCommandQueueDepth;
+            this.controlCommandCount = stats.controlCommandCount;
+            this.meanControlCommandWait = stats.meanControlCommandWait;
+            this.maxControlCommandWait = stats.maxControlCommandWait;
+            this.frameLatencyCount = stats.frameLatencyCount;
+            this.frameLatencyP50 = stats.frameLatencyP50;
+            this.frameLatencyP99 = stats.frameLatencyP99;
+            this.frameLatencyP999 = stats.frameLatencyP999;
+            this.maxFrameLatency = stats.maxFrameLatency;
+            this.transformLatencyP99 = stats.transformLatencyP99;
+            this.handOverLatencyP99 = stats.handOverLatencyP99;
+            this.writeLatencyP99 = stats.writeLatencyP99;
+            this.ratesLastSecond = new Rates(stats.ratesLastSecond);
+            this.ratesLast10Seconds = new Rates(stats.ratesLast10Seconds);
+            this.ratesLastMinute = new Rates(stats.ratesLastMinute);
         }
         
-        public int droppedFrames;
-        public int commandFailureCount;
-        public int dataWriteFailureCount;
-        public int dataReadFailureCount;
-        public int dataReadCount;
-        public int dataWriteCount;
+        public long droppedFrames;
+        public long commandFailureCount;
+        public long dataWriteFailureCount;
+        public long dataReadFailureCount;
+        public long dataReadCount;
+        public long dataWriteCount;
+        public int bufferPoolCapacity;
+        public int bufferPoolAvailable;
+        public long bufferPoolStarvationCount;
+        public int transformQueueDepth;
+        public long transformQueueDropCount;
+        public int writeQueueDepth;
+        public long writeQueueDropCount;
+        public long cycleCount;
+        public long cycleOverrunCount;
+        public long meanCycleLateness;
+        public long maxCycleLateness;
+        public long maxCycleJitter;
+        public long laggedFrameCount;
+        public long commandBatchCount;
+        public long meanCommandBatchLatency;
+        public long maxCommandBatchLatency;
+        public int controlCommandQueueDepth;
+        public long controlCommandCount;
+        public long meanControlCommandWait;
+        public long maxControlCommandWait;
+        public long frameLatencyCount;
+        public long frameLatencyP50;
+        public long frameLatencyP99;
+        public long frameLatencyP999;
+        public long maxFrameLatency;
+        public long transformLatencyP99;
+        public long handOverLatencyP99;
+        public long writeLatencyP99;
+        public Rates ratesLastSecond;
+        public Rates ratesLast10Seconds;
+        public Rates ratesLastMinute;
     }
 
     public AdapterStatistics externalSystem;
     public AdapterStatistics processModel;
+    public AdapterStatistics[] additionalExternalSystems;
+    public AdapterStatistics[] additionalProcessModels;
 
     public StatisticsJAXB() {
     }
 
     public StatisticsJAXB(Statistics esStats, Statistics pmStats) {
 
-        externalSystem = new AdapterStatistics(esStats.droppedFrames, esStats.commandFailureCount,
-                esStats.dataWriteFailureCount, esStats.dataReadFailureCount, esStats.dataReadCount,
-                esStats.dataWriteCount);
-        processModel = new AdapterStatistics(pmStats.droppedFrames, pmStats.commandFailureCount,
-                pmStats.dataWriteFailureCount, pmStats.dataReadFailureCount, pmStats.dataReadCount,
-                pmStats.dataWriteCount);
+        externalSystem = new AdapterStatistics(esStats);
+        processModel = new AdapterStatistics(pmStats);
+    }
+
+    /**
+     * @param esStats The statistics of each external system. The first is reported as externalSystem and the rest,
+     * if any, as additionalExternalSystems.
+     */
+    public StatisticsJAXB(Statistics[] esStats, Statistics pmStats) {
+        this(esStats, new Statistics[] { pmStats });
+    }
+
+    /**
+     * @param esStats The statistics of each external system. The first is reported as externalSystem and the rest,
+     * if any, as additionalExternalSystems.
+     * @param pmStats The statistics of each process model. The first is reported as processModel and the rest,
+     * if any, as additionalProcessModels.
+     */
+    public StatisticsJAXB(Statistics[] esStats, Statistics[] pmStats) {
+        this(esStats[0], pmStats[0]);
+        additionalExternalSystems = createAdditional(esStats);
+        additionalProcessModels = createAdditional(pmStats);
+    }
+
+    private static AdapterStatistics[] createAdditional(Statistics[] stats) {
+        if (stats.length <= 1) {
+            return null;
+        }
+        AdapterStatistics[] additional = new AdapterStatistics[stats.length - 1];
+        for (int i = 1; i < stats.length; i++) {
+            additional[i - 1] = new AdapterStatistics(stats[i]);
+        }
+        return additional;
     }
 }
@@ -29,6 +29,8 @@ public class StatusJAXB {
 
     public AdapterStatusJAXB externalSystem;
     public AdapterStatusJAXB processModel;
+    public AdapterStatusJAXB[] additionalExternalSystems;
+    public AdapterStatusJAXB[] additionalProcessModels;
 
     public StatusJAXB(){}
 
@@ -36,4 +38,25 @@ public class StatusJAXB {
         this.externalSystem = externalSystem;
         this.processModel = processModel;
     }
+
+    /**
+     * @param externalSystems The status of each external system. The first is reported as externalSystem and the
+     * rest, if any, as additionalExternalSystems.
+     * @param processModels The status of each process model. The first is reported as processModel and the rest,
+     * if any, as additionalProcessModels.
+     */
+    public StatusJAXB(AdapterStatusJAXB[] externalSystems, AdapterStatusJAXB[] processModels) {
+        this(externalSystems[0], processModels[0]);
+        additionalExternalSystems = createAdditional(externalSystems);
+        additionalProcessModels = createAdditional(processModels);
+    }
+
+    private static AdapterStatusJAXB[] createAdditional(AdapterStatusJAXB[] status) {
+        if (status.length <= 1) {
+            return null;
+        }
+        AdapterStatusJAXB[] additional = new AdapterStatusJAXB[status.length - 1];
+        System.arraycopy(status, 1, additional, 0, additional.length);
+        return additional;
+    }
 }
@@ -87,7 +87,22 @@ public class Transformer {
             UriBuilder builder = UriBuilder.fromUri(baseUri);
             String format = Helpers.retrieveFormatSpecifierFromUri(baseUri);
             String logfileURI = Helpers.removeFormatSpecifierFromUri(builder.path(Integer.toString(svo.seqNo())).path("commands").build()).toString() + format;
-            stages[i++] = new PipelineStage(svo.seqNo(), svo.name(), logfileURI);
+            stages[i++] = new PipelineStage(svo.seqNo(), svo.name(), logfileURI,
+                    (svo.toESTimes() == null) ? null : new StageTimes(svo.toESTimes()),
+                    (svo.toPMTimes() == null) ? null : new StageTimes(svo.toPMTimes()));
+        }
+        return stages;
+    }
+
+    /**
+     * Transforms the stages feeding process data written to the external system with the given index only. No
+     * commands links are given since these stages have no control commands of their own in the web API.
+     */
+    public static PipelineStage[] transformExternalSystemStageArray(int externalSystem, StageValueObject[] svos) {
+        PipelineStage[] stages = new PipelineStage[svos.length];
+        for (int i = 0; i < svos.length; i++) {
+            stages[i] = new PipelineStage(svos[i].seqNo(), svos[i].name(), externalSystem,
+                    (svos[i].toESTimes() == null) ? null : new StageTimes(svos[i].toESTimes()));
         }
         return stages;
     }
@@ -33,19 +33,19 @@ import javax.ws.rs.Produces;
 import javax.ws.rs.QueryParam;
 import javax.ws.rs.WebApplicationException;
 import javax.ws.rs.core.Context;
+import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.Response;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.MultivaluedMap;
 import javax.ws.rs.core.UriInfo;
 import gil.GIL;
+import gil.common.AsyncResult;
 import gil.core.AdapterValueObject;
 import gil.core.IntegrationExecutive;
 import gil.common.Helpers;
 import gil.web.FormatSpecifier;
 import gil.web.html.page.CommandsPage;
-import gil.web.html.page.ControlCommandResultPage;
 import gil.web.jaxb.Command;
-import gil.web.jaxb.CommandResult;
 import gil.web.jaxb.Parameter;
 import gil.web.jaxb.Transformer;
 
@@ -66,20 +66,34 @@ public class AdaptersResource {
     @Produces({MediaType.TEXT_HTML, MediaType.APPLICATION_XML, MediaType.APPLICATION_JSON})
     public Response getAdapter(@Context UriInfo uriInfo, @PathParam("adapterName") String adapterName, @PathParam("format") String format,
             @DefaultValue("") @QueryParam("command") String command) {
+        return getAdapter(uriInfo, adapterName, 0, format, command);
+    }
+
+    /**
+     * Lists the commands of the adapter with the given index. Index 0 is the adapter addressed without an index, the
+     * additional adapters follow in the order of the configuration file.
+     */
+    @GET
+    @Path("/{adapterName}/{index:[0-9]+}/commands{format:(\\..+)?}")
+    @Produces({MediaType.TEXT_HTML, MediaType.APPLICATION_XML, MediaType.APPLICATION_JSON})
+    public Response getAdapter(@Context UriInfo uriInfo, @PathParam("adapterName") String adapterName,
+            @PathParam("index") int index, @PathParam("format") String format,
+            @DefaultValue("") @QueryParam("command") String command) {
 
         _availableFormats.checkFormatExists(format);
         
         IntegrationExecutive ie = GIL.instance().getExecutive();
         AdapterValueObject adapter;
-        if (adapterName.equalsIgnoreCase(ES_ADAPTER)) {
-            adapter = ie.getExternalSystemAdapter();
+        if (adapterName.equalsIgnoreCase(ES_ADAPTER) && index < ie.getExternalSystemCount()) {
+            adapter = ie.getExternalSystemAdapter(index);
             
         }
-        else if (adapterName.equalsIgnoreCase(PM_ADAPTER)) {
-            adapter = ie.getProcessModelAdapter();
+        else if (adapterName.equalsIgnoreCase(PM_ADAPTER) && index < ie.getProcessModelCount()) {
+            adapter = ie.getProcessModelAdapter(index);
         }
         else {
-            throw new NotFoundException("The requested adapter '" + adapterName + "' does not exist");                        
+            throw new NotFoundException("The requested adapter '" + adapterName + "' with index " + index
+                    + " does not exist");
         }
 
         Command[] cmds = Transformer.transformCommandDescriptors(adapter.availableCommands());
@@ -104,8 +118,21 @@ public class AdaptersResource {
     @Path("/{adapterName}/commands/{command}")
     @Produces(MediaType.TEXT_HTML)
     @Consumes({MediaType.APPLICATION_FORM_URLENCODED})
-    public Response invokeCommand(MultivaluedMap<String, String> form,
+    public Response invokeCommand(MultivaluedMap<String, String> form, @Context UriInfo uriInfo,
         @PathParam("adapterName") String adapterName, @PathParam("command") String command) {
+        return invokeCommand(form, uriInfo, adapterName, 0, command);
+    }
+
+    /**
+     * Invoke command on the adapter with the given index for HTML form requests
+     */
+    @POST
+    @Path("/{adapterName}/{index:[0-9]+}/commands/{command}")
+    @Produces(MediaType.TEXT_HTML)
+    @Consumes({MediaType.APPLICATION_FORM_URLENCODED})
+    public Response invokeCommand(MultivaluedMap<String, String> form, @Context UriInfo uriInfo,
+        @PathParam("adapterName") String adapterName, @PathParam("index") int index,
+        @PathParam("command") String command) {
 
         HashMap<String, String> params = new HashMap<String, String>();
 
@@ -114,8 +141,8 @@ public class AdaptersResource {
                 params.put(entry.getKey(), entry.getValue().get(0));
             }
         }
-        Map<String, String> result = invokeCommandOnAddressedAdapter(adapterName, command, params);
-        return Response.ok(new ControlCommandResultPage(result).asStream()).build();
+        return CommandResultsResource.respond(scheduleCommandOnAddressedAdapter(adapterName, index, command, params),
+                uriInfo, FormatSpecifier.HTML);
     }
 
     /**
@@ -125,28 +152,40 @@ public class AdaptersResource {
     @Path("/{adapterName}/commands/{command}")
     @Produces({MediaType.APPLICATION_XML, MediaType.APPLICATION_JSON})
     @Consumes({MediaType.APPLICATION_XML, MediaType.APPLICATION_JSON})
-    public Response invokeCommand(@PathParam("adapterName") String adapterName, @PathParam("command") String command, Parameter[] params) {
+    public Response invokeCommand(@Context UriInfo uriInfo, @Context HttpHeaders headers,
+            @PathParam("adapterName") String adapterName, @PathParam("command") String command, Parameter[] params) {
+        return invokeCommand(uriInfo, headers, adapterName, 0, command, params);
+    }
+
+    /**
+     * Invoke command on the adapter with the given index for XML and JSON requests
+     */
+    @POST
+    @Path("/{adapterName}/{index:[0-9]+}/commands/{command}")
+    @Produces({MediaType.APPLICATION_XML, MediaType.APPLICATION_JSON})
+    @Consumes({MediaType.APPLICATION_XML, MediaType.APPLICATION_JSON})
+    public Response invokeCommand(@Context UriInfo uriInfo, @Context HttpHeaders headers,
+            @PathParam("adapterName") String adapterName, @PathParam("index") int index,
+            @PathParam("command") String command, Parameter[] params) {
         HashMap<String, String> pmap = new HashMap<String, String>();
         for (Parameter p : params) {
             pmap.put(p.name, p.value);
         }
-        Map<String, String> result = invokeCommandOnAddressedAdapter(adapterName, command, pmap);        
-        return Response.ok(new CommandResult(result)).build();
+        return CommandResultsResource.respond(scheduleCommandOnAddressedAdapter(adapterName, index, command, pmap),
+                uriInfo, CommandResultsResource.xmlOrJsonFormat(headers));
     }
 
-    private Map<String, String> invokeCommandOnAddressedAdapter(String adapterName, String command, HashMap<String, String> params) {
-        try 
-        {
-            if (adapterName.equals(ES_ADAPTER)) {
-                return GIL.instance().getExecutive().invokeExternalSystemCommand(command, params);
-            } else if (adapterName.equals(PM_ADAPTER)) {
-                return GIL.instance().getExecutive().invokeProcessModelCommand(command, params);
-            } else {
-                throw new WebApplicationException(Response.status(Response.Status.NOT_FOUND)
-                        .entity("The requested adapter '" + adapterName + "' does not exist.").build());
-            }            
-        } catch(Exception ex) {
-            throw new WebApplicationException(ex);
+    private AsyncResult<Map<String, String>> scheduleCommandOnAddressedAdapter(String adapterName, int index,
+            String command, HashMap<String, String> params) {
+        IntegrationExecutive ie = GIL.instance().getExecutive();
+        if (adapterName.equals(ES_ADAPTER) && index < ie.getExternalSystemCount()) {
+            return ie.scheduleExternalSystemCommand(index, command, params);
+        } else if (adapterName.equals(PM_ADAPTER) && index < ie.getProcessModelCount()) {
+            return ie.scheduleProcessModelCommand(index, command, params);
+        } else {
+            throw new WebApplicationException(Response.status(Response.Status.NOT_FOUND)
+                    .entity("The requested adapter '" + adapterName + "' with index " + index
+                    + " does not exist.").build());
         }
     }
 }
\ No newline at end of file
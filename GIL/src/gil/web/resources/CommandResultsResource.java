@@ -0,0 +1,141 @@
+/*
+    Copyright (C) 2010 LearningWell AB (www.learningwell.com), Kärnkraftsäkerhet och Utbildning AB (www.ksu.se)
+
+    This file is part of GIL (Generic Integration Layer).
+
+    GIL is free software: you can redistribute it and/or modify
+    it under the terms of the GNU Lesser General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    GIL is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public License
+    along with GIL.  If not, see <http://www.gnu.org/licenses/>.
+*/
+package gil.web.resources;
+
+import com.sun.jersey.api.NotFoundException;
+import java.net.URI;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import javax.ws.rs.PathParam;
+import javax.ws.rs.Produces;
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.UriInfo;
+import gil.common.AsyncResult;
+import gil.web.FormatSpecifier;
+import gil.web.WebContext;
+import gil.web.html.page.ControlCommandPendingPage;
+import gil.web.html.page.ControlCommandResultPage;
+import gil.web.jaxb.CommandResult;
+
+/**
+ * Provides the results of control commands that were not completed within the command timeout when invoked.
+ * <p>
+ * A command invoked through the web API is waited for at most the command timeout. If the command is not completed
+ * by then, the request is answered with 202 Accepted and a Location header referring to this resource, where the
+ * result is available once the command is completed. Until then, this resource answers 202 Accepted as well. This
+ * keeps the web server threads from being blocked while an adapter is busy or disconnected.
+ *
+ * @author Göran Larsson @ LearningWell AB
+ */
+@Path("/commandresults/{id:[0-9]+}{format:(\\..+)?}")
+public class CommandResultsResource {
+
+    private static final FormatChecker _availableFormats = new FormatChecker(new String[]
+        {FormatSpecifier.HTML, "", FormatSpecifier.XML, FormatSpecifier.JSON});
+
+    @GET
+    @Produces({MediaType.TEXT_HTML, MediaType.APPLICATION_XML, MediaType.APPLICATION_JSON})
+    public Response getCommandResult(@Context UriInfo uriInfo, @PathParam("id") String id,
+            @PathParam("format") String format) {
+        _availableFormats.checkFormatExists(format);
+
+        AsyncResult<Map<String, String>> result = WebContext.instance().getPendingCommandResults().get(id);
+        if (result == null) {
+            throw new NotFoundException("No pending result with id '" + id + "' exists");
+        }
+        if (!result.isDone()) {
+            return accepted(uriInfo.getAbsolutePath(), format);
+        }
+        return completed(result, format);
+    }
+
+    /**
+     * Waits at most the command timeout for the given command result.
+     * @param format The format specifier of the response, one of those in {@link FormatSpecifier} or "" for html.
+     * @return A response with the result if the command is completed within the timeout, else 202 Accepted with
+     * the URI where the result may be fetched.
+     */
+    static Response respond(AsyncResult<Map<String, String>> result, UriInfo uriInfo, String format) {
+        try {
+            result.get(WebContext.instance().getCommandTimeout(), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException ex) {
+            String id = WebContext.instance().getPendingCommandResults().add(result);
+            URI location = uriInfo.getBaseUriBuilder().path(CommandResultsResource.class).build(id, format);
+            return accepted(location, format);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new WebApplicationException(ex);
+        } catch (ExecutionException ex) {
+            // Reported by completed below.
+        } catch (CancellationException ex) {
+            // Reported by completed below.
+        }
+        return completed(result, format);
+    }
+
+    /**
+     * @return The format specifier matching the media type most acceptable to the client of the request, XML or
+     * JSON.
+     */
+    static String xmlOrJsonFormat(HttpHeaders headers) {
+        for (MediaType type : headers.getAcceptableMediaTypes()) {
+            if (type.isCompatible(MediaType.APPLICATION_XML_TYPE)) {
+                return FormatSpecifier.XML;
+            }
+            if (type.isCompatible(MediaType.APPLICATION_JSON_TYPE)) {
+                return FormatSpecifier.JSON;
+            }
+        }
+        return FormatSpecifier.XML;
+    }
+
+    private static Response accepted(URI location, String format) {
+        Response.ResponseBuilder builder = Response.status(Response.Status.ACCEPTED).location(location);
+        if (FormatSpecifier.XML.compareToIgnoreCase(format) == 0 || FormatSpecifier.JSON.compareToIgnoreCase(format) == 0) {
+            return builder.build();
+        }
+        return builder.entity(new ControlCommandPendingPage(location.toString()).asStream())
+                .type(MediaType.TEXT_HTML).build();
+    }
+
+    private static Response completed(AsyncResult<Map<String, String>> result, String format) {
+        Map<String, String> values;
+        try {
+            values = result.get();
+        } catch (Exception ex) {
+            throw new WebApplicationException(ex);
+        }
+        if (FormatSpecifier.XML.compareToIgnoreCase(format) == 0) {
+            return Response.ok(new CommandResult(values), MediaType.APPLICATION_XML).build();
+        }
+        if (FormatSpecifier.JSON.compareToIgnoreCase(format) == 0) {
+            return Response.ok(new CommandResult(values), MediaType.APPLICATION_JSON).build();
+        }
+        return Response.ok(new ControlCommandResultPage(values).asStream(), MediaType.TEXT_HTML).build();
+    }
+}
@@ -0,0 +1,111 @@
+/*
+    Copyright (C) 2010 LearningWell AB (www.learningwell.com), Kärnkraftsäkerhet och Utbildning AB (www.ksu.se)
+
+    This file is part of GIL (Generic Integration Layer).
+
+    GIL is free software: you can redistribute it and/or modify
+    it under the terms of the GNU Lesser General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    GIL is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public License
+    along with GIL.  If not, see <http://www.gnu.org/licenses/>.
+*/
+package gil.web.resources;
+
+import com.sun.jersey.api.json.JSONJAXBContext;
+import com.sun.jersey.api.json.JSONMarshaller;
+import gil.web.EventStream;
+import gil.web.jaxb.StatisticsJAXB;
+import gil.web.jaxb.StatusJAXB;
+import java.io.StringWriter;
+import javax.xml.bind.JAXBException;
+import org.apache.log4j.Logger;
+
+/**
+ * Publishes the status, state and activity of the adapters and the statistics of the integration to an
+ * {@link EventStream}, as the events "status" and "statistics" with the same JSON content as /api/status.json and
+ * /api/statistics.json.
+ * <p>
+ * The events are built and serialized once each interval on a thread of their own, from the values already
+ * published by the integration threads, regardless of the number of subscribers. Nothing is built while there
+ * are no subscribers. A failure to build the events is logged and the events are built again in the next
+ * interval.
+ *
+ * @author Göran Larsson @ LearningWell AB
+ */
+public class EventPublisher implements Runnable {
+    public static final String STATUS_EVENT = "status";
+    public static final String STATISTICS_EVENT = "statistics";
+
+    private static Logger _logger = Logger.getLogger(EventPublisher.class);
+
+    private final EventStream _stream;
+    private final long _intervalMillis;
+    private volatile boolean _stop = false;
+    private Thread _thread = null;
+
+    /**
+     * @param stream The stream to publish the events to.
+     * @param intervalMillis The time between the events are built, in milliseconds.
+     */
+    public EventPublisher(EventStream stream, long intervalMillis) {
+        _stream = stream;
+        _intervalMillis = intervalMillis;
+    }
+
+    public void start() {
+        _thread = new Thread(this, "GIL-Events");
+        _thread.setDaemon(true);
+        _thread.start();
+    }
+
+    public void stop() throws InterruptedException {
+        _stop = true;
+        if (_thread != null) {
+            _thread.interrupt();
+            _thread.join(10000);
+            _thread = null;
+        }
+    }
+
+    public void run() {
+        JSONMarshaller marshaller;
+        try {
+            marshaller = new JSONJAXBContext(StatusJAXB.class, StatisticsJAXB.class).createJSONMarshaller();
+        } catch (JAXBException ex) {
+            _logger.error("Failure when creating the JSON marshaller. No events are published.", ex);
+            return;
+        }
+        try {
+            while (!_stop) {
+                if (_stream.getSubscriberCount() > 0) {
+                    publishEvents(marshaller);
+                }
+                Thread.sleep(_intervalMillis);
+            }
+        } catch (InterruptedException ex) {
+            // Stopped
+        }
+    }
+
+    private void publishEvents(JSONMarshaller marshaller) {
+        try {
+            _stream.publish(STATUS_EVENT, toJSON(marshaller, StatusResource.createStatusObject()));
+            _stream.publish(STATISTICS_EVENT, toJSON(marshaller, StatisticsResource.createStatisticsObject()));
+        } catch (Exception ex) {
+            _logger.error("Failure when publishing events.", ex);
+        }
+    }
+
+    private static String toJSON(JSONMarshaller marshaller, Object jaxbElement) throws JAXBException {
+        StringWriter writer = new StringWriter();
+        marshaller.marshallToJSON(jaxbElement, writer);
+        return writer.toString();
+    }
+}
@@ -0,0 +1,71 @@
+/*
+    Copyright (C) 2010 LearningWell AB (www.learningwell.com), Kärnkraftsäkerhet och Utbildning AB (www.ksu.se)
+
+    This file is part of GIL (Generic Integration Layer).
+
+    GIL is free software: you can redistribute it and/or modify
+    it under the terms of the GNU Lesser General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    GIL is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public License
+    along with GIL.  If not, see <http://www.gnu.org/licenses/>.
+*/
+package gil.web.resources;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.StreamingOutput;
+import gil.web.EventStream;
+import gil.web.WebContext;
+
+/**
+ * Pushes the status and statistics events published by the {@link EventPublisher} to the client as a
+ * Server-Sent Events stream, as an alternative to polling /api/status and /api/statistics. The client receives
+ * the latest event of each kind at once, and then each event that has changed. A comment is sent when nothing
+ * has changed for {@value #HEARTBEAT_MILLIS} milliseconds, to detect clients gone away.
+ * <p>
+ * Answers 503 Service Unavailable if the maximum number of subscribers is reached.
+ *
+ * @author Göran Larsson @ LearningWell AB
+ */
+@Path("events")
+public class EventsResource {
+    public static final long HEARTBEAT_MILLIS = 15000;
+
+    @GET
+    @Produces(EventStream.CONTENT_TYPE)
+    public Response getEvents() {
+        return Response.ok(new StreamingOutput() {
+            public void write(OutputStream output) throws IOException {
+                // Subscribing when the response is written makes sure that the subscription is cancelled, also if
+                // the response is never written. Nothing is written yet, so the status can still be changed.
+                EventStream.Subscription subscription = WebContext.instance().getEventStream().subscribe();
+                if (subscription == null) {
+                    throw new WebApplicationException(Response.Status.SERVICE_UNAVAILABLE);
+                }
+                try {
+                    byte[] events;
+                    while ((events = subscription.next(HEARTBEAT_MILLIS)) != null) {
+                        output.write(events);
+                        output.flush();
+                    }
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    subscription.cancel();
+                }
+            }
+        }, EventStream.CONTENT_TYPE).header("Cache-Control", "no-cache").build();
+    }
+}
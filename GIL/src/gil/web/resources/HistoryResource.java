@@ -0,0 +1,87 @@
+/*
+    Copyright (C) 2010 LearningWell AB (www.learningwell.com), Kärnkraftsäkerhet och Utbildning AB (www.ksu.se)
+
+    This file is part of GIL (Generic Integration Layer).
+
+    GIL is free software: you can redistribute it and/or modify
+    it under the terms of the GNU Lesser General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    GIL is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public License
+    along with GIL.  If not, see <http://www.gnu.org/licenses/>.
+*/
+package gil.web.resources;
+
+import com.sun.jersey.api.NotFoundException;
+import java.util.List;
+import javax.ws.rs.DefaultValue;
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import javax.ws.rs.PathParam;
+import javax.ws.rs.Produces;
+import javax.ws.rs.QueryParam;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import gil.GIL;
+import gil.core.FrameHistory;
+import gil.core.IntegrationExecutive;
+import gil.core.SignalMetadata;
+import gil.web.FormatSpecifier;
+import gil.web.html.page.SignalHistoryPage;
+import gil.web.jaxb.SignalHistoryJAXB;
+
+/**
+ * Provides the recent values of a signal from the frame history, identified by either its process model signal ID
+ * or its external system signal ID. The history is kept only if 'frameHistoryLength' is configured.
+ *
+ * @author Göran Larsson @ LearningWell AB
+ */
+@Path("/history{format:(\\..+)?}")
+public class HistoryResource {
+    private static final FormatChecker _availableFormats = new FormatChecker(new String[]
+        {FormatSpecifier.HTML, "", FormatSpecifier.XML, FormatSpecifier.JSON});
+
+    @GET
+    @Produces({MediaType.TEXT_HTML, MediaType.APPLICATION_XML, MediaType.APPLICATION_JSON})
+    public Response getHistory(@PathParam("format") String format, @DefaultValue("") @QueryParam("pmid") String pmID,
+            @DefaultValue("") @QueryParam("esid") String esID,
+            @DefaultValue("2147483647") @QueryParam("samples") int maxSamples) {
+        _availableFormats.checkFormatExists(format);
+
+        IntegrationExecutive exec = GIL.instance().getExecutive();
+        SignalMetadata signal = findSignal(exec.getSignals(), pmID, esID);
+        FrameHistory history = exec.getFrameHistory(signal.getDataflowDirection());
+        if (history == null) {
+            throw new NotFoundException("No frame history is kept. Set 'frameHistoryLength' in gil.config.xml");
+        }
+        List<FrameHistory.Sample> samples = history.getTimeSeries(signal, maxSamples);
+        SignalHistoryJAXB result = new SignalHistoryJAXB(signal, samples);
+
+        if (FormatSpecifier.XML.compareToIgnoreCase(format) == 0) {
+            return Response.ok(result, MediaType.APPLICATION_XML).build();
+        }
+        if (FormatSpecifier.JSON.compareToIgnoreCase(format) == 0) {
+            return Response.ok(result, MediaType.APPLICATION_JSON).build();
+        }
+        return Response.ok(new SignalHistoryPage(result).asStream(), MediaType.TEXT_HTML).build();
+    }
+
+    static SignalMetadata findSignal(SignalMetadata[] signals, String pmID, String esID) {
+        if (pmID.length() == 0 && esID.length() == 0) {
+            throw new NotFoundException("Either the query parameter 'pmid' or 'esid' must be given");
+        }
+        for (SignalMetadata s : signals) {
+            if ((pmID.length() > 0 && pmID.equals(s.getPMSignalID()))
+                    || (esID.length() > 0 && esID.equals(s.getESSignalID()))) {
+                return s;
+            }
+        }
+        throw new NotFoundException("The requested signal does not exist");
+    }
+}
@@ -0,0 +1,113 @@
+/*
+    Copyright (C) 2010 LearningWell AB (www.learningwell.com), Kärnkraftsäkerhet och Utbildning AB (www.ksu.se)
+
+    This file is part of GIL (Generic Integration Layer).
+
+    GIL is free software: you can redistribute it and/or modify
+    it under the terms of the GNU Lesser General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    GIL is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public License
+    along with GIL.  If not, see <http://www.gnu.org/licenses/>.
+*/
+package gil.web.resources;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import javax.ws.rs.DefaultValue;
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import javax.ws.rs.PathParam;
+import javax.ws.rs.Produces;
+import javax.ws.rs.QueryParam;
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.StreamingOutput;
+import gil.GIL;
+import gil.core.SignalMetadata;
+import gil.web.EventStream;
+import gil.web.FormatSpecifier;
+import gil.web.SignalStream;
+import gil.web.WebContext;
+
+/**
+ * Streams the live values of the signals given by their process model signal IDs ('pmid') and external system
+ * signal IDs ('esid'), at most 'rate' times per second. The values are taken from the latest frames transferred,
+ * as JSON in a Server-Sent Events stream, or as binary updates when the format '.bin' is requested. See
+ * {@link SignalStream} for the format of the updates.
+ * <p>
+ * Answers 503 Service Unavailable if the maximum number of subscribers is reached.
+ *
+ * @author Göran Larsson @ LearningWell AB
+ */
+@Path("/live{format:(\\..+)?}")
+public class LiveResource {
+    public static final long HEARTBEAT_MILLIS = 15000;
+
+    private static final FormatChecker _availableFormats = new FormatChecker(new String[]
+        {"", FormatSpecifier.JSON, FormatSpecifier.BINARY});
+
+    @GET
+    @Produces({EventStream.CONTENT_TYPE, SignalStream.BINARY_CONTENT_TYPE})
+    public Response getLiveValues(@PathParam("format") String format, @QueryParam("pmid") List<String> pmIDs,
+            @QueryParam("esid") List<String> esIDs, @DefaultValue("10") @QueryParam("rate") int rate) {
+        _availableFormats.checkFormatExists(format);
+        if (rate < 1 || rate > SignalStream.MAX_RATE) {
+            throw new WebApplicationException(Response.status(Response.Status.BAD_REQUEST)
+                    .entity("The rate must be between 1 and " + SignalStream.MAX_RATE + " updates per second.").build());
+        }
+
+        SignalMetadata[] all = GIL.instance().getExecutive().getSignals();
+        List<SignalMetadata> signals = new ArrayList<SignalMetadata>();
+        List<String> ids = new ArrayList<String>();
+        for (String pmID : pmIDs) {
+            signals.add(HistoryResource.findSignal(all, pmID, ""));
+            ids.add(pmID);
+        }
+        for (String esID : esIDs) {
+            signals.add(HistoryResource.findSignal(all, "", esID));
+            ids.add(esID);
+        }
+        if (signals.isEmpty()) {
+            throw new WebApplicationException(Response.status(Response.Status.BAD_REQUEST)
+                    .entity("At least one of the query parameters 'pmid' or 'esid' must be given").build());
+        }
+
+        final boolean binary = FormatSpecifier.BINARY.compareToIgnoreCase(format) == 0;
+        final SignalMetadata[] subscribed = signals.toArray(new SignalMetadata[signals.size()]);
+        final String[] subscribedIDs = ids.toArray(new String[ids.size()]);
+        final int subscribedRate = rate;
+        return Response.ok(new StreamingOutput() {
+            public void write(OutputStream output) throws IOException {
+                // Subscribing when the response is written makes sure that the subscription is cancelled, also if
+                // the response is never written. Nothing is written yet, so the status can still be changed.
+                SignalStream.Subscription subscription = WebContext.instance().getSignalStream().subscribe(
+                        subscribed, subscribedIDs, subscribedRate,
+                        binary ? SignalStream.Format.BINARY : SignalStream.Format.JSON);
+                if (subscription == null) {
+                    throw new WebApplicationException(Response.Status.SERVICE_UNAVAILABLE);
+                }
+                try {
+                    byte[] update;
+                    while ((update = subscription.next(HEARTBEAT_MILLIS)) != null) {
+                        output.write(update);
+                        output.flush();
+                    }
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    subscription.cancel();
+                }
+            }
+        }, binary ? SignalStream.BINARY_CONTENT_TYPE : EventStream.CONTENT_TYPE)
+                .header("Cache-Control", "no-cache").build();
+    }
+}
@@ -0,0 +1,52 @@
+/*
+    Copyright (C) 2010 LearningWell AB (www.learningwell.com), Kärnkraftsäkerhet och Utbildning AB (www.ksu.se)
+
+    This file is part of GIL (Generic Integration Layer).
+
+    GIL is free software: you can redistribute it and/or modify
+    it under the terms of the GNU Lesser General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    GIL is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public License
+    along with GIL.  If not, see <http://www.gnu.org/licenses/>.
+*/
+package gil.web.resources;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.StreamingOutput;
+import gil.GIL;
+import gil.common.MetricsRegistry;
+
+/**
+ * Serves the metrics of GIL in the Prometheus text exposition format, to be scraped by monitoring systems.
+ *
+ * @author Göran Larsson @ LearningWell AB
+ */
+@Path("metrics")
+public class MetricsResource {
+
+    @GET
+    @Produces(MetricsRegistry.CONTENT_TYPE)
+    public Response getMetrics() {
+        final MetricsRegistry metrics = GIL.instance().getExecutive().getMetrics();
+        return Response.ok(new StreamingOutput() {
+            public void write(OutputStream output) throws IOException {
+                Writer writer = new OutputStreamWriter(output, "UTF-8");
+                metrics.write(writer);
+            }
+        }, MetricsRegistry.CONTENT_TYPE).build();
+    }
+}
@@ -19,6 +19,8 @@
 package gil.web.resources;
 
 import com.sun.jersey.api.NotFoundException;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -33,21 +35,22 @@ import javax.ws.rs.Produces;
 import javax.ws.rs.QueryParam;
 import javax.ws.rs.WebApplicationException;
 import javax.ws.rs.core.Context;
+import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.MultivaluedMap;
 import javax.ws.rs.core.Response;
 import javax.ws.rs.core.UriInfo;
 import gil.GIL;
+import gil.common.AsyncResult;
 import gil.core.IntegrationExecutive;
 import gil.core.StageValueObject;
 import gil.common.Helpers;
 import gil.web.FormatSpecifier;
 import gil.web.html.page.CommandsPage;
-import gil.web.html.page.ControlCommandResultPage;
 import gil.web.html.page.PipelineStagesPage;
 import gil.web.jaxb.Command;
-import gil.web.jaxb.CommandResult;
 import gil.web.jaxb.Parameter;
+import gil.web.jaxb.PipelineStage;
 import gil.web.jaxb.Transformer;
 
 /**
@@ -64,19 +67,34 @@ public class PipelineResource {
     @Path("/stages{format:(\\..+)?}")
     @Produces({MediaType.TEXT_HTML, MediaType.APPLICATION_XML, MediaType.APPLICATION_JSON})
     public Response getPipelineStages(@PathParam("format") String format, @Context UriInfo uriInfo) {
-        StageValueObject[] stages = GIL.instance().getExecutive().getTransferPipelineStages();
         _availableFormats.checkFormatExists(format);
+        PipelineStage[] stages = createPipelineStages(uriInfo);
 
         if (FormatSpecifier.XML.compareToIgnoreCase(format) == 0) {
-            return Response.ok(Transformer.transformStageArray(stages, uriInfo.getAbsolutePath()), MediaType.APPLICATION_XML).build();
+            return Response.ok(stages, MediaType.APPLICATION_XML).build();
         }
         if (FormatSpecifier.JSON.compareToIgnoreCase(format) == 0) {
-            return Response.ok(Transformer.transformStageArray(stages, uriInfo.getAbsolutePath()), MediaType.APPLICATION_JSON).build();
+            return Response.ok(stages, MediaType.APPLICATION_JSON).build();
         }        
-        PipelineStagesPage page = new PipelineStagesPage(Transformer.transformStageArray(stages, uriInfo.getAbsolutePath()));
+        PipelineStagesPage page = new PipelineStagesPage(stages);
         return Response.ok(page.asStream(), MediaType.TEXT_HTML).build();        
     }
 
+    /**
+     * Returns the stages of the transfer pipeline followed by the stages feeding each additional external system
+     * only.
+     */
+    private PipelineStage[] createPipelineStages(UriInfo uriInfo) {
+        IntegrationExecutive ie = GIL.instance().getExecutive();
+        List<PipelineStage> stages = new ArrayList<PipelineStage>(Arrays.asList(
+                Transformer.transformStageArray(ie.getTransferPipelineStages(), uriInfo.getAbsolutePath())));
+        for (int i = 0; i < ie.getExternalSystemCount(); i++) {
+            stages.addAll(Arrays.asList(
+                    Transformer.transformExternalSystemStageArray(i, ie.getExternalSystemPipelineStages(i))));
+        }
+        return stages.toArray(new PipelineStage[0]);
+    }
+
     @GET
     @Path("/stages/{seqNo}/commands{format:(\\..+)?}")
     @Produces({MediaType.TEXT_HTML, MediaType.APPLICATION_XML, MediaType.APPLICATION_JSON})
@@ -108,7 +126,7 @@ public class PipelineResource {
     @Path("/stages/{seqNo}/commands/{command}")
     @Produces(MediaType.TEXT_HTML)
     @Consumes({MediaType.APPLICATION_FORM_URLENCODED})
-    public Response invokeCommand(MultivaluedMap<String, String> form,
+    public Response invokeCommand(MultivaluedMap<String, String> form, @Context UriInfo uriInfo,
         @PathParam("seqNo") int seqNo, @PathParam("command") String command) {
 
         HashMap<String, String> params = new HashMap<String, String>();
@@ -118,13 +136,7 @@ public class PipelineResource {
                 params.put(entry.getKey(), entry.getValue().get(0));
             }
         }
-        try {
-            Map<String, String> result = GIL.instance().getExecutive().invokePipelineStageCommand(seqNo, command, params);
-            return Response.ok(new ControlCommandResultPage(result).asStream()).build();
-
-        } catch(Exception ex) {
-            throw new WebApplicationException(ex);
-        }
+        return CommandResultsResource.respond(scheduleCommand(seqNo, command, params), uriInfo, FormatSpecifier.HTML);
     }
 
     /**
@@ -134,16 +146,19 @@ public class PipelineResource {
     @Path("/stages/{seqNo}/commands/{command}")
     @Produces({MediaType.APPLICATION_XML, MediaType.APPLICATION_JSON})
     @Consumes({MediaType.APPLICATION_XML, MediaType.APPLICATION_JSON})
-    public Response invokeCommand(@PathParam("seqNo") int seqNo, @PathParam("command") String command, Parameter[] params) {
+    public Response invokeCommand(@Context UriInfo uriInfo, @Context HttpHeaders headers,
+            @PathParam("seqNo") int seqNo, @PathParam("command") String command, Parameter[] params) {
         HashMap<String, String> pmap = new HashMap<String, String>();
         for (Parameter p : params) {
             pmap.put(p.name, p.value);
         }
-        try
-        {
-            Map<String, String> result = GIL.instance().getExecutive().invokePipelineStageCommand(seqNo, command, pmap);
-            return Response.ok(new CommandResult(result)).build();
+        return CommandResultsResource.respond(scheduleCommand(seqNo, command, pmap), uriInfo,
+                CommandResultsResource.xmlOrJsonFormat(headers));
+    }
 
+    private AsyncResult<Map<String, String>> scheduleCommand(int seqNo, String command, HashMap<String, String> params) {
+        try {
+            return GIL.instance().getExecutive().schedulePipelineStageCommand(seqNo, command, params);
         } catch(Exception ex) {
             throw new WebApplicationException(ex);
         }
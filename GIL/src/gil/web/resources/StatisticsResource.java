@@ -25,6 +25,8 @@ import javax.ws.rs.Produces;
 import javax.ws.rs.core.Response;
 import javax.ws.rs.core.MediaType;
 import gil.GIL;
+import gil.core.IntegrationExecutive;
+import gil.core.Statistics;
 import gil.web.FormatSpecifier;
 import gil.web.html.page.StatisticsPage;
 import gil.web.jaxb.StatisticsJAXB;
@@ -45,14 +47,25 @@ public class StatisticsResource {
         _availableFormats.checkFormatExists(format);
 
         if (FormatSpecifier.XML.compareToIgnoreCase(format) == 0) {
-            return Response.ok(new StatisticsJAXB(GIL.instance().getExecutive().getExternalSystemStatistics(),
-                    GIL.instance().getExecutive().getProcessModelStatistics()), MediaType.APPLICATION_XML).build();
+            return Response.ok(createStatisticsObject(), MediaType.APPLICATION_XML).build();
         }
         if (FormatSpecifier.JSON.compareToIgnoreCase(format) == 0) {
-            return Response.ok(new StatisticsJAXB(GIL.instance().getExecutive().getExternalSystemStatistics(),
-                    GIL.instance().getExecutive().getProcessModelStatistics()), MediaType.APPLICATION_JSON).build();
+            return Response.ok(createStatisticsObject(), MediaType.APPLICATION_JSON).build();
         }       
         StatisticsPage page = new StatisticsPage();
         return Response.ok(page.asStream()).build();
     }
+
+    static StatisticsJAXB createStatisticsObject() {
+        IntegrationExecutive exec = GIL.instance().getExecutive();
+        Statistics[] esStats = new Statistics[exec.getExternalSystemCount()];
+        for (int i = 0; i < esStats.length; i++) {
+            esStats[i] = exec.getExternalSystemStatistics(i);
+        }
+        Statistics[] pmStats = new Statistics[exec.getProcessModelCount()];
+        for (int i = 0; i < pmStats.length; i++) {
+            pmStats[i] = exec.getProcessModelStatistics(i);
+        }
+        return new StatisticsJAXB(esStats, pmStats);
+    }
 }
\ No newline at end of file
@@ -57,29 +57,32 @@ public class StatusResource {
         return Response.ok(page.asStream(), MediaType.TEXT_HTML).build();
     }
 
-    private StatusJAXB createStatusObject() {
+    static StatusJAXB createStatusObject() {
         IntegrationExecutive exec = GIL.instance().getExecutive();
 
-        ProgressChangedEventArgs activity = exec.getExternalSystemActivity();
+        AdapterStatusJAXB[] esStatus = new AdapterStatusJAXB[exec.getExternalSystemCount()];
+        for (int i = 0; i < esStatus.length; i++) {
+            esStatus[i] = createAdapterStatus(exec.getExternalSystemStatus(i), exec.getExternalSystemState(i),
+                    exec.getExternalSystemActivity(i));
+        }
 
-        AdapterStatusJAXB esStatus = new AdapterStatusJAXB(
-            SystemStatus.getName(exec.getExternalSystemStatus().getStatusCode()),
-            exec.getExternalSystemStatus().getDescription(),
-            SimState.getName(exec.getExternalSystemState()),
-            activity.isDone(),
-            activity.activityDescription(),
-            activity.progressPercentage());
+        AdapterStatusJAXB[] pmStatus = new AdapterStatusJAXB[exec.getProcessModelCount()];
+        for (int i = 0; i < pmStatus.length; i++) {
+            pmStatus[i] = createAdapterStatus(exec.getProcessModelStatus(i), exec.getProcessModelState(i),
+                    exec.getProcessModelActivity(i));
+        }
 
-        activity = exec.getProcessModelActivity();
+        return new StatusJAXB(esStatus, pmStatus);
+    }
 
-        AdapterStatusJAXB pmStatus = new AdapterStatusJAXB(
-            SystemStatus.getName(exec.getProcessModelStatus().getStatusCode()),
-            exec.getProcessModelStatus().getDescription(),
-            SimState.getName(exec.getProcessModelState()),
+    private static AdapterStatusJAXB createAdapterStatus(SystemStatus status, int state,
+            ProgressChangedEventArgs activity) {
+        return new AdapterStatusJAXB(
+            SystemStatus.getName(status.getStatusCode()),
+            status.getDescription(),
+            SimState.getName(state),
             activity.isDone(),
             activity.activityDescription(),
             activity.progressPercentage());
-
-        return new StatusJAXB(esStatus, pmStatus);
     }
 }
\ No newline at end of file
@@ -93,6 +93,19 @@ public class AsyncResultTest {
         result.get(50, TimeUnit.MILLISECONDS);
     }
 
+    @Test(expected=TimeoutException.class)
+    public void expect_exception_at_once_when_get_is_called_with_zero_timeout() throws Exception {
+        AsyncResult<Object> result = new AsyncResult<Object>();
+        result.get(0, TimeUnit.MILLISECONDS);
+    }
+
+    @Test
+    public void expect_result_from_get_with_zero_timeout_when_already_done() throws Exception {
+        AsyncResult<Object> result = AsyncResult.done((Object)"is done");
+        assertTrue(result.isDone());
+        assertEquals("is done", result.get(0, TimeUnit.MILLISECONDS));
+    }
+
     private void runSecondThreadAndReportDone(final AsyncResult<Object> result) {
         new Thread(new Runnable() {
 
@@ -0,0 +1,87 @@
+/*
+    Copyright (C) 2010 LearningWell AB (www.learningwell.com), Kärnkraftsäkerhet och Utbildning AB (www.ksu.se)
+
+    This file is part of GIL (Generic Integration Layer).
+
+    GIL is free software: you can redistribute it and/or modify
+    it under the terms of the GNU Lesser General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    GIL is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public License
+    along with GIL.  If not, see <http://www.gnu.org/licenses/>.
+*/
+package gil.common.test;
+
+import gil.common.ByteBufferPool;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * @author Göran Larsson @ LearningWell AB
+ */
+public class ByteBufferPoolTest {
+
+    public ByteBufferPoolTest() {
+    }
+
+    @Test
+    public void expect_leased_buffers_to_be_direct_cleared_and_of_the_pool_byte_order() {
+        ByteBufferPool pool = new ByteBufferPool(2, 16, ByteOrder.LITTLE_ENDIAN);
+        ByteBuffer buf = pool.lease();
+        assertTrue(buf.isDirect());
+        assertEquals(16, buf.capacity());
+        assertEquals(ByteOrder.LITTLE_ENDIAN, buf.order());
+
+        buf.putInt(1);
+        buf.order(ByteOrder.BIG_ENDIAN);
+        pool.release(buf);
+        pool.lease();
+        buf = pool.lease();
+        assertEquals(0, buf.position());
+        assertEquals(16, buf.limit());
+        assertEquals(ByteOrder.LITTLE_ENDIAN, buf.order());
+    }
+
+    @Test
+    public void expect_released_buffers_to_be_reused() {
+        ByteBufferPool pool = new ByteBufferPool(1, 16, ByteOrder.BIG_ENDIAN);
+        ByteBuffer buf = pool.lease();
+        assertEquals(0, pool.getAvailableCount());
+        pool.release(buf);
+        assertEquals(1, pool.getAvailableCount());
+        assertSame(buf, pool.lease());
+        assertEquals(0, pool.getStarvationCount());
+    }
+
+    @Test
+    public void expect_allocation_and_incremented_starvation_count_when_the_pool_is_empty() {
+        ByteBufferPool pool = new ByteBufferPool(1, 16, ByteOrder.BIG_ENDIAN);
+        ByteBuffer buf0 = pool.lease();
+        ByteBuffer buf1 = pool.lease();
+        assertNotSame(buf0, buf1);
+        assertEquals(1, pool.getStarvationCount());
+
+        // The allocated buffer does not belong to the pool and is not kept when released.
+        assertFalse(pool.owns(buf1));
+        pool.release(buf1);
+        assertEquals(0, pool.getAvailableCount());
+        pool.release(buf0);
+        assertEquals(1, pool.getAvailableCount());
+    }
+
+    @Test
+    public void expect_buffers_not_belonging_to_the_pool_to_be_ignored_when_released() {
+        ByteBufferPool pool = new ByteBufferPool(1, 16, ByteOrder.BIG_ENDIAN);
+        pool.lease();
+        pool.release(ByteBuffer.allocateDirect(16));
+        assertEquals(0, pool.getAvailableCount());
+    }
+}
@@ -89,6 +89,13 @@ public class ConfigFileTest {
         config.getAppSetting("nonExisting");
     }
 
+    @Test
+    public void expect_appSettingExists_to_tell_whether_an_appSetting_exists() throws Exception {
+        ConfigFile config = ConfigFile.read(XML_TEST_DATA_FILE_NAME);
+        assertTrue(config.appSettingExists("testSetting"));
+        assertFalse(config.appSettingExists("nonExisting"));
+    }
+
     @Test
     public void expect_true_on_sectionExists_query_when_section_exists() throws Exception {
         ConfigFile config = ConfigFile.read(XML_TEST_DATA_FILE_NAME);
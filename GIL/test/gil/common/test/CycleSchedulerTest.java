@@ -0,0 +1,96 @@
+/*
+    Copyright (C) 2010 LearningWell AB (www.learningwell.com), Kärnkraftsäkerhet och Utbildning AB (www.ksu.se)
+
+    This file is part of GIL (Generic Integration Layer).
+
+    GIL is free software: you can redistribute it and/or modify
+    it under the terms of the GNU Lesser General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    GIL is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public License
+    along with GIL.  If not, see <http://www.gnu.org/licenses/>.
+*/
+package gil.common.test;
+
+import gil.common.CycleScheduler;
+import gil.common.Wakeup;
+import java.util.concurrent.TimeUnit;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * @author Göran Larsson @ LearningWell AB
+ */
+public class CycleSchedulerTest {
+    static final long PERIOD = TimeUnit.MILLISECONDS.toNanos(10);
+
+    Wakeup _wakeup = new Wakeup(0, TimeUnit.MICROSECONDS);
+
+    public CycleSchedulerTest() {
+    }
+
+    @Test
+    public void expect_the_period_to_be_derived_from_the_frequency() {
+        assertEquals(TimeUnit.MILLISECONDS.toNanos(4), CycleScheduler.forFrequency(50, 5).getPeriodNanos());
+        // Integer division in milliseconds would give a zero period at this frequency.
+        assertEquals(800000, CycleScheduler.forFrequency(250, 5).getPeriodNanos());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void expect_exception_when_the_frequency_is_zero() {
+        CycleScheduler.forFrequency(0, 5);
+    }
+
+    @Test
+    public void expect_cycles_to_follow_absolute_deadlines_without_drift() throws Exception {
+        CycleScheduler instance = new CycleScheduler(PERIOD);
+        long start = System.nanoTime();
+        for (int i = 0; i < 20; i++) {
+            Thread.sleep(2); // Work done in each cycle shall not add to the cycle time.
+            assertTrue(instance.awaitNextCycle(_wakeup));
+        }
+        long elapsed = System.nanoTime() - start;
+
+        assertTrue(elapsed >= 20 * PERIOD);
+        assertTrue("Elapsed " + elapsed, elapsed < 25 * PERIOD);
+        assertEquals(20, instance.getCycleCount());
+        assertEquals(0, instance.getOverrunCount());
+    }
+
+    @Test
+    public void expect_missed_cycles_to_be_skipped_and_counted_as_overruns() throws Exception {
+        CycleScheduler instance = new CycleScheduler(PERIOD);
+        Thread.sleep(TimeUnit.NANOSECONDS.toMillis(PERIOD) * 3 + 5);
+
+        assertTrue(instance.awaitNextCycle(_wakeup));
+        assertEquals(1, instance.getCycleCount());
+        assertTrue(instance.getOverrunCount() >= 2);
+        assertTrue(instance.getMaxLatenessNanos() >= 2 * PERIOD);
+        assertTrue(instance.getMaxJitterNanos() >= 2 * PERIOD);
+
+        // The missed cycles are not run back to back.
+        _wakeup.signal();
+        assertFalse(instance.awaitNextCycle(_wakeup));
+    }
+
+    @Test
+    public void expect_the_current_cycle_to_continue_when_woken_up_before_the_deadline() throws Exception {
+        CycleScheduler instance = new CycleScheduler(TimeUnit.SECONDS.toNanos(10));
+        _wakeup.signal();
+
+        assertFalse(instance.awaitNextCycle(_wakeup));
+        assertEquals(0, instance.getCycleCount());
+    }
+
+    @Test
+    public void expect_mean_lateness_to_be_zero_before_any_cycle_is_completed() {
+        CycleScheduler instance = new CycleScheduler(PERIOD);
+        assertEquals(0, instance.getMeanLatenessNanos());
+    }
+}
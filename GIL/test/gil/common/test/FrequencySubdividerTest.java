@@ -92,6 +92,27 @@ public class FrequencySubdividerTest {
 
     }
 
+    @Test
+    public void test_2kHz_subdivision_using_microsecond_resolution() {
+        FrequencySubdivider instance = new FrequencySubdivider(2000);
+        instance.reset(new SimTime(2009, 8, 22, 1, 1, 1, 0, 0));
+
+        assertEquals(0, instance.getSystem2TimeStepChange(new SimTime(2009, 8, 22, 1, 1, 1, 0, 499)));
+        assertEquals(1, instance.getSystem2TimeStepChange(new SimTime(2009, 8, 22, 1, 1, 1, 0, 500)));
+        assertEquals(1, instance.getSystem2TimeStepChange(new SimTime(2009, 8, 22, 1, 1, 1, 1, 0)));
+        assertEquals(3, instance.getSystem2TimeStepChange(new SimTime(2009, 8, 22, 1, 1, 1, 2, 500)));
+    }
+
+    @Test
+    public void expect_delta_changes_within_a_second_to_be_accepted_above_20Hz() {
+        FrequencySubdivider instance = new FrequencySubdivider(1000);
+        instance.reset(new SimTime(2009, 8, 22, 1, 1, 1, 0));
+
+        assertEquals(100, instance.getSystem2TimeStepChange(new SimTime(2009, 8, 22, 1, 1, 1, 100)));
+        assertEquals(1000, instance.getSystem2TimeStepChange(new SimTime(2009, 8, 22, 1, 1, 2, 100)));
+        assertEquals(0, instance.getSystem2TimeStepChange(new SimTime(2009, 8, 22, 1, 1, 3, 101)));
+    }
+
     @Test
     public void test_day_roll_over() {
         SimTime day1 = new SimTime(2009, 8, 22, 23, 59, 59, 0);
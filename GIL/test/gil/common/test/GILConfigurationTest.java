@@ -79,9 +79,56 @@ public class GILConfigurationTest {
         assertEquals("gil.io.example.ExampleESAdapter", c.getESAdapterClassName());
         assertEquals("dummy.file", c.getSignalExchangeListPath());
         assertEquals(40, c.getIdleProcessDataTransferInterval());
-        assertEquals(100, c.getESAdapterReadPollRate());
+        assertEquals(100000, c.getESAdapterReadPollRateInMicroseconds());
         assertEquals(ByteOrder.LITTLE_ENDIAN, c.getESAdapterByteOrder());
         assertEquals(ByteOrder.BIG_ENDIAN, c.getPMAdapterByteOrder());
+        assertEquals(20, c.getWakeupSpinTime());
+        assertEquals(0, c.getESSimCommandBudgetInMicroseconds());
+        assertEquals(1000, c.getControlCommandTimeBudgetInMicroseconds());
+        assertEquals(16, c.getControlCommandCountBudget());
+        assertEquals(200, c.getWebCommandTimeout());
+        assertEquals(0, c.getFrameHistoryLength());
+        assertEquals("", c.getRecordingDirectory());
+        assertEquals(256, c.getRecordingSegmentSize());
+    }
+
+    @Test(expected = InvalidFileFormatException.class)
+    public void expect_exception_when_recording_segment_size_exceeds_2047_megabytes() throws Exception {
+        when(_mockedConfig.appSettingExists("recordingSegmentSize")).thenReturn(true);
+        when(_mockedConfig.getAppSetting("recordingSegmentSize")).thenReturn("2048");
+        new GILConfiguration(_mockedConfig);
+    }
+
+    @Test
+    public void expect_optional_control_command_budget_to_be_read_when_given() throws Exception {
+        when(_mockedConfig.appSettingExists("controlCommandTimeBudget")).thenReturn(true);
+        when(_mockedConfig.getAppSetting("controlCommandTimeBudget")).thenReturn("0.25");
+        when(_mockedConfig.appSettingExists("controlCommandCountBudget")).thenReturn(true);
+        when(_mockedConfig.getAppSetting("controlCommandCountBudget")).thenReturn("4");
+        GILConfiguration c = new GILConfiguration(_mockedConfig);
+        assertEquals(250, c.getControlCommandTimeBudgetInMicroseconds());
+        assertEquals(4, c.getControlCommandCountBudget());
+    }
+
+    @Test
+    public void expect_optional_sim_command_budget_to_be_given_in_milliseconds() throws Exception {
+        when(_mockedConfig.appSettingExists("esSimCommandBudget")).thenReturn(true);
+        when(_mockedConfig.getAppSetting("esSimCommandBudget")).thenReturn("2.5");
+        assertEquals(2500, new GILConfiguration(_mockedConfig).getESSimCommandBudgetInMicroseconds());
+    }
+
+    @Test
+    public void expect_optional_wakeup_spin_time_to_be_read_when_given() throws Exception {
+        when(_mockedConfig.appSettingExists("wakeupSpinTime")).thenReturn(true);
+        when(_mockedConfig.getAppSetting("wakeupSpinTime")).thenReturn("0");
+        assertEquals(0, new GILConfiguration(_mockedConfig).getWakeupSpinTime());
+    }
+
+    @Test(expected = InvalidFileFormatException.class)
+    public void expect_exception_when_wakeup_spin_time_is_negative() throws Exception {
+        when(_mockedConfig.appSettingExists("wakeupSpinTime")).thenReturn(true);
+        when(_mockedConfig.getAppSetting("wakeupSpinTime")).thenReturn("-1");
+        new GILConfiguration(_mockedConfig);
     }
 
     @Test(expected = InvalidFileFormatException.class)
@@ -120,6 +167,18 @@ public class GILConfigurationTest {
         new GILConfiguration(_mockedConfig);
     }
 
+    @Test
+    public void expect_read_poll_rate_to_be_given_in_milliseconds_with_microsecond_resolution() throws Exception {
+        when(_mockedConfig.getAppSetting("esAdapterReadPollRate")).thenReturn("0.25");
+        assertEquals(250, new GILConfiguration(_mockedConfig).getESAdapterReadPollRateInMicroseconds());
+    }
+
+    @Test(expected = InvalidFileFormatException.class)
+    public void expect_exception_when_read_poll_rate_has_sub_microsecond_resolution() throws Exception {
+        when(_mockedConfig.getAppSetting("esAdapterReadPollRate")).thenReturn("0.0005");
+        new GILConfiguration(_mockedConfig);
+    }
+
     @Test(expected = InvalidFileFormatException.class)
     public void expect_exception_when_idle_process_data_transfer_intervall_is_not_a_valid_integer() throws Exception {
         when(_mockedConfig.getAppSetting("idleProcessDataTransferInterval")).thenReturn("notAnInterger");
@@ -19,8 +19,11 @@
 package gil.common.test;
 
 import java.util.concurrent.ExecutionException;
+import org.junit.After;
 import org.junit.Test;
 import gil.common.AsyncResult;
+import gil.common.CurrentTime;
+import gil.common.ICurrentTime;
 import gil.common.IInvokeable;
 import gil.common.Invoker;
 import static org.junit.Assert.*;
@@ -32,9 +35,46 @@ import static org.mockito.Mockito.*;
  */
 public class InvokerTest {
 
+    private long _nanoTime = 0;
+
     public InvokerTest() {
     }
 
+    @After
+    public void tearDown() {
+        CurrentTime.setInstanceForTestPurposes(null);
+    }
+
+    private void useTestClock() {
+        CurrentTime.setInstanceForTestPurposes(new ICurrentTime() {
+            public long inMilliseconds() {
+                return _nanoTime / 1000000;
+            }
+
+            public long inMicroseconds() {
+                return _nanoTime / 1000;
+            }
+
+            public long inNanoseconds() {
+                return _nanoTime;
+            }
+        });
+    }
+
+    @SuppressWarnings("unchecked")
+    private static IInvokeable<Object> mockCommand() {
+        return mock(IInvokeable.class);
+    }
+
+    private IInvokeable<Object> commandTaking(final long nanos) {
+        return new IInvokeable<Object>() {
+            public Object invoke() throws Exception {
+                _nanoTime += nanos;
+                return null;
+            }
+        };
+    }
+
     @Test
     public void expect_empty_command_queue_not_to_fail_when_executeNextCommandInQueue_is_called() {
         Invoker invoker = new Invoker();
@@ -43,7 +83,7 @@ public class InvokerTest {
 
     @Test
     public void expect_a_single_command_to_be_executed_when_executeNextCommandInQueue_is_called() throws Exception  {
-        IInvokeable command = mock(IInvokeable.class);
+        IInvokeable<Object> command = mockCommand();
         Invoker invoker = new Invoker();
         invoker.schedule(command);
         invoker.executeNextCommandInQueue();
@@ -52,8 +92,8 @@ public class InvokerTest {
 
     @Test
     public void expect_two_added_commands_to_be_executed_in_expected_order_when_executeNextCommandInQueue_is_called() throws Exception {
-        IInvokeable command0 = mock(IInvokeable.class);
-        IInvokeable command1 = mock(IInvokeable.class);
+        IInvokeable<Object> command0 = mockCommand();
+        IInvokeable<Object> command1 = mockCommand();
         Invoker invoker = new Invoker();
         invoker.schedule(command0);
         invoker.schedule(command1);
@@ -69,11 +109,11 @@ public class InvokerTest {
 
     @Test
     public void expect_AsyncResult_to_be_done_when_command_has_been_completed() {
-        IInvokeable command0 = mock(IInvokeable.class);
-        IInvokeable command1 = mock(IInvokeable.class);
+        IInvokeable<Object> command0 = mockCommand();
+        IInvokeable<Object> command1 = mockCommand();
         Invoker invoker = new Invoker();
-        AsyncResult res0 = invoker.schedule(command0);
-        AsyncResult res1 = invoker.schedule(command1);
+        AsyncResult<Object> res0 = invoker.schedule(command0);
+        AsyncResult<Object> res1 = invoker.schedule(command1);
 
         assertFalse(res0.isDone());
         assertFalse(res1.isDone());
@@ -87,13 +127,86 @@ public class InvokerTest {
 
     @Test(expected=ExecutionException.class)
     public void expect_AsyncResult_to_throw_exception_when_command_has_failed() throws Exception {
-        IInvokeable command0 = mock(IInvokeable.class);
+        IInvokeable<Object> command0 = mockCommand();
         Invoker invoker = new Invoker();
-        AsyncResult res0 = invoker.schedule(command0);
+        AsyncResult<Object> res0 = invoker.schedule(command0);
         when(command0.invoke()).thenThrow(new Exception("dkjfh"));
 
         invoker.executeNextCommandInQueue();
 
         res0.get();
     }
+
+    @Test
+    public void expect_zero_commands_to_be_executed_when_executeCommandsInQueue_is_called_on_an_empty_queue() {
+        assertEquals(0, new Invoker().executeCommandsInQueue());
+    }
+
+    @Test
+    public void expect_all_pending_commands_to_be_executed_when_executeCommandsInQueue_is_called_within_budget() throws Exception {
+        useTestClock();
+        IInvokeable<Object> command0 = mockCommand();
+        IInvokeable<Object> command1 = mockCommand();
+        Invoker invoker = new Invoker();
+        invoker.schedule(command0);
+        invoker.schedule(command1);
+
+        assertEquals(2, invoker.executeCommandsInQueue());
+        verify(command0).invoke();
+        verify(command1).invoke();
+        assertEquals(0, invoker.getQueueDepth());
+    }
+
+    @Test
+    public void expect_execution_to_stop_when_the_count_budget_is_used_up() throws Exception {
+        Invoker invoker = new Invoker(Long.MAX_VALUE, 2);
+        for (int i = 0; i < 5; i++) {
+            invoker.schedule(mockCommand());
+        }
+        assertEquals(2, invoker.executeCommandsInQueue());
+        assertEquals(3, invoker.getQueueDepth());
+        assertEquals(2, invoker.executeCommandsInQueue());
+        assertEquals(1, invoker.executeCommandsInQueue());
+        assertEquals(0, invoker.getQueueDepth());
+    }
+
+    @Test
+    public void expect_execution_to_stop_when_the_time_budget_is_used_up() throws Exception {
+        useTestClock();
+        Invoker invoker = new Invoker(1000, 16);
+        invoker.schedule(commandTaking(400));
+        invoker.schedule(commandTaking(400));
+        invoker.schedule(commandTaking(400));
+        invoker.schedule(commandTaking(400));
+
+        assertEquals(3, invoker.executeCommandsInQueue());
+        assertEquals(1, invoker.getQueueDepth());
+    }
+
+    @Test
+    public void expect_one_command_to_be_executed_when_the_first_command_uses_up_the_time_budget() throws Exception {
+        useTestClock();
+        Invoker invoker = new Invoker(0, 0);
+        invoker.schedule(commandTaking(2000));
+        invoker.schedule(commandTaking(2000));
+
+        assertEquals(1, invoker.executeCommandsInQueue());
+        assertEquals(1, invoker.executeCommandsInQueue());
+    }
+
+    @Test
+    public void expect_the_time_commands_wait_in_queue_to_be_recorded() throws Exception {
+        useTestClock();
+        Invoker invoker = new Invoker();
+        invoker.schedule(mockCommand());
+        _nanoTime += 3000;
+        invoker.schedule(mockCommand());
+        _nanoTime += 1000;
+
+        invoker.executeCommandsInQueue();
+
+        assertEquals(2, invoker.getWaitTimes().getCount());
+        assertEquals(2500, invoker.getWaitTimes().getMeanNanos());
+        assertEquals(4000, invoker.getWaitTimes().getMaxNanos());
+    }
 }
\ No newline at end of file
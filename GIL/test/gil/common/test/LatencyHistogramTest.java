@@ -0,0 +1,99 @@
+/*
+    Copyright (C) 2010 LearningWell AB (www.learningwell.com), Kärnkraftsäkerhet och Utbildning AB (www.ksu.se)
+
+    This file is part of GIL (Generic Integration Layer).
+
+    GIL is free software: you can redistribute it and/or modify
+    it under the terms of the GNU Lesser General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    GIL is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public License
+    along with GIL.  If not, see <http://www.gnu.org/licenses/>.
+*/
+package gil.common.test;
+
+import gil.common.LatencyHistogram;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * @author Göran Larsson @ LearningWell AB
+ */
+public class LatencyHistogramTest {
+
+    LatencyHistogram _histogram = new LatencyHistogram();
+
+    public LatencyHistogramTest() {
+    }
+
+    @Test
+    public void expect_zero_percentiles_when_nothing_is_recorded() {
+        assertEquals(0, _histogram.getCount());
+        assertEquals(0, _histogram.getPercentileNanos(99));
+        assertEquals(0, _histogram.getMaxNanos());
+        assertEquals(0, _histogram.getMeanNanos());
+    }
+
+    @Test
+    public void expect_short_durations_to_be_counted_exactly() {
+        for (int i = 0; i < 10; i++) {
+            _histogram.record(i);
+        }
+        assertEquals(10, _histogram.getCount());
+        assertEquals(4, _histogram.getPercentileNanos(50));
+        assertEquals(9, _histogram.getPercentileNanos(100));
+        assertEquals(0, _histogram.getPercentileNanos(0));
+    }
+
+    @Test
+    public void expect_percentiles_within_the_precision_of_the_buckets() {
+        for (int i = 1; i <= 100000; i++) {
+            _histogram.record(i * 1000L);
+        }
+        assertWithinPrecision(50000000L, _histogram.getPercentileNanos(50));
+        assertWithinPrecision(99000000L, _histogram.getPercentileNanos(99));
+        assertWithinPrecision(99900000L, _histogram.getPercentileNanos(99.9));
+        assertEquals(100000000L, _histogram.getMaxNanos());
+        assertEquals(50000500L, _histogram.getMeanNanos());
+    }
+
+    @Test
+    public void expect_percentiles_never_above_the_max() {
+        _histogram.record(1000001);
+        assertEquals(1000001, _histogram.getPercentileNanos(50));
+        _histogram.record(Long.MAX_VALUE);
+        assertEquals(Long.MAX_VALUE, _histogram.getPercentileNanos(100));
+    }
+
+    @Test
+    public void expect_negative_durations_to_be_counted_as_zero() {
+        _histogram.record(-5);
+        assertEquals(1, _histogram.getCount());
+        assertEquals(0, _histogram.getPercentileNanos(100));
+    }
+
+    @Test
+    public void expect_nothing_recorded_after_reset() {
+        _histogram.record(1000);
+        _histogram.reset();
+        assertEquals(0, _histogram.getCount());
+        assertEquals(0, _histogram.getPercentileNanos(50));
+        assertEquals(0, _histogram.getMaxNanos());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void expect_exception_when_the_percentile_is_above_100() {
+        _histogram.getPercentileNanos(100.1);
+    }
+
+    private static void assertWithinPrecision(long expected, long actual) {
+        assertTrue("Expected " + expected + ", was " + actual, actual >= expected);
+        assertTrue("Expected " + expected + ", was " + actual, actual <= expected + expected / 16);
+    }
+}
@@ -0,0 +1,94 @@
+/*
+    Copyright (C) 2010 LearningWell AB (www.learningwell.com), Kärnkraftsäkerhet och Utbildning AB (www.ksu.se)
+
+    This file is part of GIL (Generic Integration Layer).
+
+    GIL is free software: you can redistribute it and/or modify
+    it under the terms of the GNU Lesser General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    GIL is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public License
+    along with GIL.  If not, see <http://www.gnu.org/licenses/>.
+*/
+package gil.common.test;
+
+import gil.common.LatestValueExchanger;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * @author Göran Larsson @ LearningWell AB
+ */
+public class LatestValueExchangerTest {
+
+    public LatestValueExchangerTest() {
+    }
+
+    @Test
+    public void expect_the_latest_offered_value_to_be_polled() {
+        LatestValueExchanger<String> instance = new LatestValueExchanger<String>();
+        assertNull(instance.poll());
+        assertEquals(0, instance.size());
+
+        assertNull(instance.offer("first"));
+        assertEquals("first", instance.offer("second"));
+        assertEquals(1, instance.size());
+        assertEquals("second", instance.peek());
+        assertEquals(1, instance.getDroppedCount());
+
+        assertEquals("second", instance.poll());
+        assertNull(instance.poll());
+        assertTrue(instance.isEmpty());
+    }
+
+    @Test
+    public void expect_each_value_to_be_either_polled_or_dropped_exactly_once_when_accessed_concurrently() throws Exception {
+        final int count = 100000;
+        final LatestValueExchanger<Integer> instance = new LatestValueExchanger<Integer>();
+        final boolean[] seen = new boolean[count];
+        final int[] polledCount = new int[1];
+
+        Thread consumer = new Thread(new Runnable() {
+            public void run() {
+                int polled = 0;
+                int last = -1;
+                while (last < count - 1) {
+                    Integer value = instance.poll();
+                    if (value != null) {
+                        assertTrue(value > last);
+                        last = value;
+                        synchronized (seen) {
+                            assertFalse(seen[value]);
+                            seen[value] = true;
+                        }
+                        polled++;
+                    }
+                }
+                polledCount[0] = polled;
+            }
+        });
+        consumer.start();
+
+        int dropped = 0;
+        for (int i = 0; i < count; i++) {
+            Integer value = instance.offer(i);
+            if (value != null) {
+                synchronized (seen) {
+                    assertFalse(seen[value]);
+                    seen[value] = true;
+                }
+                dropped++;
+            }
+        }
+        consumer.join(10000);
+
+        assertEquals(count, polledCount[0] + dropped);
+        assertEquals(dropped, instance.getDroppedCount());
+    }
+}
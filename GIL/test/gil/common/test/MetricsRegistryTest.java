@@ -0,0 +1,112 @@
+/*
+    Copyright (C) 2010 LearningWell AB (www.learningwell.com), Kärnkraftsäkerhet och Utbildning AB (www.ksu.se)
+
+    This file is part of GIL (Generic Integration Layer).
+
+    GIL is free software: you can redistribute it and/or modify
+    it under the terms of the GNU Lesser General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    GIL is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public License
+    along with GIL.  If not, see <http://www.gnu.org/licenses/>.
+*/
+package gil.common.test;
+
+import gil.common.IGauge;
+import gil.common.LatencyHistogram;
+import gil.common.MetricsRegistry;
+import gil.common.StripedCounter;
+import java.io.StringWriter;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * @author Göran Larsson @ LearningWell AB
+ */
+public class MetricsRegistryTest {
+
+    MetricsRegistry _registry = new MetricsRegistry();
+
+    public MetricsRegistryTest() {
+    }
+
+    @Test
+    public void expect_counters_with_the_same_name_to_be_written_as_one_family() throws Exception {
+        StripedCounter es0 = _registry.counter("gil_frames_total", "Frames.", "index", "0");
+        StripedCounter es1 = _registry.counter("gil_frames_total", "Frames.", "index", "1");
+        es0.add(3);
+        es1.add(5000000000L);
+
+        assertEquals("# HELP gil_frames_total Frames.\n"
+                + "# TYPE gil_frames_total counter\n"
+                + "gil_frames_total{index=\"0\"} 3\n"
+                + "gil_frames_total{index=\"1\"} 5000000000\n", write());
+    }
+
+    @Test
+    public void expect_gauges_to_be_sampled_when_written() throws Exception {
+        final double[] value = { 1 };
+        _registry.registerGauge("gil_depth", "Depth.", new IGauge() {
+            public double getValue() {
+                return value[0];
+            }
+        });
+        value[0] = 2.5;
+
+        assertEquals("# HELP gil_depth Depth.\n# TYPE gil_depth gauge\ngil_depth 2.5\n", write());
+    }
+
+    @Test
+    public void expect_timers_to_be_written_as_summaries_in_seconds() throws Exception {
+        LatencyHistogram timer = new LatencyHistogram();
+        timer.record(1000000000L);
+        _registry.registerTimer("gil_latency_seconds", "Latency.", timer, "direction", "ToES");
+
+        String text = write();
+        assertTrue(text, text.contains("# TYPE gil_latency_seconds summary\n"));
+        assertTrue(text, text.contains("gil_latency_seconds{direction=\"ToES\",quantile=\"0.5\"} 1\n"));
+        assertTrue(text, text.contains("gil_latency_seconds{direction=\"ToES\",quantile=\"0.999\"} 1\n"));
+        assertTrue(text, text.contains("gil_latency_seconds_sum{direction=\"ToES\"} 1\n"));
+        assertTrue(text, text.contains("gil_latency_seconds_count{direction=\"ToES\"} 1\n"));
+    }
+
+    @Test
+    public void expect_label_values_to_be_escaped() throws Exception {
+        _registry.counter("gil_frames_total", "Frames.", "adapter", "a\"b\\c\nd");
+        assertTrue(write().contains("gil_frames_total{adapter=\"a\\\"b\\\\c\\nd\"} 0\n"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void expect_exception_when_the_same_metric_is_registered_twice() {
+        _registry.counter("gil_frames_total", "Frames.", "index", "0");
+        _registry.counter("gil_frames_total", "Frames.", "index", "0");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void expect_exception_when_a_name_is_registered_for_another_kind_of_metric() {
+        _registry.counter("gil_frames", "Frames.");
+        _registry.registerTimer("gil_frames", "Frames.", new LatencyHistogram(), "index", "1");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void expect_exception_when_the_name_is_invalid() {
+        _registry.counter("gil-frames", "Frames.");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void expect_exception_when_a_label_value_is_missing() {
+        _registry.counter("gil_frames", "Frames.", "index");
+    }
+
+    private String write() throws Exception {
+        StringWriter writer = new StringWriter();
+        _registry.write(writer);
+        return writer.toString();
+    }
+}
@@ -0,0 +1,91 @@
+/*
+    Copyright (C) 2010 LearningWell AB (www.learningwell.com), Kärnkraftsäkerhet och Utbildning AB (www.ksu.se)
+
+    This file is part of GIL (Generic Integration Layer).
+
+    GIL is free software: you can redistribute it and/or modify
+    it under the terms of the GNU Lesser General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    GIL is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public License
+    along with GIL.  If not, see <http://www.gnu.org/licenses/>.
+*/
+package gil.common.test;
+
+import gil.common.LatencyHistogram;
+import gil.common.RollingLatencyHistogram;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * @author Göran Larsson @ LearningWell AB
+ */
+public class RollingLatencyHistogramTest {
+    static final long SLOT = 1000;
+
+    RollingLatencyHistogram _histogram = new RollingLatencyHistogram(3 * SLOT, 3);
+
+    public RollingLatencyHistogramTest() {
+    }
+
+    @Test
+    public void expect_durations_within_the_window_to_be_included_in_the_snapshot() {
+        _histogram.record(10, 0);
+        _histogram.record(20, SLOT);
+        _histogram.record(30, 2 * SLOT + 999);
+
+        LatencyHistogram snapshot = _histogram.getSnapshot(2 * SLOT + 999);
+        assertEquals(3, snapshot.getCount());
+        assertEquals(30, snapshot.getMaxNanos());
+        assertEquals(20, snapshot.getMeanNanos());
+    }
+
+    @Test
+    public void expect_durations_to_be_forgotten_one_slot_at_a_time_when_the_window_moves() {
+        _histogram.record(10, 0);
+        _histogram.record(20, SLOT);
+
+        assertEquals(1, _histogram.getSnapshot(3 * SLOT).getCount());
+        assertEquals(20, _histogram.getSnapshot(3 * SLOT).getMaxNanos());
+        assertEquals(0, _histogram.getSnapshot(4 * SLOT).getCount());
+    }
+
+    @Test
+    public void expect_a_reused_slot_to_be_cleared_before_recording() {
+        _histogram.record(10, 0);
+        _histogram.record(20, 3 * SLOT);
+
+        LatencyHistogram snapshot = _histogram.getSnapshot(3 * SLOT);
+        assertEquals(1, snapshot.getCount());
+        assertEquals(20, snapshot.getMaxNanos());
+    }
+
+    @Test
+    public void expect_negative_times_to_be_handled() {
+        _histogram.record(10, -1);
+        _histogram.record(20, 0);
+
+        assertEquals(2, _histogram.getSnapshot(0).getCount());
+        assertEquals(1, _histogram.getSnapshot(-1).getCount());
+    }
+
+    @Test
+    public void expect_the_snapshot_not_to_be_affected_by_later_recordings() {
+        _histogram.record(10, 0);
+        LatencyHistogram snapshot = _histogram.getSnapshot(0);
+        _histogram.record(20, 0);
+
+        assertEquals(1, snapshot.getCount());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void expect_exception_when_the_slot_count_is_zero() {
+        new RollingLatencyHistogram(SLOT, 0);
+    }
+}
@@ -0,0 +1,98 @@
+/*
+    Copyright (C) 2010 LearningWell AB (www.learningwell.com), Kärnkraftsäkerhet och Utbildning AB (www.ksu.se)
+
+    This file is part of GIL (Generic Integration Layer).
+
+    GIL is free software: you can redistribute it and/or modify
+    it under the terms of the GNU Lesser General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    GIL is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public License
+    along with GIL.  If not, see <http://www.gnu.org/licenses/>.
+*/
+package gil.common.test;
+
+import gil.common.SlidingRate;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * @author Göran Larsson @ LearningWell AB
+ */
+public class SlidingRateTest {
+
+    private static final long MS = 1000000L;
+    private static final long SECOND = 1000 * MS;
+
+    public SlidingRateTest() {
+    }
+
+    @Test
+    public void expect_zero_rate_when_less_than_two_samples_are_taken() {
+        SlidingRate instance = new SlidingRate(100 * MS, 60 * SECOND);
+        assertEquals(0.0, instance.getRate(SECOND, 0), 0);
+        instance.sample(10, 0);
+        assertEquals(0.0, instance.getRate(SECOND, 0), 0);
+        assertEquals(0.0, instance.getRate(SECOND, SECOND), 0);
+    }
+
+    @Test
+    public void expect_the_rate_to_cover_the_window_only() {
+        SlidingRate instance = new SlidingRate(100 * MS, 60 * SECOND);
+        // 10 per second for 59 s, then 100 per second for 1 s.
+        long count = 0;
+        for (long t = 0; t < 59 * SECOND; t += 100 * MS) {
+            instance.sample(count, t);
+            count += 1;
+        }
+        for (long t = 59 * SECOND; t <= 60 * SECOND; t += 100 * MS) {
+            instance.sample(count, t);
+            count += 10;
+        }
+
+        assertEquals(100.0, instance.getRate(SECOND, 60 * SECOND), 1e-9);
+        assertEquals((10.0 * 9 + 100) / 10, instance.getRate(10 * SECOND, 60 * SECOND), 1e-9);
+        assertEquals((10.0 * 59 + 100) / 60, instance.getRate(60 * SECOND, 60 * SECOND), 1e-9);
+    }
+
+    @Test
+    public void expect_the_rate_to_fall_when_sampling_stalls() {
+        SlidingRate instance = new SlidingRate(100 * MS, 60 * SECOND);
+        for (int i = 0; i <= 10; i++) {
+            instance.sample(i * 10, i * 100 * MS);
+        }
+        assertEquals(100.0, instance.getRate(SECOND, SECOND), 1e-9);
+        // No progress for half a second after the latest sample.
+        assertEquals(50.0, instance.getRate(SECOND, 1500 * MS), 1e-9);
+        assertEquals(0.0, instance.getRate(SECOND, 3 * SECOND), 0);
+    }
+
+    @Test
+    public void expect_windows_longer_than_the_ring_to_be_limited_to_the_samples_held() {
+        SlidingRate instance = new SlidingRate(SECOND, 2 * SECOND);
+        for (int i = 0; i < 10; i++) {
+            instance.sample(i * 5, i * SECOND);
+        }
+        assertEquals(5.0, instance.getRate(60 * SECOND, 9 * SECOND), 1e-9);
+    }
+
+    @Test
+    public void expect_a_sample_to_be_due_when_the_interval_has_elapsed() {
+        SlidingRate instance = new SlidingRate(100 * MS, SECOND);
+        assertTrue(instance.isSampleDue(0));
+        instance.sample(0, 0);
+        assertFalse(instance.isSampleDue(99 * MS));
+        assertTrue(instance.isSampleDue(100 * MS));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void expect_exception_when_the_window_is_shorter_than_the_interval() {
+        new SlidingRate(SECOND, 100 * MS);
+    }
+}
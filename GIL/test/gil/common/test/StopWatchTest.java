@@ -22,32 +22,71 @@ package gil.common.test;
 import gil.common.CurrentTime;
 import gil.common.ICurrentTime;
 import gil.common.StopWatch;
+import org.junit.After;
+import org.junit.Before;
 import org.junit.Test;
 import static org.junit.Assert.*;
 
 public class StopWatchTest {
 
     long _currentTime = 0;
-   
-    @Test
-    public void testStopwWatch() {
+    long _wallClockTime = 0;
+
+    @Before
+    public void setUp() {
         CurrentTime.setInstanceForTestPurposes(new ICurrentTime() {
             public long inMilliseconds() {
+                return _wallClockTime;
+            }
+            public long inMicroseconds() {
+                return _currentTime / 1000;
+            }
+            public long inNanoseconds() {
                 return _currentTime;
             }
         });
+    }
+
+    @After
+    public void tearDown() {
+        CurrentTime.setInstanceForTestPurposes(null);
+    }
+
+    @Test
+    public void testStopwWatch() {
         StopWatch sw = new StopWatch();
-        _currentTime = 1000;
+        _currentTime = 1000000000L;
         sw.start();
-        _currentTime = 1010;
+        _currentTime = 1010000000L;
         assertEquals(10, sw.getElapsedMilliseconds());
-        _currentTime = 1020;
+        _currentTime = 1020000000L;
         assertEquals(20, sw.getElapsedMilliseconds());
         sw.stop();
-        _currentTime = 1030;
+        _currentTime = 1030000000L;
         assertEquals(20, sw.getElapsedMilliseconds());
         sw.start();
-        _currentTime = 1040;
+        _currentTime = 1040000000L;
         assertEquals(10, sw.getElapsedMilliseconds());
     }
+
+    @Test
+    public void expect_sub_millisecond_time_to_be_measured() {
+        StopWatch sw = new StopWatch();
+        _currentTime = 1000000000L;
+        sw.start();
+        _currentTime = 1000250500L;
+        assertEquals(0, sw.getElapsedMilliseconds());
+        assertEquals(250, sw.getElapsedMicroseconds());
+        assertEquals(250500, sw.getElapsedNanoseconds());
+    }
+
+    @Test
+    public void expect_elapsed_time_not_to_be_affected_by_wall_clock_adjustments() {
+        StopWatch sw = new StopWatch();
+        _wallClockTime = 1000000;
+        sw.start();
+        _wallClockTime = 0;
+        _currentTime += 5000000;
+        assertEquals(5, sw.getElapsedMilliseconds());
+    }
 }
\ No newline at end of file
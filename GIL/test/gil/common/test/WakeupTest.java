@@ -0,0 +1,92 @@
+/*
+    Copyright (C) 2010 LearningWell AB (www.learningwell.com), Kärnkraftsäkerhet och Utbildning AB (www.ksu.se)
+
+    This file is part of GIL (Generic Integration Layer).
+
+    GIL is free software: you can redistribute it and/or modify
+    it under the terms of the GNU Lesser General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    GIL is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public License
+    along with GIL.  If not, see <http://www.gnu.org/licenses/>.
+*/
+package gil.common.test;
+
+import gil.common.Wakeup;
+import java.util.concurrent.TimeUnit;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * @author Göran Larsson @ LearningWell AB
+ */
+public class WakeupTest {
+
+    public WakeupTest() {
+    }
+
+    @Test
+    public void expect_await_to_return_false_when_the_timeout_elapses() throws Exception {
+        Wakeup instance = new Wakeup(0, TimeUnit.MICROSECONDS);
+        long start = System.nanoTime();
+        assertFalse(instance.await(TimeUnit.MILLISECONDS.toNanos(20)));
+        assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(20));
+    }
+
+    @Test
+    public void expect_a_signal_given_before_await_to_be_remembered_once() throws Exception {
+        Wakeup instance = new Wakeup(0, TimeUnit.MICROSECONDS);
+        instance.signal();
+        instance.signal();
+        assertTrue(instance.await(TimeUnit.SECONDS.toNanos(10)));
+        assertFalse(instance.await(0));
+    }
+
+    @Test
+    public void expect_a_parked_thread_to_be_woken_up_when_signalled() throws Exception {
+        final Wakeup instance = new Wakeup(0, TimeUnit.MICROSECONDS);
+        new Thread(new Runnable() {
+            public void run() {
+                try { Thread.sleep(25); } catch (InterruptedException ex) {}
+                instance.signal();
+            }
+        }).start();
+
+        long start = System.nanoTime();
+        assertTrue(instance.await(TimeUnit.SECONDS.toNanos(10)));
+        assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(5));
+    }
+
+    @Test
+    public void expect_a_spinning_thread_to_be_woken_up_when_signalled() throws Exception {
+        final Wakeup instance = new Wakeup(10, TimeUnit.SECONDS);
+        new Thread(new Runnable() {
+            public void run() {
+                try { Thread.sleep(25); } catch (InterruptedException ex) {}
+                instance.signal();
+            }
+        }).start();
+
+        long start = System.nanoTime();
+        assertTrue(instance.await(TimeUnit.SECONDS.toNanos(20)));
+        assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(5));
+    }
+
+    @Test(expected = InterruptedException.class)
+    public void expect_InterruptedException_when_the_waiting_thread_is_interrupted() throws Exception {
+        final Thread waiter = Thread.currentThread();
+        new Thread(new Runnable() {
+            public void run() {
+                try { Thread.sleep(25); } catch (InterruptedException ex) {}
+                waiter.interrupt();
+            }
+        }).start();
+        new Wakeup(0, TimeUnit.MICROSECONDS).await(TimeUnit.SECONDS.toNanos(10));
+    }
+}
@@ -20,16 +20,23 @@ package gil.core.test;
 
 import org.junit.After;
 import org.junit.Before;
+import gil.common.AsyncResult;
 import gil.common.ValueResult;
 import gil.common.Result;
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
+import java.util.BitSet;
 import java.util.HashMap;
+import java.util.Map;
 import gil.core.*;
 import org.junit.Test;
 import org.mockito.ArgumentCaptor;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
 import gil.io.ExternalSystemAdapter;
+import gil.common.CurrentTime;
+import gil.common.ICurrentTime;
 import gil.common.GILConfiguration;
 import static org.junit.Assert.*;
 import static org.mockito.Mockito.*;
@@ -41,10 +48,11 @@ public class ExternalSystemProcedureTest {
 
     final static int BUF_SIZE = 8;
     IntegrationContext context = new IntegrationContext();
+    ExternalSystemChannel channel = context.externalSystem(0);
 
     static final GILConfiguration config = mock(GILConfiguration.class);
     static {
-        when(config.getESAdapterReadPollRate()).thenReturn(1);
+        when(config.getESAdapterReadPollRateInMicroseconds()).thenReturn(1000L);
         when(config.getPMAdapterByteOrder()).thenReturn(ByteOrder.BIG_ENDIAN);
     }
     
@@ -53,7 +61,7 @@ public class ExternalSystemProcedureTest {
     
 
     @Before
-    public void setUp() {
+    public void setUp() throws Exception {
         setupESAdapterMock();
         _procedure = new ExternalSystemProcedure(_esAdapterMock, context, BUF_SIZE, config);
     }
@@ -69,25 +77,25 @@ public class ExternalSystemProcedureTest {
     @Test
     public void expect_established_connection_to_external_system_after_first_call_to_runOnce() throws Exception {
 
-        context.pendingSimCommands.add(new Command("", null));
-        context.pendingTransferToES.add(new Data(ByteBuffer.allocate(100)));
+        channel.pendingSimCommands.add(new Command("", null));
+        channel.pendingTransferToES.offer(new Data(ByteBuffer.allocate(100)));
 
         when(_esAdapterMock.connect()).thenReturn(true);
-        _procedure.runOnce(1);
+        _procedure.runOnce(1000);
         assertTrue(_procedure.currentState() instanceof ExternalSystemProcedure.ConnectedState);
-        assertEquals(1, context.pendingTransferToES.size());
-        assertEquals(1, context.pendingSimCommands.size());
+        assertEquals(1, channel.pendingTransferToES.size());
+        assertEquals(1, channel.pendingSimCommands.size());
     }
 
     @Test
     public void expect_connect_to_be_called_repeadetly_when_connect_returns_false() throws Exception {
         when(_esAdapterMock.connect()).thenReturn(false);
-        _procedure.runOnce(1);
+        _procedure.runOnce(1000);
         assertTrue(_procedure.currentState() instanceof ExternalSystemProcedure.DisconnectedState);
-        _procedure.runOnce(2);
+        _procedure.runOnce(2000);
         assertTrue(_procedure.currentState() instanceof ExternalSystemProcedure.DisconnectedState);
         when(_esAdapterMock.connect()).thenReturn(true);
-        _procedure.runOnce(3);
+        _procedure.runOnce(3000);
         assertTrue(_procedure.currentState() instanceof ExternalSystemProcedure.ConnectedState);
     }
 
@@ -110,14 +118,14 @@ public class ExternalSystemProcedureTest {
         assertEquals(SystemStatus.UNKNOWN, _procedure.getExternalSystemStatus().getStatusCode());
 
         // When connected, expect status and state to be read from the adapter.
-        _procedure.runOnce(1);
+        _procedure.runOnce(1000);
         assertTrue(_procedure.currentState() instanceof ExternalSystemProcedure.ConnectedState);
         assertEquals(SimState.SLOW, _procedure.getExternalSystemState());
         assertEquals("its OK", _procedure.getExternalSystemStatus().getDescription());
         
         // Expect to be disconnected the status and state to be unknown after the adapter has thrown exception.
         when(_esAdapterMock.readSignalData((ByteBuffer)any())).thenThrow(new IOException("aaaaa"));
-        _procedure.runOnce(2);
+        _procedure.runOnce(2000);
         assertTrue(_procedure.currentState() instanceof ExternalSystemProcedure.DisconnectedState);
         assertEquals(SimState.UNKNOWN, _procedure.getExternalSystemState());
         assertEquals(SystemStatus.NOK, _procedure.getExternalSystemStatus().getStatusCode());
@@ -126,7 +134,7 @@ public class ExternalSystemProcedureTest {
         // unknown and status to be NOK. The status description is expected to be the message as the error message
         // in the exception thrown by the adapter.
         when(_esAdapterMock.connect()).thenThrow(new IOException("errmsg from ES-adapter"));
-        _procedure.runOnce(3);
+        _procedure.runOnce(3000);
         assertTrue(_procedure.currentState() instanceof ExternalSystemProcedure.DisconnectedState);
         assertEquals(SimState.UNKNOWN, _procedure.getExternalSystemState());
         assertEquals(SystemStatus.NOK, _procedure.getExternalSystemStatus().getStatusCode());
@@ -136,7 +144,7 @@ public class ExternalSystemProcedureTest {
     @Test
     public void expect_to_stay_in_DisconnectedState_if_connection_to_external_system_fails() throws Exception {
         when(_esAdapterMock.connect()).thenThrow(new IOException("errmsg from ES-adapter"));
-        _procedure.runOnce(1);
+        _procedure.runOnce(1000);
         assertTrue(_procedure.currentState() instanceof ExternalSystemProcedure.DisconnectedState);
     }
 
@@ -144,7 +152,7 @@ public class ExternalSystemProcedureTest {
     public void expect_state_transition_from_connected_to_disconnected_when_reconnect_is_called() throws Exception {
         doFirstRunOnceCallToConnect();
         _procedure.reconnect();
-        _procedure.runOnce(1);
+        _procedure.runOnce(1000);
         verify(_esAdapterMock).disconnect();
         assertTrue(_procedure.currentState() instanceof ExternalSystemProcedure.DisconnectedState);
     }
@@ -155,15 +163,15 @@ public class ExternalSystemProcedureTest {
     @Test
     public void expect_single_pending_command_to_be_executed() throws Exception {
         doFirstRunOnceCallToConnect();
-        context.pendingSimCommands.add(new Command("FREEZE", null));
+        channel.pendingSimCommands.add(new Command("FREEZE", null));
 
         when(_esAdapterMock.executeSimCommand((Command)any())).thenReturn(new Result(true));
 
-        _procedure.runOnce(1);
+        _procedure.runOnce(1000);
 
         ArgumentCaptor<Command> argument = ArgumentCaptor.forClass(Command.class);
         verify(_esAdapterMock).executeSimCommand(argument.capture());
-        assertEquals(0, context.pendingSimCommands.size());
+        assertEquals(0, channel.pendingSimCommands.size());
         assertEquals("FREEZE", argument.getValue().getID());
     }
 
@@ -173,22 +181,60 @@ public class ExternalSystemProcedureTest {
         ArgumentCaptor<Command> argument = ArgumentCaptor.forClass(Command.class);
 
         doFirstRunOnceCallToConnect();
-        context.pendingSimCommands.add(new Command("FREEZE", null));
-        context.pendingSimCommands.add(new Command("RUN", null));
+        channel.pendingSimCommands.add(new Command("FREEZE", null));
+        channel.pendingSimCommands.add(new Command("RUN", null));
 
         when(_esAdapterMock.executeSimCommand((Command)any())).thenReturn(new Result(true));
 
-        _procedure.runOnce(1);
+        _procedure.runOnce(1000);
         
-        verify(_esAdapterMock).executeSimCommand(argument.capture());
-        assertEquals(1, context.pendingSimCommands.size());
-        assertEquals("FREEZE", argument.getValue().getID());
+        verify(_esAdapterMock, times(2)).executeSimCommand(argument.capture());
+        assertEquals(0, channel.pendingSimCommands.size());
+        assertEquals("FREEZE", argument.getAllValues().get(0).getID());
+        assertEquals("RUN", argument.getAllValues().get(1).getID());
+    }
 
-        _procedure.runOnce(2);
+    @Test
+    public void expect_all_pending_commands_to_be_executed_as_one_batch() throws Exception {
+        doFirstRunOnceCallToConnect();
+        channel.pendingSimCommands.add(new Command("LOAD_IC", null));
+        channel.pendingSimCommands.add(new Command("MALF_1", null));
+        channel.pendingSimCommands.add(new Command("MALF_2", null));
+        doReturn(new Result[] { new Result(true), new Result(true), new Result(true) })
+                .when(_esAdapterMock).executeSimCommands(any(Command[].class));
+
+        _procedure.runOnce(1000);
+
+        ArgumentCaptor<Command[]> argument = ArgumentCaptor.forClass(Command[].class);
+        verify(_esAdapterMock, times(1)).executeSimCommands(argument.capture());
+        assertEquals(3, argument.getValue().length);
+        assertEquals("LOAD_IC", argument.getValue()[0].getID());
+        assertEquals("MALF_2", argument.getValue()[2].getID());
+        assertEquals(1, _procedure.getStatistics().commandBatchCount);
+    }
 
-        verify(_esAdapterMock, times(2)).executeSimCommand(argument.capture());
-        assertEquals(0, context.pendingSimCommands.size());
-        assertEquals("RUN", argument.getValue().getID());
+    @Test
+    public void expect_commands_arriving_after_the_time_budget_is_used_up_to_be_executed_in_the_next_iteration() throws Exception {
+        GILConfiguration budgetConfig = mock(GILConfiguration.class);
+        when(budgetConfig.getESAdapterReadPollRateInMicroseconds()).thenReturn(1000L);
+        when(budgetConfig.getPMAdapterByteOrder()).thenReturn(ByteOrder.BIG_ENDIAN);
+        when(budgetConfig.getESSimCommandBudgetInMicroseconds()).thenReturn(1000L);
+        _procedure = new ExternalSystemProcedure(_esAdapterMock, context, BUF_SIZE, budgetConfig);
+        doFirstRunOnceCallToConnect();
+        doAnswer(new Answer<Result[]>() {
+            public Result[] answer(InvocationOnMock invocation) throws Throwable {
+                channel.pendingSimCommands.add(new Command("RUN", null));
+                Thread.sleep(2);
+                return new Result[] { new Result(true) };
+            }
+        }).when(_esAdapterMock).executeSimCommands(any(Command[].class));
+        channel.pendingSimCommands.add(new Command("FREEZE", null));
+
+        _procedure.runOnce(1000);
+
+        verify(_esAdapterMock, times(1)).executeSimCommands(any(Command[].class));
+        assertEquals(1, channel.pendingSimCommands.size());
+        assertTrue(_procedure.getStatistics().maxCommandBatchLatency >= 2000);
     }
 
 
@@ -196,12 +242,12 @@ public class ExternalSystemProcedureTest {
     public void expect_disconnect_from_ES_when_an_IOException_is_thrown_during_execution_of_a_command() throws Exception {
 
         doFirstRunOnceCallToConnect();
-        context.pendingSimCommands.add(new Command("FREEZE", null));
-        context.pendingSimCommands.add(new Command("RUN", null));
+        channel.pendingSimCommands.add(new Command("FREEZE", null));
+        channel.pendingSimCommands.add(new Command("RUN", null));
 
         when(_esAdapterMock.executeSimCommand((Command)any())).thenThrow(new IOException());
 
-        _procedure.runOnce(1);
+        _procedure.runOnce(1000);
 
         verify(_esAdapterMock).disconnect();
         assertTrue(_procedure.currentState() instanceof ExternalSystemProcedure.DisconnectedState);
@@ -211,15 +257,31 @@ public class ExternalSystemProcedureTest {
     public void expect_command_execution_failure_count_to_be_incremented_if_failure_when_executing_command() throws Exception {
 
         doFirstRunOnceCallToConnect();
-        context.pendingSimCommands.add(new Command("FREEZE", null));
-        context.pendingSimCommands.add(new Command("RUN", null));
+        channel.pendingSimCommands.add(new Command("FREEZE", null));
+        channel.pendingSimCommands.add(new Command("RUN", null));
 
         when(_esAdapterMock.executeSimCommand((Command)any())).thenReturn(new Result(false, "a faliure"));
 
-        _procedure.runOnce(1);
+        _procedure.runOnce(1000);
+
+        assertEquals(2, _procedure.getStatistics().commandFailureCount);
+        assertEquals(0, channel.pendingSimCommands.size());
+    }
+
+    @Test
+    public void expect_every_command_of_a_batch_to_fail_when_the_number_of_results_does_not_match() throws Exception {
+
+        doFirstRunOnceCallToConnect();
+        channel.pendingSimCommands.add(new Command("FREEZE", null));
+        channel.pendingSimCommands.add(new Command("RUN", null));
+
+        doReturn(new Result[] {new Result(true, ""), new Result(true, ""), new Result(true, "")})
+                .when(_esAdapterMock).executeSimCommands(any(Command[].class));
+
+        _procedure.runOnce(1000);
 
-        assertEquals(1, _procedure.getStatistics().commandFailureCount);
-        assertEquals(1, context.pendingSimCommands.size());
+        assertEquals(2, _procedure.getStatistics().commandFailureCount);
+        assertTrue(_procedure.currentState() instanceof ExternalSystemProcedure.ConnectedState);
     }
 
     ////////////////////////////////////////////////////////////////////////////////////////
@@ -234,17 +296,76 @@ public class ExternalSystemProcedureTest {
         final SimTime time = new SimTime();
         final Data data = new Data(buffer, time);
 
-        context.pendingTransferToES.add(data);
+        channel.pendingTransferToES.offer(data);
 
         when(_esAdapterMock.writeSignalData(buffer, time)).thenReturn(new Result(true));
 
-        _procedure.runOnce(1);
+        _procedure.runOnce(1000);
 
         verify(_esAdapterMock).writeSignalData(buffer, time);
 
         assertEquals(0, _procedure.getStatistics().dataWriteFailureCount);
     }
 
+    @Test
+    public void expect_the_latency_of_written_frames_to_be_recorded_when_their_read_time_is_stamped() throws Exception {
+        doFirstRunOnceCallToConnect();
+        when(_esAdapterMock.writeSignalData(any(ByteBuffer.class), any(SimTime.class))).thenReturn(new Result(true));
+        long now = CurrentTime.instance().inNanoseconds();
+        Data data = new Data(ByteBuffer.allocate(BUF_SIZE));
+        data.setReadTime(now - 5000000);
+        data.setTransformedTime(now - 4000000);
+        data.setHandOverTime(now - 1000000);
+        channel.pendingTransferToES.offer(data);
+        _procedure.runOnce(1000);
+        channel.pendingTransferToES.offer(new Data(ByteBuffer.allocate(BUF_SIZE)));
+        _procedure.runOnce(2000);
+
+        Statistics stats = _procedure.getStatistics();
+        assertEquals(2, stats.dataWriteCount);
+        assertEquals(1, stats.frameLatencyCount);
+        assertTrue(stats.maxFrameLatency >= 5000);
+        assertTrue(stats.frameLatencyP50 >= 5000);
+        assertTrue(stats.transformLatencyP99 >= 1000 && stats.transformLatencyP99 < 1100);
+        assertTrue(stats.handOverLatencyP99 >= 3000 && stats.handOverLatencyP99 < 3300);
+        assertTrue(stats.writeLatencyP99 >= 1000);
+    }
+
+    @Test
+    public void expect_the_rate_of_written_frames_over_the_sampled_counts_to_be_reported() throws Exception {
+        doFirstRunOnceCallToConnect();
+        when(_esAdapterMock.writeSignalData(any(ByteBuffer.class), any(SimTime.class))).thenReturn(new Result(true));
+        _procedure.sampleRates(0);
+        channel.pendingTransferToES.offer(new Data(ByteBuffer.allocate(BUF_SIZE)));
+        _procedure.runOnce(1000);
+        channel.pendingTransferToES.offer(new Data(ByteBuffer.allocate(BUF_SIZE)));
+        _procedure.runOnce(2000);
+        _procedure.sampleRates(50000000);
+        _procedure.sampleRates(1000000000);
+
+        CurrentTime.setInstanceForTestPurposes(new ICurrentTime() {
+            public long inMilliseconds() {
+                return 1000;
+            }
+            public long inMicroseconds() {
+                return 1000000;
+            }
+            public long inNanoseconds() {
+                return 1000000000;
+            }
+        });
+        Statistics stats;
+        try {
+            stats = _procedure.getStatistics();
+        } finally {
+            CurrentTime.setInstanceForTestPurposes(null);
+        }
+        assertEquals(2.0, stats.ratesLastSecond.writeFrameRate, 1e-9);
+        assertEquals(2.0, stats.ratesLastMinute.writeFrameRate, 1e-9);
+        assertEquals(0.0, stats.ratesLastSecond.failureRate, 1e-9);
+        assertEquals(10, stats.ratesLast10Seconds.windowSeconds);
+    }
+
     @Test
     public void expect_the_latest_data_to_be_written_when_multiple_data_is_pending() throws Exception {
 
@@ -253,13 +374,13 @@ public class ExternalSystemProcedureTest {
         final ByteBuffer buf0 = ByteBuffer.allocate(BUF_SIZE);
         final ByteBuffer buf1 = ByteBuffer.allocate(BUF_SIZE);        
         buf1.putShort((short)1);
-        context.pendingTransferToES.add(new Data(buf0));
-        context.pendingTransferToES.add(new Data(buf0));
-        context.pendingTransferToES.add(new Data(buf1));
+        channel.pendingTransferToES.offer(new Data(buf0));
+        channel.pendingTransferToES.offer(new Data(buf0));
+        channel.pendingTransferToES.offer(new Data(buf1));
 
         when(_esAdapterMock.writeSignalData(same(buf1), any(SimTime.class))).thenReturn(new Result(true));
 
-        _procedure.runOnce(1);
+        _procedure.runOnce(1000);
 
         verify(_esAdapterMock, times(1)).writeSignalData((ByteBuffer) any(), (SimTime)any());
 
@@ -274,16 +395,16 @@ public class ExternalSystemProcedureTest {
 
         final ByteBuffer buf0 = ByteBuffer.allocate(BUF_SIZE);
         final ByteBuffer buf1 = ByteBuffer.allocate(BUF_SIZE);
-        context.pendingTransferToES.add(new Data(buf0));
-        context.pendingTransferToES.add(new Data(buf1));
+        channel.pendingTransferToES.offer(new Data(buf0));
+        channel.pendingTransferToES.offer(new Data(buf1));
 
         when(_esAdapterMock.writeSignalData(same(buf1), any(SimTime.class))).thenThrow(new IOException());
 
-        _procedure.runOnce(1);
+        _procedure.runOnce(1000);
 
         verify(_esAdapterMock).disconnect();
         assertTrue(_procedure.currentState() instanceof ExternalSystemProcedure.DisconnectedState);
-        assertEquals(0, context.pendingTransferToES.size());
+        assertEquals(0, channel.pendingTransferToES.size());
     }
 
     @Test
@@ -292,16 +413,101 @@ public class ExternalSystemProcedureTest {
         doFirstRunOnceCallToConnect();
         final ByteBuffer buf0 = ByteBuffer.allocate(BUF_SIZE);
         final ByteBuffer buf1 = ByteBuffer.allocate(BUF_SIZE);
-        context.pendingTransferToES.add(new Data(buf0));
-        context.pendingTransferToES.add(new Data(buf1));
+        channel.pendingTransferToES.offer(new Data(buf0));
+        channel.pendingTransferToES.offer(new Data(buf1));
 
         when(_esAdapterMock.writeSignalData(same(buf1), any(SimTime.class))).thenReturn(new Result(false));
 
-        _procedure.runOnce(1);
+        _procedure.runOnce(1000);
 
         assertEquals(1, _procedure.getStatistics().dataWriteFailureCount);
         // The second pending data write shall be cleared as usual
-        assertEquals(0, context.pendingTransferToES.size());
+        assertEquals(0, channel.pendingTransferToES.size());
+    }
+
+    @Test
+    public void expect_changed_signals_only_to_be_written_when_the_adapter_supports_delta_transfer() throws Exception {
+        SignalMetadata[] signalsToES = new SignalMetadata[] {
+            new SignalMetadata(SignalMetadata.SignalType.Analog, SignalMetadata.SignalDataType.Int32, 1,
+                    SignalMetadata.DataflowDirection.ToES, "s0", "s0", "", null),
+            new SignalMetadata(SignalMetadata.SignalType.Analog, SignalMetadata.SignalDataType.Int32, 1,
+                    SignalMetadata.DataflowDirection.ToES, "s1", "s1", "", null)
+        };
+        when(_esAdapterMock.supportsDeltaTransfer()).thenReturn(true);
+        when(_esAdapterMock.writeChangedSignalData(any(ByteBuffer.class), any(BitSet.class), any(SimTime.class)))
+                .thenReturn(new Result(true));
+        _procedure = new ExternalSystemProcedure(_esAdapterMock, context, BUF_SIZE, signalsToES, config);
+        doFirstRunOnceCallToConnect();
+
+        ByteBuffer buf = ByteBuffer.allocate(BUF_SIZE);
+        buf.putInt(0, 1).putInt(4, 2);
+        channel.pendingTransferToES.offer(new Data(buf));
+        _procedure.runOnce(1000);
+
+        buf = ByteBuffer.allocate(BUF_SIZE);
+        buf.putInt(0, 1).putInt(4, 3);
+        channel.pendingTransferToES.offer(new Data(buf));
+        _procedure.runOnce(1000);
+
+        ArgumentCaptor<ByteBuffer> values = ArgumentCaptor.forClass(ByteBuffer.class);
+        ArgumentCaptor<BitSet> changed = ArgumentCaptor.forClass(BitSet.class);
+        verify(_esAdapterMock, times(2)).writeChangedSignalData(values.capture(), changed.capture(), any(SimTime.class));
+        verify(_esAdapterMock, never()).writeSignalData(any(ByteBuffer.class), any(SimTime.class));
+
+        // The captured objects are reused by the procedure and reflect the last write.
+        assertEquals(1, changed.getValue().cardinality());
+        assertTrue(changed.getValue().get(1));
+        assertEquals(4, values.getValue().remaining());
+        assertEquals(3, values.getValue().getInt(0));
+        assertEquals(2, _procedure.getStatistics().dataWriteCount);
+    }
+
+    @Test
+    public void expect_all_signals_to_be_written_after_an_unsuccessful_delta_write() throws Exception {
+        SignalMetadata[] signalsToES = new SignalMetadata[] {
+            new SignalMetadata(SignalMetadata.SignalType.Analog, SignalMetadata.SignalDataType.Int32, 2,
+                    SignalMetadata.DataflowDirection.ToES, "s0", "s0", "", null)
+        };
+        when(_esAdapterMock.supportsDeltaTransfer()).thenReturn(true);
+        when(_esAdapterMock.writeChangedSignalData(any(ByteBuffer.class), any(BitSet.class), any(SimTime.class)))
+                .thenReturn(new Result(false)).thenReturn(new Result(true));
+        _procedure = new ExternalSystemProcedure(_esAdapterMock, context, BUF_SIZE, signalsToES, config);
+        doFirstRunOnceCallToConnect();
+
+        channel.pendingTransferToES.offer(new Data(ByteBuffer.allocate(BUF_SIZE)));
+        _procedure.runOnce(1000);
+        channel.pendingTransferToES.offer(new Data(ByteBuffer.allocate(BUF_SIZE)));
+        _procedure.runOnce(1000);
+
+        ArgumentCaptor<BitSet> changed = ArgumentCaptor.forClass(BitSet.class);
+        verify(_esAdapterMock, times(2)).writeChangedSignalData(any(ByteBuffer.class), changed.capture(), any(SimTime.class));
+        assertTrue(changed.getValue().get(0));
+        assertEquals(1, _procedure.getStatistics().dataWriteFailureCount);
+    }
+
+    @Test
+    public void expect_a_copy_of_the_shared_frame_to_be_fed_through_the_pipeline_tail_before_written() throws Exception {
+        ITransferPipeline tail = mock(ITransferPipeline.class);
+        doAnswer(new Answer<Object>() {
+            public Object answer(InvocationOnMock invocation) {
+                ((ByteBuffer)invocation.getArguments()[0]).putInt(0, 42);
+                return null;
+            }
+        }).when(tail).processSignals(any(ByteBuffer.class), eq(SignalMetadata.DataflowDirection.ToES));
+        when(_esAdapterMock.writeSignalData(any(ByteBuffer.class), any(SimTime.class))).thenReturn(new Result(true));
+        _procedure = new ExternalSystemProcedure(_esAdapterMock, context, channel, BUF_SIZE, null, tail, config);
+        doFirstRunOnceCallToConnect();
+
+        ByteBuffer frame = ByteBuffer.allocate(BUF_SIZE);
+        frame.putInt(0, 7);
+        Data shared = new Data(frame);
+        channel.pendingTransferToES.offer(shared.share());
+        _procedure.runOnce(1000);
+
+        ArgumentCaptor<ByteBuffer> written = ArgumentCaptor.forClass(ByteBuffer.class);
+        verify(_esAdapterMock).writeSignalData(written.capture(), any(SimTime.class));
+        assertEquals(42, written.getValue().getInt(0));
+        assertEquals(7, frame.getInt(0));
     }
 
     ////////////////////////////////////////////////////////////////////////////////////////
@@ -314,10 +520,10 @@ public class ExternalSystemProcedureTest {
 
         when(_esAdapterMock.readSignalData((ByteBuffer)any())).thenReturn(new ValueResult<SimTime>((SimTime)null)).thenReturn(null);
 
-        _procedure.runOnce(1);
+        _procedure.runOnce(1000);
 
-        assertEquals(1, context.pendingTransferToPM.size());
-        Data values = context.pendingTransferToPM.pollFirst();
+        assertEquals(1, context.pendingTransformToPM.size());
+        Data values = context.pendingTransformToPM.poll();
         verify(_esAdapterMock).readSignalData(same(values.getData()));
         assertEquals(0, _procedure.getStatistics().dataReadFailureCount);
     }
@@ -329,13 +535,40 @@ public class ExternalSystemProcedureTest {
 
         when(_esAdapterMock.readSignalData((ByteBuffer)any())).thenReturn(null);
 
-        _procedure.runOnce(1);
+        _procedure.runOnce(1000);
 
         verify(_esAdapterMock).readSignalData((ByteBuffer)any());
-        assertEquals(0, context.pendingTransferToPM.size());
+        assertEquals(0, context.pendingTransformToPM.size());
         assertEquals(0, _procedure.getStatistics().dataReadFailureCount);
     }
 
+    @Test
+    public void expect_the_read_buffer_to_be_reused_until_data_is_read() throws Exception {
+
+        doFirstRunOnceCallToConnect();
+        int capacity = _procedure.getStatistics().bufferPoolCapacity;
+
+        when(_esAdapterMock.readSignalData((ByteBuffer)any())).thenReturn(null)
+                .thenReturn(new ValueResult<SimTime>("an error")).thenReturn(new ValueResult<SimTime>((SimTime)null));
+
+        _procedure.runOnce(1000);
+        _procedure.runOnce(2000);
+        _procedure.runOnce(3000);
+
+        ArgumentCaptor<ByteBuffer> argument = ArgumentCaptor.forClass(ByteBuffer.class);
+        verify(_esAdapterMock, times(3)).readSignalData(argument.capture());
+        assertSame(argument.getAllValues().get(0), argument.getAllValues().get(1));
+        assertSame(argument.getAllValues().get(0), argument.getAllValues().get(2));
+        assertEquals(capacity - 1, _procedure.getStatistics().bufferPoolAvailable);
+
+        // The buffer is given back to the pool when written to the process model.
+        Data values = context.pendingTransformToPM.poll();
+        assertSame(argument.getValue(), values.getData());
+        values.release();
+        assertEquals(capacity, _procedure.getStatistics().bufferPoolAvailable);
+        assertEquals(0, _procedure.getStatistics().bufferPoolStarvationCount);
+    }
+
     @Test
     public void expect_data_read_failure_count_to_be_incremented_if_failure_when_reading_data() throws Exception {
 
@@ -343,9 +576,9 @@ public class ExternalSystemProcedureTest {
 
         when(_esAdapterMock.readSignalData((ByteBuffer)any())).thenReturn(new ValueResult<SimTime>("an error")).thenReturn(null);
 
-        _procedure.runOnce(1);
+        _procedure.runOnce(1000);
 
-        assertEquals(0, context.pendingTransferToPM.size());
+        assertEquals(0, context.pendingTransformToPM.size());
         assertEquals(1, _procedure.getStatistics().dataReadFailureCount);
     }
 
@@ -356,7 +589,7 @@ public class ExternalSystemProcedureTest {
 
         when(_esAdapterMock.readSignalData((ByteBuffer)any())).thenThrow(new IOException());
 
-        _procedure.runOnce(1);
+        _procedure.runOnce(1000);
 
         verify(_esAdapterMock).disconnect();
         assertTrue(_procedure.currentState() instanceof ExternalSystemProcedure.DisconnectedState);
@@ -369,16 +602,54 @@ public class ExternalSystemProcedureTest {
 
         doFirstRunOnceCallToConnect();
 
-        context.pendingTransferToPM.add(new Data(buf0));
-        context.pendingTransferToPM.add(new Data(buf0));
-        context.pendingTransferToPM.add(new Data(buf0));
+        context.pendingTransformToPM.offer(new Data(buf0));
 
         when(_esAdapterMock.readSignalData((ByteBuffer)any())).thenReturn(new ValueResult<SimTime>((SimTime)null)).thenReturn(null);
 
-        _procedure.runOnce(1);
+        _procedure.runOnce(1000);
         
-        assertEquals(3, _procedure.getStatistics().droppedFrames);
-        assertEquals(1, context.pendingTransferToPM.size());
+        assertEquals(1, _procedure.getStatistics().droppedFrames);
+        assertEquals(1, context.pendingTransformToPM.size());
+    }
+
+    @Test
+    public void expect_an_additional_external_system_never_to_be_read_from() throws Exception {
+        context = new IntegrationContext(0, 2);
+        _procedure = new ExternalSystemProcedure(_esAdapterMock, context, context.externalSystem(1), BUF_SIZE, null,
+                null, config);
+        doFirstRunOnceCallToConnect();
+
+        _procedure.runOnce(1000);
+
+        verify(_esAdapterMock, never()).readSignalData((ByteBuffer)any());
+        assertEquals(0, context.pendingTransformToPM.size());
+    }
+
+    @Test
+    public void expect_an_additional_external_system_not_to_count_or_discard_frames_of_the_primary_one() throws Exception {
+        context = new IntegrationContext(0, 2);
+        _procedure = new ExternalSystemProcedure(_esAdapterMock, context, context.externalSystem(1), BUF_SIZE, null,
+                null, config);
+        context.pendingTransformToPM.offer(new Data(ByteBuffer.allocate(BUF_SIZE)));
+        context.pendingTransformToPM.offer(new Data(ByteBuffer.allocate(BUF_SIZE)));
+        context.processModel(0).pendingTransferToPM.offer(new Data(ByteBuffer.allocate(BUF_SIZE)));
+
+        doFirstRunOnceCallToConnect();
+
+        assertEquals(1, context.pendingTransformToPM.size());
+        assertEquals(1, context.processModel(0).pendingTransferToPM.size());
+        assertEquals(0, _procedure.getStatistics().droppedFrames);
+        assertEquals(0, _procedure.getStatistics().transformQueueDropCount);
+    }
+
+    @Test
+    public void expect_an_additional_external_system_to_hold_a_single_frame_buffer() throws Exception {
+        context = new IntegrationContext(0, 2);
+        _procedure = new ExternalSystemProcedure(_esAdapterMock, context, context.externalSystem(1), 0, null,
+                null, config);
+
+        assertEquals(1, _procedure.getStatistics().bufferPoolCapacity);
+        assertEquals(0, _procedure.leaseBuffer().capacity());
     }
 
     ////////////////////////////////////////////////////////////////////////////////////////
@@ -391,11 +662,11 @@ public class ExternalSystemProcedureTest {
 
         when(_esAdapterMock.timeStepControl()).thenReturn(new Result(true));
 
-        _procedure.runOnce(1);
+        _procedure.runOnce(1000);
         context.esFrameCount = 1;
-        _procedure.runOnce(2);
+        _procedure.runOnce(2000);
         context.esFrameCount = 4;
-        _procedure.runOnce(3);
+        _procedure.runOnce(3000);
 
         verify(_esAdapterMock, times(4)).timeStepControl();
     }
@@ -406,18 +677,18 @@ public class ExternalSystemProcedureTest {
 
         when(_esAdapterMock.timeStepControl()).thenReturn(new Result(true));
 
-        _procedure.runOnce(1);
+        _procedure.runOnce(1000);
         assertEquals(0, _procedure.getStatistics().dataWriteFailureCount);
 
         context.esFrameCount = 1;
         when(_esAdapterMock.timeStepControl()).thenReturn(new Result(false));
-        _procedure.runOnce(2);
+        _procedure.runOnce(2000);
         assertEquals(1, _procedure.getStatistics().dataWriteFailureCount);
 
 
         context.esFrameCount = 2;
         when(_esAdapterMock.timeStepControl()).thenReturn(new Result(true));
-        _procedure.runOnce(3);
+        _procedure.runOnce(3000);
         assertEquals(1, _procedure.getStatistics().dataWriteFailureCount);
     }
 
@@ -432,7 +703,7 @@ public class ExternalSystemProcedureTest {
         when(_esAdapterMock.timeStepControl()).thenReturn(new Result(true));
 
         context.esFrameCount = 4;
-        _procedure.runOnce(1);
+        _procedure.runOnce(1000);
 
         verify(_esAdapterMock, never()).timeStepControl();
     }
@@ -457,11 +728,11 @@ public class ExternalSystemProcedureTest {
     public void do_not_expect_simulator_commands_to_be_executed_when_capability_expectsSimulatorCommands_is_set_to_false() throws Exception {
         doFirstRunOnceCallToConnect();
         when(_esAdapterMock.expectsSimulatorCommands()).thenReturn(false);
-        context.pendingSimCommands.add(new Command("FREEZE", null));
+        channel.pendingSimCommands.add(new Command("FREEZE", null));
 
         when(_esAdapterMock.executeSimCommand((Command)any())).thenReturn(new Result(true));
 
-        _procedure.runOnce(1);
+        _procedure.runOnce(1000);
 
         verify(_esAdapterMock, never()).executeSimCommand((Command)any());
     }
@@ -480,7 +751,7 @@ public class ExternalSystemProcedureTest {
         new Thread(new Runnable() {
             public void run() {
                 try { Thread.sleep(25); } catch (InterruptedException ex) {}
-                _procedure.runOnce(1);
+                _procedure.runOnce(1000);
             }
         }).start();
                       
@@ -492,13 +763,38 @@ public class ExternalSystemProcedureTest {
         assertEquals("v1", argument.getValue().getParameter("p1"));
     }
 
-    private void setupESAdapterMock() {
+    @Test
+    public void expect_scheduled_controlCommand_to_be_completed_by_runOnce() throws Exception {
+        doFirstRunOnceCallToConnect();
+        when(_esAdapterMock.timeStepControl()).thenReturn(new Result(true));
+        final Map<String, String> values = new HashMap<String, String>();
+        when(_esAdapterMock.invokeControlCommand(any(Command.class))).thenReturn(values);
+
+        AsyncResult<Map<String, String>> result = _procedure.scheduleControlCommand("cmID", new HashMap<String, String>());
+        assertFalse(result.isDone());
+        verify(_esAdapterMock, never()).invokeControlCommand(any(Command.class));
+
+        _procedure.runOnce(1000);
+        assertTrue(result.isDone());
+        assertSame(values, result.get());
+    }
+
+    @Test
+    public void expect_scheduled_reconnect_to_be_done_at_once() throws Exception {
+        doFirstRunOnceCallToConnect();
+        AsyncResult<Map<String, String>> result = _procedure.scheduleControlCommand("reconnect", new HashMap<String, String>());
+        assertTrue(result.isDone());
+        assertEquals(0, result.get().size());
+    }
+
+    private void setupESAdapterMock() throws IOException {
         when(_esAdapterMock.canReportState()).thenReturn(true);
         when(_esAdapterMock.canReportStatus()).thenReturn(true);
         when(_esAdapterMock.canShutDownAndPowerUp()).thenReturn(true);
         when(_esAdapterMock.expectsSimulatorCommands()).thenReturn(true);
         when(_esAdapterMock.isReadEventDriven()).thenReturn(false);
         when(_esAdapterMock.isSynchronous()).thenReturn(true);
+        when(_esAdapterMock.executeSimCommands(any(Command[].class))).thenCallRealMethod();
     }
     
     private void doFirstRunOnceCallToConnect() throws Exception {
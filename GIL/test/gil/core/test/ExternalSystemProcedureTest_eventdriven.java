@@ -42,7 +42,7 @@ public class ExternalSystemProcedureTest_eventdriven {
 
     static final GILConfiguration config = mock(GILConfiguration.class);
     static {
-        when(config.getESAdapterReadPollRate()).thenReturn(1);
+        when(config.getESAdapterReadPollRateInMicroseconds()).thenReturn(1000L);
         when(config.getPMAdapterByteOrder()).thenReturn(ByteOrder.BIG_ENDIAN);
     }
     
@@ -72,13 +72,33 @@ public class ExternalSystemProcedureTest_eventdriven {
         ByteBuffer data = ByteBuffer.allocate(BUF_SIZE);
         _procedure.dataChanged(data, new SimTime(), new Result(true), null);
 
-        assertEquals(1, context.pendingTransferToPM.size());
-        Data values = context.pendingTransferToPM.pollFirst();
+        assertEquals(1, context.pendingTransformToPM.size());
+        Data values = context.pendingTransformToPM.poll();
         assertSame(data, values.getData());
         assertEquals(0, _procedure.getStatistics().dataReadFailureCount);
         verify(_esAdapterMock, never()).readSignalData(any(ByteBuffer.class));
     }
 
+    @Test
+    public void expect_leased_buffers_to_be_returned_to_the_pool_when_released_or_when_the_read_failed() throws Exception {
+        _procedure = new ExternalSystemProcedure(_esAdapterMock, context, BUF_SIZE, config);
+        int capacity = _procedure.getStatistics().bufferPoolCapacity;
+
+        doFirstRunOnceCallToConnect();
+
+        ByteBuffer data = _procedure.leaseBuffer();
+        assertTrue(data.isDirect());
+        assertEquals(capacity - 1, _procedure.getStatistics().bufferPoolAvailable);
+        _procedure.dataChanged(data, new SimTime(), new Result(true), null);
+        assertEquals(capacity - 1, _procedure.getStatistics().bufferPoolAvailable);
+        context.pendingTransformToPM.poll().release();
+        assertEquals(capacity, _procedure.getStatistics().bufferPoolAvailable);
+
+        data = _procedure.leaseBuffer();
+        _procedure.dataChanged(data, new SimTime(), new Result(false), null);
+        assertEquals(capacity, _procedure.getStatistics().bufferPoolAvailable);
+    }
+
     @Test
     public void expect_failure_count_to_be_incremented_on_failures() throws Exception {
         _procedure = new ExternalSystemProcedure(_esAdapterMock, context, BUF_SIZE, config);
@@ -88,7 +108,7 @@ public class ExternalSystemProcedureTest_eventdriven {
         ByteBuffer data = ByteBuffer.allocate(BUF_SIZE);
         _procedure.dataChanged(data, new SimTime(), new Result(false), null);
 
-        assertEquals(0, context.pendingTransferToPM.size());
+        assertEquals(0, context.pendingTransformToPM.size());
         assertEquals(1, _procedure.getStatistics().dataReadFailureCount);
     }
 
@@ -101,7 +121,7 @@ public class ExternalSystemProcedureTest_eventdriven {
         ByteBuffer data = ByteBuffer.allocate(BUF_SIZE);
         _procedure.dataChanged(data, new SimTime(), new Result(true), new IOException());
 
-        _procedure.runOnce(1);
+        _procedure.runOnce(1000);
 
         verify(_esAdapterMock).disconnect();
         assertTrue(_procedure.currentState() instanceof ExternalSystemProcedure.DisconnectedState);
@@ -120,7 +140,7 @@ public class ExternalSystemProcedureTest_eventdriven {
         _procedure.dataChanged(data, new SimTime(), new Result(true), null);
         
         assertEquals(3, _procedure.getStatistics().droppedFrames);
-        assertEquals(1, context.pendingTransferToPM.size());
+        assertEquals(1, context.pendingTransformToPM.size());
     }
 
     private void setupESAdapterMock() {
@@ -0,0 +1,148 @@
+/*
+    Copyright (C) 2010 LearningWell AB (www.learningwell.com), Kärnkraftsäkerhet och Utbildning AB (www.ksu.se)
+
+    This file is part of GIL (Generic Integration Layer).
+
+    GIL is free software: you can redistribute it and/or modify
+    it under the terms of the GNU Lesser General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    GIL is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public License
+    along with GIL.  If not, see <http://www.gnu.org/licenses/>.
+*/
+package gil.core.test;
+
+import gil.common.ByteBufferPool;
+import gil.core.Data;
+import gil.core.FrameAssembler;
+import gil.core.SignalMetadata;
+import gil.core.SignalMetadata.DataflowDirection;
+import gil.core.SignalMetadata.SignalDataType;
+import gil.core.SignalMetadata.SignalType;
+import gil.core.SimTime;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.HashMap;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * @author Göran Larsson @ LearningWell AB
+ */
+public class FrameAssemblerTest {
+
+    // The full frame to the ES holds s0 (primary), s1 (electrical) and s2 (primary), 10 bytes in total.
+    // The full frame to the PM holds p0 (electrical) and p1 (primary), 8 bytes in total.
+    SignalMetadata[] _signals = new SignalMetadata[] {
+        createSignal(SignalDataType.Int32, DataflowDirection.ToES, 0, null),
+        createSignal(SignalDataType.Int32, DataflowDirection.ToES, 4, "electrical"),
+        createSignal(SignalDataType.Int16, DataflowDirection.ToES, 8, null),
+        createSignal(SignalDataType.Int32, DataflowDirection.ToPM, 0, "electrical"),
+        createSignal(SignalDataType.Int32, DataflowDirection.ToPM, 4, null)
+    };
+    SignalMetadata[][] _partitions = FrameAssembler.partition(_signals, new String[] { "primary", "electrical" });
+    FrameAssembler _assembler = new FrameAssembler(_partitions, 2, ByteOrder.BIG_ENDIAN);
+
+    public FrameAssemblerTest() {
+    }
+
+    @Test
+    public void expect_signals_to_be_partitioned_by_the_ProcessModel_attribute() {
+        assertEquals(2, _partitions.length);
+        assertArrayEquals(new SignalMetadata[] { _signals[0], _signals[2], _signals[4] }, _partitions[0]);
+        assertArrayEquals(new SignalMetadata[] { _signals[1], _signals[3] }, _partitions[1]);
+    }
+
+    @Test(expected=IllegalArgumentException.class)
+    public void expect_IllegalArgumentException_when_a_signal_belongs_to_an_unknown_process_model() {
+        FrameAssembler.partition(_signals, new String[] { "primary" });
+    }
+
+    @Test
+    public void expect_slice_signals_to_be_copies_packed_in_each_direction() {
+        SignalMetadata[] slice = FrameAssembler.createSliceSignals(_partitions[0]);
+
+        assertEquals(3, slice.length);
+        assertNotSame(_partitions[0][1], slice[1]);
+        assertEquals(0, slice[0].getBufferPos());
+        assertEquals(4, slice[1].getBufferPos());
+        assertEquals(0, slice[2].getBufferPos());
+        assertEquals(8, _partitions[0][1].getBufferPos());
+    }
+
+    @Test
+    public void expect_slices_to_be_assembled_into_one_frame() {
+        ByteBufferPool pool = new ByteBufferPool(1, 6, ByteOrder.BIG_ENDIAN);
+        ByteBuffer primary = pool.lease();
+        primary.putInt(11).putShort((short)22).rewind();
+        ByteBuffer electrical = ByteBuffer.allocate(4);
+        electrical.putInt(33).rewind();
+        SimTime origin = new SimTime();
+
+        _assembler.update(1, new Data(electrical));
+        _assembler.update(0, new Data(primary, origin, pool));
+        assertTrue(_assembler.isUpdated(0));
+        assertTrue(_assembler.isUpdated(1));
+        Data frame = _assembler.assemble(origin);
+
+        assertEquals(1, pool.getAvailableCount());
+        assertSame(origin, frame.getOrigin());
+        assertEquals(0, frame.getData().position());
+        assertEquals(11, frame.getData().getInt());
+        assertEquals(33, frame.getData().getInt());
+        assertEquals(22, frame.getData().getShort());
+        assertFalse(_assembler.isUpdated(0));
+        assertFalse(_assembler.isUpdated(1));
+    }
+
+    @Test
+    public void expect_the_latest_values_to_be_kept_for_a_process_model_without_a_new_slice() {
+        ByteBuffer electrical = ByteBuffer.allocate(4);
+        electrical.putInt(33).rewind();
+        _assembler.update(1, new Data(electrical));
+        _assembler.assemble(new SimTime()).release();
+
+        ByteBuffer primary = ByteBuffer.allocate(6);
+        primary.putInt(44).putShort((short)55).rewind();
+        _assembler.update(0, new Data(primary));
+        assertFalse(_assembler.isUpdated(1));
+        Data frame = _assembler.assemble(new SimTime());
+
+        assertEquals(44, frame.getData().getInt());
+        assertEquals(33, frame.getData().getInt());
+        assertEquals(55, frame.getData().getShort());
+    }
+
+    @Test
+    public void expect_a_frame_to_the_process_models_to_be_split_into_slices() {
+        ByteBuffer buf = ByteBuffer.allocate(8);
+        buf.putInt(66).putInt(77).rewind();
+        SimTime origin = new SimTime();
+
+        Data[] slices = _assembler.split(new Data(buf, origin));
+
+        assertEquals(2, slices.length);
+        assertEquals(4, slices[0].getData().remaining());
+        assertEquals(77, slices[0].getData().getInt());
+        assertEquals(4, slices[1].getData().remaining());
+        assertEquals(66, slices[1].getData().getInt());
+        assertSame(origin, slices[1].getOrigin());
+    }
+
+    private static SignalMetadata createSignal(SignalDataType dataType, DataflowDirection direction, int bufferPos,
+            String processModel) {
+        HashMap<String, String> attributes = new HashMap<String, String>();
+        if (processModel != null) {
+            attributes.put(FrameAssembler.PROCESS_MODEL_ATTRIBUTE, processModel);
+        }
+        SignalMetadata md = new SignalMetadata(SignalType.Analog, dataType, 1, direction, "pm", "es", "", attributes);
+        md.setBufferPos(bufferPos);
+        return md;
+    }
+}
@@ -0,0 +1,158 @@
+/*
+    Copyright (C) 2010 LearningWell AB (www.learningwell.com), Kärnkraftsäkerhet och Utbildning AB (www.ksu.se)
+
+    This file is part of GIL (Generic Integration Layer).
+
+    GIL is free software: you can redistribute it and/or modify
+    it under the terms of the GNU Lesser General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    GIL is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public License
+    along with GIL.  If not, see <http://www.gnu.org/licenses/>.
+*/
+package gil.core.test;
+
+import gil.core.FrameHistory;
+import gil.core.SignalMetadata;
+import gil.core.SignalMetadata.DataflowDirection;
+import gil.core.SignalMetadata.SignalDataType;
+import gil.core.SignalMetadata.SignalType;
+import gil.core.SimTime;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.List;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * @author Göran Larsson @ LearningWell AB
+ */
+public class FrameHistoryTest {
+
+    // An Int32 and two Int16 values, 8 bytes in total.
+    SignalMetadata _int32 = new SignalMetadata(SignalType.Analog, SignalDataType.Int32, 1, DataflowDirection.ToES, "s0", "s0", "", null);
+    SignalMetadata _int16s = new SignalMetadata(SignalType.Analog, SignalDataType.Int16, 2, DataflowDirection.ToES, "s1", "s1", "", null);
+    FrameHistory _history = new FrameHistory(3, 8);
+
+    public FrameHistoryTest() {
+        _int32.setBufferPos(0);
+        _int16s.setBufferPos(4);
+    }
+
+    @Test
+    public void expect_empty_time_series_when_nothing_is_recorded() {
+        assertEquals(0, _history.getTimeSeries(_int32, 10).size());
+    }
+
+    @Test
+    public void expect_time_series_of_recorded_frames_oldest_first() {
+        _history.record(createFrame(1, (short)2, (short)3), new SimTime(2010, 1, 1, 0, 0, 0, 100));
+        _history.record(createFrame(4, (short)5, (short)6), new SimTime(2010, 1, 1, 0, 0, 0, 200));
+
+        List<FrameHistory.Sample> series = _history.getTimeSeries(_int32, 10);
+        assertEquals(2, series.size());
+        assertEquals(1.0, series.get(0).values[0], 0);
+        assertEquals(100, series.get(0).origin.millisecond());
+        assertEquals(4.0, series.get(1).values[0], 0);
+        assertEquals(200, series.get(1).origin.millisecond());
+
+        series = _history.getTimeSeries(_int16s, 10);
+        assertEquals(2, series.get(1).values.length);
+        assertEquals(5.0, series.get(1).values[0], 0);
+        assertEquals(6.0, series.get(1).values[1], 0);
+    }
+
+    @Test
+    public void expect_oldest_frames_to_be_overwritten_when_full() {
+        for (int i = 0; i < 5; i++) {
+            _history.record(createFrame(i, (short)0, (short)0), null);
+        }
+        List<FrameHistory.Sample> series = _history.getTimeSeries(_int32, 10);
+        assertEquals(3, series.size());
+        assertEquals(2.0, series.get(0).values[0], 0);
+        assertEquals(4.0, series.get(2).values[0], 0);
+        assertEquals(5, _history.getRecordedCount());
+    }
+
+    @Test
+    public void expect_the_most_recent_samples_when_limited() {
+        for (int i = 0; i < 3; i++) {
+            _history.record(createFrame(i, (short)0, (short)0), null);
+        }
+        List<FrameHistory.Sample> series = _history.getTimeSeries(_int32, 1);
+        assertEquals(1, series.size());
+        assertEquals(2.0, series.get(0).values[0], 0);
+    }
+
+    @Test
+    public void expect_values_to_be_decoded_in_the_byte_order_of_the_recorded_frames() {
+        ByteBuffer frame = ByteBuffer.allocate(8).order(ByteOrder.LITTLE_ENDIAN);
+        frame.putInt(0, 0x01020304);
+        _history.record(frame, null);
+        assertEquals(0x01020304, _history.getTimeSeries(_int32, 1).get(0).values[0], 0);
+    }
+
+    @Test
+    public void expect_recorded_frame_to_be_left_unchanged() {
+        ByteBuffer frame = createFrame(1, (short)2, (short)3);
+        frame.position(2);
+        _history.record(frame, null);
+        assertEquals(2, frame.position());
+        assertEquals(8, frame.limit());
+    }
+
+    @Test
+    public void expect_the_values_of_all_given_signals_in_the_latest_frame() {
+        assertNull(_history.getLatest(new SignalMetadata[] {_int32}));
+        for (int i = 0; i < 5; i++) {
+            _history.record(createFrame(i, (short)(10 + i), (short)(20 + i)), new SimTime(2010, 1, 1, 0, 0, 0, i));
+        }
+
+        FrameHistory.Snapshot latest = _history.getLatest(new SignalMetadata[] {_int16s, _int32});
+        assertEquals(4, latest.frameNo);
+        assertEquals(4, latest.origin.millisecond());
+        assertEquals(14.0, latest.values[0][0], 0);
+        assertEquals(24.0, latest.values[0][1], 0);
+        assertEquals(4.0, latest.values[1][0], 0);
+    }
+
+    @Test
+    public void expect_no_frames_to_be_recorded_while_recording_is_turned_off() {
+        _history.record(createFrame(1, (short)2, (short)3), null);
+        _history.setRecording(false);
+        _history.record(createFrame(4, (short)5, (short)6), null);
+
+        assertEquals(1, _history.getRecordedCount());
+        assertEquals(1.0, _history.getLatest(new SignalMetadata[] {_int32}).values[0][0], 0);
+    }
+
+    @Test
+    public void expect_exception_when_the_frames_exceed_the_maximum_size() {
+        assertEquals(Integer.MAX_VALUE / 1000, FrameHistory.maxCapacity(1000));
+        try {
+            new FrameHistory(FrameHistory.maxCapacity(1000) + 1, 1000);
+            fail("Expected IllegalArgumentException");
+        } catch (IllegalArgumentException ex) {
+            assertTrue(ex.getMessage().contains("exceeds the maximum size"));
+        }
+    }
+
+    @Test(expected=IllegalArgumentException.class)
+    public void expect_exception_when_signal_is_outside_the_frames() {
+        _int16s.setBufferPos(6);
+        _history.getTimeSeries(_int16s, 1);
+    }
+
+    private ByteBuffer createFrame(int i0, short s0, short s1) {
+        ByteBuffer frame = ByteBuffer.allocate(8);
+        frame.putInt(i0).putShort(s0).putShort(s1);
+        frame.rewind();
+        return frame;
+    }
+}
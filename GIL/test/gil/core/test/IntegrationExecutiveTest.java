@@ -18,8 +18,14 @@
 */
 package gil.core.test;
 
+import gil.common.Result;
+import gil.common.ValueResult;
+import gil.core.SimTime;
+import java.io.StringWriter;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.concurrent.atomic.AtomicInteger;
 import org.junit.AfterClass;
 import org.junit.Before;
 import org.junit.BeforeClass;
@@ -29,6 +35,7 @@ import gil.core.Command;
 import gil.core.CommandDescriptor;
 import gil.io.IPipelineStage;
 import gil.core.ITransferPipeline;
+import gil.core.TransferPipeline;
 import static org.junit.Assert.*;
 import gil.core.IntegrationExecutive;
 import gil.core.SignalMetadata;
@@ -40,6 +47,8 @@ import gil.io.IProcessModelAdapter;
 import gil.common.IProgressEventListener;
 import gil.common.GILConfiguration;
 import gil.core.AdapterValueObject;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
 import static org.mockito.Mockito.*;
 
 public class IntegrationExecutiveTest {
@@ -66,6 +75,7 @@ public class IntegrationExecutiveTest {
 
     @Before
     public void setUp() {
+        when(config.getRecordingDirectory()).thenReturn("");
         when(_esAdapter.getOperatingFrequency()).thenReturn(1);
         when(_esAdapter.getState()).thenReturn(SimState.UNKNOWN);
         when(_esAdapter.getStatus()).thenReturn(new SystemStatus(SystemStatus.UNKNOWN,""));
@@ -104,6 +114,41 @@ public class IntegrationExecutiveTest {
         assertEquals("doc", stagesR[0].availableCommands()[0].getDocumentation());       
     }
 
+    @Test
+    public void expect_the_stages_of_the_pipeline_tail_of_an_external_system_to_be_returned() throws Exception {
+        ExternalSystemAdapter esAdapter2 = mock(ExternalSystemAdapter.class);
+        when(esAdapter2.getOperatingFrequency()).thenReturn(1);
+        when(esAdapter2.availableControlCommands()).thenReturn(new CommandDescriptor[0]);
+        ArrayList<IPipelineStage> stages = new ArrayList<IPipelineStage>();
+        stages.add(_stage);
+        when(_stage.availableCommands()).thenReturn(new CommandDescriptor[0]);
+        TransferPipeline tail = new TransferPipeline(stages);
+
+        IntegrationExecutive instance = new IntegrationExecutive(_pmAdapter,
+                new ExternalSystemAdapter[] { _esAdapter, esAdapter2 }, new ITransferPipeline[] { null, tail },
+                _pipeline, _signalsMD, config);
+
+        assertEquals(0, instance.getExternalSystemPipelineStages(0).length);
+        StageValueObject[] stagesR = instance.getExternalSystemPipelineStages(1);
+        assertEquals(1, stagesR.length);
+        assertEquals(0, stagesR[0].seqNo());
+        assertNotNull(stagesR[0].toESTimes());
+    }
+
+    @Test
+    public void expect_the_counters_of_the_procedures_to_be_registered_as_metrics() throws Exception {
+        IntegrationExecutive instance = new IntegrationExecutive(_pmAdapter, _esAdapter, _pipeline, _signalsMD, config);
+
+        StringWriter writer = new StringWriter();
+        instance.getMetrics().write(writer);
+        String text = writer.toString();
+        assertTrue(text, text.contains("gil_pm_frames_read_total{index=\"0\"} 0\n"));
+        assertTrue(text, text.contains("gil_es_frames_written_total{index=\"0\"} 0\n"));
+        assertTrue(text, text.contains("gil_pm_write_queue_dropped_total{index=\"0\"} 0\n"));
+        assertTrue(text, text.contains("gil_es_transform_queue_dropped_total{index=\"0\"} 0\n"));
+        assertTrue(text, text.contains("gil_es_buffer_pool_starvation_total{index=\"0\"} 0\n"));
+    }
+
     @Test
     public void expect_connect_being_called_on_ES_and_PM_when_start_is_called() throws Exception {
 
@@ -121,6 +166,94 @@ public class IntegrationExecutiveTest {
         verify(_pmAdapter, atLeast(1)).connect();
     }
 
+    @Test
+    public void expect_a_1kHz_process_model_to_be_followed_frame_by_frame() throws Exception {
+        // The process model advances a frame every fifth time it is polled rather than by the wall clock, so the
+        // outcome does not depend on how the threads are scheduled.
+        final AtomicInteger polls = new AtomicInteger();
+        when(_pmAdapter.getOperatingFrequency()).thenReturn(1000);
+        when(_esAdapter.getOperatingFrequency()).thenReturn(1000);
+        when(_pmAdapter.connect()).thenReturn(true);
+        when(_esAdapter.connect()).thenReturn(true);
+        when(_pmAdapter.getSimTime()).thenAnswer(new Answer<ValueResult<SimTime>>() {
+            public ValueResult<SimTime> answer(InvocationOnMock invocation) {
+                int frame = polls.getAndIncrement() / 5;
+                return new ValueResult<SimTime>(new SimTime(2009, 1, 1, 10, 0, frame / 1000, frame % 1000));
+            }
+        });
+        when(_pmAdapter.readSignalData(any(ByteBuffer.class))).thenReturn(new ValueResult<SimTime>((SimTime)null));
+        when(_pmAdapter.readSimCommands()).thenReturn(new ValueResult<Command[]>(new Command[0]));
+        when(_esAdapter.timeStepControl()).thenReturn(new Result(true));
+        when(_esAdapter.writeSignalData(any(ByteBuffer.class), any(SimTime.class))).thenReturn(new Result(true));
+        when(_esAdapter.expectsSimulatorCommands()).thenReturn(false);
+
+        IntegrationExecutive instance = new IntegrationExecutive(_pmAdapter, _esAdapter, _pipeline, _signalsMD, config);
+        instance.start();
+        Thread.sleep(500);
+        instance.stop();
+        int frames = polls.get() / 5;
+
+        // Each frame is read from the PM when its change is detected, and the ES is stepped along.
+        verify(_pmAdapter, atLeast(frames - 1)).readSignalData(any(ByteBuffer.class));
+        verify(_esAdapter, atLeast(1)).timeStepControl();
+    }
+
+    @Test(expected=IllegalArgumentException.class)
+    public void expect_IllegalArgumentException_when_external_systems_have_different_operating_frequencies() {
+        ExternalSystemAdapter esAdapter2 = mock(ExternalSystemAdapter.class);
+        when(esAdapter2.getOperatingFrequency()).thenReturn(2);
+        new IntegrationExecutive(_pmAdapter, new ExternalSystemAdapter[] { _esAdapter, esAdapter2 },
+                new ITransferPipeline[2], _pipeline, _signalsMD, config);
+    }
+
+    @Test
+    public void expect_each_external_system_to_be_run_and_closed_down() throws Exception {
+        ExternalSystemAdapter esAdapter2 = mock(ExternalSystemAdapter.class);
+        when(esAdapter2.getOperatingFrequency()).thenReturn(1);
+        when(esAdapter2.availableControlCommands()).thenReturn(new CommandDescriptor[0]);
+        when(esAdapter2.connect()).thenReturn(true);
+        when(_esAdapter.connect()).thenReturn(true);
+        when(_pmAdapter.getOperatingFrequency()).thenReturn(1);
+
+        IntegrationExecutive instance = new IntegrationExecutive(_pmAdapter,
+                new ExternalSystemAdapter[] { _esAdapter, esAdapter2 }, new ITransferPipeline[2], _pipeline,
+                _signalsMD, config);
+        assertEquals(2, instance.getExternalSystemCount());
+        instance.start();
+        Thread.sleep(200);
+        instance.stop();
+
+        verify(_esAdapter).connect();
+        verify(esAdapter2).connect();
+        verify(_esAdapter).tearDown();
+        verify(esAdapter2).tearDown();
+        verify(_pmAdapter).tearDown();
+    }
+
+    @Test
+    public void expect_each_process_model_to_be_run_and_closed_down() throws Exception {
+        IProcessModelAdapter pmAdapter2 = mock(IProcessModelAdapter.class);
+        when(pmAdapter2.getOperatingFrequency()).thenReturn(2);
+        when(pmAdapter2.availableControlCommands()).thenReturn(new CommandDescriptor[0]);
+        when(pmAdapter2.connect()).thenReturn(false);
+        when(_pmAdapter.connect()).thenReturn(false);
+        when(_pmAdapter.getOperatingFrequency()).thenReturn(1);
+
+        IntegrationExecutive instance = new IntegrationExecutive(new IProcessModelAdapter[] { _pmAdapter, pmAdapter2 },
+                new SignalMetadata[][] { _signalsMD, _signalsMD }, new ExternalSystemAdapter[] { _esAdapter },
+                new ITransferPipeline[1], _pipeline, _signalsMD, config);
+        assertEquals(2, instance.getProcessModelCount());
+        instance.start();
+        Thread.sleep(200);
+        instance.stop();
+
+        verify(_pmAdapter, atLeastOnce()).connect();
+        verify(pmAdapter2, atLeastOnce()).connect();
+        verify(_pmAdapter).tearDown();
+        verify(pmAdapter2).tearDown();
+        assertEquals(0, instance.getProcessModelStatistics(1).laggedFrameCount);
+    }
+
     @Test
     public void expect_disconnect_and_tearDown_connect_being_called_on_ES_and_PM_on_closedown() throws Exception {
 
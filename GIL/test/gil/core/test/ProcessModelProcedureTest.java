@@ -23,18 +23,14 @@ import gil.common.ValueResult;
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
-import java.util.ArrayList;
 import java.util.HashMap;
-import java.util.List;
 import gil.core.*;
 import org.junit.Test;
 import org.mockito.ArgumentCaptor;
 import gil.io.IProcessModelAdapter;
 import static org.junit.Assert.*;
-import gil.core.SignalMetadata.DataflowDirection;
 import gil.core.SimTime;
 import gil.common.GILConfiguration;
-import gil.io.IPipelineStage;
 import static org.mockito.Mockito.*;
 
 /**
@@ -51,9 +47,10 @@ public class ProcessModelProcedureTest {
 
     final static int BUF_SIZE = 8;
     IntegrationContext context = new IntegrationContext();
+    ExternalSystemChannel channel = context.externalSystem(0);
+    ProcessModelChannel pmChannel = context.processModel(0);
     IProcessModelAdapter _pmAdapterMock = mock(IProcessModelAdapter.class);
-    ITransferPipeline _pipeline = mock(ITransferPipeline.class);
-    ProcessModelProcedure _procedure = new ProcessModelProcedure(_pmAdapterMock, 10, _pipeline, context, BUF_SIZE, config);
+    ProcessModelProcedure _procedure = new ProcessModelProcedure(_pmAdapterMock, 10, context, BUF_SIZE, config);
 
     public ProcessModelProcedureTest() {
     }
@@ -64,27 +61,27 @@ public class ProcessModelProcedureTest {
     @Test
     public void expect_established_connection_to_process_model_after_first_call_to_runOnce() throws Exception {
 
-        context.pendingTransferToPM.add(new Data(ByteBuffer.allocate(100)));
+        pmChannel.pendingTransferToPM.offer(new Data(ByteBuffer.allocate(100)));
 
         when(_pmAdapterMock.connect()).thenReturn(true);
         when(_pmAdapterMock.getSimTime()).thenReturn(new ValueResult<SimTime>(new SimTime(2009, 1, 1, 1, 1, 1, 50)));
         _procedure.runOnce(0);
         assertTrue(_procedure.currentState() instanceof ProcessModelProcedure.ConnectedState);
-        assertEquals(1, context.pendingTransferToPM.size());
+        assertEquals(1, pmChannel.pendingTransferToPM.size());
     }
 
     @Test
     public void expect_added_pending_transfer_at_first_call_to_runOnce_after_connection_is_established() throws Exception {
 
-        context.pendingTransferToPM.add(new Data(ByteBuffer.allocate(100)));
+        pmChannel.pendingTransferToPM.offer(new Data(ByteBuffer.allocate(100)));
 
         setupPMAdapterStub();
         _procedure.runOnce(0); // Will get connected
-        assertEquals(0, context.pendingTransferToES.size());
+        assertEquals(0, pmChannel.pendingTransformToES.size());
         _procedure.runOnce(0); // Will do first read from PM and add pending transfer to ES
-        assertEquals(1, context.pendingTransferToES.size());
+        assertEquals(1, pmChannel.pendingTransformToES.size());
         _procedure.runOnce(0); // No new pending transfers shall be added
-        assertEquals(1, context.pendingTransferToES.size());
+        assertEquals(1, pmChannel.pendingTransformToES.size());
     }
 
     @Test
@@ -217,9 +214,34 @@ public class ProcessModelProcedureTest {
 
         _procedure.runOnce(0);
         
-        assertEquals(2, context.pendingSimCommands.size());
-        assertEquals("FREEZE", context.pendingSimCommands.pollFirst().getID());
-        assertEquals("LOAD_IC", context.pendingSimCommands.pollFirst().getID());
+        assertEquals(2, channel.pendingSimCommands.size());
+        assertEquals("FREEZE", channel.pendingSimCommands.poll().getID());
+        assertEquals("LOAD_IC", channel.pendingSimCommands.poll().getID());
+    }
+
+    @Test
+    public void expect_simulator_events_to_be_added_as_pending_commands_to_all_external_systems() throws Exception{
+        context = new IntegrationContext(0, 2);
+        pmChannel = context.processModel(0);
+        _procedure = new ProcessModelProcedure(_pmAdapterMock, 10, context, BUF_SIZE, config);
+        setupPMAdapterStub();
+        _procedure.runOnce(0);
+
+        when(_pmAdapterMock.readSimCommands()).thenReturn(new ValueResult<Command[]>(new Command[] { new Command("FREEZE", null) }));
+        _procedure.runOnce(0);
+
+        assertEquals("FREEZE", context.externalSystem(0).pendingSimCommands.poll().getID());
+        assertEquals("FREEZE", context.externalSystem(1).pendingSimCommands.poll().getID());
+        assertTrue(context.externalSystem(0).esWakeup.await(0));
+        assertTrue(context.externalSystem(1).esWakeup.await(0));
+    }
+
+    @Test
+    public void expect_the_frame_pool_to_hold_the_frames_pending_and_written_by_each_external_system() {
+        int oneESCapacity = _procedure.getStatistics().bufferPoolCapacity;
+        context = new IntegrationContext(0, 3);
+        _procedure = new ProcessModelProcedure(_pmAdapterMock, 10, context, BUF_SIZE, config);
+        assertEquals(oneESCapacity + 4, _procedure.getStatistics().bufferPoolCapacity);
     }
 
     @Test
@@ -266,23 +288,32 @@ public class ProcessModelProcedureTest {
         // to be stored as pending data transfers in context object
         _procedure.runOnce(0);        
 
-        assertEquals(1, context.pendingTransferToES.size());
-        ByteBuffer values = context.pendingTransferToES.pollFirst().getData();
+        assertEquals(1, pmChannel.pendingTransformToES.size());
+        ByteBuffer values = pmChannel.pendingTransformToES.poll().getData();
         verify(_pmAdapterMock).readSignalData(same(values));
         assertEquals(2, _procedure.getStatistics().dataReadCount);
     }
 
     @Test
-    public void expect_PM_data_to_be_passing_the_transfer_pipeline_in_the_toES_direction() throws Exception {
+    public void expect_PM_data_to_be_read_into_pooled_buffers_and_dropped_frames_to_be_returned_to_the_pool() throws Exception {
         doFirstRunOnceCallToConnect();
+        int capacity = _procedure.getStatistics().bufferPoolCapacity;
+        assertEquals(capacity, _procedure.getStatistics().bufferPoolAvailable);
 
         when(_pmAdapterMock.getSimTime()).thenReturn(new ValueResult<SimTime>(new SimTime(2009, 1, 1, 1, 1, 1, 100)));
-        when(_pmAdapterMock.readSignalData(any(ByteBuffer.class))).thenReturn(new ValueResult<SimTime>((SimTime)null));
+        _procedure.runOnce(0);
+        assertEquals(capacity - 1, _procedure.getStatistics().bufferPoolAvailable);
 
-        _procedure.runOnce(0); // data transfer through pipeline
+        // The still pending frame is dropped and its buffer given back to the pool.
+        when(_pmAdapterMock.getSimTime()).thenReturn(new ValueResult<SimTime>(new SimTime(2009, 1, 1, 1, 1, 1, 200)));
+        _procedure.runOnce(0);
+        assertEquals(capacity - 1, _procedure.getStatistics().bufferPoolAvailable);
 
-        ByteBuffer values = context.pendingTransferToES.pollFirst().getData();
-        verify(_pipeline).processSignals(same(values), eq(DataflowDirection.ToES));
+        Data values = pmChannel.pendingTransformToES.poll();
+        assertTrue(values.getData().isDirect());
+        values.release();
+        assertEquals(capacity, _procedure.getStatistics().bufferPoolAvailable);
+        assertEquals(0, _procedure.getStatistics().bufferPoolStarvationCount);
     }
 
     @Test
@@ -294,8 +325,7 @@ public class ProcessModelProcedureTest {
 
         _procedure.runOnce(0);
 
-        verify(_pipeline, never()).processSignals(any(ByteBuffer.class), any(DataflowDirection.class));
-        assertEquals(0, context.pendingTransferToES.size());
+        assertEquals(0, pmChannel.pendingTransformToES.size());
         assertEquals(1, _procedure.getStatistics().dataReadCount);
     }
 
@@ -311,8 +341,7 @@ public class ProcessModelProcedureTest {
         // to be stored as pending data transfers in context object
         _procedure.runOnce(0);
 
-        verify(_pipeline, never()).processSignals(any(ByteBuffer.class), any(DataflowDirection.class));
-        assertEquals(0, context.pendingTransferToES.size());
+        assertEquals(0, pmChannel.pendingTransformToES.size());
         assertEquals(1, _procedure.getStatistics().dataReadFailureCount);
         assertEquals(1, _procedure.getStatistics().dataReadCount);
     }
@@ -330,7 +359,7 @@ public class ProcessModelProcedureTest {
         
         verify(_pmAdapterMock).disconnect();
         assertTrue(_procedure.currentState() instanceof ProcessModelProcedure.DisconnectedState);
-        assertEquals(0, context.pendingTransferToES.size());
+        assertEquals(0, pmChannel.pendingTransformToES.size());
 
         when(_pmAdapterMock.connect()).thenReturn(true);
 
@@ -344,15 +373,15 @@ public class ProcessModelProcedureTest {
         doFirstRunOnceCallToConnect();
 
         // 39.999 seconds have elapsed and no transfer shall be done.
-        _procedure.runOnce(39999);
+        _procedure.runOnce(39999000);
         verify(_pmAdapterMock, never()).readSignalData(any(ByteBuffer.class));
 
         // 40 seconds have elapsed and a single transfer shall be done.
-        _procedure.runOnce(40000);
+        _procedure.runOnce(40000000);
         verify(_pmAdapterMock, times(1)).readSignalData(any(ByteBuffer.class));
 
-        assertEquals(1, context.pendingTransferToES.size());
-        ByteBuffer values = context.pendingTransferToES.pollFirst().getData();
+        assertEquals(1, pmChannel.pendingTransformToES.size());
+        ByteBuffer values = pmChannel.pendingTransformToES.poll().getData();
         verify(_pmAdapterMock, times(1)).readSignalData(same(values));
         assertEquals(2, _procedure.getStatistics().dataReadCount);
     }
@@ -361,13 +390,13 @@ public class ProcessModelProcedureTest {
     public void expect_elapsed_time_adjustment_to_timeout() throws Exception {
         doFirstRunOnceCallToConnect();
 
-        _procedure.runOnce(70000); // expect next timeout at 80000 not 70000 + 40000.
-        assertEquals(1, context.pendingTransferToES.size());
+        _procedure.runOnce(70000000); // expect next timeout at 80000000 not 70000000 + 40000000.
+        assertEquals(1, pmChannel.pendingTransformToES.size());
         assertEquals(2, _procedure.getStatistics().dataReadCount);
         assertEquals(0, _procedure.getStatistics().droppedFrames);
 
-        _procedure.runOnce(80000);       
-        assertEquals(1, context.pendingTransferToES.size());
+        _procedure.runOnce(80000000);       
+        assertEquals(1, pmChannel.pendingTransformToES.size());
         assertEquals(3, _procedure.getStatistics().dataReadCount);
         assertEquals(1, _procedure.getStatistics().droppedFrames);
     }
@@ -376,7 +405,7 @@ public class ProcessModelProcedureTest {
     public void expect_dropped_Process_model_frames_to_be_incremented_when_several_timeouts_have_occurred() throws Exception {
         doFirstRunOnceCallToConnect();
 
-        _procedure.runOnce(120000);
+        _procedure.runOnce(120000000);
 
         assertEquals(2, _procedure.getStatistics().droppedFrames);
     }
@@ -386,7 +415,7 @@ public class ProcessModelProcedureTest {
 
         when(config.getIdleProcessDataTransferInterval()).thenReturn(0);
 
-        ProcessModelProcedure pm = new ProcessModelProcedure(_pmAdapterMock, 10, _pipeline, context, BUF_SIZE, config);
+        ProcessModelProcedure pm = new ProcessModelProcedure(_pmAdapterMock, 10, context, BUF_SIZE, config);
 
         when(_pmAdapterMock.connect()).thenReturn(true);
         when(_pmAdapterMock.getSimTime()).thenReturn(new ValueResult<SimTime>(new SimTime(2009, 1, 1, 1, 1, 1, 0)));
@@ -397,7 +426,7 @@ public class ProcessModelProcedureTest {
         pm.runOnce(0);
         verify(_pmAdapterMock).readSignalData(any(ByteBuffer.class));
 
-        pm.runOnce(1001); // This call shall not trigger another pmAdapter.readSignalData and consequently no ES-transfers
+        pm.runOnce(1001000); // This call shall not trigger another pmAdapter.readSignalData and consequently no ES-transfers
                           // will be added.
         verify(_pmAdapterMock).readSignalData(any(ByteBuffer.class));
     }
@@ -415,7 +444,7 @@ public class ProcessModelProcedureTest {
         assertEquals(2, _procedure.getStatistics().droppedFrames);
 
         when(_pmAdapterMock.getSimTime()).thenReturn(new ValueResult<SimTime>(new SimTime(2009, 1, 1, 1, 1, 1, 700)));
-        context.pendingTransferToES.clear();
+        pmChannel.pendingTransformToES.poll();
 
         _procedure.runOnce(0);
 
@@ -432,25 +461,12 @@ public class ProcessModelProcedureTest {
         doFirstRunOnceCallToConnect();
         final SimTime time = new SimTime();
 
-        context.pendingTransferToPM.add(new Data(buf, time));
+        pmChannel.pendingTransferToPM.offer(new Data(buf, time));
         _procedure.runOnce(0);
 
         verify(_pmAdapterMock).writeSignalData(same(buf), same(time));
         assertEquals(0, _procedure.getStatistics().dataWriteFailureCount);
-        assertEquals(0, context.pendingTransferToPM.size());
-    }
-
-    @Test
-    public void expect_ES_data_to_be_passing_the_transfer_pipeline_in_the_toPM_direction() throws Exception {
-        ByteBuffer buf = ByteBuffer.allocate(BUF_SIZE);
-        doFirstRunOnceCallToConnect();
-
-        when(_pmAdapterMock.writeSignalData(same(buf), any(SimTime.class))).thenReturn(new Result(true));
-
-        context.pendingTransferToPM.add(new Data(buf));
-        _procedure.runOnce(0); // data transfer through pipeline
-
-        verify(_pipeline).processSignals(same(buf), eq(DataflowDirection.ToPM));
+        assertEquals(0, pmChannel.pendingTransferToPM.size());
     }
 
     @Test
@@ -460,11 +476,11 @@ public class ProcessModelProcedureTest {
 
         when(_pmAdapterMock.writeSignalData(same(buf), any(SimTime.class))).thenReturn(new Result(false));
 
-        context.pendingTransferToPM.add(new Data(buf));
+        pmChannel.pendingTransferToPM.offer(new Data(buf));
         _procedure.runOnce(0);
 
         assertEquals(1, _procedure.getStatistics().dataWriteFailureCount);
-        assertEquals(0, context.pendingTransferToPM.size());
+        assertEquals(0, pmChannel.pendingTransferToPM.size());
     }
 
     @Test
@@ -474,12 +490,12 @@ public class ProcessModelProcedureTest {
         
         when(_pmAdapterMock.writeSignalData(same(buf), any(SimTime.class))).thenThrow(new IOException());
 
-        context.pendingTransferToPM.add(new Data(buf));
+        pmChannel.pendingTransferToPM.offer(new Data(buf));
         _procedure.runOnce(0);
 
         verify(_pmAdapterMock).disconnect();
         assertTrue(_procedure.currentState() instanceof ProcessModelProcedure.DisconnectedState);
-        assertEquals(0, context.pendingTransferToPM.size());
+        assertEquals(0, pmChannel.pendingTransferToPM.size());
     }
 
     ////////////////////////////////////////////////////////////////////////////////////////
@@ -502,6 +518,33 @@ public class ProcessModelProcedureTest {
         assertEquals(2, context.esFrameCount);
     }
 
+    @Test
+    public void expect_a_secondary_process_model_to_hand_over_its_slice_without_driving_the_ES_frames() throws Exception {
+        context = new IntegrationContext(0, 2, 1);
+        channel = context.externalSystem(0);
+        pmChannel = context.processModel(1);
+        _procedure = new ProcessModelProcedure(_pmAdapterMock, 10, context, pmChannel, false, BUF_SIZE, config);
+        Data pendingToES = new Data(ByteBuffer.allocate(BUF_SIZE));
+        channel.pendingTransferToES.offer(pendingToES);
+        setupPMAdapterStub();
+        _procedure.runOnce(0); // Connect
+        assertSame(pendingToES, channel.pendingTransferToES.poll());
+
+        when(_pmAdapterMock.getSimTime()).thenReturn(new ValueResult<SimTime>(new SimTime(2009, 1, 1, 1, 1, 1, 100)));
+        _procedure.runOnce(0);
+
+        assertEquals(0, context.esFrameCount);
+        assertFalse(channel.esWakeup.await(0));
+        assertEquals(1, pmChannel.pendingTransformToES.size());
+        assertEquals(0, context.processModel(0).pendingTransformToES.size());
+    }
+
+    @Test
+    public void expect_lagged_frame_count_of_the_channel_to_be_reported_in_the_statistics() throws Exception {
+        pmChannel.laggedFrameCount = 3;
+        assertEquals(3, _procedure.getStatistics().laggedFrameCount);
+    }
+
     ////////////////////////////////////////////////////////////////////////////////////////
     // Test control commands
     ////////////////////////////////////////////////////////////////////////////////////////
@@ -525,34 +568,6 @@ public class ProcessModelProcedureTest {
         assertEquals("v1", argument.getValue().getParameter("p1"));
     }
 
-    @Test
-    public void expect_controlCommands_to_be_invoked_on_pipeline_stage() throws Exception {
-        IPipelineStage stage0 = mock(IPipelineStage.class);
-        IPipelineStage stage1 = mock(IPipelineStage.class);
-
-        doFirstRunOnceCallToConnect();
-
-        List<IPipelineStage> stages = new ArrayList<IPipelineStage>();
-        stages.add(stage0);
-        stages.add(stage1);
-        when(_pipeline.getStages()).thenReturn(stages);
-
-        new Thread(new Runnable() {
-            public void run() {
-                try { Thread.sleep(25); } catch (InterruptedException ex) {}
-                _procedure.runOnce(1);
-            }
-        }).start();
-
-        _procedure.invokePipelineStageControlCommand(1, "cmID", new HashMap<String, String>(){{ put("p1", "v1"); }});
-
-        ArgumentCaptor<Command> argument = ArgumentCaptor.forClass(Command.class);
-        verify(stage1).invokeControlCommand(argument.capture());
-        assertEquals("cmID", argument.getValue().getID());
-        assertEquals("v1", argument.getValue().getParameter("p1"));
-        verify(stage0, never()).invokeControlCommand(any(Command.class));
-    }
-
     // Connect and set up stubs using the Mockito mocking library
     private void doFirstRunOnceCallToConnect() throws Exception {
         setupPMAdapterStub();
@@ -561,12 +576,15 @@ public class ProcessModelProcedureTest {
         _procedure.runOnce(0); // First call that will always do a read from the PM and add a pending transfer to ES.
 
         context.esFrameCount = 0;
-        context.pendingSimCommands.clear();
-        context.pendingTransferToPM.clear();
-        context.pendingTransferToES.clear();
+        channel.pendingSimCommands.clear();
+        pmChannel.pendingTransferToPM.poll();
+        Data pending = pmChannel.pendingTransformToES.poll();
+        if (pending != null) {
+            pending.release();
+        }
+        channel.pendingTransferToES.poll();
 
         reset(_pmAdapterMock);
-        reset(_pipeline);
         setupPMAdapterStub();
     }
 
@@ -0,0 +1,190 @@
+/*
+    Copyright (C) 2010 LearningWell AB (www.learningwell.com), Kärnkraftsäkerhet och Utbildning AB (www.ksu.se)
+
+    This file is part of GIL (Generic Integration Layer).
+
+    GIL is free software: you can redistribute it and/or modify
+    it under the terms of the GNU Lesser General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    GIL is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public License
+    along with GIL.  If not, see <http://www.gnu.org/licenses/>.
+*/
+package gil.core.test;
+
+import gil.common.ByteBufferPool;
+import gil.core.Command;
+import gil.core.Data;
+import gil.core.SessionRecorder;
+import gil.core.SessionRecording;
+import gil.core.SessionRecording.RecordType;
+import gil.core.SignalMetadata;
+import gil.core.SignalMetadata.DataflowDirection;
+import gil.core.SignalMetadata.SignalDataType;
+import gil.core.SignalMetadata.SignalType;
+import gil.core.SimTime;
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * @author Göran Larsson @ LearningWell AB
+ */
+public class SessionRecorderTest {
+
+    // One Int32 signal in each direction, 4 bytes frames.
+    SignalMetadata[] _signals = new SignalMetadata[] {
+        new SignalMetadata(SignalType.Analog, SignalDataType.Int32, 1, DataflowDirection.ToES, "pm0", "es0", "", null),
+        new SignalMetadata(SignalType.Digital, SignalDataType.Int32, 1, DataflowDirection.ToPM, "pm1", "es1", "", null)
+    };
+    File _directory;
+
+    public SessionRecorderTest() {
+        _signals[0].setBufferPos(0);
+        _signals[1].setBufferPos(0);
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        _directory = File.createTempFile("gilrec", "");
+        _directory.delete();
+    }
+
+    @After
+    public void tearDown() {
+        File[] files = _directory.listFiles();
+        for (int i = 0; files != null && i < files.length; i++) {
+            files[i].delete();
+        }
+        _directory.delete();
+    }
+
+    @Test
+    public void expect_recorded_frames_and_commands_to_be_read_back_in_order() throws Exception {
+        SessionRecorder recorder = new SessionRecorder(_directory, "session", 4096, _signals);
+        recorder.start();
+        SimTime time = new SimTime(2010, 2, 3, 4, 5, 6, 7, 8);
+        recorder.recordFrame(new Data(createFrame(7, ByteOrder.LITTLE_ENDIAN), time), DataflowDirection.ToES);
+        recorder.recordCommands(new Command[] { new Command("freeze", time).addParameter("p", "v") });
+        recorder.recordFrame(new Data(createFrame(9, ByteOrder.BIG_ENDIAN), null), DataflowDirection.ToPM);
+        recorder.stop();
+        assertEquals(3, recorder.getRecordedCount());
+        assertEquals(0, recorder.getDroppedCount());
+
+        SessionRecording recording = new SessionRecording(_directory, "session");
+        assertEquals(2, recording.getSignals().length);
+        assertEquals("es1", recording.getSignals()[1].getESSignalID());
+        assertEquals(DataflowDirection.ToPM, recording.getSignals()[1].getDataflowDirection());
+        assertEquals(SignalType.Digital, recording.getSignals()[1].getType());
+        assertEquals(SignalDataType.Int32, recording.getSignals()[1].getDataType());
+        assertEquals(4, recording.getToESFrameSize());
+        assertEquals(4, recording.getToPMFrameSize());
+
+        SessionRecording.Record record = recording.next();
+        assertEquals(RecordType.ToESFrame, record.type);
+        assertEquals(ByteOrder.LITTLE_ENDIAN, record.frame.order());
+        assertEquals(7, record.frame.getInt(0));
+        assertEquals(time.toString(), record.origin.toString());
+        assertEquals(8, record.origin.microsecond());
+
+        record = recording.next();
+        assertEquals(RecordType.SimCommand, record.type);
+        assertTrue(record.command.isCommand("freeze"));
+        assertEquals("v", record.command.getParameter("p"));
+
+        record = recording.next();
+        assertEquals(RecordType.ToPMFrame, record.type);
+        assertEquals(9, record.frame.getInt(0));
+        assertNull(record.origin);
+
+        assertNull(recording.next());
+        recording.rewind();
+        assertEquals(RecordType.ToESFrame, recording.next().type);
+        recording.close();
+    }
+
+    @Test
+    public void expect_a_new_segment_to_be_started_when_a_record_does_not_fit() throws Exception {
+        SessionRecorder recorder = new SessionRecorder(_directory, "session", 128, _signals);
+        recorder.start();
+        for (int i = 0; i < 10; i++) {
+            recorder.recordFrame(new Data(createFrame(i, ByteOrder.BIG_ENDIAN)), DataflowDirection.ToES);
+        }
+        recorder.stop();
+        assertTrue(recorder.getSegmentCount() > 1);
+        assertTrue(SessionRecorder.segmentFile(_directory, "session", 1).isFile());
+
+        SessionRecording recording = new SessionRecording(_directory, "session");
+        assertEquals(recorder.getSegmentCount(), recording.getSegmentCount());
+        for (int i = 0; i < 10; i++) {
+            assertEquals(i, recording.next().frame.getInt(0));
+        }
+        assertNull(recording.next());
+    }
+
+    @Test
+    public void expect_pooled_frame_to_be_copied_and_not_held_by_the_recorder() throws Exception {
+        ByteBufferPool pool = new ByteBufferPool(1, 4, ByteOrder.BIG_ENDIAN);
+        SessionRecorder recorder = new SessionRecorder(_directory, "session", 4096, _signals);
+        recorder.start();
+        Data frame = new Data(pool.lease(), new SimTime(), pool);
+        frame.getData().putInt(0, 5);
+        recorder.recordFrame(frame, DataflowDirection.ToES);
+        frame.release();
+        assertEquals(1, pool.getAvailableCount());
+        pool.lease().putInt(0, 6); // Overwritten before the frame is written by the recorder.
+        recorder.stop();
+
+        SessionRecording recording = new SessionRecording(_directory, "session");
+        assertEquals(5, recording.next().frame.getInt(0));
+        recording.close();
+    }
+
+    @Test
+    public void expect_record_larger_than_a_segment_to_be_dropped() throws Exception {
+        SessionRecorder recorder = new SessionRecorder(_directory, "session", 128, _signals);
+        recorder.start();
+        recorder.recordFrame(new Data(ByteBuffer.allocate(256)), DataflowDirection.ToES);
+        recorder.stop();
+        assertEquals(0, recorder.getRecordedCount());
+        assertEquals(1, recorder.getDroppedCount());
+    }
+
+    @Test
+    public void expect_record_filling_the_rest_of_a_segment_exactly_to_be_recorded() throws Exception {
+        // The segment header of the two signals is 64 bytes and the record header 17 bytes, leaving 47 bytes.
+        SessionRecorder recorder = new SessionRecorder(_directory, "session", 128, _signals);
+        recorder.start();
+        recorder.recordFrame(new Data(ByteBuffer.allocate(47)), DataflowDirection.ToES);
+        recorder.stop();
+        assertEquals(1, recorder.getRecordedCount());
+        assertEquals(0, recorder.getDroppedCount());
+
+        SessionRecording recording = new SessionRecording(_directory, "session");
+        assertEquals(47, recording.next().frame.remaining());
+        assertNull(recording.next());
+        recording.close();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void expect_exception_when_segment_does_not_hold_the_header() {
+        new SessionRecorder(_directory, "session", 32, _signals);
+    }
+
+    private ByteBuffer createFrame(int value, ByteOrder order) {
+        ByteBuffer buf = ByteBuffer.allocate(4);
+        buf.order(order);
+        buf.putInt(0, value);
+        return buf;
+    }
+}
@@ -0,0 +1,130 @@
+/*
+    Copyright (C) 2010 LearningWell AB (www.learningwell.com), Kärnkraftsäkerhet och Utbildning AB (www.ksu.se)
+
+    This file is part of GIL (Generic Integration Layer).
+
+    GIL is free software: you can redistribute it and/or modify
+    it under the terms of the GNU Lesser General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    GIL is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public License
+    along with GIL.  If not, see <http://www.gnu.org/licenses/>.
+*/
+package gil.core.test;
+
+import gil.core.SignalDeltaEncoder;
+import gil.core.SignalMetadata;
+import gil.core.SignalMetadata.DataflowDirection;
+import gil.core.SignalMetadata.SignalDataType;
+import gil.core.SignalMetadata.SignalType;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.BitSet;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * @author Göran Larsson @ LearningWell AB
+ */
+public class SignalDeltaEncoderTest {
+
+    // An Int32, a Float64 and two Int16 values, 16 bytes in total.
+    SignalMetadata[] _signals = new SignalMetadata[] {
+        new SignalMetadata(SignalType.Analog, SignalDataType.Int32, 1, DataflowDirection.ToES, "s0", "s0", "", null),
+        new SignalMetadata(SignalType.Analog, SignalDataType.Float64, 1, DataflowDirection.ToES, "s1", "s1", "", null),
+        new SignalMetadata(SignalType.Analog, SignalDataType.Int16, 2, DataflowDirection.ToES, "s2", "s2", "", null)
+    };
+    SignalDeltaEncoder _encoder = new SignalDeltaEncoder(_signals);
+
+    public SignalDeltaEncoderTest() {
+    }
+
+    @Test
+    public void expect_all_signals_to_be_changed_in_the_first_frame() {
+        ByteBuffer frame = createFrame(1, 2.0, (short)3, (short)4);
+
+        assertEquals(3, _encoder.encode(frame));
+
+        ByteBuffer changed = _encoder.getChangedValues();
+        assertEquals(16, changed.remaining());
+        assertEquals(1, changed.getInt());
+        assertEquals(2.0, changed.getDouble(), 0);
+        assertEquals(3, changed.getShort());
+        assertEquals(4, changed.getShort());
+        assertEquals(3, _encoder.getChangedSignals().cardinality());
+    }
+
+    @Test
+    public void expect_only_changed_signals_to_be_packed_in_signal_order() {
+        _encoder.encode(createFrame(1, 2.0, (short)3, (short)4));
+
+        assertEquals(2, _encoder.encode(createFrame(5, 2.0, (short)3, (short)6)));
+
+        BitSet changedSignals = _encoder.getChangedSignals();
+        assertTrue(changedSignals.get(0));
+        assertFalse(changedSignals.get(1));
+        assertTrue(changedSignals.get(2));
+
+        ByteBuffer changed = _encoder.getChangedValues();
+        assertEquals(8, changed.remaining());
+        assertEquals(5, changed.getInt());
+        assertEquals(3, changed.getShort());
+        assertEquals(6, changed.getShort());
+    }
+
+    @Test
+    public void expect_no_changed_signals_when_the_frame_is_unchanged() {
+        _encoder.encode(createFrame(1, 2.0, (short)3, (short)4));
+
+        assertEquals(0, _encoder.encode(createFrame(1, 2.0, (short)3, (short)4)));
+        assertEquals(0, _encoder.getChangedValues().remaining());
+        assertTrue(_encoder.getChangedSignals().isEmpty());
+    }
+
+    @Test
+    public void expect_changes_to_be_relative_to_the_previously_encoded_frame() {
+        _encoder.encode(createFrame(1, 2.0, (short)3, (short)4));
+        _encoder.encode(createFrame(1, 7.0, (short)3, (short)4));
+
+        assertEquals(1, _encoder.encode(createFrame(1, 8.0, (short)3, (short)4)));
+        assertTrue(_encoder.getChangedSignals().get(1));
+        assertEquals(8.0, _encoder.getChangedValues().getDouble(), 0);
+    }
+
+    @Test
+    public void expect_all_signals_to_be_changed_after_reset() {
+        _encoder.encode(createFrame(1, 2.0, (short)3, (short)4));
+        _encoder.reset();
+
+        assertEquals(3, _encoder.encode(createFrame(1, 2.0, (short)3, (short)4)));
+    }
+
+    @Test
+    public void expect_changed_values_to_be_of_the_frame_byte_order() {
+        ByteBuffer frame = createFrame(1, 2.0, (short)3, (short)4);
+        frame.order(ByteOrder.LITTLE_ENDIAN);
+        _encoder.encode(frame);
+        assertEquals(ByteOrder.LITTLE_ENDIAN, _encoder.getChangedValues().order());
+    }
+
+    @Test
+    public void expect_the_position_of_the_encoded_frame_to_be_left_unchanged() {
+        ByteBuffer frame = createFrame(1, 2.0, (short)3, (short)4);
+        frame.position(4);
+        _encoder.encode(frame);
+        assertEquals(4, frame.position());
+    }
+
+    private ByteBuffer createFrame(int s0, double s1, short s2a, short s2b) {
+        ByteBuffer frame = ByteBuffer.allocate(16);
+        frame.putInt(s0).putDouble(s1).putShort(s2a).putShort(s2b);
+        frame.rewind();
+        return frame;
+    }
+}
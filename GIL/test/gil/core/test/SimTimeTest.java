@@ -67,4 +67,16 @@ public class SimTimeTest {
         assertEquals(59, testObject.second());
         assertEquals(999, testObject.millisecond());
     }
+
+    @Test
+    public void expect_microseconds_to_be_formatted_and_parsed_when_not_zero() throws Exception {
+        SimTime testObject = new SimTime(2009, 11, 23, 14, 54, 21, 457, 12);
+        assertEquals("2009-11-23 14:54:21.457012", testObject.toString());
+
+        testObject = SimTime.parse("2009-11-23 14:54:21.457012");
+        assertEquals(21, testObject.second());
+        assertEquals(457, testObject.millisecond());
+        assertEquals(12, testObject.microsecond());
+        assertEquals(0, SimTime.parse("2009-11-23 14:54:21.457").microsecond());
+    }
 }
\ No newline at end of file
@@ -0,0 +1,304 @@
+/*
+    Copyright (C) 2010 LearningWell AB (www.learningwell.com), Kärnkraftsäkerhet och Utbildning AB (www.ksu.se)
+
+    This file is part of GIL (Generic Integration Layer).
+
+    GIL is free software: you can redistribute it and/or modify
+    it under the terms of the GNU Lesser General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    GIL is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public License
+    along with GIL.  If not, see <http://www.gnu.org/licenses/>.
+*/
+package gil.core.test;
+
+import gil.common.ByteBufferPool;
+import gil.core.*;
+import gil.core.SignalMetadata.DataflowDirection;
+import gil.io.IPipelineStage;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Test cases for the TransferPipelineProcedure.
+ * @author Göran Larsson @ LearningWell AB
+ */
+public class TransferPipelineProcedureTest {
+    final static int BUF_SIZE = 8;
+    IntegrationContext context = new IntegrationContext();
+    ExternalSystemChannel channel = context.externalSystem(0);
+    ProcessModelChannel pmChannel = context.processModel(0);
+    ITransferPipeline _pipeline = mock(ITransferPipeline.class);
+    TransferPipelineProcedure _procedure = new TransferPipelineProcedure(_pipeline, context);
+
+    public TransferPipelineProcedureTest() {
+    }
+
+    @Test
+    public void expect_PM_data_to_be_passing_the_transfer_pipeline_in_the_toES_direction() throws Exception {
+        ByteBuffer buf = ByteBuffer.allocate(BUF_SIZE);
+        SimTime time = new SimTime();
+        pmChannel.pendingTransformToES.offer(new Data(buf, time));
+
+        _procedure.runOnce(0);
+
+        verify(_pipeline).processSignals(same(buf), eq(DataflowDirection.ToES));
+        assertEquals(0, pmChannel.pendingTransformToES.size());
+        Data values = channel.pendingTransferToES.poll();
+        assertSame(buf, values.getData());
+        assertSame(time, values.getOrigin());
+        assertEquals(0, pmChannel.pendingTransferToPM.size());
+    }
+
+    @Test
+    public void expect_frames_to_be_recorded_in_the_history_of_their_direction() throws Exception {
+        FrameHistory toES = new FrameHistory(4, BUF_SIZE);
+        FrameHistory toPM = new FrameHistory(4, BUF_SIZE);
+        _procedure.setFrameHistories(toES, toPM);
+        SignalMetadata signal = new SignalMetadata(SignalMetadata.SignalType.Analog,
+                SignalMetadata.SignalDataType.Int32, 1, DataflowDirection.ToES, "s0", "s0", "", null);
+        signal.setBufferPos(0);
+
+        SimTime time = new SimTime();
+        pmChannel.pendingTransformToES.offer(new Data(ByteBuffer.allocate(BUF_SIZE).putInt(0, 7), time));
+        _procedure.runOnce(0);
+        assertEquals(1, toES.getRecordedCount());
+        assertEquals(0, toPM.getRecordedCount());
+        assertEquals(7.0, toES.getTimeSeries(signal, 1).get(0).values[0], 0);
+        assertSame(time, toES.getTimeSeries(signal, 1).get(0).origin);
+
+        context.pendingTransformToPM.offer(new Data(ByteBuffer.allocate(BUF_SIZE)));
+        _procedure.runOnce(0);
+        assertEquals(1, toPM.getRecordedCount());
+    }
+
+    @Test
+    public void expect_ES_data_to_be_passing_the_transfer_pipeline_in_the_toPM_direction() throws Exception {
+        ByteBuffer buf = ByteBuffer.allocate(BUF_SIZE);
+        context.pendingTransformToPM.offer(new Data(buf));
+
+        _procedure.runOnce(0);
+
+        verify(_pipeline).processSignals(same(buf), eq(DataflowDirection.ToPM));
+        assertEquals(0, context.pendingTransformToPM.size());
+        assertSame(buf, pmChannel.pendingTransferToPM.poll().getData());
+        assertEquals(0, channel.pendingTransferToES.size());
+    }
+
+    @Test
+    public void expect_the_receiving_side_to_be_woken_up_when_transformed_data_is_pending() throws Exception {
+        pmChannel.pendingTransformToES.offer(new Data(ByteBuffer.allocate(BUF_SIZE)));
+        _procedure.runOnce(0);
+        assertTrue(channel.esWakeup.await(0));
+        assertFalse(pmChannel.pmWakeup.await(0));
+
+        context.pendingTransformToPM.offer(new Data(ByteBuffer.allocate(BUF_SIZE)));
+        _procedure.runOnce(0);
+        assertTrue(pmChannel.pmWakeup.await(0));
+    }
+
+    @Test
+    public void expect_PM_data_to_be_transformed_once_and_shared_read_only_by_all_external_systems() throws Exception {
+        context = new IntegrationContext(0, 2);
+        pmChannel = context.processModel(0);
+        _procedure = new TransferPipelineProcedure(_pipeline, context);
+        ByteBufferPool pool = new ByteBufferPool(1, BUF_SIZE, ByteOrder.LITTLE_ENDIAN);
+        ByteBuffer buf = pool.lease();
+        buf.putInt(0, 17);
+        SimTime time = new SimTime();
+        pmChannel.pendingTransformToES.offer(new Data(buf, time, pool));
+
+        _procedure.runOnce(0);
+
+        verify(_pipeline, times(1)).processSignals(same(buf), eq(DataflowDirection.ToES));
+        Data first = context.externalSystem(0).pendingTransferToES.poll();
+        Data second = context.externalSystem(1).pendingTransferToES.poll();
+        for (Data values : new Data[] { first, second }) {
+            assertTrue(values.getData().isReadOnly());
+            assertEquals(ByteOrder.LITTLE_ENDIAN, values.getData().order());
+            assertEquals(17, values.getData().getInt());
+            assertSame(time, values.getOrigin());
+        }
+        assertTrue(context.externalSystem(0).esWakeup.await(0));
+        assertTrue(context.externalSystem(1).esWakeup.await(0));
+
+        first.release();
+        assertEquals(0, pool.getAvailableCount());
+        second.release();
+        assertEquals(1, pool.getAvailableCount());
+    }
+
+    @Test
+    public void expect_slices_from_several_process_models_to_be_assembled_into_one_frame() throws Exception {
+        createMergingProcedure();
+        ByteBuffer secondary = ByteBuffer.allocate(4);
+        secondary.putInt(0, 33);
+        context.processModel(1).pendingTransformToES.offer(new Data(secondary));
+        _procedure.runOnce(0);
+        assertEquals(0, channel.pendingTransferToES.size());
+
+        ByteBuffer primary = ByteBuffer.allocate(4);
+        primary.putInt(0, 11);
+        SimTime time = new SimTime();
+        context.processModel(0).pendingTransformToES.offer(new Data(primary, time));
+        _procedure.runOnce(0);
+
+        Data values = channel.pendingTransferToES.poll();
+        verify(_pipeline).processSignals(same(values.getData()), eq(DataflowDirection.ToES));
+        assertSame(time, values.getOrigin());
+        assertEquals(11, values.getData().getInt());
+        assertEquals(33, values.getData().getInt());
+        assertEquals(0, context.processModel(1).laggedFrameCount);
+    }
+
+    @Test
+    public void expect_lagged_frame_count_to_be_incremented_when_a_frame_is_assembled_without_a_new_slice() throws Exception {
+        createMergingProcedure();
+        context.processModel(0).pendingTransformToES.offer(new Data(ByteBuffer.allocate(4)));
+        _procedure.runOnce(0);
+        context.processModel(0).pendingTransformToES.offer(new Data(ByteBuffer.allocate(4)));
+        _procedure.runOnce(0);
+
+        assertEquals(2, context.processModel(1).laggedFrameCount);
+        assertEquals(0, context.processModel(0).laggedFrameCount);
+    }
+
+    @Test
+    public void expect_ES_data_to_be_split_into_one_slice_for_each_process_model() throws Exception {
+        createMergingProcedure();
+        ByteBuffer buf = ByteBuffer.allocate(8);
+        buf.putInt(0, 44).putInt(4, 55);
+        context.pendingTransformToPM.offer(new Data(buf));
+
+        _procedure.runOnce(0);
+
+        verify(_pipeline).processSignals(same(buf), eq(DataflowDirection.ToPM));
+        assertEquals(55, context.processModel(0).pendingTransferToPM.poll().getData().getInt());
+        assertEquals(44, context.processModel(1).pendingTransferToPM.poll().getData().getInt());
+        assertTrue(context.processModel(0).pmWakeup.await(0));
+        assertTrue(context.processModel(1).pmWakeup.await(0));
+    }
+
+    @Test(expected=IllegalArgumentException.class)
+    public void expect_IllegalArgumentException_when_merging_process_models_without_an_assembler() {
+        new TransferPipelineProcedure(_pipeline, new IntegrationContext(0, 2, 1));
+    }
+
+    @Test
+    public void expect_transformed_data_to_be_rewound() throws Exception {
+        ByteBuffer buf = ByteBuffer.allocate(BUF_SIZE);
+        buf.putInt(1);
+        pmChannel.pendingTransformToES.offer(new Data(buf));
+
+        _procedure.runOnce(0);
+
+        assertEquals(0, channel.pendingTransferToES.poll().getData().position());
+    }
+
+    @Test
+    public void expect_nothing_to_be_processed_when_there_is_no_pending_data() throws Exception {
+        _procedure.runOnce(0);
+
+        verify(_pipeline, never()).processSignals(any(ByteBuffer.class), any(DataflowDirection.class));
+        assertEquals(0, channel.pendingTransferToES.size());
+        assertEquals(0, pmChannel.pendingTransferToPM.size());
+    }
+
+    @Test
+    public void expect_still_pending_transfer_to_be_dropped_and_released_when_new_data_is_transformed() throws Exception {
+        ByteBufferPool pool = new ByteBufferPool(2, BUF_SIZE, ByteOrder.BIG_ENDIAN);
+        Data first = new Data(pool.lease(), new SimTime(), pool);
+        Data second = new Data(pool.lease(), new SimTime(), pool);
+
+        pmChannel.pendingTransformToES.offer(first);
+        _procedure.runOnce(0);
+        pmChannel.pendingTransformToES.offer(second);
+        _procedure.runOnce(0);
+
+        assertSame(second, channel.pendingTransferToES.poll());
+        assertEquals(1, channel.pendingTransferToES.getDroppedCount());
+        assertEquals(1, pool.getAvailableCount());
+    }
+
+    @Test
+    public void expect_data_to_be_dropped_and_released_when_the_pipeline_fails() throws Exception {
+        ByteBufferPool pool = new ByteBufferPool(1, BUF_SIZE, ByteOrder.BIG_ENDIAN);
+        doThrow(new IllegalStateException()).when(_pipeline).processSignals(any(ByteBuffer.class), eq(DataflowDirection.ToPM));
+
+        context.pendingTransformToPM.offer(new Data(pool.lease(), new SimTime(), pool));
+        _procedure.runOnce(0);
+
+        assertEquals(0, pmChannel.pendingTransferToPM.size());
+        assertEquals(1, pool.getAvailableCount());
+
+        // Data in the other direction is still transformed.
+        pmChannel.pendingTransformToES.offer(new Data(ByteBuffer.allocate(BUF_SIZE)));
+        _procedure.runOnce(0);
+        assertEquals(1, channel.pendingTransferToES.size());
+    }
+
+    @Test
+    public void expect_controlCommands_to_be_invoked_on_pipeline_stage() throws Exception {
+        IPipelineStage stage0 = mock(IPipelineStage.class);
+        IPipelineStage stage1 = mock(IPipelineStage.class);
+
+        List<IPipelineStage> stages = new ArrayList<IPipelineStage>();
+        stages.add(stage0);
+        stages.add(stage1);
+        when(_pipeline.getStages()).thenReturn(stages);
+
+        new Thread(new Runnable() {
+            public void run() {
+                try { Thread.sleep(25); } catch (InterruptedException ex) {}
+                _procedure.runOnce(1);
+            }
+        }).start();
+
+        _procedure.invokeControlCommand(1, "cmID", new HashMap<String, String>(){{ put("p1", "v1"); }});
+
+        ArgumentCaptor<Command> argument = ArgumentCaptor.forClass(Command.class);
+        verify(stage1).invokeControlCommand(argument.capture());
+        assertEquals("cmID", argument.getValue().getID());
+        assertEquals("v1", argument.getValue().getParameter("p1"));
+        verify(stage0, never()).invokeControlCommand(any(Command.class));
+    }
+
+    @Test(expected=IllegalArgumentException.class)
+    public void expect_IllegalArgumentException_when_invoking_controlCommand_on_nonexisting_pipeline_stage() throws Exception {
+        when(_pipeline.getStages()).thenReturn(new ArrayList<IPipelineStage>());
+        _procedure.invokeControlCommand(0, "cmID", new HashMap<String, String>());
+    }
+
+    // Merges a primary process model owning ToES signal 0 and ToPM signal 1 with a secondary process model owning
+    // ToES signal 1 and ToPM signal 0. All signals are Int32.
+    private void createMergingProcedure() {
+        context = new IntegrationContext(0, 2, 1);
+        channel = context.externalSystem(0);
+        SignalMetadata[][] partitions = new SignalMetadata[][] {
+            new SignalMetadata[] { createSignal(DataflowDirection.ToES, 0), createSignal(DataflowDirection.ToPM, 4) },
+            new SignalMetadata[] { createSignal(DataflowDirection.ToES, 4), createSignal(DataflowDirection.ToPM, 0) }
+        };
+        _procedure = new TransferPipelineProcedure(_pipeline, context,
+                new FrameAssembler(partitions, 2, ByteOrder.BIG_ENDIAN));
+    }
+
+    private static SignalMetadata createSignal(DataflowDirection direction, int bufferPos) {
+        SignalMetadata md = new SignalMetadata(SignalMetadata.SignalType.Analog, SignalMetadata.SignalDataType.Int32,
+                1, direction, "pm", "es", "", null);
+        md.setBufferPos(bufferPos);
+        return md;
+    }
+}
@@ -18,19 +18,29 @@
 */
 package gil.core.test;
 
+import gil.common.CurrentTime;
+import gil.common.ICurrentTime;
 import gil.io.IPipelineStage;
 import java.nio.ByteBuffer;
 import gil.core.*;
+import gil.core.SignalMetadata.DataflowDirection;
 import java.util.ArrayList;
 import java.util.HashMap;
+import org.junit.After;
 import org.junit.Test;
 import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
 
 
 public class TransferPipelineTest {
     public TransferPipelineTest() {
     }
 
+    @After
+    public void tearDown() {
+        CurrentTime.setInstanceForTestPurposes(null);
+    }
+
     @Test
     public void expect_signals_to_be_processed_by_pipeline_stages() {
 
@@ -61,4 +71,24 @@ public class TransferPipelineTest {
         assertEquals(2100, values.getInt());
         assertEquals(2200, values.getInt());
     }
+
+    @Test
+    public void expect_the_processing_time_of_each_stage_to_be_recorded_per_direction() {
+        ICurrentTime time = mock(ICurrentTime.class);
+        when(time.inNanoseconds()).thenReturn(1000L, 1500L, 3500L);
+        CurrentTime.setInstanceForTestPurposes(time);
+        ArrayList<IPipelineStage> stages = new ArrayList<IPipelineStage>();
+        stages.add(new AddStageStub());
+        stages.add(new MultiplyStageStub());
+        TransferPipeline instance = new TransferPipeline(stages);
+
+        instance.processSignals(ByteBuffer.allocate(8), DataflowDirection.ToPM);
+
+        StageTiming[] timings = instance.getStageTimings();
+        assertEquals(2, timings.length);
+        assertEquals(1, timings[0].getToPM(3500).getCount());
+        assertEquals(500, timings[0].getToPM(3500).getMaxNanos());
+        assertEquals(2000, timings[1].getToPM(3500).getMaxNanos());
+        assertEquals(0, timings[0].getToES(3500).getCount());
+    }
 }
\ No newline at end of file
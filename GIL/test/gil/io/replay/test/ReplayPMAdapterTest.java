@@ -0,0 +1,192 @@
+/*
+    Copyright (C) 2010 LearningWell AB (www.learningwell.com), Kärnkraftsäkerhet och Utbildning AB (www.ksu.se)
+
+    This file is part of GIL (Generic Integration Layer).
+
+    GIL is free software: you can redistribute it and/or modify
+    it under the terms of the GNU Lesser General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    GIL is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public License
+    along with GIL.  If not, see <http://www.gnu.org/licenses/>.
+*/
+package gil.io.replay.test;
+
+import gil.common.CurrentTime;
+import gil.common.ICurrentTime;
+import gil.common.InvalidParameterException;
+import gil.common.Parameters;
+import gil.core.Command;
+import gil.core.Data;
+import gil.core.SessionRecorder;
+import gil.core.SignalMetadata;
+import gil.core.SignalMetadata.DataflowDirection;
+import gil.core.SignalMetadata.SignalDataType;
+import gil.core.SignalMetadata.SignalType;
+import gil.core.SimState;
+import gil.core.SimTime;
+import gil.io.replay.ReplayPMAdapter;
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.Map;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * @author Göran Larsson @ LearningWell AB
+ */
+public class ReplayPMAdapterTest {
+
+    SignalMetadata[] _signalsToES = new SignalMetadata[] {
+        new SignalMetadata(SignalType.Analog, SignalDataType.Int32, 1, DataflowDirection.ToES, "s0", "s0", "", null)
+    };
+    File _directory;
+    long _microTime = 0;
+    ReplayPMAdapter _adapter = new ReplayPMAdapter();
+
+    public ReplayPMAdapterTest() {
+        _signalsToES[0].setBufferPos(0);
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        CurrentTime.setInstanceForTestPurposes(new ICurrentTime() {
+            public long inMilliseconds() {
+                return _microTime / 1000;
+            }
+
+            public long inMicroseconds() {
+                return _microTime;
+            }
+
+            public long inNanoseconds() {
+                return _microTime * 1000;
+            }
+        });
+        _directory = File.createTempFile("gilrec", "");
+        _directory.delete();
+
+        // Three frames 100 ms apart with a command recorded between the first and second frame.
+        SessionRecorder recorder = new SessionRecorder(_directory, "session", 4096, _signalsToES);
+        recorder.start();
+        recorder.recordFrame(new Data(createFrame(1), new SimTime(2010, 1, 1, 0, 0, 0, 0)), DataflowDirection.ToES);
+        recorder.recordCommands(new Command[] { new Command("FREEZE", new SimTime(2010, 1, 1, 0, 0, 0, 50)) });
+        recorder.recordFrame(new Data(createFrame(2), new SimTime(2010, 1, 1, 0, 0, 0, 100)), DataflowDirection.ToES);
+        recorder.recordFrame(new Data(createFrame(0)), DataflowDirection.ToPM);
+        recorder.recordFrame(new Data(createFrame(3), new SimTime(2010, 1, 1, 0, 0, 0, 200)), DataflowDirection.ToES);
+        recorder.stop();
+    }
+
+    @After
+    public void tearDown() {
+        _adapter.tearDown();
+        CurrentTime.setInstanceForTestPurposes(null);
+        File[] files = _directory.listFiles();
+        for (int i = 0; files != null && i < files.length; i++) {
+            files[i].delete();
+        }
+        _directory.delete();
+    }
+
+    @Test
+    public void expect_frames_and_commands_to_be_replayed_in_real_time() throws Exception {
+        setup("1", false);
+        assertEquals(10, _adapter.getOperatingFrequency());
+        assertTrue(_adapter.connect());
+        assertEquals(0, _adapter.getSimTime().getReturnValue().millisecond());
+        assertEquals(1, readValue());
+
+        _microTime = 99000;
+        assertEquals(0, _adapter.getSimTime().getReturnValue().millisecond());
+        Command[] commands = _adapter.readSimCommands().getReturnValue();
+        assertEquals(1, commands.length);
+        assertTrue(commands[0].isCommand("FREEZE"));
+        assertEquals(0, _adapter.readSimCommands().getReturnValue().length);
+
+        _microTime = 100000;
+        assertEquals(100, _adapter.getSimTime().getReturnValue().millisecond());
+        assertEquals(2, readValue());
+        assertEquals(SimState.RUN, _adapter.getState());
+
+        _microTime = 300000;
+        assertEquals(200, _adapter.getSimTime().getReturnValue().millisecond());
+        assertEquals(3, readValue());
+        assertEquals(SimState.FREEZE, _adapter.getState());
+        assertEquals(3, _adapter.getReplayedFrameCount());
+    }
+
+    @Test
+    public void expect_frames_to_be_replayed_at_multiple_of_real_time() throws Exception {
+        setup("4", false);
+        assertEquals(40, _adapter.getOperatingFrequency());
+        _adapter.connect();
+        _microTime = 50000;
+        assertEquals(200, _adapter.getSimTime().getReturnValue().millisecond());
+    }
+
+    @Test
+    public void expect_one_frame_for_each_poll_when_replayed_as_fast_as_possible() throws Exception {
+        setup("max", false);
+        _adapter.connect();
+        assertEquals(0, _adapter.getSimTime().getReturnValue().millisecond());
+        assertEquals(100, _adapter.getSimTime().getReturnValue().millisecond());
+        assertEquals(200, _adapter.getSimTime().getReturnValue().millisecond());
+        assertEquals(200, _adapter.getSimTime().getReturnValue().millisecond());
+        assertEquals(SimState.FREEZE, _adapter.getState());
+    }
+
+    @Test
+    public void expect_replay_to_start_over_at_end_of_recording_when_looping() throws Exception {
+        setup("max", true);
+        _adapter.connect();
+        _adapter.getSimTime();
+        _adapter.getSimTime();
+        assertEquals(200, _adapter.getSimTime().getReturnValue().millisecond());
+        assertEquals(0, _adapter.getSimTime().getReturnValue().millisecond());
+        assertEquals(1, readValue());
+        assertEquals(SimState.RUN, _adapter.getState());
+    }
+
+    @Test(expected = InvalidParameterException.class)
+    public void expect_exception_when_frame_size_does_not_match_the_signal_exchange_list() throws Exception {
+        SignalMetadata[] signals = new SignalMetadata[] {
+            new SignalMetadata(SignalType.Analog, SignalDataType.Float64, 1, DataflowDirection.ToES, "s0", "s0", "", null)
+        };
+        _adapter.setup(new SignalMetadata[0], signals, createParameters("1", false));
+    }
+
+    private void setup(String speed, boolean loop) throws Exception {
+        _adapter.setup(new SignalMetadata[0], _signalsToES, createParameters(speed, loop));
+    }
+
+    private Parameters createParameters(String speed, boolean loop) {
+        Map<String, String> params = new HashMap<String, String>();
+        params.put("recordingDirectory", _directory.getPath());
+        params.put("sessionName", "session");
+        params.put("operatingFrequency", "10");
+        params.put("speed", speed);
+        params.put("loop", Boolean.toString(loop));
+        return new Parameters(params);
+    }
+
+    private int readValue() throws Exception {
+        ByteBuffer buf = ByteBuffer.allocate(4);
+        _adapter.readSignalData(buf);
+        return buf.getInt(0);
+    }
+
+    private ByteBuffer createFrame(int value) {
+        ByteBuffer buf = ByteBuffer.allocate(4);
+        buf.putInt(0, value);
+        return buf;
+    }
+}
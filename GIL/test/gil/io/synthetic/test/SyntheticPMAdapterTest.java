@@ -0,0 +1,127 @@
+/*
+    Copyright (C) 2010 LearningWell AB (www.learningwell.com), Kärnkraftsäkerhet och Utbildning AB (www.ksu.se)
+
+    This file is part of GIL (Generic Integration Layer).
+
+    GIL is free software: you can redistribute it and/or modify
+    it under the terms of the GNU Lesser General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    GIL is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public License
+    along with GIL.  If not, see <http://www.gnu.org/licenses/>.
+*/
+package gil.io.synthetic.test;
+
+import gil.common.CurrentTime;
+import gil.common.ICurrentTime;
+import gil.common.InvalidParameterException;
+import gil.common.Parameters;
+import gil.core.Command;
+import gil.core.SignalMetadata;
+import gil.core.SignalMetadata.DataflowDirection;
+import gil.core.SignalMetadata.SignalDataType;
+import gil.core.SignalMetadata.SignalType;
+import gil.core.SimTime;
+import gil.io.synthetic.SyntheticPMAdapter;
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.Map;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * @author Göran Larsson @ LearningWell AB
+ */
+public class SyntheticPMAdapterTest {
+
+    SignalMetadata[] _signalsToES = new SignalMetadata[] {
+        new SignalMetadata(SignalType.Analog, SignalDataType.Float32, 1, DataflowDirection.ToES, "s0", "s0", "", null),
+        new SignalMetadata(SignalType.Analog, SignalDataType.Int16, 2, DataflowDirection.ToES, "s1", "s1", "", null),
+        new SignalMetadata(SignalType.Analog, SignalDataType.Float64, 1, DataflowDirection.ToES, "s2", "s2", "", null)
+    };
+    long _microTime = 0;
+    SyntheticPMAdapter _adapter = new SyntheticPMAdapter();
+
+    @Before
+    public void setUp() {
+        CurrentTime.setInstanceForTestPurposes(new ICurrentTime() {
+            public long inMilliseconds() {
+                return _microTime / 1000;
+            }
+
+            public long inMicroseconds() {
+                return _microTime;
+            }
+
+            public long inNanoseconds() {
+                return _microTime * 1000;
+            }
+        });
+    }
+
+    @After
+    public void tearDown() {
+        CurrentTime.setInstanceForTestPurposes(null);
+    }
+
+    @Test
+    public void expect_sim_time_to_advance_one_frame_each_frame_period() throws Exception {
+        setup("1000", "0");
+        _adapter.connect();
+        assertEquals(0, _adapter.getSimTime().getReturnValue().millisecond());
+        _microTime = 1500;
+        assertEquals(1, _adapter.getSimTime().getReturnValue().millisecond());
+        _microTime = 3600 * 1000000L + 2000;
+        SimTime time = _adapter.getSimTime().getReturnValue();
+        assertEquals(1, time.hour());
+        assertEquals(2, time.millisecond());
+    }
+
+    @Test
+    public void expect_values_of_all_signals_to_be_read_and_to_change_each_frame() throws Exception {
+        setup("1000", "0");
+        _adapter.connect();
+        ByteBuffer first = ByteBuffer.allocate(16);
+        _adapter.readSignalData(first);
+        assertEquals(16, first.position());
+
+        _microTime = 1000;
+        ByteBuffer second = ByteBuffer.allocate(16);
+        _adapter.readSignalData(second);
+        assertFalse(first.getFloat(0) == second.getFloat(0));
+        assertFalse(first.getDouble(8) == second.getDouble(8));
+    }
+
+    @Test
+    public void expect_commands_to_be_generated_at_the_given_rate() throws Exception {
+        setup("1000", "10");
+        _adapter.connect();
+        assertEquals(0, _adapter.readSimCommands().getReturnValue().length);
+        _microTime = 250000;
+        Command[] commands = _adapter.readSimCommands().getReturnValue();
+        assertEquals(2, commands.length);
+        assertEquals("1", commands[1].getParameter("seqNo"));
+        _microTime = 300000;
+        assertEquals(1, _adapter.readSimCommands().getReturnValue().length);
+    }
+
+    @Test(expected = InvalidParameterException.class)
+    public void expect_exception_when_operating_frequency_is_zero() throws Exception {
+        setup("0", "0");
+    }
+
+    private void setup(String frequency, String commandRate) throws Exception {
+        Map<String, String> params = new HashMap<String, String>();
+        params.put("operatingFrequency", frequency);
+        params.put("commandRate", commandRate);
+        _adapter.setup(new SignalMetadata[0], _signalsToES, new Parameters(params));
+    }
+}
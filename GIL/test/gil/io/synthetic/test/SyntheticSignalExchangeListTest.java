@@ -0,0 +1,100 @@
+/*
+    Copyright (C) 2010 LearningWell AB (www.learningwell.com), Kärnkraftsäkerhet och Utbildning AB (www.ksu.se)
+
+    This file is part of GIL (Generic Integration Layer).
+
+    GIL is free software: you can redistribute it and/or modify
+    it under the terms of the GNU Lesser General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    GIL is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public License
+    along with GIL.  If not, see <http://www.gnu.org/licenses/>.
+*/
+package gil.io.synthetic.test;
+
+import gil.common.InvalidParameterException;
+import gil.common.Parameters;
+import gil.core.SignalExchangeList;
+import gil.core.SignalMetadata;
+import gil.core.SignalMetadata.SignalDataType;
+import gil.io.synthetic.SyntheticSignalExchangeList;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.StringWriter;
+import java.util.HashMap;
+import java.util.Map;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * @author Göran Larsson @ LearningWell AB
+ */
+public class SyntheticSignalExchangeListTest {
+
+    @Test
+    public void expect_generated_list_to_hold_the_given_signals() throws Exception {
+        Map<String, String> settings = new HashMap<String, String>();
+        settings.put("signalCount", "1000");
+        settings.put("dataTypeMix", "Float32:6,Int32:2,Int8:1,Float64:1");
+        settings.put("toESShare", "80");
+
+        File file = File.createTempFile("synthetic", ".sel");
+        try {
+            FileWriter writer = new FileWriter(file);
+            SyntheticSignalExchangeList.write(writer, new Parameters(settings));
+            writer.close();
+            SignalMetadata[] signals = SignalExchangeList.parse(file.getPath());
+
+            assertEquals(1000, signals.length);
+            assertEquals(800, SignalMetadata.getSignalsToExternalSystem(signals).length);
+            assertEquals(600, countOf(signals, SignalDataType.Float32));
+            assertEquals(200, countOf(signals, SignalDataType.Int32));
+            assertEquals(100, countOf(signals, SignalDataType.Int8));
+            assertEquals(100, countOf(signals, SignalDataType.Float64));
+            assertEquals(SignalMetadata.SignalType.Digital, firstOf(signals, SignalDataType.Int8).getType());
+            assertEquals("S000999", signals[999].getPMSignalID());
+        } finally {
+            file.delete();
+        }
+    }
+
+    @Test
+    public void expect_float32_signals_to_be_generated_by_default() throws Exception {
+        StringWriter writer = new StringWriter();
+        SyntheticSignalExchangeList.write(writer, new Parameters());
+        assertTrue(writer.toString().contains("Analog Float32 1 ToPM S000000 S000000 Synthetic"));
+        assertTrue(writer.toString().contains("Analog Float32 1 ToES S000999 S000999 Synthetic"));
+    }
+
+    @Test(expected = InvalidParameterException.class)
+    public void expect_exception_when_data_type_mix_is_invalid() throws Exception {
+        Map<String, String> settings = new HashMap<String, String>();
+        settings.put("dataTypeMix", "Float32:6,Bogus:2");
+        SyntheticSignalExchangeList.write(new StringWriter(), new Parameters(settings));
+    }
+
+    private int countOf(SignalMetadata[] signals, SignalDataType dataType) {
+        int count = 0;
+        for (SignalMetadata signal : signals) {
+            if (signal.getDataType() == dataType) {
+                ++count;
+            }
+        }
+        return count;
+    }
+
+    private SignalMetadata firstOf(SignalMetadata[] signals, SignalDataType dataType) {
+        for (SignalMetadata signal : signals) {
+            if (signal.getDataType() == dataType) {
+                return signal;
+            }
+        }
+        return null;
+    }
+}
@@ -24,6 +24,7 @@ import java.util.GregorianCalendar;
 import org.junit.Test;
 import gil.core.LogfileMetadata;
 import static org.junit.Assert.*;
+import gil.common.LatencyHistogram;
 import gil.core.CommandDescriptor;
 import gil.core.ParameterDescriptor;
 import gil.core.SoftwareInfo;
@@ -103,6 +104,22 @@ public class TransformerTest {
         assertEquals(svos[1].name(), stages[1].getName());
         assertEquals("http://localhost:1234/base/2/commands", stages[0].getCommandsLink());
         assertEquals("http://localhost:1234/base/3/commands", stages[1].getCommandsLink());
+        assertNull(stages[0].getToES());
+    }
+
+    @Test
+    public void expect_stage_processing_times_to_be_transformed() throws URISyntaxException {
+        LatencyHistogram toES = new LatencyHistogram();
+        toES.record(1000);
+        toES.record(3000);
+        StageValueObject[] svos = new StageValueObject[] {
+            new StageValueObject(0, "aName", null, toES, new LatencyHistogram())
+        };
+        PipelineStage[] stages = Transformer.transformStageArray(svos, new URI("http://localhost:1234/base"));
+        assertEquals(2, stages[0].getToES().count);
+        assertEquals(2000, stages[0].getToES().mean);
+        assertEquals(3000, stages[0].getToES().max);
+        assertEquals(0, stages[0].getToPM().count);
     }
 
     @Test
@@ -0,0 +1,131 @@
+/*
+    Copyright (C) 2010 LearningWell AB (www.learningwell.com), Kärnkraftsäkerhet och Utbildning AB (www.ksu.se)
+
+    This file is part of GIL (Generic Integration Layer).
+
+    GIL is free software: you can redistribute it and/or modify
+    it under the terms of the GNU Lesser General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    GIL is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public License
+    along with GIL.  If not, see <http://www.gnu.org/licenses/>.
+*/
+package gil.web.test;
+
+import gil.web.EventStream;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Göran Larsson @ LearningWell AB
+ */
+public class EventStreamTest {
+
+    EventStream _stream = new EventStream(2);
+
+    @Test
+    public void expect_a_new_subscriber_to_receive_the_latest_event_of_each_name() throws Exception {
+        _stream.publish("status", "a");
+        _stream.publish("statistics", "1");
+        _stream.publish("status", "b");
+
+        EventStream.Subscription subscription = _stream.subscribe();
+        assertEquals("event: status\ndata: b\n\nevent: statistics\ndata: 1\n\n", text(subscription.next(0)));
+    }
+
+    @Test
+    public void expect_only_changed_events_to_be_received() throws Exception {
+        EventStream.Subscription subscription = _stream.subscribe();
+        _stream.publish("status", "a");
+        _stream.publish("statistics", "1");
+        subscription.next(0);
+
+        assertFalse(_stream.publish("status", "a"));
+        assertTrue(_stream.publish("statistics", "2"));
+        assertEquals("event: statistics\ndata: 2\n\n", text(subscription.next(0)));
+    }
+
+    @Test
+    public void expect_a_heartbeat_when_nothing_is_published_within_the_timeout() throws Exception {
+        EventStream.Subscription subscription = _stream.subscribe();
+        assertEquals(":\n\n", text(subscription.next(10)));
+    }
+
+    @Test
+    public void expect_each_line_of_multi_line_data_to_be_sent_as_a_data_field() throws Exception {
+        EventStream.Subscription subscription = _stream.subscribe();
+        _stream.publish("status", "a\nb");
+        assertEquals("event: status\ndata: a\ndata: b\n\n", text(subscription.next(0)));
+    }
+
+    @Test
+    public void expect_a_waiting_subscriber_to_be_woken_up_when_an_event_is_published() throws Exception {
+        final EventStream.Subscription subscription = _stream.subscribe();
+        final byte[][] received = new byte[1][];
+        Thread thread = new Thread(new Runnable() {
+            public void run() {
+                try {
+                    received[0] = subscription.next(10000);
+                } catch (InterruptedException ex) {
+                }
+            }
+        });
+        thread.start();
+        Thread.sleep(50);
+        _stream.publish("status", "a");
+        thread.join(1000);
+
+        assertEquals("event: status\ndata: a\n\n", text(received[0]));
+    }
+
+    @Test
+    public void expect_subscribers_to_be_limited_until_a_subscription_is_cancelled() {
+        EventStream.Subscription first = _stream.subscribe();
+        assertNotNull(_stream.subscribe());
+        assertNull(_stream.subscribe());
+
+        first.cancel();
+        first.cancel();
+        assertEquals(1, _stream.getSubscriberCount());
+        assertNotNull(_stream.subscribe());
+    }
+
+    @Test
+    public void expect_the_events_to_be_forgotten_when_the_last_subscriber_cancels() throws Exception {
+        EventStream.Subscription first = _stream.subscribe();
+        EventStream.Subscription second = _stream.subscribe();
+        _stream.publish("status", "a");
+        first.cancel();
+
+        EventStream.Subscription third = _stream.subscribe();
+        assertEquals("event: status\ndata: a\n\n", text(third.next(0)));
+
+        second.cancel();
+        third.cancel();
+        EventStream.Subscription fourth = _stream.subscribe();
+        assertEquals(":\n\n", text(fourth.next(10)));
+        assertTrue(_stream.publish("status", "a"));
+        assertEquals("event: status\ndata: a\n\n", text(fourth.next(0)));
+    }
+
+    @Test
+    public void expect_no_more_events_when_the_stream_is_closed() throws Exception {
+        EventStream.Subscription subscription = _stream.subscribe();
+        _stream.publish("status", "a");
+        _stream.close();
+
+        assertNull(subscription.next(0));
+        assertNull(_stream.subscribe());
+    }
+
+    private static String text(byte[] bytes) throws Exception {
+        return new String(bytes, "UTF-8");
+    }
+}
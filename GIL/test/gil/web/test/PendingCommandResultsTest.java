@@ -0,0 +1,65 @@
+/*
+    Copyright (C) 2010 LearningWell AB (www.learningwell.com), Kärnkraftsäkerhet och Utbildning AB (www.ksu.se)
+
+    This file is part of GIL (Generic Integration Layer).
+
+    GIL is free software: you can redistribute it and/or modify
+    it under the terms of the GNU Lesser General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    GIL is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public License
+    along with GIL.  If not, see <http://www.gnu.org/licenses/>.
+*/
+package gil.web.test;
+
+import gil.common.AsyncResult;
+import gil.web.PendingCommandResults;
+import java.util.HashMap;
+import java.util.Map;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Göran Larsson @ LearningWell AB
+ */
+public class PendingCommandResultsTest {
+
+    PendingCommandResults _results = new PendingCommandResults();
+
+    @Test
+    public void expect_pending_result_to_be_kept_until_done() {
+        AsyncResult<Map<String, String>> result = new AsyncResult<Map<String, String>>();
+        String id = _results.add(result);
+
+        assertSame(result, _results.get(id));
+        assertSame(result, _results.get(id));
+
+        result.setDone(new HashMap<String, String>());
+        assertSame(result, _results.get(id));
+        assertNull(_results.get(id));
+    }
+
+    @Test
+    public void expect_unique_ids() {
+        String id1 = _results.add(new AsyncResult<Map<String, String>>());
+        String id2 = _results.add(new AsyncResult<Map<String, String>>());
+        assertFalse(id1.equals(id2));
+    }
+
+    @Test
+    public void expect_oldest_result_to_be_forgotten_when_full() {
+        String first = _results.add(new AsyncResult<Map<String, String>>());
+        for (int i = 0; i < PendingCommandResults.MAX_PENDING; i++) {
+            _results.add(new AsyncResult<Map<String, String>>());
+        }
+        assertEquals(PendingCommandResults.MAX_PENDING, _results.size());
+        assertNull(_results.get(first));
+    }
+}
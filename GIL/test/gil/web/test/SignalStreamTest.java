@@ -0,0 +1,216 @@
+/*
+    Copyright (C) 2010 LearningWell AB (www.learningwell.com), Kärnkraftsäkerhet och Utbildning AB (www.ksu.se)
+
+    This file is part of GIL (Generic Integration Layer).
+
+    GIL is free software: you can redistribute it and/or modify
+    it under the terms of the GNU Lesser General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    GIL is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public License
+    along with GIL.  If not, see <http://www.gnu.org/licenses/>.
+*/
+package gil.web.test;
+
+import gil.core.FrameHistory;
+import gil.core.SignalMetadata;
+import gil.core.SignalMetadata.DataflowDirection;
+import gil.core.SignalMetadata.SignalDataType;
+import gil.core.SignalMetadata.SignalType;
+import gil.web.SignalStream;
+import java.nio.ByteBuffer;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Göran Larsson @ LearningWell AB
+ */
+public class SignalStreamTest {
+
+    static final long MS = 1000000L;
+
+    SignalMetadata _toES = new SignalMetadata(SignalType.Analog, SignalDataType.Int32, 1, DataflowDirection.ToES, "pm0", "es0", "", null);
+    SignalMetadata _toPM = new SignalMetadata(SignalType.Analog, SignalDataType.Float32, 2, DataflowDirection.ToPM, "pm1", "es1", "", null);
+    FrameHistory _toESFrames = new FrameHistory(2, 4);
+    FrameHistory _toPMFrames = new FrameHistory(2, 8);
+    SignalStream _stream = new SignalStream(_toESFrames, _toPMFrames, 2);
+
+    public SignalStreamTest() {
+        _toES.setBufferPos(0);
+        _toPM.setBufferPos(0);
+    }
+
+    @Test
+    public void expect_the_latest_values_by_the_subscribed_ids_in_the_json_format() throws Exception {
+        SignalStream.Subscription subscription = _stream.subscribe(new SignalMetadata[] {_toPM, _toES},
+                new String[] {"pm1", "es0"}, 10, SignalStream.Format.JSON);
+        recordToES(1);
+        recordToES(2);
+        recordToPM(1.5f, -3);
+        _stream.publishOnce(0);
+
+        assertEquals("event: values\ndata: {\"pm1\":[1.5,-3],\"es0\":[2]}\n\n", text(subscription.next(0)));
+    }
+
+    @Test
+    public void expect_null_for_values_not_yet_transferred() throws Exception {
+        SignalStream.Subscription subscription = _stream.subscribe(new SignalMetadata[] {_toES, _toPM},
+                new String[] {"es0", "pm1"}, 10, SignalStream.Format.JSON);
+        recordToES(7);
+        _stream.publishOnce(0);
+
+        assertEquals("event: values\ndata: {\"es0\":[7],\"pm1\":[null,null]}\n\n", text(subscription.next(0)));
+    }
+
+    @Test
+    public void expect_binary_updates_prefixed_with_their_length() throws Exception {
+        SignalStream.Subscription subscription = _stream.subscribe(new SignalMetadata[] {_toES, _toPM},
+                new String[] {"es0", "pm1"}, 10, SignalStream.Format.BINARY);
+        recordToES(7);
+        recordToPM(0.5f, 2);
+        _stream.publishOnce(0);
+
+        ByteBuffer update = ByteBuffer.wrap(subscription.next(0));
+        assertEquals(24, update.getInt());
+        assertEquals(7.0, update.getDouble(), 0);
+        assertEquals(0.5, update.getDouble(), 0);
+        assertEquals(2.0, update.getDouble(), 0);
+        assertFalse(update.hasRemaining());
+    }
+
+    @Test
+    public void expect_no_update_until_a_new_frame_is_recorded_in_the_direction_of_the_signals() throws Exception {
+        SignalStream.Subscription subscription = _stream.subscribe(new SignalMetadata[] {_toES},
+                new String[] {"es0"}, 10, SignalStream.Format.BINARY);
+        _stream.publishOnce(0);
+        recordToPM(1, 2);
+        _stream.publishOnce(200 * MS);
+
+        assertArrayEquals(new byte[4], subscription.next(0));
+    }
+
+    @Test
+    public void expect_no_update_when_frames_were_recorded_before_the_subscription_in_the_other_direction()
+            throws Exception {
+        recordToES(1);
+        SignalStream.Subscription subscription = _stream.subscribe(new SignalMetadata[] {_toPM},
+                new String[] {"pm1"}, 10, SignalStream.Format.JSON);
+        _stream.publishOnce(0);
+
+        assertEquals(":\n\n", text(subscription.next(0)));
+    }
+
+    @Test
+    public void expect_updates_to_be_limited_to_the_rate_of_the_subscription() throws Exception {
+        SignalStream.Subscription subscription = _stream.subscribe(new SignalMetadata[] {_toES},
+                new String[] {"es0"}, 10, SignalStream.Format.JSON);
+        recordToES(1);
+        _stream.publishOnce(0);
+        subscription.next(0);
+
+        recordToES(2);
+        _stream.publishOnce(50 * MS);
+        assertEquals(":\n\n", text(subscription.next(0)));
+
+        recordToES(3);
+        _stream.publishOnce(100 * MS);
+        assertEquals("event: values\ndata: {\"es0\":[3]}\n\n", text(subscription.next(0)));
+    }
+
+    @Test
+    public void expect_a_slow_subscriber_to_get_the_latest_update_only() throws Exception {
+        SignalStream.Subscription subscription = _stream.subscribe(new SignalMetadata[] {_toES},
+                new String[] {"es0"}, 100, SignalStream.Format.JSON);
+        recordToES(1);
+        _stream.publishOnce(0);
+        recordToES(2);
+        _stream.publishOnce(10 * MS);
+
+        assertEquals("event: values\ndata: {\"es0\":[2]}\n\n", text(subscription.next(0)));
+    }
+
+    @Test
+    public void expect_subscribers_to_be_limited_until_a_subscription_is_cancelled() {
+        SignalStream.Subscription first = _stream.subscribe(new SignalMetadata[] {_toES}, new String[] {"es0"}, 10,
+                SignalStream.Format.JSON);
+        assertNotNull(_stream.subscribe(new SignalMetadata[] {_toES}, new String[] {"es0"}, 10, SignalStream.Format.JSON));
+        assertNull(_stream.subscribe(new SignalMetadata[] {_toES}, new String[] {"es0"}, 10, SignalStream.Format.JSON));
+
+        first.cancel();
+        assertEquals(1, _stream.getSubscriberCount());
+    }
+
+    @Test
+    public void expect_subscriptions_to_end_when_stopped() throws Exception {
+        SignalStream.Subscription subscription = _stream.subscribe(new SignalMetadata[] {_toES},
+                new String[] {"es0"}, 10, SignalStream.Format.JSON);
+        _stream.stop();
+
+        assertNull(subscription.next(0));
+        assertNull(_stream.subscribe(new SignalMetadata[] {_toES}, new String[] {"es0"}, 10, SignalStream.Format.JSON));
+    }
+
+    @Test
+    public void expect_frames_not_recorded_when_created_to_be_recorded_only_while_subscribed() {
+        _toESFrames.setRecording(false);
+        _toPMFrames.setRecording(false);
+        SignalStream stream = new SignalStream(_toESFrames, _toPMFrames, 2);
+
+        SignalStream.Subscription subscription = stream.subscribe(new SignalMetadata[] {_toES},
+                new String[] {"es0"}, 10, SignalStream.Format.JSON);
+        assertTrue(_toESFrames.isRecording());
+        assertTrue(_toPMFrames.isRecording());
+        subscription.cancel();
+        assertFalse(_toESFrames.isRecording());
+        assertFalse(_toPMFrames.isRecording());
+    }
+
+    @Test
+    public void expect_frames_recorded_when_created_to_be_recorded_without_subscribers() {
+        _stream.subscribe(new SignalMetadata[] {_toES}, new String[] {"es0"}, 10, SignalStream.Format.JSON).cancel();
+        assertTrue(_toESFrames.isRecording());
+        assertTrue(_toPMFrames.isRecording());
+    }
+
+    @Test
+    public void expect_values_of_frames_recorded_before_subscribing_not_to_be_published() throws Exception {
+        recordToPM(1, 2);
+        SignalStream.Subscription subscription = _stream.subscribe(new SignalMetadata[] {_toES, _toPM},
+                new String[] {"es0", "pm1"}, 10, SignalStream.Format.JSON);
+        _stream.publishOnce(0);
+        assertEquals(":\n\n", text(subscription.next(0)));
+
+        recordToES(7);
+        _stream.publishOnce(100 * MS);
+        assertEquals("event: values\ndata: {\"es0\":[7],\"pm1\":[null,null]}\n\n", text(subscription.next(0)));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void expect_exception_when_the_rate_is_too_high() {
+        _stream.subscribe(new SignalMetadata[] {_toES}, new String[] {"es0"}, SignalStream.MAX_RATE + 1,
+                SignalStream.Format.JSON);
+    }
+
+    private void recordToES(int value) {
+        ByteBuffer frame = ByteBuffer.allocate(4);
+        frame.putInt(0, value);
+        _toESFrames.record(frame, null);
+    }
+
+    private void recordToPM(float v0, float v1) {
+        ByteBuffer frame = ByteBuffer.allocate(8);
+        frame.putFloat(0, v0).putFloat(4, v1);
+        _toPMFrames.record(frame, null);
+    }
+
+    private static String text(byte[] bytes) throws Exception {
+        return new String(bytes, "UTF-8");
+    }
+}